@@ -15,7 +15,7 @@ import com.clevertap.android.geofence.interfaces.CTLocationUpdatesListener;
 import com.clevertap.android.sdk.CleverTapAPI;
 import com.google.common.util.concurrent.ListenableFuture;
 
-import java.util.concurrent.Future;
+import java.util.Collections;
 
 /**
  * A {@link ListenableWorker} which fetches last known location from OS in foreground as well as in background
@@ -55,18 +55,19 @@ public class BackgroundLocationWork extends ListenableWorker {
 
                         CleverTapAPI cleverTapApi = CTGeofenceAPI.getInstance(getApplicationContext())
                                 .getCleverTapApi();
-                        Future<?> future = null;
-
-                        if (cleverTapApi != null && location != null) {
-                            future = CTGeofenceAPI.getInstance(getApplicationContext())
-                                    .processTriggeredLocation(location);
-                        }
 
                         try {
+                            if (location != null) {
+                                // stored for later delivery even if CleverTap SDK is not available
+                                CTGeofenceAPI.getInstance(getApplicationContext())
+                                        .processTriggeredLocation(location);
+                            }
+
                             Utils.notifyLocationUpdates(getApplicationContext(),location);
 
-                            if (future != null) {
-                                future.get();
+                            if (location != null) {
+                                Utils.evaluateSoftwareGeofences(getApplicationContext(),
+                                        Collections.singletonList(location));
                             }
                         } catch (Exception e) {
                             CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
@@ -8,25 +8,31 @@ import android.location.Location;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RestrictTo;
+import androidx.annotation.WorkerThread;
 
 import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
+import com.clevertap.android.geofence.interfaces.CTGeofenceEventsBatchListener;
 import com.clevertap.android.geofence.interfaces.CTGeofenceEventsListener;
 import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
 import com.clevertap.android.geofence.interfaces.CTLocationAdapter;
 import com.clevertap.android.geofence.interfaces.CTLocationCallback;
 import com.clevertap.android.geofence.interfaces.CTLocationUpdatesListener;
+import com.clevertap.android.geofence.model.CTGeofence;
 import com.clevertap.android.sdk.CleverTapAPI;
 import com.clevertap.android.sdk.GeofenceCallback;
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
 
 import org.json.JSONObject;
 
-import java.util.concurrent.Future;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 import static android.app.PendingIntent.FLAG_NO_CREATE;
-import static com.clevertap.android.geofence.CTGeofenceConstants.DEFAULT_LATITUDE;
-import static com.clevertap.android.geofence.CTGeofenceConstants.DEFAULT_LONGITUDE;
-import static com.clevertap.android.geofence.GoogleLocationAdapter.INTERVAL_IN_MILLIS;
-import static com.clevertap.android.geofence.GoogleLocationAdapter.SMALLEST_DISPLACEMENT_IN_METERS;
 
 /**
  * Main Entry point for communicating with Geofence SDK.<br>
@@ -37,6 +43,7 @@ import static com.clevertap.android.geofence.GoogleLocationAdapter.SMALLEST_DISP
 public class CTGeofenceAPI implements GeofenceCallback {
 
     public static final String GEOFENCE_LOG_TAG = "CTGeofence";
+
     private static CTGeofenceAPI ctGeofenceAPI;
     private final Context context;
     private static Logger logger;
@@ -57,6 +64,9 @@ public class CTGeofenceAPI implements GeofenceCallback {
     @Nullable
     private CTLocationUpdatesListener ctLocationUpdatesListener;
     private String accountId;
+    private final CTLocationPingStats locationPingStats = new CTLocationPingStats();
+    private final CTGeofenceTransitionStats transitionStats = new CTGeofenceTransitionStats();
+    private final GeofenceEventBus eventBus = new GeofenceEventBus();
 
     private CTGeofenceAPI(Context context) {
         this.context = context.getApplicationContext();
@@ -197,6 +207,10 @@ public class CTGeofenceAPI implements GeofenceCallback {
 
         logger.setDebugLevel(ctGeofenceSettings.getLogLevel());
 
+        if (ctGeofenceSettings.getGeofenceEngine() == CTGeofenceSettings.GEOFENCE_ENGINE_SOFTWARE) {
+            ctGeofenceAdapter = CTGeofenceFactory.createSoftwareGeofenceAdapter(context);
+        }
+
 
         cleverTapAPI.setGeofenceCallback(this);
         logger.debug(GEOFENCE_LOG_TAG, "geofence callback registered");
@@ -271,26 +285,39 @@ public class CTGeofenceAPI implements GeofenceCallback {
         CTGeofenceTaskManager.getInstance().postAsyncSafely("DeactivateApi", new Runnable() {
             @Override
             public void run() {
-                // stop geofence monitoring
-                PendingIntent geofencePendingIntent = PendingIntentFactory.getPendingIntent(context,
-                        PendingIntentFactory.PENDING_INTENT_GEOFENCE, FLAG_NO_CREATE);
-                ctGeofenceAdapter.stopGeofenceMonitoring(geofencePendingIntent);
+                // stop waiting for registrations in progress, their results don't matter anymore
+                TaskUtils.cancelPending();
 
-                // stop location updates
-                PendingIntent locationPendingIntent = PendingIntentFactory.getPendingIntent(context,
+                final PendingIntent geofencePendingIntent = PendingIntentFactory.getPendingIntent(context,
+                        PendingIntentFactory.PENDING_INTENT_GEOFENCE, FLAG_NO_CREATE);
+                final PendingIntent locationPendingIntent = PendingIntentFactory.getPendingIntent(context,
                         PendingIntentFactory.PENDING_INTENT_LOCATION, FLAG_NO_CREATE);
-                ctLocationAdapter.removeLocationUpdates(locationPendingIntent);
+
+                // stop geofence monitoring followed by location updates, after any registration
+                // still in progress and without waiting for OS here
+                TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+                    @Override
+                    public Task<Void> then(@NonNull Task<Void> task) {
+                        return ctGeofenceAdapter.stopGeofenceMonitoringAsync(geofencePendingIntent,
+                                TaskUtils.getCancellationToken());
+                    }
+                });
+                TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+                    @Override
+                    public Task<Void> then(@NonNull Task<Void> task) {
+                        return ctLocationAdapter.removeLocationUpdatesAsync(locationPendingIntent,
+                                TaskUtils.getCancellationToken());
+                    }
+                });
 
                 // delete cached files
                 FileUtils.deleteDirectory(context, FileUtils.getCachedDirName(context));
+                GeofenceStore.getInstance().invalidate();
+                Utils.invalidateSettings(context);
+                LocationSamplingScheduler.reset(context);
 
                 // reset preference
-                GeofenceStorageHelper.putDouble(context
-                        , CTGeofenceConstants.KEY_LATITUDE, DEFAULT_LATITUDE);
-                GeofenceStorageHelper.putDouble(context
-                        , CTGeofenceConstants.KEY_LONGITUDE, DEFAULT_LONGITUDE);
-                GeofenceStorageHelper.putLong(context
-                        , CTGeofenceConstants.KEY_LAST_LOCATION_EP,0);
+                GeofenceStorageHelper.putLocationState(context, LocationState.NONE);
 
                 isActivated = false;
             }
@@ -311,10 +338,58 @@ public class CTGeofenceAPI implements GeofenceCallback {
     @Override
     public void handleGeoFences(JSONObject fenceList) {
 
-        if (ctLocationAdapter == null || ctGeofenceAdapter == null) {
+        if (!canHandleGeoFences()) {
+            return;
+        }
+
+        if (fenceList == null) {
+            logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Geofence response is null! dropping further processing");
             return;
         }
 
+        GeofenceUpdateTask geofenceUpdateTask = new GeofenceUpdateTask(context, fenceList);
+
+        CTGeofenceTaskManager.getInstance().postAsyncSafely("ProcessGeofenceUpdates",
+                geofenceUpdateTask);
+    }
+
+    /**
+     * Same as {@link #handleGeoFences(JSONObject)} but for json text of geofence list, which is
+     * parsed one geofence at a time on background thread, so that a large list is never held in
+     * memory as a whole. Provided reader is closed once geofence list is read.<br>
+     * Unlike {@link #handleGeoFences(JSONObject)}, a list received while previous one is waiting in
+     * queue does not replace it, since the previous reader must still be consumed.<br>
+     * This method is for internal usage only, apps must not call this externally.
+     *
+     * @param fenceListReader reader of json object containing geofence list to register to OS
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void handleGeoFencesStream(@NonNull Reader fenceListReader) {
+
+        if (!canHandleGeoFences()) {
+            try {
+                fenceListReader.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+            return;
+        }
+
+        CTGeofenceTaskManager.getInstance().postAsyncSafely("ProcessGeofenceStream",
+                GeofenceUpdateTask.fromReader(context, fenceListReader));
+    }
+
+    /**
+     * @return true if SDK is initialized and has location permissions required to register
+     * geofences
+     */
+    private boolean canHandleGeoFences() {
+
+        if (ctLocationAdapter == null || ctGeofenceAdapter == null) {
+            return false;
+        }
+
         if (!Utils.hasPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)) {
             logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                     "We don't have ACCESS_FINE_LOCATION permission! dropping geofence update call");
@@ -322,7 +397,7 @@ public class CTGeofenceAPI implements GeofenceCallback {
                 this.cleverTapAPI.pushGeoFenceError(CTGeofenceConstants.ERROR_CODE,
                         "We don't have ACCESS_FINE_LOCATION permission! Dropping initBackgroundLocationUpdates() call");
             }
-            return;
+            return false;
         }
 
         if (!Utils.hasBackgroundLocationPermission(context)) {
@@ -332,19 +407,10 @@ public class CTGeofenceAPI implements GeofenceCallback {
                 this.cleverTapAPI.pushGeoFenceError(CTGeofenceConstants.ERROR_CODE,
                         "We don't have ACCESS_BACKGROUND_LOCATION permission! dropping geofence update call");
             }
-            return;
-        }
-
-        if (fenceList == null) {
-            logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Geofence response is null! dropping further processing");
-            return;
+            return false;
         }
 
-        GeofenceUpdateTask geofenceUpdateTask = new GeofenceUpdateTask(context, fenceList);
-
-        CTGeofenceTaskManager.getInstance().postAsyncSafely("ProcessGeofenceUpdates",
-                geofenceUpdateTask);
+        return true;
     }
 
     /**
@@ -391,6 +457,8 @@ public class CTGeofenceAPI implements GeofenceCallback {
 
                                 if (location != null) {
                                     processTriggeredLocation(location);
+                                    Utils.evaluateSoftwareGeofences(context,
+                                            Collections.singletonList(location));
                                 }
 
                                 Utils.notifyLocationUpdates(context, location);
@@ -403,65 +471,134 @@ public class CTGeofenceAPI implements GeofenceCallback {
     }
 
     /**
-     * Sends Location to CleverTap SDK to send it to server with throttling limit of {@code minimum
-     * 30 minutes} and {@code minimum displacement of 200 meters} between two location pings.<br>
-     * Throttling logic is determined by comparing last pinged location and current one using
-     * shared preferences
+     * Finds geofences nearest to given location out of full geofence list received from server,
+     * including geofences which are not monitored because of
+     * {@link CTGeofenceSettings.Builder#setGeofenceMonitoringCount(int)}.<br>
+     * Must be called from a background thread, since geofence index may be loaded from disk.
      *
-     * @param location instance of {@link Location}, must be nonnull
-     * @return a Future representing pending completion of the task of sending location to server,
-     * can be null if CleverTap SDK decides not to send it to server
+     * @param latitude  latitude of location
+     * @param longitude longitude of location
+     * @param count     maximum number of geofences to return
+     * @return list of {@link CTGeofence} sorted by distance of its center from given location,
+     * empty if no geofences are received yet
+     */
+    @SuppressWarnings("unused")
+    @WorkerThread
+    @NonNull
+    public List<CTGeofence> getNearestGeofences(double latitude, double longitude, int count) {
+        GeofenceSpatialIndex catalogIndex = GeofenceStore.getInstance().getCatalogIndex(context);
+        if (catalogIndex == null) {
+            return new ArrayList<>();
+        }
+        return catalogIndex.toGeofences(catalogIndex.nearest(latitude, longitude, count));
+    }
+
+    /**
+     * Finds geofences whose center lies within given distance of given location out of full
+     * geofence list received from server, including geofences which are not monitored because of
+     * {@link CTGeofenceSettings.Builder#setGeofenceMonitoringCount(int)}.<br>
+     * Must be called from a background thread, since geofence index may be loaded from disk.
+     *
+     * @param latitude       latitude of location
+     * @param longitude      longitude of location
+     * @param radiusInMeters distance from given location
+     * @return list of {@link CTGeofence} sorted by distance of its center from given location,
+     * empty if no geofences are received yet
      */
-    @Nullable Future<?> processTriggeredLocation(@NonNull Location location) {
-        Future<?> future = null;
+    @SuppressWarnings("unused")
+    @WorkerThread
+    @NonNull
+    public List<CTGeofence> getGeofencesWithinRadius(double latitude, double longitude,
+                                                     double radiusInMeters) {
+        GeofenceSpatialIndex catalogIndex = GeofenceStore.getInstance().getCatalogIndex(context);
+        if (catalogIndex == null) {
+            return new ArrayList<>();
+        }
+        return catalogIndex.toGeofences(catalogIndex.withinRadius(latitude, longitude, radiusInMeters));
+    }
 
+    /**
+     * Sends Location to CleverTap SDK to send it to server if accepted by
+     * {@link #acceptTriggeredLocation(Location)}, after selecting geofences nearest to it. Location is added to {@link EventOutbox} before
+     * it is pushed, so that it is delivered later by {@link OutboxDrainWork} if CleverTap SDK is
+     * not available or push fails. Waits until push is acknowledged or deadline of
+     * {@link GeofenceEventPipeline} is over.
+     *
+     * @param location instance of {@link Location}, must be nonnull
+     */
+    @WorkerThread
+    void processTriggeredLocation(@NonNull Location location) {
         try {
-            if (cleverTapAPI == null)
-                return null;
+            if (!acceptTriggeredLocation(location)) {
+                return;
+            }
 
-            Location lastStoredLocation = new Location("");
+            reselectGeofences(location);
 
-            lastStoredLocation.setLatitude(GeofenceStorageHelper
-                    .getDouble(context, CTGeofenceConstants.KEY_LATITUDE, DEFAULT_LATITUDE));
-            lastStoredLocation.setLongitude(GeofenceStorageHelper
-                    .getDouble(context, CTGeofenceConstants.KEY_LONGITUDE, DEFAULT_LONGITUDE));
+            JSONObject event = EventOutbox.locationEvent(location);
+            if (event != null) {
+                GeofenceEventPipeline.deliver(context, cleverTapAPI,
+                        Collections.singletonList(event));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-            long lastStoredLocationEPMillis = GeofenceStorageHelper.getLong(context
-                    , CTGeofenceConstants.KEY_LAST_LOCATION_EP, 0);
-            long nowMillis = System.currentTimeMillis();
+    /**
+     * Decides whether Location is to be sent to server as per
+     * {@link CTGeofenceSettings#getLocationThrottlePolicy()}, which by default requires
+     * {@code minimum 30 minutes} and {@code minimum displacement of 200 meters} between two
+     * location pings.<br>
+     * Throttling logic is determined by comparing last pinged location and current one using
+     * {@link LocationState} stored in shared preferences, which is updated once a location is
+     * accepted. Time of location fix is used for both, so that batched locations delivered
+     * together are throttled as per time at which they were recorded.<br>
+     * Caller is expected to call {@link #reselectGeofences(Location)} once for the last location
+     * accepted out of a batch.
+     *
+     * @param location instance of {@link Location}, must be nonnull
+     * @return true if location is accepted and must be sent to server by caller
+     */
+    boolean acceptTriggeredLocation(@NonNull Location location) {
 
-            long deltaT = nowMillis - lastStoredLocationEPMillis;
-            float deltaD = location.distanceTo(lastStoredLocation);
+        CTGeofenceSettings geofenceSettings = ctGeofenceSettings != null ? ctGeofenceSettings
+                : initDefaultConfig();
 
-            logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Delta T for last two locations = " + deltaT);
-            logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Delta D for last two locations = " + deltaD);
+        long fixTime = location.getTime() > 0 ? location.getTime() : System.currentTimeMillis();
 
-            if (deltaT > INTERVAL_IN_MILLIS && deltaD > SMALLEST_DISPLACEMENT_IN_METERS) {
+        LocationState lastStoredState = GeofenceStorageHelper.getLocationState(context);
+        int result = geofenceSettings.getLocationThrottlePolicy().evaluate(location,
+                lastStoredState, fixTime);
+        locationPingStats.record(result);
 
-                logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Sending last location to CleverTap..");
+        logger.verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Location pings since process start: " + locationPingStats);
 
-                future = cleverTapAPI.setLocationForGeofences(location, Utils.getGeofenceSDKVersion());
+        if (result != CTLocationThrottlePolicy.RESULT_ACCEPTED) {
+            logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Not sending last location to CleverTap");
+            return false;
+        }
 
-                GeofenceStorageHelper.putDouble(context
-                        , CTGeofenceConstants.KEY_LATITUDE, location.getLatitude());
-                GeofenceStorageHelper.putDouble(context
-                        , CTGeofenceConstants.KEY_LONGITUDE, location.getLongitude());
-                GeofenceStorageHelper.putLong(context
-                        , CTGeofenceConstants.KEY_LAST_LOCATION_EP, System.currentTimeMillis());
+        logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Sending last location to CleverTap..");
 
-            } else {
-                logger.debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Not sending last location to CleverTap");
-            }
+        GeofenceStorageHelper.putLocationState(context, new LocationState(
+                location.getLatitude(), location.getLongitude(), fixTime));
 
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        return true;
+    }
 
-        return future;
+    /**
+     * Selects geofences nearest to given location again out of the stored geofence catalog and
+     * starts monitoring them. Runs synchronously when called on task manager's thread.
+     *
+     * @param location last location accepted by {@link #acceptTriggeredLocation(Location)}
+     */
+    void reselectGeofences(@NonNull Location location) {
+        CTGeofenceTaskManager.getInstance().postAsyncSafely("ReselectGeofences",
+                new GeofenceUpdateTask(context, null, true, location));
     }
 
     /**
@@ -478,12 +615,86 @@ public class CTGeofenceAPI implements GeofenceCallback {
         return ctGeofenceEventsListener;
     }
 
-    public void setCtGeofenceEventsListener(@NonNull CTGeofenceEventsListener ctGeofenceEventsListener) {
+    /**
+     * Sets listener receiving geofence events on main thread, replacing the one set before.
+     * Listeners added through {@link #addGeofenceEventsListener(CTGeofenceEventsListener, Executor)}
+     * are kept.
+     *
+     * @param ctGeofenceEventsListener instance of {@link CTGeofenceEventsListener}
+     */
+    public synchronized void setCtGeofenceEventsListener(
+            @NonNull CTGeofenceEventsListener ctGeofenceEventsListener) {
+        if (this.ctGeofenceEventsListener != null) {
+            eventBus.removeGeofenceEventsListener(this.ctGeofenceEventsListener);
+        }
         this.ctGeofenceEventsListener = ctGeofenceEventsListener;
+        eventBus.addGeofenceEventsListener(ctGeofenceEventsListener, null);
     }
 
-    public void setCtLocationUpdatesListener(@NonNull CTLocationUpdatesListener ctLocationUpdatesListener) {
+    /**
+     * Sets listener receiving location updates on main thread, replacing the one set before.
+     * Listeners added through {@link #addLocationUpdatesListener(CTLocationUpdatesListener, Executor)}
+     * are kept.
+     *
+     * @param ctLocationUpdatesListener instance of {@link CTLocationUpdatesListener}
+     */
+    public synchronized void setCtLocationUpdatesListener(
+            @NonNull CTLocationUpdatesListener ctLocationUpdatesListener) {
+        if (this.ctLocationUpdatesListener != null) {
+            eventBus.removeLocationUpdatesListener(this.ctLocationUpdatesListener);
+        }
         this.ctLocationUpdatesListener = ctLocationUpdatesListener;
+        eventBus.addLocationUpdatesListener(ctLocationUpdatesListener, null);
+    }
+
+    /**
+     * Adds listener receiving geofence events, one callback per geofence. Any number of listeners
+     * can be added, adding the same listener again only changes its executor.
+     *
+     * @param listener instance of {@link CTGeofenceEventsListener}
+     * @param executor executor on which listener is called, main thread if null. All events of a
+     *                 geofence event from OS are delivered in a single task.
+     */
+    public void addGeofenceEventsListener(@NonNull CTGeofenceEventsListener listener,
+                                          @Nullable Executor executor) {
+        eventBus.addGeofenceEventsListener(listener, executor);
+    }
+
+    public void removeGeofenceEventsListener(@NonNull CTGeofenceEventsListener listener) {
+        eventBus.removeGeofenceEventsListener(listener);
+    }
+
+    /**
+     * Adds listener receiving all geofence events of a geofence event from OS in a single
+     * callback. Any number of listeners can be added, adding the same listener again only changes
+     * its executor.
+     *
+     * @param listener instance of {@link CTGeofenceEventsBatchListener}
+     * @param executor executor on which listener is called, main thread if null
+     */
+    public void addGeofenceEventsBatchListener(@NonNull CTGeofenceEventsBatchListener listener,
+                                               @Nullable Executor executor) {
+        eventBus.addGeofenceEventsBatchListener(listener, executor);
+    }
+
+    public void removeGeofenceEventsBatchListener(@NonNull CTGeofenceEventsBatchListener listener) {
+        eventBus.removeGeofenceEventsBatchListener(listener);
+    }
+
+    /**
+     * Adds listener receiving location updates. Any number of listeners can be added, adding the
+     * same listener again only changes its executor.
+     *
+     * @param listener instance of {@link CTLocationUpdatesListener}
+     * @param executor executor on which listener is called, main thread if null
+     */
+    public void addLocationUpdatesListener(@NonNull CTLocationUpdatesListener listener,
+                                           @Nullable Executor executor) {
+        eventBus.addLocationUpdatesListener(listener, executor);
+    }
+
+    public void removeLocationUpdatesListener(@NonNull CTLocationUpdatesListener listener) {
+        eventBus.removeLocationUpdatesListener(listener);
     }
 
     @Nullable
@@ -491,6 +702,11 @@ public class CTGeofenceAPI implements GeofenceCallback {
         return ctLocationUpdatesListener;
     }
 
+    @NonNull
+    GeofenceEventBus getEventBus() {
+        return eventBus;
+    }
+
     @Nullable
     CTGeofenceAdapter getCtGeofenceAdapter() {
         return ctGeofenceAdapter;
@@ -516,6 +732,69 @@ public class CTGeofenceAPI implements GeofenceCallback {
         return logger;
     }
 
+    /**
+     * Returns tier of location updates selected by distance of device from nearest geofence
+     * boundary, when enabled through
+     * {@link CTGeofenceSettings.Builder#enableAdaptiveLocationUpdates(boolean)}
+     *
+     * @return {@code 0} if location updates are requested as configured in
+     * {@link CTGeofenceSettings}, {@code 1} if device is near a geofence boundary, {@code 2} if it
+     * is at moderate distance from geofence boundaries or {@code 3} if it is far from any
+     */
+    @SuppressWarnings("unused")
+    public int getLocationTier() {
+        return LocationSamplingScheduler.getTier(context);
+    }
+
+    /**
+     * Returns how many times location updates were requested again because device moved into
+     * another tier, since geofence SDK was first used in the app
+     *
+     * @return number of tier switches
+     */
+    @SuppressWarnings("unused")
+    public long getLocationTierSwitchCount() {
+        return LocationSamplingScheduler.getTierSwitchCount(context);
+    }
+
+    /**
+     * Returns counts of locations accepted and rejected by
+     * {@link CTGeofenceSettings#getLocationThrottlePolicy()} since process start
+     *
+     * @return {@link CTLocationPingStats}
+     */
+    @SuppressWarnings("unused")
+    @NonNull
+    public CTLocationPingStats getLocationPingStats() {
+        return locationPingStats;
+    }
+
+    /**
+     * Returns counts of geofence transitions reported and suppressed since process start, as
+     * decided by {@link CTGeofenceSettings#getTransitionHysteresis()} and
+     * {@link CTGeofenceSettings#getMinDwellTime()}
+     *
+     * @return {@link CTGeofenceTransitionStats}
+     */
+    @SuppressWarnings("unused")
+    @NonNull
+    public CTGeofenceTransitionStats getTransitionStats() {
+        return transitionStats;
+    }
+
+    /**
+     * Returns counts of geofences added, removed, changed or left unchanged by most recent
+     * geofence registration since process start
+     *
+     * @return {@link CTGeofenceRegistrationStats}, null if no geofences registered yet
+     */
+    @SuppressWarnings("unused")
+    @Nullable
+    public CTGeofenceRegistrationStats getGeofenceRegistrationStats() {
+        GeofenceDiff geofenceDiff = GeofenceUpdateTask.getLastGeofenceDiff();
+        return geofenceDiff != null ? new CTGeofenceRegistrationStats(geofenceDiff) : null;
+    }
+
     public interface OnGeofenceApiInitializedListener {
         void OnGeofenceApiInitialized();
     }
@@ -6,10 +6,11 @@ import android.content.Context;
 import android.content.Intent;
 
 import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import static com.clevertap.android.geofence.CTGeofenceAPI.GEOFENCE_LOG_TAG;
 
@@ -19,14 +20,14 @@ import static com.clevertap.android.geofence.CTGeofenceAPI.GEOFENCE_LOG_TAG;
 public class CTGeofenceBootReceiver extends BroadcastReceiver {
 
     /**
-     * Timeout to prevent ANR
+     * Timeout to prevent ANR, for both geofence and location update registration
      */
-    private static final long BROADCAST_INTENT_TIME_MS = 3000;
+    private static final long BROADCAST_INTENT_TIME_MS = 6000;
 
     /**
      * Validates necessary location permissions and creates {@link GeofenceUpdateTask} and
      * {@link LocationUpdateTask} to sends it to Queue
-     * using {@link CTGeofenceTaskManager}
+     * using {@link CTGeofenceTaskManager} through {@link ReceiverDispatcher}
      * @param context application {@link Context}
      * @param intent an instance of {@link Intent}
      */
@@ -59,87 +60,51 @@ public class CTGeofenceBootReceiver extends BroadcastReceiver {
                 return;
             }
 
-            final PendingResult result = goAsync();
-
-            Thread thread = new Thread() {
-                public void run() {
-                    try {
-
-                        if (!Utils.initCTGeofenceApiIfRequired(applicationContext)) {
-                            // if init fails then return without doing any work
-                            finishPendingIntent(result);
-                            return;
-                        }
-
-                        CTGeofenceAPI.getLogger().info(GEOFENCE_LOG_TAG,
-                                "registering geofences after device reboot");
-
-                        // pass null GeofenceList to register old fences stored in file
-                        GeofenceUpdateTask geofenceUpdateTask =
-                                new GeofenceUpdateTask(applicationContext, null);
-
-                        Future<?> futureGeofence = CTGeofenceTaskManager.getInstance()
-                                .postAsyncSafely("ProcessGeofenceUpdatesOnBoot", geofenceUpdateTask);
-
-                        try {
-                            if (futureGeofence != null) {
-                                futureGeofence.get(BROADCAST_INTENT_TIME_MS, TimeUnit.MILLISECONDS);
-                            }
-                        } catch (TimeoutException e) {
-                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                    "Timeout geofence update task execution limit of 3 secs");
-                        } catch (Exception e) {
-                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                    "Exception while executing geofence update task");
-                            e.printStackTrace();
-                        }
-
-                        CTGeofenceAPI.getLogger().info(GEOFENCE_LOG_TAG,
-                                "registering location updates after device reboot");
-
-                        LocationUpdateTask locationUpdateTask = new LocationUpdateTask(applicationContext);
-
-                        Future<?> futureLocation = CTGeofenceTaskManager.getInstance()
-                                .postAsyncSafely("IntitializeLocationUpdatesOnBoot", locationUpdateTask);
-
-                        try {
-                            if (futureLocation != null) {
-                                futureLocation.get(BROADCAST_INTENT_TIME_MS, TimeUnit.MILLISECONDS);
-                            }
-                        } catch (TimeoutException e) {
-                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                    "Timeout location update task execution limit of 3 secs");
-                        } catch (Exception e) {
-                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                    "Exception while executing location update task");
-                            e.printStackTrace();
+            ReceiverDispatcher.getInstance().dispatch("Boot", goAsync(), BROADCAST_INTENT_TIME_MS,
+                    new Callable<Future<?>>() {
+                        @Override
+                        public Future<?> call() {
+                            // init reads files and creates CleverTap instance, so it runs on
+                            // task manager's thread, where tasks posted by it also run right away
+                            return CTGeofenceTaskManager.getInstance().postAsyncSafely("RegisterOnBoot",
+                                    new Runnable() {
+                                        @Override
+                                        public void run() {
+                                            registerOnBoot(applicationContext);
+                                        }
+                                    });
                         }
+                    });
+        }
 
-                        finishPendingIntent(result);
+    }
 
+    /**
+     * Registers geofences and location updates stored before device reboot
+     */
+    @WorkerThread
+    private static void registerOnBoot(@NonNull Context applicationContext) {
 
-                    } catch (Exception e) {
+        if (!Utils.initCTGeofenceApiIfRequired(applicationContext)) {
+            // if init fails then return without doing any work
+            return;
+        }
 
-                        finishPendingIntent(result);
+        CTGeofenceAPI.getLogger().info(GEOFENCE_LOG_TAG,
+                "registering geofences after device reboot");
 
-                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                "Exception while processing Boot receiver intent");
-                        e.printStackTrace();
-                    }
-                }
-            };
-            thread.start();
+        // pass null GeofenceList to register old fences stored in file
+        GeofenceUpdateTask geofenceUpdateTask = new GeofenceUpdateTask(applicationContext, null);
 
-        }
+        CTGeofenceTaskManager.getInstance()
+                .postAsyncSafely("ProcessGeofenceUpdatesOnBoot", geofenceUpdateTask);
 
-    }
+        CTGeofenceAPI.getLogger().info(GEOFENCE_LOG_TAG,
+                "registering location updates after device reboot");
 
-    private void finishPendingIntent(PendingResult result) {
-        if (result != null) {
-            result.finish();
+        LocationUpdateTask locationUpdateTask = new LocationUpdateTask(applicationContext);
 
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Boot receiver Pending Intent is finished");
-        }
+        CTGeofenceTaskManager.getInstance()
+                .postAsyncSafely("IntitializeLocationUpdatesOnBoot", locationUpdateTask);
     }
 }
@@ -6,15 +6,28 @@ public class CTGeofenceConstants {
     static final String KEY_LATITUDE = "latitude";
     static final String KEY_LONGITUDE = "longitude";
     static final String KEY_LAST_LOCATION_EP = "last_location_ep";
+    static final String KEY_SETTINGS_HASH = "settings_hash";
+    static final String KEY_LOCATION_TIER = "location_tier";
+    static final String KEY_LOCATION_TIER_SWITCH_COUNT = "location_tier_switch_count";
+    static final String KEY_PENDING_REGISTRATION = "pending_registration";
     static final String CACHED_DIR_NAME = "geofence";
     static final String CACHED_FILE_NAME = "geofence_cache.json";
+    static final String CACHED_BINARY_FILE_NAME = "geofence_cache.bin";
+    static final String JOURNAL_FILE_NAME = "geofence_cache.journal";
+    static final String INDEX_FILE_NAME = "geofence_index.bin";
+    static final String OUTBOX_FILE_NAME = "event_outbox.journal";
+    static final String TRANSITION_STATE_FILE_NAME = "transition_state.bin";
     static final String SETTINGS_FILE_NAME = "geofence_settings.json";
+    static final String SOFTWARE_GEOFENCES_FILE_NAME = "software_geofences.json";
+    static final String SOFTWARE_GEOFENCE_STATE_FILE_NAME = "software_geofence_state.json";
 
     static final String ACTION_GEOFENCE_RECEIVER = "com.clevertap.android.geofence.fence.update";
     static final String ACTION_LOCATION_RECEIVER = "com.clevertap.android.geofence.location.update";
 
     public static final String KEY_GEOFENCES = "geofences";
     public static final String KEY_ID = "id";
+    static final String KEY_RESELECTION_BOUNDARY = "reselection_boundary";
+    static final String RESELECTION_GEOFENCE_ID = "ct_reselection_boundary";
     static final String KEY_LAST_ACCURACY = "last_accuracy";
     static final String KEY_LAST_FETCH_MODE = "last_fetch_mode";
     static final String KEY_LAST_BG_LOCATION_UPDATES = "last_bg_location_updates";
@@ -23,8 +36,21 @@ public class CTGeofenceConstants {
     static final String KEY_LAST_INTERVAL = "last_interval";
     static final String KEY_LAST_FASTEST_INTERVAL = "last_fastest_interval";
     static final String KEY_LAST_DISPLACEMENT = "last_displacement";
+    static final String KEY_LAST_MAX_WAIT_TIME = "last_max_wait_time";
+    static final String KEY_LAST_TRANSITION_HYSTERESIS = "last_transition_hysteresis";
+    static final String KEY_LAST_MIN_DWELL_TIME = "last_min_dwell_time";
+    static final String KEY_LAST_ADAPTIVE_LOCATION_UPDATES = "last_adaptive_location_updates";
+    static final String KEY_LAST_RESELECTION_RADIUS = "last_reselection_radius";
+    static final String KEY_LAST_GEOFENCE_ENGINE = "last_geofence_engine";
+    static final String KEY_LAST_THROTTLE_POLICY = "last_throttle_policy";
+    static final String KEY_THROTTLE_MATCH_MODE = "match_mode";
+    static final String KEY_THROTTLE_MIN_INTERVAL = "min_interval";
+    static final String KEY_THROTTLE_MIN_DISPLACEMENT = "min_displacement";
+    static final String KEY_THROTTLE_MAX_TRAVEL_DISTANCE = "max_travel_distance";
+    static final String KEY_THROTTLE_MIN_ACCURACY = "min_accuracy";
 
     static final String TAG_WORK_LOCATION_UPDATES = "com.clevertap.android.geofence.work.location";
+    static final String TAG_WORK_DRAIN_OUTBOX = "com.clevertap.android.geofence.work.outbox";
     static final int ERROR_CODE = 515;
 
     static final double DEFAULT_LATITUDE = 2.189866;
@@ -39,4 +39,16 @@ class CTGeofenceFactory {
             throw new IllegalStateException("play-services-location dependency is missing");
         }
     }
+
+    /**
+     * Creates an instance of {@link CTGeofenceAdapter} which monitors geofences within SDK instead
+     * of registering them to OS, used when geofence engine is
+     * {@link CTGeofenceSettings#GEOFENCE_ENGINE_SOFTWARE}
+     *
+     * @param context application {@link Context}
+     * @return an instance of {@link SoftwareGeofenceAdapter}
+     */
+    static CTGeofenceAdapter createSoftwareGeofenceAdapter(@NonNull Context context) {
+        return new SoftwareGeofenceAdapter(context.getApplicationContext());
+    }
 }
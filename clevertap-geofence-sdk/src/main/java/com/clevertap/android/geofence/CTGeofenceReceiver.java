@@ -6,9 +6,8 @@ import android.content.Intent;
 
 import androidx.annotation.MainThread;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * A {@link BroadcastReceiver} which receives geofence enter/exit event updates in foreground as well as in background
@@ -23,6 +22,7 @@ public class CTGeofenceReceiver extends BroadcastReceiver {
 
     /**
      * Creates {@link PushGeofenceEventTask} and sends it to Queue using {@link CTGeofenceTaskManager}
+     * through {@link ReceiverDispatcher}
      * @param context application {@link Context}
      * @param intent an instance of {@link Intent} containing triggered
      * {@link com.google.android.gms.location.GeofencingEvent}
@@ -36,56 +36,19 @@ public class CTGeofenceReceiver extends BroadcastReceiver {
             return;
         }
 
-        final PendingResult result = goAsync();
-
-        try {
-
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Geofence receiver called");
-
-            Thread thread = new Thread() {
-                public void run() {
-                    PushGeofenceEventTask pushGeofenceEventTask = new PushGeofenceEventTask(context, intent);
-
-                    Future<?> future = CTGeofenceTaskManager.getInstance().postAsyncSafely("PushGeofenceEvent",
-                            pushGeofenceEventTask);
-
-                    try {
-                        if (future != null) {
-                            future.get(BROADCAST_INTENT_TIME_MS, TimeUnit.MILLISECONDS);
-                        }
-                    } catch (TimeoutException e) {
-                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                "Timeout geofence receiver execution limit of 10 secs");
-                    } catch (Exception e) {
-                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                "Exception while processing geofence receiver intent");
-                        e.printStackTrace();
-                    }
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Geofence receiver called");
 
-                    if (result != null) {
-                        result.finish();
+        ReceiverDispatcher.getInstance().dispatch("Geofence", goAsync(), BROADCAST_INTENT_TIME_MS,
+                new Callable<Future<?>>() {
+                    @Override
+                    public Future<?> call() {
+                        PushGeofenceEventTask pushGeofenceEventTask = new PushGeofenceEventTask(context, intent);
 
-                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                "Geofence receiver Pending Intent is finished");
+                        return CTGeofenceTaskManager.getInstance().postAsyncSafely("PushGeofenceEvent",
+                                pushGeofenceEventTask);
                     }
-                }
-            };
-            thread.start();
-
-        } catch (Exception e) {
-
-            if (result != null) {
-                result.finish();
-
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Geofence receiver Pending Intent is finished");
-            }
-
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Exception while processing geofence receiver intent");
-            e.printStackTrace();
-        }
+                });
 
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                 "Returning from Geofence receiver");
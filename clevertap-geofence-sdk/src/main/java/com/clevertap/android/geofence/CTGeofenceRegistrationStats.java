@@ -0,0 +1,58 @@
+package com.clevertap.android.geofence;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Counts of geofences added, removed, changed or left unchanged by most recent geofence
+ * registration in this process, to help monitor how much of geofence list received from server
+ * is registered again with OS. Available through
+ * {@link CTGeofenceAPI#getGeofenceRegistrationStats()}.
+ */
+public final class CTGeofenceRegistrationStats {
+
+    private final int addedCount;
+    private final int removedCount;
+    private final int changedCount;
+    private final int unchangedCount;
+
+    CTGeofenceRegistrationStats(@NonNull GeofenceDiff geofenceDiff) {
+        addedCount = geofenceDiff.getAddedCount();
+        removedCount = geofenceDiff.getRemovedCount();
+        changedCount = geofenceDiff.getChangedCount();
+        unchangedCount = geofenceDiff.getUnchangedCount();
+    }
+
+    /**
+     * @return number of geofences registered which were not registered before
+     */
+    public int getAddedCount() {
+        return addedCount;
+    }
+
+    /**
+     * @return number of geofences removed since they are no longer in the list
+     */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /**
+     * @return number of geofences registered again since their location or radius changed
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    /**
+     * @return number of geofences left registered as they were
+     */
+    public int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    @Override
+    public String toString() {
+        return "added=" + addedCount + ", removed=" + removedCount + ", changed=" + changedCount
+                + ", unchanged=" + unchangedCount;
+    }
+}
@@ -17,6 +17,7 @@ public class CTGeofenceSettings {
 
 
     private final boolean backgroundLocationUpdates;
+    private final boolean adaptiveLocationUpdates;
     private final byte locationAccuracy;
     private final byte locationFetchMode; // WorkManager or BroadcastReceiver
     private final @LogLevel
@@ -26,6 +27,13 @@ public class CTGeofenceSettings {
     private final long interval;
     private final long fastestInterval;
     private final float smallestDisplacement;
+    private final long maxWaitTime;
+    private final long transitionHysteresis;
+    private final long minDwellTime;
+    private final int reselectionRadius;
+    private final byte geofenceEngine;
+    private final CTLocationThrottlePolicy customLocationThrottlePolicy;
+    private final CTLocationThrottlePolicy locationThrottlePolicy;
 
     /**
      * Provides the most accurate location possible, which is computed using as many inputs as necessary
@@ -64,11 +72,29 @@ public class CTGeofenceSettings {
      */
     public static final byte FETCH_LAST_LOCATION_PERIODIC = 2; // Work Manager // call getLastLocation()
 
+    /**
+     * This value will register geofences to OS using Play Services, which monitors them even when
+     * location updates are not received by SDK.
+     * <br>At most 100 geofences can be monitored, as set through
+     * {@link Builder#setGeofenceMonitoringCount(int)}.
+     */
+    public static final byte GEOFENCE_ENGINE_OS = 1;
+
+    /**
+     * This value will evaluate geofence enter and exit transitions within SDK using locations received
+     * through any of the above mentioned fetch modes, so any number of geofences can be monitored
+     * and {@link Builder#setGeofenceMonitoringCount(int)} is ignored.
+     * <br>Transitions are detected only as often as locations are received, so background location
+     * updates should be enabled with an interval that suits geofence sizes.
+     */
+    public static final byte GEOFENCE_ENGINE_SOFTWARE = 2;
+
     public static final int DEFAULT_GEO_MONITOR_COUNT = 50;
 
 
     private CTGeofenceSettings(Builder builder) {
         backgroundLocationUpdates = builder.backgroundLocationUpdates;
+        adaptiveLocationUpdates = builder.adaptiveLocationUpdates;
         locationAccuracy = builder.locationAccuracy;
         locationFetchMode = builder.locationFetchMode;
         logLevel = builder.logLevel;
@@ -77,6 +103,21 @@ public class CTGeofenceSettings {
         interval = builder.interval;
         fastestInterval = builder.fastestInterval;
         smallestDisplacement = builder.smallestDisplacement;
+        maxWaitTime = builder.maxWaitTime;
+        transitionHysteresis = builder.transitionHysteresis;
+        minDwellTime = builder.minDwellTime;
+        reselectionRadius = builder.reselectionRadius;
+        geofenceEngine = builder.geofenceEngine;
+        customLocationThrottlePolicy = builder.locationThrottlePolicy;
+
+        if (customLocationThrottlePolicy != null) {
+            locationThrottlePolicy = customLocationThrottlePolicy;
+        } else {
+            locationThrottlePolicy = new CTLocationThrottlePolicy.Builder()
+                    .setMinInterval(interval)
+                    .setMinDisplacement(smallestDisplacement)
+                    .build();
+        }
     }
 
     /**
@@ -85,6 +126,7 @@ public class CTGeofenceSettings {
     public static final class Builder {
 
         private boolean backgroundLocationUpdates = true;
+        private boolean adaptiveLocationUpdates = false;
         private byte locationAccuracy = ACCURACY_HIGH;
         private byte locationFetchMode = FETCH_LAST_LOCATION_PERIODIC;
         private @LogLevel
@@ -94,6 +136,12 @@ public class CTGeofenceSettings {
         private long interval = GoogleLocationAdapter.INTERVAL_IN_MILLIS;
         private long fastestInterval = GoogleLocationAdapter.INTERVAL_FASTEST_IN_MILLIS;
         private float smallestDisplacement = GoogleLocationAdapter.SMALLEST_DISPLACEMENT_IN_METERS;
+        private long maxWaitTime = 0;
+        private long transitionHysteresis = 0;
+        private long minDwellTime = 0;
+        private int reselectionRadius = 0;
+        private byte geofenceEngine = GEOFENCE_ENGINE_OS;
+        private CTLocationThrottlePolicy locationThrottlePolicy;
 
         public Builder() {
 
@@ -114,6 +162,27 @@ public class CTGeofenceSettings {
             return this;
         }
 
+        /**
+         * Applicable only for {@link #FETCH_CURRENT_LOCATION_PERIODIC}<br>
+         *
+         * Set Adaptive Location Updates. When true, location updates are adapted to distance of
+         * device from nearest boundary of geofences received from server:
+         * <li>Within 1 km of a boundary, location is requested with high accuracy at least every
+         * 5 minutes and every 50 meters, so that transitions are detected in time.</li>
+         * <li>Between 1 km and 5 km, location is requested as configured.</li>
+         * <li>Beyond 5 km, location is requested with low power accuracy at twice the configured
+         * interval and displacement.</li>
+         * Location updates are requested again only when device moves into another of these tiers.
+         * Current tier is available through {@link CTGeofenceAPI#getLocationTier()}.
+         *
+         * @param adaptiveLocationUpdates true or false. Default value is false.
+         * @return {@link CTGeofenceSettings.Builder}
+         */
+        public CTGeofenceSettings.Builder enableAdaptiveLocationUpdates(boolean adaptiveLocationUpdates) {
+            this.adaptiveLocationUpdates = adaptiveLocationUpdates;
+            return this;
+        }
+
         /**
          * Set location accuracy. Applicable only for {@link #FETCH_CURRENT_LOCATION_PERIODIC}<br>
          *
@@ -234,6 +303,106 @@ public class CTGeofenceSettings {
             return this;
         }
 
+        /**
+         * Applicable only for {@link CTGeofenceSettings#FETCH_CURRENT_LOCATION_PERIODIC}<br>
+         *
+         * Sets the maximum wait time for batched location updates, in milliseconds. Locations are
+         * still computed at {@link #setInterval(long)}, but are delivered to SDK together at most
+         * this often, so that app is woken up once per batch instead of once per location.
+         * All locations of a batch are processed.<br>
+         *
+         * Values less than twice the interval deliver every location as soon as it is available.
+         *
+         * @param maxWaitTime in milliseconds. Default value is 0, which means locations are not
+         *                    batched
+         * @return {@link CTGeofenceSettings.Builder}
+         */
+        public CTGeofenceSettings.Builder setMaxWaitTime(long maxWaitTime) {
+            this.maxWaitTime = maxWaitTime;
+            return this;
+        }
+
+        /**
+         * Sets the minimum time between two reported transitions of the same geofence, in
+         * milliseconds. A transition back to the last reported one within this time is treated as
+         * location jitter at the geofence boundary, and neither transition is reported. A transition
+         * which still holds once this time has passed is reported with the next geofence or location
+         * event.<br>
+         *
+         * Enter while already inside and exit while already outside are never reported, whatever
+         * the value.
+         *
+         * @param transitionHysteresis in milliseconds. Default value is 0, which means transitions
+         *                             are reported as soon as they are received
+         * @return {@link CTGeofenceSettings.Builder}
+         */
+        public CTGeofenceSettings.Builder setTransitionHysteresis(long transitionHysteresis) {
+            this.transitionHysteresis = transitionHysteresis;
+            return this;
+        }
+
+        /**
+         * Sets the time device must stay inside a geofence before its enter transition is reported,
+         * in milliseconds. Enter followed by exit within this time is not reported at all. An enter
+         * which still holds once this time has passed is reported with the next geofence or
+         * location event.
+         *
+         * @param minDwellTime in milliseconds. Default value is 0, which means enter is reported
+         *                     as soon as it is received
+         * @return {@link CTGeofenceSettings.Builder}
+         */
+        public CTGeofenceSettings.Builder setMinDwellTime(long minDwellTime) {
+            this.minDwellTime = minDwellTime;
+            return this;
+        }
+
+        /**
+         * Applicable only when more geofences are received from server than
+         * {@link #setGeofenceMonitoringCount(int)}<br>
+         *
+         * SDK monitors one extra geofence around last known location, and selects nearest geofences
+         * again as soon as device exits it. Set radius of this geofence in meters. When not set,
+         * distance of farthest monitored geofence is used, so that monitored geofences are selected
+         * again before device moves past them.
+         * Values less than 100 meters will be ignored by SDK.
+         *
+         * @param reselectionRadius in meters. Default value is 0, which means distance of farthest
+         *                          monitored geofence
+         * @return {@link CTGeofenceSettings.Builder}
+         */
+        public CTGeofenceSettings.Builder setReselectionRadius(int reselectionRadius) {
+            this.reselectionRadius = reselectionRadius;
+            return this;
+        }
+
+        /**
+         * Set engine which monitors geofences
+         *
+         * @param geofenceEngine can be one of {@link #GEOFENCE_ENGINE_OS} or
+         * {@link #GEOFENCE_ENGINE_SOFTWARE}. Default value is {@link #GEOFENCE_ENGINE_OS}
+         * @return {@link CTGeofenceSettings.Builder}
+         */
+        public CTGeofenceSettings.Builder setGeofenceEngine(byte geofenceEngine) {
+            this.geofenceEngine = geofenceEngine;
+            return this;
+        }
+
+        /**
+         * Set policy which decides which locations are sent to CleverTap, to select nearest
+         * geofences around them.
+         *
+         * @param locationThrottlePolicy instance of {@link CTLocationThrottlePolicy}. When not set,
+         *                               locations are sent only after both
+         *                               {@link #setInterval(long)} and
+         *                               {@link #setSmallestDisplacement(float)} have passed
+         * @return {@link CTGeofenceSettings.Builder}
+         */
+        public CTGeofenceSettings.Builder setLocationThrottlePolicy(
+                CTLocationThrottlePolicy locationThrottlePolicy) {
+            this.locationThrottlePolicy = locationThrottlePolicy;
+            return this;
+        }
+
         public CTGeofenceSettings build() {
 
             // applying minimum interval restriction
@@ -251,6 +420,24 @@ public class CTGeofenceSettings {
                 smallestDisplacement = GoogleLocationAdapter.SMALLEST_DISPLACEMENT_IN_METERS;
             }
 
+            // applying minimum max wait time restriction
+            if (maxWaitTime < 0) {
+                maxWaitTime = 0;
+            }
+
+            // applying minimum transition hysteresis and dwell time restriction
+            if (transitionHysteresis < 0) {
+                transitionHysteresis = 0;
+            }
+            if (minDwellTime < 0) {
+                minDwellTime = 0;
+            }
+
+            // applying minimum reselection radius restriction
+            if (reselectionRadius > 0 && reselectionRadius < GoogleGeofenceAdapter.MIN_RADIUS_IN_METERS) {
+                reselectionRadius = GoogleGeofenceAdapter.MIN_RADIUS_IN_METERS;
+            }
+
             return new CTGeofenceSettings(this);
         }
     }
@@ -267,6 +454,10 @@ public class CTGeofenceSettings {
         return backgroundLocationUpdates;
     }
 
+    public boolean isAdaptiveLocationUpdatesEnabled() {
+        return adaptiveLocationUpdates;
+    }
+
     public @LogLevel
     int getLogLevel() {
         return logLevel;
@@ -292,16 +483,84 @@ public class CTGeofenceSettings {
         return smallestDisplacement;
     }
 
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    public long getTransitionHysteresis() {
+        return transitionHysteresis;
+    }
+
+    public long getMinDwellTime() {
+        return minDwellTime;
+    }
+
+    public int getReselectionRadius() {
+        return reselectionRadius;
+    }
+
+    public int getGeofenceEngine() {
+        return geofenceEngine;
+    }
+
+    /**
+     * @return policy set through {@link Builder#setLocationThrottlePolicy(CTLocationThrottlePolicy)},
+     * or the one derived from interval and smallest displacement when none is set
+     */
+    public CTLocationThrottlePolicy getLocationThrottlePolicy() {
+        return locationThrottlePolicy;
+    }
+
+    /**
+     * @return policy set through {@link Builder#setLocationThrottlePolicy(CTLocationThrottlePolicy)},
+     * null if none is set
+     */
+    CTLocationThrottlePolicy getCustomLocationThrottlePolicy() {
+        return customLocationThrottlePolicy;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         CTGeofenceSettings that = (CTGeofenceSettings) o;
         return backgroundLocationUpdates == that.backgroundLocationUpdates &&
+                adaptiveLocationUpdates == that.adaptiveLocationUpdates &&
                 locationAccuracy == that.locationAccuracy &&
                 locationFetchMode == that.locationFetchMode &&
                 logLevel == that.logLevel && geofenceMonitoringCount == that.geofenceMonitoringCount
-                && id.equals(that.id) && interval == that.interval && fastestInterval == that.fastestInterval
-                && smallestDisplacement == that.smallestDisplacement;
+                && (id != null ? id.equals(that.id) : that.id == null)
+                && interval == that.interval && fastestInterval == that.fastestInterval
+                && smallestDisplacement == that.smallestDisplacement
+                && maxWaitTime == that.maxWaitTime
+                && transitionHysteresis == that.transitionHysteresis
+                && minDwellTime == that.minDwellTime
+                && reselectionRadius == that.reselectionRadius
+                && geofenceEngine == that.geofenceEngine
+                && (customLocationThrottlePolicy != null
+                ? customLocationThrottlePolicy.equals(that.customLocationThrottlePolicy)
+                : that.customLocationThrottlePolicy == null);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = backgroundLocationUpdates ? 1 : 0;
+        result = 31 * result + (adaptiveLocationUpdates ? 1 : 0);
+        result = 31 * result + locationAccuracy;
+        result = 31 * result + locationFetchMode;
+        result = 31 * result + logLevel;
+        result = 31 * result + geofenceMonitoringCount;
+        result = 31 * result + (id != null ? id.hashCode() : 0);
+        result = 31 * result + (int) (interval ^ (interval >>> 32));
+        result = 31 * result + (int) (fastestInterval ^ (fastestInterval >>> 32));
+        result = 31 * result + Float.floatToIntBits(smallestDisplacement);
+        result = 31 * result + (int) (maxWaitTime ^ (maxWaitTime >>> 32));
+        result = 31 * result + (int) (transitionHysteresis ^ (transitionHysteresis >>> 32));
+        result = 31 * result + (int) (minDwellTime ^ (minDwellTime >>> 32));
+        result = 31 * result + reselectionRadius;
+        result = 31 * result + geofenceEngine;
+        result = 31 * result + (customLocationThrottlePolicy != null
+                ? customLocationThrottlePolicy.hashCode() : 0);
+        return result;
     }
 }
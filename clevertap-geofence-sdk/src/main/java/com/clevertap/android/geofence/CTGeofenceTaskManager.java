@@ -1,27 +1,64 @@
 package com.clevertap.android.geofence;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static com.clevertap.android.geofence.CTGeofenceAPI.GEOFENCE_LOG_TAG;
 
 /**
- * Provides methods to post tasks/Runnable to a single threaded queue for processing tasks
- * This class is singleton, so only one queue will be created and shared.
+ * Provides methods to post tasks/Runnable to single threaded queues for processing tasks
+ * This class is singleton, so only one set of queues will be created and shared.
+ * <br><br>
+ * Queued tasks are scheduled by name of the task:
+ * <ul>
+ * <li>Tasks in {@link #READ_TASKS} only read geofences through published snapshot of
+ * {@link GeofenceStore}, so they run on a separate read queue, concurrently with tasks updating
+ * geofences or location updates. A geofence transition is thus never delayed by registration
+ * calls to OS.</li>
+ * <li>Tasks in {@link #SUPERSEDING_TASKS} replace a queued task of the same name which has not
+ * started yet, e.g. only the latest geofence list is registered when several lists are received
+ * in a burst. Future of the replaced task completes along with the newer task and
+ * {@link CTGeofenceTask.OnCompleteListener} of the replaced task is not called.</li>
+ * </ul>
+ * Other tasks run on the main queue in order of posting. Futures of queued tasks are
+ * {@link TaskFuture}s, so that caller can be notified once a task completes.
  */
 class CTGeofenceTaskManager {
 
+    /**
+     * Names of tasks which only read geofences and deliver geofence transitions
+     */
+    static final Set<String> READ_TASKS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("PushGeofenceEvent")));
+
+    /**
+     * Names of tasks whose latest instance makes queued instances redundant
+     */
+    static final Set<String> SUPERSEDING_TASKS = Collections.unmodifiableSet(new HashSet<>(
+            Arrays.asList("ProcessGeofenceUpdates", "ReselectGeofences",
+                    "IntitializeLocationUpdates")));
+
     private static CTGeofenceTaskManager taskManager;
-    private ExecutorService es;
-    private long EXECUTOR_THREAD_ID = 0;
+
+    private final Lane mainLane = new Lane(Executors.newFixedThreadPool(1));
+    private final Lane readLane = new Lane(Executors.newFixedThreadPool(1));
 
     private CTGeofenceTaskManager() {
-        es = Executors.newFixedThreadPool(1);
     }
 
     static CTGeofenceTaskManager getInstance() {
@@ -43,29 +80,19 @@ class CTGeofenceTaskManager {
      * @param runnable runnable to submit to queue
      * @return a Future representing pending completion of the runnable, can be null in case of nested calls
      */
-    @SuppressWarnings("UnusedParameters")
     @Nullable
     Future<?> postAsyncSafely(final String name, final Runnable runnable) {
         Future<?> future = null;
         try {
-            final boolean executeSync = Thread.currentThread().getId() == EXECUTOR_THREAD_ID;
+            Lane lane = getLane(name);
+            final boolean executeSync = Thread.currentThread().getId() == lane.threadId;
 
             if (executeSync) {
                 // if new task comes from executor thread itself then run it immediately
                 // no need to put it in queue
                 runnable.run();
             } else {
-                future = es.submit(new Runnable() {
-                    @Override
-                    public void run() {
-                        EXECUTOR_THREAD_ID = Thread.currentThread().getId();
-                        try {
-                            runnable.run();
-                        } catch (Throwable t) {
-                            CTGeofenceAPI.getLogger().verbose(GEOFENCE_LOG_TAG, "Executor service: Failed to complete the scheduled task: " + name, t);
-                        }
-                    }
-                });
+                future = lane.schedule(name, runnable);
             }
         } catch (Throwable t) {
             CTGeofenceAPI.getLogger().verbose(GEOFENCE_LOG_TAG, "Failed to submit task: " + name + " to the executor service", t);
@@ -81,27 +108,22 @@ class CTGeofenceTaskManager {
      * @param task Task to submit to queue
      * @return a Future representing pending completion of the task, can be null in case of nested calls
      */
-    @SuppressWarnings("UnusedParameters")
     @Nullable
     Future<?> postAsyncSafely(final String name, final CTGeofenceTask task) {
         Future<?> future = null;
         try {
-            final boolean executeSync = Thread.currentThread().getId() == EXECUTOR_THREAD_ID;
+            Lane lane = getLane(name);
+            final boolean executeSync = Thread.currentThread().getId() == lane.threadId;
 
             if (executeSync) {
                 // if new task comes from executor thread itself then run it immediately
                 // no need to put it in queue
                 task.execute();
             } else {
-                future = es.submit(new Runnable() {
+                future = lane.schedule(name, new Runnable() {
                     @Override
                     public void run() {
-                        EXECUTOR_THREAD_ID = Thread.currentThread().getId();
-                        try {
-                            task.execute();
-                        } catch (Throwable t) {
-                            CTGeofenceAPI.getLogger().verbose(GEOFENCE_LOG_TAG, "Executor service: Failed to complete the scheduled task: " + name, t);
-                        }
+                        task.execute();
                     }
                 });
             }
@@ -112,7 +134,204 @@ class CTGeofenceTaskManager {
         return future;
     }
 
+    /**
+     * Sets executor service which runs tasks of main queue. Tasks queued for previous executor
+     * service are cancelled.
+     */
     void setExecutorService(ExecutorService es) {
-        this.es = es;
+        mainLane.setExecutorService(es);
+    }
+
+    /**
+     * Sets executor service which runs tasks of read queue. Tasks queued for previous executor
+     * service are cancelled.
+     */
+    void setReadExecutorService(ExecutorService es) {
+        readLane.setExecutorService(es);
+    }
+
+    /**
+     * @return number of tasks waiting to be executed in all queues
+     */
+    int getQueuedTaskCount() {
+        return mainLane.getQueuedTaskCount() + readLane.getQueuedTaskCount();
+    }
+
+    @NonNull
+    private Lane getLane(@NonNull String name) {
+        return READ_TASKS.contains(name) ? readLane : mainLane;
+    }
+
+    /**
+     * A queue of tasks executed one at a time by a single threaded executor service. Every queued
+     * task is matched by one runnable submitted to executor service, which executes the queued
+     * task that is first in order of posting.
+     */
+    private static class Lane {
+
+        private final ArrayDeque<QueuedTask> queuedTasks = new ArrayDeque<>();
+
+        // guarded by queuedTasks
+        private ExecutorService es;
+
+        private volatile long threadId = 0;
+
+        Lane(@NonNull ExecutorService es) {
+            this.es = es;
+        }
+
+        void setExecutorService(@NonNull ExecutorService es) {
+            synchronized (queuedTasks) {
+                for (QueuedTask queuedTask : queuedTasks) {
+                    queuedTask.future.cancel(false);
+                }
+                queuedTasks.clear();
+                this.es = es;
+            }
+        }
+
+        int getQueuedTaskCount() {
+            synchronized (queuedTasks) {
+                return queuedTasks.size();
+            }
+        }
+
+        /**
+         * Queues given runnable, replacing queued task of the same name if it is superseded
+         *
+         * @return a Future representing pending completion of the runnable
+         */
+        @NonNull
+        Future<?> schedule(@NonNull final String name, @NonNull Runnable runnable) {
+
+            synchronized (queuedTasks) {
+
+                if (SUPERSEDING_TASKS.contains(name)) {
+                    Iterator<QueuedTask> iterator = queuedTasks.iterator();
+                    while (iterator.hasNext()) {
+                        QueuedTask queuedTask = iterator.next();
+                        if (queuedTask.name.equals(name)) {
+                            // move superseded task to the back of queue along with newer runnable,
+                            // runnable already submitted for it will execute whichever task is first
+                            iterator.remove();
+                            queuedTask.runnable = runnable;
+                            queuedTasks.add(queuedTask);
+
+                            CTGeofenceAPI.getLogger().verbose(GEOFENCE_LOG_TAG,
+                                    "Replaced queued task: " + name + " with newer one");
+                            return queuedTask.future;
+                        }
+                    }
+                }
+
+                QueuedTask queuedTask = new QueuedTask(name, runnable);
+                queuedTasks.add(queuedTask);
+
+                es.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        threadId = Thread.currentThread().getId();
+                        executeNext();
+                    }
+                });
+
+                return queuedTask.future;
+            }
+        }
+
+        /**
+         * Executes queued task which is first in order of posting
+         */
+        private void executeNext() {
+            QueuedTask queuedTask;
+            synchronized (queuedTasks) {
+                queuedTask = queuedTasks.poll();
+            }
+
+            if (queuedTask != null) {
+                queuedTask.future.run();
+            }
+        }
+    }
+
+    /**
+     * A task waiting in queue, its {@link Future} completes once its latest runnable is executed
+     */
+    private static class QueuedTask {
+
+        @NonNull
+        final String name;
+        @NonNull
+        final TaskFuture future;
+
+        // replaced only while task is in queue
+        @NonNull
+        volatile Runnable runnable;
+
+        QueuedTask(@NonNull String name, @NonNull Runnable runnable) {
+            this.name = name;
+            this.runnable = runnable;
+            this.future = new TaskFuture(new Runnable() {
+                @Override
+                public void run() {
+                    execute();
+                }
+            });
+        }
+
+        private void execute() {
+            try {
+                runnable.run();
+            } catch (Throwable t) {
+                CTGeofenceAPI.getLogger().verbose(GEOFENCE_LOG_TAG, "Executor service: Failed to complete the scheduled task: " + name, t);
+            }
+        }
+    }
+
+    /**
+     * {@link Future} of a queued task, notifying listeners once task completes or is cancelled
+     */
+    static class TaskFuture extends FutureTask<Void> {
+
+        // guarded by this
+        private final List<Runnable> listeners = new ArrayList<>();
+        private boolean isCompleted;
+
+        TaskFuture(@NonNull Runnable runnable) {
+            super(runnable, null);
+        }
+
+        /**
+         * Runs given listener on the thread completing this task, or right away on calling thread
+         * if task is already complete
+         */
+        void addListener(@NonNull Runnable listener) {
+            synchronized (this) {
+                if (!isCompleted) {
+                    listeners.add(listener);
+                    return;
+                }
+            }
+            listener.run();
+        }
+
+        @Override
+        protected void done() {
+            List<Runnable> completedListeners;
+            synchronized (this) {
+                isCompleted = true;
+                completedListeners = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+
+            for (Runnable listener : completedListeners) {
+                try {
+                    listener.run();
+                } catch (Throwable t) {
+                    CTGeofenceAPI.getLogger().verbose(GEOFENCE_LOG_TAG,
+                            "Failed to notify completion of task", t);
+                }
+            }
+        }
     }
 }
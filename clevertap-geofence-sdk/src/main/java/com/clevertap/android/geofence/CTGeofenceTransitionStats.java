@@ -0,0 +1,73 @@
+package com.clevertap.android.geofence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts geofence transitions reported and suppressed by {@link GeofenceTransitionFilter} since
+ * process start, to help tune {@link CTGeofenceSettings.Builder#setTransitionHysteresis(long)} and
+ * {@link CTGeofenceSettings.Builder#setMinDwellTime(long)}. Available through
+ * {@link CTGeofenceAPI#getTransitionStats()}.
+ */
+public final class CTGeofenceTransitionStats {
+
+    private final AtomicLong reportedCount = new AtomicLong();
+    private final AtomicLong suppressedDuplicateCount = new AtomicLong();
+    private final AtomicLong suppressedFlapCount = new AtomicLong();
+    private final AtomicLong deferredCount = new AtomicLong();
+
+    CTGeofenceTransitionStats() {
+    }
+
+    void record(int result) {
+        switch (result) {
+            case GeofenceTransitionFilter.RESULT_REPORTED:
+                reportedCount.incrementAndGet();
+                break;
+            case GeofenceTransitionFilter.RESULT_SUPPRESSED_DUPLICATE:
+                suppressedDuplicateCount.incrementAndGet();
+                break;
+            case GeofenceTransitionFilter.RESULT_SUPPRESSED_FLAP:
+                suppressedFlapCount.incrementAndGet();
+                break;
+            default:
+                deferredCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of transitions sent to CleverTap, including deferred ones reported later
+     */
+    public long getReportedCount() {
+        return reportedCount.get();
+    }
+
+    /**
+     * @return number of enter transitions received while already inside and exit transitions
+     * received while already outside
+     */
+    public long getSuppressedDuplicateCount() {
+        return suppressedDuplicateCount.get();
+    }
+
+    /**
+     * @return number of transitions not sent because device returned to last reported state within
+     * hysteresis or dwell time
+     */
+    public long getSuppressedFlapCount() {
+        return suppressedFlapCount.get();
+    }
+
+    /**
+     * @return number of transitions held back until hysteresis or dwell time passed
+     */
+    public long getDeferredCount() {
+        return deferredCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "reported=" + getReportedCount() + ", suppressedDuplicate="
+                + getSuppressedDuplicateCount() + ", suppressedFlap="
+                + getSuppressedFlapCount() + ", deferred=" + getDeferredCount();
+    }
+}
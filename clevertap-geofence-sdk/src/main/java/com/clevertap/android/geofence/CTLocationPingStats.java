@@ -0,0 +1,65 @@
+package com.clevertap.android.geofence;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts locations accepted and rejected by {@link CTLocationThrottlePolicy} since process start,
+ * to help tune the policy. Available through {@link CTGeofenceAPI#getLocationPingStats()}.
+ */
+public final class CTLocationPingStats {
+
+    private final AtomicLong acceptedCount = new AtomicLong();
+    private final AtomicLong rejectedForAccuracyCount = new AtomicLong();
+    private final AtomicLong rejectedForThrottleCount = new AtomicLong();
+
+    CTLocationPingStats() {
+    }
+
+    void record(int result) {
+        switch (result) {
+            case CTLocationThrottlePolicy.RESULT_ACCEPTED:
+                acceptedCount.incrementAndGet();
+                break;
+            case CTLocationThrottlePolicy.RESULT_REJECTED_ACCURACY:
+                rejectedForAccuracyCount.incrementAndGet();
+                break;
+            default:
+                rejectedForThrottleCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return number of locations sent to CleverTap
+     */
+    public long getAcceptedCount() {
+        return acceptedCount.get();
+    }
+
+    /**
+     * @return number of locations not sent because of low accuracy
+     */
+    public long getRejectedForAccuracyCount() {
+        return rejectedForAccuracyCount.get();
+    }
+
+    /**
+     * @return number of locations not sent because minimum interval or displacement has not passed
+     */
+    public long getRejectedForThrottleCount() {
+        return rejectedForThrottleCount.get();
+    }
+
+    /**
+     * @return total number of locations not sent
+     */
+    public long getRejectedCount() {
+        return rejectedForAccuracyCount.get() + rejectedForThrottleCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "accepted=" + getAcceptedCount() + ", rejectedForAccuracy="
+                + getRejectedForAccuracyCount() + ", rejectedForThrottle="
+                + getRejectedForThrottleCount();
+    }
+}
@@ -0,0 +1,236 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Decides which locations are sent to CleverTap, trading server load against freshness of
+ * geofences selected around last sent location. Instance of this class can be created using
+ * {@link CTLocationThrottlePolicy.Builder} and set through
+ * {@link CTGeofenceSettings.Builder#setLocationThrottlePolicy(CTLocationThrottlePolicy)}.
+ * <br>
+ * When no policy is set, a location is sent only if both
+ * {@link CTGeofenceSettings#getInterval()} and {@link CTGeofenceSettings#getSmallestDisplacement()}
+ * have passed since last sent location.
+ */
+public final class CTLocationThrottlePolicy {
+
+    /**
+     * Location is sent only when both minimum interval and minimum displacement have passed
+     */
+    public static final byte MATCH_ALL = 1;
+
+    /**
+     * Location is sent when either minimum interval or minimum displacement has passed
+     */
+    public static final byte MATCH_ANY = 2;
+
+    static final int RESULT_ACCEPTED = 0;
+    static final int RESULT_REJECTED_ACCURACY = 1;
+    static final int RESULT_REJECTED_THROTTLE = 2;
+
+    private final byte matchMode;
+    private final long minInterval;
+    private final float minDisplacement;
+    private final float maxTravelDistance;
+    private final float minAccuracy;
+
+    private CTLocationThrottlePolicy(Builder builder) {
+        matchMode = builder.matchMode;
+        minInterval = builder.minInterval;
+        minDisplacement = builder.minDisplacement;
+        maxTravelDistance = builder.maxTravelDistance;
+        minAccuracy = builder.minAccuracy;
+    }
+
+    /**
+     * Builder class for creating an instance of {@link CTLocationThrottlePolicy}
+     */
+    public static final class Builder {
+
+        private byte matchMode = MATCH_ALL;
+        private long minInterval = GoogleLocationAdapter.INTERVAL_IN_MILLIS;
+        private float minDisplacement = GoogleLocationAdapter.SMALLEST_DISPLACEMENT_IN_METERS;
+        private float maxTravelDistance = 0;
+        private float minAccuracy = 0;
+
+        public Builder() {
+
+        }
+
+        /**
+         * Set how minimum interval and minimum displacement are combined
+         *
+         * @param matchMode can be one of {@link #MATCH_ALL} or {@link #MATCH_ANY}.
+         *                  Default value is {@link #MATCH_ALL}
+         * @return {@link CTLocationThrottlePolicy.Builder}
+         */
+        public CTLocationThrottlePolicy.Builder setMatchMode(byte matchMode) {
+            this.matchMode = matchMode;
+            return this;
+        }
+
+        /**
+         * Set minimum time between two locations sent to CleverTap, in milliseconds.
+         * Negative values are treated as 0.
+         *
+         * @param minInterval in milliseconds. Default value is 30 minutes
+         * @return {@link CTLocationThrottlePolicy.Builder}
+         */
+        public CTLocationThrottlePolicy.Builder setMinInterval(long minInterval) {
+            this.minInterval = minInterval;
+            return this;
+        }
+
+        /**
+         * Set minimum distance between two locations sent to CleverTap, in meters.
+         * Negative values are treated as 0.
+         *
+         * @param minDisplacement in meters. Default value is 200 meters
+         * @return {@link CTLocationThrottlePolicy.Builder}
+         */
+        public CTLocationThrottlePolicy.Builder setMinDisplacement(float minDisplacement) {
+            this.minDisplacement = minDisplacement;
+            return this;
+        }
+
+        /**
+         * Adjusts minimum interval to speed reported by location. Minimum interval is shortened
+         * to the time in which device covers given distance at its current speed, so that fast
+         * moving devices get geofences selected again before they travel past them.
+         *
+         * @param maxTravelDistance in meters. Default value is 0, which means minimum interval is
+         *                          not adjusted
+         * @return {@link CTLocationThrottlePolicy.Builder}
+         */
+        public CTLocationThrottlePolicy.Builder setMaxTravelDistance(float maxTravelDistance) {
+            this.maxTravelDistance = maxTravelDistance;
+            return this;
+        }
+
+        /**
+         * Set accuracy required for a location to be sent. Locations with horizontal accuracy
+         * radius larger than given value, or without accuracy, are never sent.
+         *
+         * @param minAccuracy accuracy radius in meters. Default value is 0, which means every
+         *                    location is accepted irrespective of accuracy
+         * @return {@link CTLocationThrottlePolicy.Builder}
+         */
+        public CTLocationThrottlePolicy.Builder setMinAccuracy(float minAccuracy) {
+            this.minAccuracy = minAccuracy;
+            return this;
+        }
+
+        public CTLocationThrottlePolicy build() {
+
+            if (matchMode != MATCH_ANY) {
+                matchMode = MATCH_ALL;
+            }
+
+            if (minInterval < 0) {
+                minInterval = 0;
+            }
+
+            if (minDisplacement < 0) {
+                minDisplacement = 0;
+            }
+
+            if (maxTravelDistance < 0) {
+                maxTravelDistance = 0;
+            }
+
+            if (minAccuracy < 0) {
+                minAccuracy = 0;
+            }
+
+            return new CTLocationThrottlePolicy(this);
+        }
+    }
+
+    /**
+     * Compares given location with last one sent to CleverTap
+     *
+     * @param location    new location
+     * @param lastState   last location sent to CleverTap
+     * @param timeMillis  epoch time of new location fix in milliseconds
+     * @return one of {@link #RESULT_ACCEPTED}, {@link #RESULT_REJECTED_ACCURACY} or
+     * {@link #RESULT_REJECTED_THROTTLE}
+     */
+    int evaluate(@NonNull Location location, @NonNull LocationState lastState, long timeMillis) {
+
+        if (minAccuracy > 0 && (!location.hasAccuracy() || location.getAccuracy() > minAccuracy)) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Location accuracy is less than required " + minAccuracy + " meters");
+            return RESULT_REJECTED_ACCURACY;
+        }
+
+        long deltaT = timeMillis - lastState.timestampMillis;
+        float deltaD = location.distanceTo(lastState.toLocation());
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Delta T for last two locations = " + deltaT);
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Delta D for last two locations = " + deltaD);
+
+        boolean isIntervalPassed = deltaT > getIntervalFor(location);
+        boolean isDisplacementPassed = deltaD > minDisplacement;
+
+        boolean isAccepted = matchMode == MATCH_ANY ? isIntervalPassed || isDisplacementPassed
+                : isIntervalPassed && isDisplacementPassed;
+
+        return isAccepted ? RESULT_ACCEPTED : RESULT_REJECTED_THROTTLE;
+    }
+
+    /**
+     * @return minimum interval adjusted to speed of given location
+     */
+    long getIntervalFor(@NonNull Location location) {
+        if (maxTravelDistance > 0 && location.hasSpeed() && location.getSpeed() > 0) {
+            long travelMillis = (long) (maxTravelDistance / location.getSpeed() * 1000);
+            return Math.min(minInterval, travelMillis);
+        }
+        return minInterval;
+    }
+
+    public byte getMatchMode() {
+        return matchMode;
+    }
+
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    public float getMinDisplacement() {
+        return minDisplacement;
+    }
+
+    public float getMaxTravelDistance() {
+        return maxTravelDistance;
+    }
+
+    public float getMinAccuracy() {
+        return minAccuracy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CTLocationThrottlePolicy that = (CTLocationThrottlePolicy) o;
+        return matchMode == that.matchMode && minInterval == that.minInterval
+                && minDisplacement == that.minDisplacement
+                && maxTravelDistance == that.maxTravelDistance
+                && minAccuracy == that.minAccuracy;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = matchMode;
+        result = 31 * result + (int) (minInterval ^ (minInterval >>> 32));
+        result = 31 * result + Float.floatToIntBits(minDisplacement);
+        result = 31 * result + Float.floatToIntBits(maxTravelDistance);
+        result = 31 * result + Float.floatToIntBits(minAccuracy);
+        return result;
+    }
+}
@@ -5,14 +5,12 @@ import android.content.Context;
 import android.content.Intent;
 
 import androidx.annotation.MainThread;
-import androidx.annotation.Nullable;
 
 import com.clevertap.android.sdk.CleverTapAPI;
 import com.google.android.gms.location.LocationResult;
 
+import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 /**
  * A {@link BroadcastReceiver} which receives location updates in foreground as well as in background
@@ -30,6 +28,7 @@ public class CTLocationUpdateReceiver extends BroadcastReceiver {
 
     /**
      * Creates {@link PushLocationEventTask} and sends it to Queue using {@link CTGeofenceTaskManager}
+     * through {@link ReceiverDispatcher}
      * @param context application {@link Context}
      * @param intent an instance of {@link Intent} containing current location of user
      */
@@ -37,72 +36,33 @@ public class CTLocationUpdateReceiver extends BroadcastReceiver {
     @Override
     public void onReceive(final Context context, final Intent intent) {
 
-        final PendingResult result = goAsync();
-
-        try {
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Location updates receiver called");
 
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Location updates receiver called");
+        ReceiverDispatcher.getInstance().dispatch("Location", goAsync(), BROADCAST_INTENT_TIME_MS,
+                new Callable<Future<?>>() {
+                    @Override
+                    public Future<?> call() {
 
-            final LocationResult locationResult = LocationResult.extractResult(intent);
+                        LocationResult locationResult = LocationResult.extractResult(intent);
 
-            if (locationResult != null && locationResult.getLastLocation() != null) {
-                Thread thread = new Thread() {
-                    public void run() {
+                        if (locationResult == null || locationResult.getLastLocation() == null) {
+                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                    "Location Result is null");
+                            return null;
+                        }
 
                         PushLocationEventTask pushLocationEventTask =
                                 new PushLocationEventTask(context, locationResult);
 
-                        Future<?> future = CTGeofenceTaskManager.getInstance()
+                        return CTGeofenceTaskManager.getInstance()
                                 .postAsyncSafely("PushLocationEvent", pushLocationEventTask);
-
-                        try {
-                            if (future != null) {
-                                future.get(BROADCAST_INTENT_TIME_MS, TimeUnit.MILLISECONDS);
-                            }
-                        } catch (TimeoutException e) {
-                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                    "Timeout location receiver execution limit of 10 secs");
-                        } catch (Exception e) {
-                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                    "Exception while processing location receiver intent");
-                            e.printStackTrace();
-                        }
-
-                        finishPendingIntent(result);
                     }
-                };
-
-                thread.start();
-            } else {
-
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Location Result is null");
-
-                finishPendingIntent(result);
-            }
-
-        } catch (Exception e) {
-
-            finishPendingIntent(result);
-
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Exception while processing location updates receiver intent");
-            e.printStackTrace();
-        }
+                });
 
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                 "Returning from Location Updates Receiver");
 
     }
 
-    private void finishPendingIntent(@Nullable PendingResult result) {
-        if (result != null) {
-            result.finish();
-
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Location receiver Pending Intent is finished");
-        }
-    }
-
 }
@@ -0,0 +1,361 @@
+package com.clevertap.android.geofence;
+
+import android.content.Context;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable outbox of events pushed to CleverTap SDK, so that events which fail or can't be pushed at
+ * all are delivered later by {@link OutboxDrainWork} instead of being lost.<br>
+ * Events are written to outbox before they are pushed and acknowledged once CleverTap SDK has
+ * processed them, even if that happens after deadline of {@link GeofenceEventPipeline}. Outbox is
+ * an append-only {@link GeofenceJournal} holding two kinds of entries, events added and keys
+ * acknowledged. Every event carries a de-duplication key, an event whose key is already pending is
+ * not added again.<br>
+ * Pending events are replayed from journal once and then kept in memory, updated along with every
+ * entry appended. Journal is replayed again only if it was changed by someone else, which is
+ * noticed by its length.<br>
+ * Once nothing is pending journal is deleted, and once it grows beyond {@link #COMPACTION_SIZE} it
+ * is replaced by a new journal holding only pending events, so that a process kill at any point
+ * keeps either the old journal or the compacted one.
+ */
+class EventOutbox {
+
+    static final String TYPE_GEOFENCE = "geofence";
+    static final String TYPE_LOCATION = "location";
+
+    static final String KEY_EVENT_KEY = "key";
+    static final String KEY_TYPE = "type";
+    static final String KEY_TRANSITION = "transition";
+    static final String KEY_GEOFENCE = "geofence";
+    static final String KEY_LATITUDE = "lat";
+    static final String KEY_LONGITUDE = "lng";
+    static final String KEY_TIME = "time";
+
+    /**
+     * Journal is compacted once it grows beyond this size
+     */
+    static final long COMPACTION_SIZE = 16 * 1024;
+
+    /**
+     * Oldest events are dropped beyond this count, so that a device offline for long does not fill
+     * up storage
+     */
+    static final int MAX_PENDING_EVENTS = 1000;
+
+    private static final String KEY_ADDED = "add";
+    private static final String KEY_ACKNOWLEDGED = "ack";
+
+    private static final Object LOCK = new Object();
+
+    /**
+     * Journal whose pending events are kept in {@link #pendingEvents}, guarded by {@link #LOCK}
+     */
+    @Nullable
+    private static File loadedFile;
+
+    /**
+     * Length of {@link #loadedFile} once {@link #pendingEvents} were last updated
+     */
+    private static long loadedLength;
+
+    /**
+     * Pending events in order of adding, by key, null until loaded
+     */
+    @Nullable
+    private static Map<String, JSONObject> pendingEvents;
+
+    private EventOutbox() {
+    }
+
+    /**
+     * Creates event raising {@code GeoCluster Entered} or {@code GeoCluster Exited} for given
+     * geofence
+     *
+     * @param geofence           geofence as sent to CleverTap SDK
+     * @param geofenceTransition one of {@link Geofence#GEOFENCE_TRANSITION_ENTER} or
+     *                           {@link Geofence#GEOFENCE_TRANSITION_EXIT}
+     * @param timeMillis         time of transition, identifies event along with geofence id and
+     *                           transition
+     * @return event to add to outbox, null if it could not be created
+     */
+    @Nullable
+    static JSONObject geofenceEvent(@NonNull JSONObject geofence, int geofenceTransition,
+                                    long timeMillis) {
+        try {
+            return new JSONObject()
+                    .put(KEY_EVENT_KEY, TYPE_GEOFENCE + ":"
+                            + geofence.optString(CTGeofenceConstants.KEY_ID) + ":"
+                            + geofenceTransition + ":" + timeMillis)
+                    .put(KEY_TYPE, TYPE_GEOFENCE)
+                    .put(KEY_TRANSITION, geofenceTransition)
+                    .put(KEY_GEOFENCE, geofence);
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates event sending given location to CleverTap SDK
+     *
+     * @param location accepted {@link Location}
+     * @return event to add to outbox, null if it could not be created
+     */
+    @Nullable
+    static JSONObject locationEvent(@NonNull Location location) {
+        try {
+            return new JSONObject()
+                    .put(KEY_EVENT_KEY, TYPE_LOCATION + ":" + location.getTime() + ":"
+                            + location.getLatitude() + ":" + location.getLongitude())
+                    .put(KEY_TYPE, TYPE_LOCATION)
+                    .put(KEY_LATITUDE, location.getLatitude())
+                    .put(KEY_LONGITUDE, location.getLongitude())
+                    .put(KEY_TIME, location.getTime());
+        } catch (JSONException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Appends given events to outbox and waits until they are flushed to disk. Events whose key is
+     * already pending are skipped.
+     *
+     * @param context application {@link Context}
+     * @param events  events created by {@link #geofenceEvent(JSONObject, int, long)} or
+     *                {@link #locationEvent(Location)}
+     * @return true if events are stored, false otherwise
+     */
+    @WorkerThread
+    static boolean add(@NonNull Context context, @NonNull List<JSONObject> events) {
+        if (events.isEmpty()) {
+            return true;
+        }
+
+        synchronized (LOCK) {
+            try {
+                File file = getFile(context);
+                GeofenceJournal journal = getJournal(file);
+                Map<String, JSONObject> pendingEvents = load(file, journal);
+
+                Map<String, JSONObject> newEvents = new LinkedHashMap<>();
+                JSONArray addedEvents = new JSONArray();
+                for (JSONObject event : events) {
+                    String key = event.optString(KEY_EVENT_KEY);
+                    if (!pendingEvents.containsKey(key) && !newEvents.containsKey(key)) {
+                        newEvents.put(key, event);
+                        addedEvents.put(event);
+                    }
+                }
+
+                if (addedEvents.length() == 0) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Events are already pending in outbox");
+                    return true;
+                }
+
+                journal.append(new JSONObject().put(KEY_ADDED, addedEvents));
+                pendingEvents.putAll(newEvents);
+                loadedLength = journal.length();
+
+                if (pendingEvents.size() > MAX_PENDING_EVENTS) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Too many pending events! Dropping "
+                                    + (pendingEvents.size() - MAX_PENDING_EVENTS)
+                                    + " oldest events from outbox");
+                    Iterator<String> iterator = pendingEvents.keySet().iterator();
+                    while (pendingEvents.size() > MAX_PENDING_EVENTS) {
+                        iterator.next();
+                        iterator.remove();
+                    }
+                    compact(file, pendingEvents.values());
+                }
+                return true;
+            } catch (Exception e) {
+                // journal is replayed on next access
+                EventOutbox.pendingEvents = null;
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Failed to store " + events.size() + " events in outbox");
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Removes events with given keys from outbox, once CleverTap SDK has processed them
+     *
+     * @param context application {@link Context}
+     * @param keys    de-duplication keys of delivered events
+     */
+    @WorkerThread
+    static void acknowledge(@NonNull Context context, @NonNull List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        synchronized (LOCK) {
+            try {
+                File file = getFile(context);
+                GeofenceJournal journal = getJournal(file);
+                Map<String, JSONObject> pendingEvents = load(file, journal);
+
+                JSONArray acknowledgedKeys = new JSONArray();
+                for (String key : keys) {
+                    acknowledgedKeys.put(key);
+                }
+                journal.append(new JSONObject().put(KEY_ACKNOWLEDGED, acknowledgedKeys));
+                pendingEvents.keySet().removeAll(keys);
+                loadedLength = journal.length();
+
+                if (pendingEvents.isEmpty() || loadedLength > COMPACTION_SIZE) {
+                    compact(file, pendingEvents.values());
+                }
+            } catch (Exception e) {
+                // journal is replayed on next access
+                EventOutbox.pendingEvents = null;
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Failed to acknowledge " + keys.size() + " events in outbox");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Reads pending events in order of adding, without removing them
+     *
+     * @param context  application {@link Context}
+     * @param maxCount maximum number of events to read
+     * @return list of events, empty if outbox is empty or could not be read
+     */
+    @WorkerThread
+    @NonNull
+    static List<JSONObject> peek(@NonNull Context context, int maxCount) {
+        List<JSONObject> events = new ArrayList<>();
+
+        synchronized (LOCK) {
+            try {
+                File file = getFile(context);
+                for (JSONObject event : load(file, getJournal(file)).values()) {
+                    if (events.size() >= maxCount) {
+                        break;
+                    }
+                    events.add(event);
+                }
+            } catch (Exception e) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Failed to read events from outbox");
+                e.printStackTrace();
+            }
+        }
+
+        return events;
+    }
+
+    @NonNull
+    static File getFile(@NonNull Context context) {
+        return new File(context.getFilesDir() + "/"
+                + FileUtils.getCachedFullPath(context, CTGeofenceConstants.OUTBOX_FILE_NAME));
+    }
+
+    /**
+     * Returns pending events kept in memory, replaying journal first if they are not loaded yet
+     * or journal was changed since they were last updated. Must be called holding {@link #LOCK}.
+     */
+    @NonNull
+    private static Map<String, JSONObject> load(@NonNull File file,
+                                                @NonNull GeofenceJournal journal)
+            throws IOException {
+
+        if (pendingEvents == null || !file.equals(loadedFile) || journal.length() != loadedLength) {
+            pendingEvents = null;
+            Map<String, JSONObject> recoveredEvents = recover(journal);
+            loadedFile = file;
+            loadedLength = journal.length();
+            pendingEvents = recoveredEvents;
+        }
+        return pendingEvents;
+    }
+
+    /**
+     * Replays journal into events which are added but not yet acknowledged
+     */
+    @NonNull
+    private static Map<String, JSONObject> recover(@NonNull GeofenceJournal journal)
+            throws IOException {
+
+        Map<String, JSONObject> pendingEvents = new LinkedHashMap<>();
+
+        for (JSONObject entry : journal.recover()) {
+            JSONArray addedEvents = entry.optJSONArray(KEY_ADDED);
+            for (int i = 0; addedEvents != null && i < addedEvents.length(); i++) {
+                JSONObject event = addedEvents.optJSONObject(i);
+                if (event != null && !pendingEvents.containsKey(event.optString(KEY_EVENT_KEY))) {
+                    pendingEvents.put(event.optString(KEY_EVENT_KEY), event);
+                }
+            }
+
+            JSONArray acknowledgedKeys = entry.optJSONArray(KEY_ACKNOWLEDGED);
+            for (int i = 0; acknowledgedKeys != null && i < acknowledgedKeys.length(); i++) {
+                pendingEvents.remove(acknowledgedKeys.optString(i));
+            }
+        }
+
+        return pendingEvents;
+    }
+
+    /**
+     * Replaces journal with one holding only given pending events
+     */
+    private static void compact(@NonNull File file,
+                                @NonNull Collection<JSONObject> pendingEvents)
+            throws IOException, JSONException {
+
+        if (pendingEvents.isEmpty()) {
+            getJournal(file).delete();
+            loadedLength = 0;
+            return;
+        }
+
+        JSONArray events = new JSONArray();
+        for (JSONObject event : pendingEvents) {
+            events.put(event);
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        GeofenceJournal tempJournal = getJournal(tempFile);
+        tempJournal.delete();
+        tempJournal.append(new JSONObject().put(KEY_ADDED, events));
+
+        if (!tempFile.renameTo(file)) {
+            tempJournal.delete();
+            throw new IOException("Failed to rename " + tempFile.getName());
+        }
+        loadedLength = getJournal(file).length();
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Compacted outbox to " + pendingEvents.size() + " pending events");
+    }
+
+    @NonNull
+    private static GeofenceJournal getJournal(@NonNull File file) {
+        return new GeofenceJournal(file);
+    }
+}
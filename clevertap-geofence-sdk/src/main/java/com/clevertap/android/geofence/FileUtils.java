@@ -12,7 +12,8 @@ import org.json.JSONObject;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 
@@ -31,11 +32,24 @@ public class FileUtils {
                     return false;
             }
 
+            // write to temporary file first and replace the file only once it is flushed to disk,
+            // so that a crash mid-write never leaves a truncated file behind
             File file1 = new File(file, fileName);
-            FileWriter writer = new FileWriter(file1, false);
-            writer.append(jsonObject.toString());
-            writer.flush();
-            writer.close();
+            File tempFile = new File(file, fileName + ".tmp");
+            FileOutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                outputStream.write(jsonObject.toString().getBytes("UTF-8"));
+                outputStream.flush();
+                outputStream.getFD().sync();
+            } finally {
+                outputStream.close();
+            }
+
+            if (!tempFile.renameTo(file1)) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+                throw new IOException("Failed to replace " + fileName);
+            }
 
             isWriteSuccessful = true;
             CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG, fileName
@@ -108,6 +122,23 @@ public class FileUtils {
         }
     }
 
+    @WorkerThread
+    static void deleteFile(Context context, String fileNameWithPath) {
+        if (TextUtils.isEmpty(fileNameWithPath) || context == null)
+            return;
+        try {
+            File file = new File(context.getFilesDir(), fileNameWithPath);
+            if (file.exists()) {
+                String isDeleted = file.delete() ? "successfully deleted" : "failed to delete";
+                CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        fileNameWithPath + " :" + isDeleted);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG, "deleteFileOnInternalStorage: failed" + fileNameWithPath + " Error:" + e.getLocalizedMessage());
+        }
+    }
+
     @SuppressWarnings("UnusedParameters")
     static String getCachedDirName(Context context) {
         return CTGeofenceConstants.CACHED_DIR_NAME /*+ "_" + CTGeofenceAPI.getInstance(context).getAccountId()
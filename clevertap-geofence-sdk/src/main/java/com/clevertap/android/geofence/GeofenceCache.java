@@ -0,0 +1,502 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Binary form of geofence list registered to OS, replacing json text of
+ * {@link CTGeofenceConstants#CACHED_FILE_NAME}.<br>
+ * Geofences are read in place from a {@link ByteBuffer}, memory mapped from
+ * {@link CTGeofenceConstants#CACHED_BINARY_FILE_NAME} after process start, so that a geofence
+ * transition decodes only the triggered geofence instead of parsing the whole list.
+ * <br><br>
+ * Layout of the buffer, all numbers big endian:
+ * <pre>
+ * header      magic, version, geofence count, length of list properties
+ * records     fixed width record of id, lat, lng, r and range of geofence properties for every
+ *             geofence, in order of the list
+ * id index    positions of records sorted by id
+ * list        json object of list properties other than geofences, e.g. reselection boundary
+ * properties  json objects of geofence properties other than id, lat, lng and r, e.g. gcId and
+ *             gcName
+ * </pre>
+ * Instances are immutable and can be read concurrently.
+ */
+class GeofenceCache {
+
+    private static final int MAGIC = 0x43544743; // CTGC
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 32;
+
+    /**
+     * Stored in place of radius of a geofence without integer radius
+     */
+    private static final int NO_RADIUS = Integer.MIN_VALUE;
+
+    private static final String KEY_LATITUDE = "lat";
+    private static final String KEY_LONGITUDE = "lng";
+    private static final String KEY_RADIUS = "r";
+    private static final String KEY_GC_ID = "gcId";
+
+    @NonNull
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int indexStart;
+    private final int listPropertiesStart;
+    private final int listPropertiesLength;
+    private final int propertiesStart;
+
+    private GeofenceCache(@NonNull ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported geofence cache format");
+        }
+
+        count = buffer.getInt(8);
+        listPropertiesLength = buffer.getInt(12);
+        indexStart = HEADER_SIZE + RECORD_SIZE * count;
+        listPropertiesStart = indexStart + 4 * count;
+        propertiesStart = listPropertiesStart + listPropertiesLength;
+
+        if (count < 0 || listPropertiesLength < 0 || count > buffer.capacity() / RECORD_SIZE
+                || propertiesStart < 0 || propertiesStart > buffer.capacity()) {
+            throw new IOException("Corrupt geofence cache");
+        }
+    }
+
+    /**
+     * Encodes provided geofence list. Geofences without valid id are skipped.
+     *
+     * @param fenceList {@link JSONObject} containing an array of geofences, null for empty list
+     * @return an instance of {@link GeofenceCache} backed by heap memory
+     */
+    @NonNull
+    static GeofenceCache encode(@Nullable JSONObject fenceList) {
+
+        JSONArray array = fenceList != null
+                ? fenceList.optJSONArray(CTGeofenceConstants.KEY_GEOFENCES) : null;
+        int length = array != null ? array.length() : 0;
+
+        List<JSONObject> geofences = new ArrayList<>(length);
+        List<Integer> ids = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            JSONObject geofence = array.optJSONObject(i);
+            if (geofence == null) {
+                continue;
+            }
+            try {
+                ids.add(geofence.getInt(CTGeofenceConstants.KEY_ID));
+                geofences.add(geofence);
+            } catch (JSONException e) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Skipping geofence without valid id");
+            }
+        }
+
+        int count = geofences.size();
+        byte[] listProperties = toBytes(fenceList != null
+                ? copyExcept(fenceList, CTGeofenceConstants.KEY_GEOFENCES) : null);
+        byte[][] properties = new byte[count][];
+
+        int capacity = HEADER_SIZE + (RECORD_SIZE + 4) * count + listProperties.length;
+        for (int i = 0; i < count; i++) {
+            JSONObject geofence = geofences.get(i);
+            List<String> encodedKeys = new ArrayList<>(4);
+            if (geofence.opt(CTGeofenceConstants.KEY_ID) instanceof Integer) {
+                encodedKeys.add(CTGeofenceConstants.KEY_ID);
+            }
+            if (geofence.opt(KEY_LATITUDE) instanceof Number) {
+                encodedKeys.add(KEY_LATITUDE);
+            }
+            if (geofence.opt(KEY_LONGITUDE) instanceof Number) {
+                encodedKeys.add(KEY_LONGITUDE);
+            }
+            if (geofence.opt(KEY_RADIUS) instanceof Integer) {
+                encodedKeys.add(KEY_RADIUS);
+            }
+            properties[i] = toBytes(copyExcept(geofence,
+                    encodedKeys.toArray(new String[0])));
+            capacity += properties[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(count);
+        buffer.putInt(listProperties.length);
+
+        int propertiesOffset = 0;
+        for (int i = 0; i < count; i++) {
+            JSONObject geofence = geofences.get(i);
+            Object latitude = geofence.opt(KEY_LATITUDE);
+            Object longitude = geofence.opt(KEY_LONGITUDE);
+            Object radius = geofence.opt(KEY_RADIUS);
+
+            buffer.putInt(ids.get(i));
+            buffer.putDouble(latitude instanceof Number
+                    ? ((Number) latitude).doubleValue() : Double.NaN);
+            buffer.putDouble(longitude instanceof Number
+                    ? ((Number) longitude).doubleValue() : Double.NaN);
+            buffer.putInt(radius instanceof Integer ? (Integer) radius : NO_RADIUS);
+            buffer.putInt(propertiesOffset);
+            buffer.putInt(properties[i].length);
+            propertiesOffset += properties[i].length;
+        }
+
+        for (int position : sortById(ids)) {
+            buffer.putInt(position);
+        }
+
+        buffer.put(listProperties);
+        for (byte[] property : properties) {
+            buffer.put(property);
+        }
+
+        try {
+            return new GeofenceCache(buffer);
+        } catch (IOException e) {
+            // header is always valid for freshly encoded buffer
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Memory maps geofence list previously written by {@link #write(File)}
+     *
+     * @param file geofence cache file
+     * @return an instance of {@link GeofenceCache} backed by given file
+     * @throws IOException if file could not be read or is not a valid geofence cache
+     */
+    @WorkerThread
+    @NonNull
+    static GeofenceCache map(@NonNull File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            // mapping stays valid after channel is closed and after file is replaced
+            return new GeofenceCache(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Writes geofence list to given file, replacing the file only once it is completely written and
+     * flushed to disk
+     *
+     * @param file file to write geofence list to
+     * @throws IOException if file could not be written
+     */
+    @WorkerThread
+    void write(@NonNull File file) throws IOException {
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        FileOutputStream out = new FileOutputStream(tempFile);
+        try {
+            ByteBuffer source = buffer.duplicate();
+            source.clear();
+            FileChannel channel = out.getChannel();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+            // file must be on disk before it replaces previous one, or a crash may leave it empty
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+
+    /**
+     * @return number of stored geofences
+     */
+    int size() {
+        return count;
+    }
+
+    /**
+     * @return ids of stored geofences in order of the list, not sorted by id
+     */
+    @NonNull
+    List<String> getIds() {
+        List<String> ids = new ArrayList<>(count);
+        for (int position = 0; position < count; position++) {
+            ids.add(String.valueOf(getId(position)));
+        }
+        return ids;
+    }
+
+    /**
+     * Finds and decodes geofence with given id through id index
+     *
+     * @param id id of geofence
+     * @return a new {@link JSONObject} of stored geofence, null if not found
+     */
+    @Nullable
+    JSONObject get(int id) {
+        int position = find(id);
+        return position >= 0 ? decode(position) : null;
+    }
+
+    /**
+     * Creates event for geofence with given id from its stored values, without decoding its
+     * properties into a {@link JSONObject} beyond reading gcId
+     *
+     * @param id                 id of geofence
+     * @param geofenceTransition one of {@link Geofence#GEOFENCE_TRANSITION_ENTER} or
+     *                           {@link Geofence#GEOFENCE_TRANSITION_EXIT}
+     * @param triggeringLocation {@link Location} which triggered transition, may be null
+     * @param timestamp          time of transition
+     * @return a new {@link CTGeofenceEvent}, null if geofence not found
+     */
+    @Nullable
+    CTGeofenceEvent getEvent(int id, int geofenceTransition, @Nullable Location triggeringLocation,
+                             long timestamp) {
+        int position = find(id);
+        if (position < 0) {
+            return null;
+        }
+
+        int recordStart = HEADER_SIZE + RECORD_SIZE * position;
+        int radius = buffer.getInt(recordStart + 20);
+        String properties = readString(propertiesStart + buffer.getInt(recordStart + 24),
+                buffer.getInt(recordStart + 28));
+
+        int gcId = 0;
+        if (properties != null && properties.contains(KEY_GC_ID)) {
+            try {
+                gcId = new JSONObject(properties).optInt(KEY_GC_ID);
+            } catch (JSONException e) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Failed to decode geofence properties");
+            }
+        }
+
+        CTGeofenceEvent.Builder builder = new CTGeofenceEvent.Builder(id)
+                .setGcId(gcId)
+                .setLatitude(buffer.getDouble(recordStart + 4))
+                .setLongitude(buffer.getDouble(recordStart + 12))
+                .setRadius(radius != NO_RADIUS ? radius : 0)
+                .setTransition(geofenceTransition)
+                .setTimestamp(timestamp)
+                .setProperties(properties);
+        if (triggeringLocation != null) {
+            builder.setTriggeringLocation(triggeringLocation.getLatitude(),
+                    triggeringLocation.getLongitude());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Decodes whole geofence list
+     *
+     * @return a new {@link JSONObject} containing an array of geofences in stored order
+     */
+    @NonNull
+    JSONObject toJSON() {
+        JSONObject fenceList = readJSON(listPropertiesStart, listPropertiesLength);
+        JSONArray geofences = new JSONArray();
+        for (int position = 0; position < count; position++) {
+            JSONObject geofence = decode(position);
+            if (geofence != null) {
+                geofences.put(geofence);
+            }
+        }
+        try {
+            fenceList.put(CTGeofenceConstants.KEY_GEOFENCES, geofences);
+        } catch (JSONException e) {
+            // key is never null
+        }
+        return fenceList;
+    }
+
+    /**
+     * Binary search of id index
+     *
+     * @return position of record of given id, -1 if not found
+     */
+    private int find(int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int position = buffer.getInt(indexStart + 4 * middle);
+            if (position < 0 || position >= count) {
+                return -1;
+            }
+            int middleId = getId(position);
+            if (middleId < id) {
+                low = middle + 1;
+            } else if (middleId > id) {
+                high = middle - 1;
+            } else {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    private int getId(int position) {
+        return buffer.getInt(HEADER_SIZE + RECORD_SIZE * position);
+    }
+
+    @Nullable
+    private JSONObject decode(int position) {
+        int recordStart = HEADER_SIZE + RECORD_SIZE * position;
+        double latitude = buffer.getDouble(recordStart + 4);
+        double longitude = buffer.getDouble(recordStart + 12);
+        int radius = buffer.getInt(recordStart + 20);
+
+        JSONObject geofence = readJSON(propertiesStart + buffer.getInt(recordStart + 24),
+                buffer.getInt(recordStart + 28));
+        try {
+            if (!geofence.has(CTGeofenceConstants.KEY_ID)) {
+                geofence.put(CTGeofenceConstants.KEY_ID, getId(position));
+            }
+            if (!Double.isNaN(latitude) && !geofence.has(KEY_LATITUDE)) {
+                geofence.put(KEY_LATITUDE, latitude);
+            }
+            if (!Double.isNaN(longitude) && !geofence.has(KEY_LONGITUDE)) {
+                geofence.put(KEY_LONGITUDE, longitude);
+            }
+            if (radius != NO_RADIUS && !geofence.has(KEY_RADIUS)) {
+                geofence.put(KEY_RADIUS, radius);
+            }
+            return geofence;
+        } catch (JSONException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to decode geofence with id = " + getId(position));
+            return null;
+        }
+    }
+
+    @NonNull
+    private JSONObject readJSON(int start, int length) {
+        String json = readString(start, length);
+        if (json == null) {
+            return new JSONObject();
+        }
+
+        try {
+            return new JSONObject(json);
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to decode geofence properties");
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * @return UTF-8 text of given range, null if range is empty or out of buffer
+     */
+    @Nullable
+    private String readString(int start, int length) {
+        if (length <= 0 || start < 0 || start + length > buffer.capacity()) {
+            return null;
+        }
+
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.clear();
+        source.position(start);
+        source.get(bytes);
+
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            // UTF-8 is always supported
+            return null;
+        }
+    }
+
+    /**
+     * @return copy of given object without given keys, null if nothing is left
+     */
+    @Nullable
+    private static JSONObject copyExcept(@NonNull JSONObject object, String... excludedKeys) {
+        List<String> excluded = Arrays.asList(excludedKeys);
+        JSONObject copy = new JSONObject();
+        Iterator<String> keys = object.keys();
+        try {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                if (!excluded.contains(key)) {
+                    copy.put(key, object.opt(key));
+                }
+            }
+        } catch (JSONException e) {
+            // keys are never null
+        }
+        return copy.length() > 0 ? copy : null;
+    }
+
+    @NonNull
+    private static byte[] toBytes(@Nullable JSONObject object) {
+        if (object == null) {
+            return new byte[0];
+        }
+        try {
+            return object.toString().getBytes("UTF-8");
+        } catch (IOException e) {
+            // UTF-8 is always supported
+            return new byte[0];
+        }
+    }
+
+    /**
+     * @return positions of given ids in ascending order of ids
+     */
+    @NonNull
+    private static Integer[] sortById(@NonNull final List<Integer> ids) {
+        Integer[] positions = new Integer[ids.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        Arrays.sort(positions, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                int firstId = ids.get(first);
+                int secondId = ids.get(second);
+                return firstId < secondId ? -1 : (firstId == secondId ? 0 : 1);
+            }
+        });
+        return positions;
+    }
+}
@@ -0,0 +1,177 @@
+package com.clevertap.android.geofence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.clevertap.android.geofence.model.CTGeofence;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Difference between geofences registered to OS and a new list of geofences to register.
+ * Geofences are matched by id and compared by a hash of their geometry(latitude, longitude) and radius,
+ * so that only removed and changed geofences are unregistered and only added and changed geofences are
+ * registered again.
+ */
+class GeofenceDiff {
+
+    @NonNull
+    private final List<String> idsToRemove;
+    @NonNull
+    private final List<CTGeofence> geofencesToAdd;
+    private final int addedCount;
+    private final int removedCount;
+    private final int changedCount;
+    private final int unchangedCount;
+
+    private GeofenceDiff(@NonNull List<String> idsToRemove, @NonNull List<CTGeofence> geofencesToAdd,
+                         int addedCount, int removedCount, int changedCount, int unchangedCount) {
+        this.idsToRemove = idsToRemove;
+        this.geofencesToAdd = geofencesToAdd;
+        this.addedCount = addedCount;
+        this.removedCount = removedCount;
+        this.changedCount = changedCount;
+        this.unchangedCount = unchangedCount;
+    }
+
+    /**
+     * Compares registered geofences with new geofences
+     *
+     * @param registeredGeofences geofences currently registered to OS, null if nothing is registered
+     * @param newGeofences        geofences which should be registered to OS
+     * @return an instance of {@link GeofenceDiff}
+     */
+    @NonNull
+    static GeofenceDiff compute(@Nullable List<CTGeofence> registeredGeofences,
+                                @NonNull List<CTGeofence> newGeofences) {
+
+        Map<String, Long> registeredHashes = new HashMap<>();
+        if (registeredGeofences != null) {
+            for (CTGeofence registeredGeofence : registeredGeofences) {
+                registeredHashes.put(registeredGeofence.getId(), geometryHash(registeredGeofence));
+            }
+        }
+
+        List<String> idsToRemove = new ArrayList<>();
+        List<CTGeofence> geofencesToAdd = new ArrayList<>();
+        Set<String> newIds = new HashSet<>();
+        int addedCount = 0;
+        int changedCount = 0;
+        int unchangedCount = 0;
+
+        for (CTGeofence newGeofence : newGeofences) {
+
+            if (!newIds.add(newGeofence.getId())) {
+                // duplicate id in new list, OS will keep only one of them
+                continue;
+            }
+
+            Long registeredHash = registeredHashes.get(newGeofence.getId());
+
+            if (registeredHash == null) {
+                addedCount++;
+                geofencesToAdd.add(newGeofence);
+            } else if (registeredHash != geometryHash(newGeofence)) {
+                changedCount++;
+                idsToRemove.add(newGeofence.getId());
+                geofencesToAdd.add(newGeofence);
+            } else {
+                unchangedCount++;
+            }
+        }
+
+        int removedCount = 0;
+        for (String registeredId : registeredHashes.keySet()) {
+            if (!newIds.contains(registeredId)) {
+                removedCount++;
+                idsToRemove.add(registeredId);
+            }
+        }
+
+        return new GeofenceDiff(idsToRemove, geofencesToAdd, addedCount, removedCount, changedCount,
+                unchangedCount);
+    }
+
+    /**
+     * Same as {@link #compute(List, List)} but registers unchanged geofences again too, for when
+     * registration of {@code registeredGeofences} to OS is not known to have succeeded
+     *
+     * @param registeredGeofences geofences last sent to OS, null if nothing is registered
+     * @param newGeofences        geofences which should be registered to OS
+     * @return an instance of {@link GeofenceDiff}
+     */
+    @NonNull
+    static GeofenceDiff computeFull(@Nullable List<CTGeofence> registeredGeofences,
+                                    @NonNull List<CTGeofence> newGeofences) {
+
+        GeofenceDiff geofenceDiff = compute(registeredGeofences, newGeofences);
+
+        List<CTGeofence> geofencesToAdd = new ArrayList<>();
+        Set<String> newIds = new HashSet<>();
+        for (CTGeofence newGeofence : newGeofences) {
+            if (newIds.add(newGeofence.getId())) {
+                geofencesToAdd.add(newGeofence);
+            }
+        }
+
+        return new GeofenceDiff(geofenceDiff.idsToRemove, geofencesToAdd, geofenceDiff.addedCount,
+                geofenceDiff.removedCount, geofenceDiff.changedCount, geofenceDiff.unchangedCount);
+    }
+
+    /**
+     * Hash of geometry and radius of geofence, used to detect changed geofences with same id
+     *
+     * @param geofence an instance of {@link CTGeofence}
+     * @return hash of latitude, longitude and radius
+     */
+    static long geometryHash(@NonNull CTGeofence geofence) {
+        long hash = Double.doubleToLongBits(geofence.getLatitude());
+        hash = 31 * hash + Double.doubleToLongBits(geofence.getLongitude());
+        hash = 31 * hash + geofence.getRadius();
+        return hash;
+    }
+
+    /**
+     * @return ids of removed and changed geofences, which must be unregistered from OS
+     */
+    @NonNull
+    List<String> getIdsToRemove() {
+        return idsToRemove;
+    }
+
+    /**
+     * @return added and changed geofences, which must be registered to OS
+     */
+    @NonNull
+    List<CTGeofence> getGeofencesToAdd() {
+        return geofencesToAdd;
+    }
+
+    int getAddedCount() {
+        return addedCount;
+    }
+
+    int getRemovedCount() {
+        return removedCount;
+    }
+
+    int getChangedCount() {
+        return changedCount;
+    }
+
+    int getUnchangedCount() {
+        return unchangedCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "added = " + addedCount + ", removed = " + removedCount + ", changed = " + changedCount
+                + ", unchanged = " + unchangedCount;
+    }
+}
@@ -0,0 +1,157 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.clevertap.android.geofence.interfaces.CTGeofenceEventsBatchListener;
+import com.clevertap.android.geofence.interfaces.CTGeofenceEventsListener;
+import com.clevertap.android.geofence.interfaces.CTLocationUpdatesListener;
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Delivers geofence events and location updates to any number of app listeners.<br>
+ * Listeners are held in copy-on-write lists, so they can be added or removed from any thread while
+ * events are delivered without locking. Every listener is called on its own executor, or on main
+ * thread when none is given, once per batch of events rather than once per geofence.
+ * {@link CTGeofenceEventsListener} is held through {@link GeofenceEventsListenerAdapter}, so that
+ * json is built only for listeners which need it.
+ */
+class GeofenceEventBus {
+
+    private static final class Subscriber<T> {
+
+        /**
+         * Listener as added by app, identifies subscriber on removal
+         */
+        @NonNull
+        final Object key;
+        @NonNull
+        final T listener;
+        @Nullable
+        final Executor executor;
+
+        Subscriber(@NonNull Object key, @NonNull T listener, @Nullable Executor executor) {
+            this.key = key;
+            this.listener = listener;
+            this.executor = executor;
+        }
+    }
+
+    private final List<Subscriber<CTGeofenceEventsBatchListener>> geofenceEventsListeners =
+            new CopyOnWriteArrayList<>();
+    private final List<Subscriber<CTLocationUpdatesListener>> locationUpdatesListeners =
+            new CopyOnWriteArrayList<>();
+
+    void addGeofenceEventsListener(@NonNull CTGeofenceEventsListener listener,
+                                   @Nullable Executor executor) {
+        add(geofenceEventsListeners, listener, new GeofenceEventsListenerAdapter(listener),
+                executor);
+    }
+
+    void removeGeofenceEventsListener(@NonNull CTGeofenceEventsListener listener) {
+        remove(geofenceEventsListeners, listener);
+    }
+
+    void addGeofenceEventsBatchListener(@NonNull CTGeofenceEventsBatchListener listener,
+                                        @Nullable Executor executor) {
+        add(geofenceEventsListeners, listener, listener, executor);
+    }
+
+    void removeGeofenceEventsBatchListener(@NonNull CTGeofenceEventsBatchListener listener) {
+        remove(geofenceEventsListeners, listener);
+    }
+
+    void addLocationUpdatesListener(@NonNull CTLocationUpdatesListener listener,
+                                    @Nullable Executor executor) {
+        add(locationUpdatesListeners, listener, listener, executor);
+    }
+
+    void removeLocationUpdatesListener(@NonNull CTLocationUpdatesListener listener) {
+        remove(locationUpdatesListeners, listener);
+    }
+
+    /**
+     * Delivers geofences entered and exited by a single geofence event to all geofence listeners
+     *
+     * @param events events of triggered geofences
+     */
+    void postGeofenceEvents(@NonNull List<CTGeofenceEvent> events) {
+
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // events are immutable, so the same list is shared by all listeners
+        final List<CTGeofenceEvent> batch = Collections.unmodifiableList(new ArrayList<>(events));
+
+        for (final Subscriber<CTGeofenceEventsBatchListener> subscriber : geofenceEventsListeners) {
+            dispatch(subscriber.executor, new Runnable() {
+                @Override
+                public void run() {
+                    subscriber.listener.onGeofenceEvents(batch);
+                }
+            });
+        }
+    }
+
+    /**
+     * Delivers location to all location listeners
+     *
+     * @param location {@link Location} received from OS, may be null
+     */
+    void postLocationUpdate(@Nullable final Location location) {
+        for (final Subscriber<CTLocationUpdatesListener> subscriber : locationUpdatesListeners) {
+            dispatch(subscriber.executor, new Runnable() {
+                @Override
+                public void run() {
+                    subscriber.listener.onLocationUpdates(location);
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds listener unless already added, in which case its executor is replaced
+     */
+    private static <T> void add(@NonNull List<Subscriber<T>> subscribers, @NonNull Object key,
+                                @NonNull T listener, @Nullable Executor executor) {
+        // writes are serialized so that a listener is never added twice, reads need no lock
+        synchronized (subscribers) {
+            remove(subscribers, key);
+            subscribers.add(new Subscriber<>(key, listener, executor));
+        }
+    }
+
+    private static <T> void remove(@NonNull List<Subscriber<T>> subscribers, @NonNull Object key) {
+        synchronized (subscribers) {
+            for (Subscriber<T> subscriber : subscribers) {
+                if (subscriber.key == key) {
+                    subscribers.remove(subscriber);
+                }
+            }
+        }
+    }
+
+    private static void dispatch(@Nullable Executor executor, @NonNull Runnable runnable) {
+        if (executor == null) {
+            com.clevertap.android.sdk.Utils.runOnUiThread(runnable);
+            return;
+        }
+
+        try {
+            executor.execute(runnable);
+        } catch (RejectedExecutionException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Listener executor rejected event, dropping it for this listener");
+        }
+    }
+}
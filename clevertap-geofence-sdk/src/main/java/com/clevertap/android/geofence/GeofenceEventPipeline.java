@@ -0,0 +1,329 @@
+package com.clevertap.android.geofence;
+
+import android.content.Context;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.clevertap.android.sdk.CleverTapAPI;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pushes events of {@link EventOutbox} to CleverTap SDK without waiting for each push before
+ * submitting the next one, so that time taken by a
+ * {@link com.google.android.gms.location.GeofencingEvent} triggering many geofences does not grow
+ * with their count.<br>
+ * At most {@link #MAX_IN_FLIGHT_PUSHES} pushes are pending at once, beyond that the oldest one is
+ * waited for before submitting another. All pushes share one deadline, keys of events acknowledged
+ * by then are returned by {@link #awaitAll()}, other events stay in {@link EventOutbox}.<br>
+ * Keys of events being pushed are shared by all pipelines, so that an event pushed by
+ * {@link PushGeofenceEventTask} on read queue of {@link CTGeofenceTaskManager} is not pushed
+ * again by {@link OutboxDrainWork} on main queue at the same time.<br>
+ * A push which misses deadline is still being processed by CleverTap SDK, so it is not pushed
+ * again. It is waited for on a background thread instead and its event acknowledged once it
+ * completes. Only events whose push fails stay pending for {@link OutboxDrainWork}.
+ */
+class GeofenceEventPipeline {
+
+    /**
+     * Time given to all pushes of a {@link PushGeofenceEventTask}, leaving enough of 8 secs given
+     * to broadcast receiver for reading geofences and updating outbox
+     */
+    static final long PUSH_DEADLINE_IN_MILLIS = 5000;
+
+    static final int MAX_IN_FLIGHT_PUSHES = 8;
+
+    /**
+     * Keys of events being pushed by any pipeline, including pushes which missed deadline of
+     * their pipeline
+     */
+    private static final Set<String> pushingKeys =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static Executor latePushExecutor;
+
+    @NonNull
+    private final Context context;
+
+    @NonNull
+    private final CleverTapAPI cleverTapApi;
+
+    private final long deadline;
+
+    @NonNull
+    private final Deque<Push> inFlightPushes = new ArrayDeque<>();
+
+    @NonNull
+    private final List<String> acknowledgedKeys = new ArrayList<>();
+
+    /**
+     * @param context          application {@link Context}
+     * @param cleverTapApi     instance of {@link CleverTapAPI} to push events to
+     * @param deadlineInMillis time from now within which all pushes must be acknowledged
+     */
+    GeofenceEventPipeline(@NonNull Context context, @NonNull CleverTapAPI cleverTapApi,
+                          long deadlineInMillis) {
+        this.context = context;
+        this.cleverTapApi = cleverTapApi;
+        this.deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineInMillis);
+    }
+
+    /**
+     * Adds given events to {@link EventOutbox}, scheduling {@link OutboxDrainWork} for those not
+     * delivered, then pushes them to CleverTap SDK and acknowledges those delivered
+     *
+     * @param context      application {@link Context}
+     * @param cleverTapApi instance of {@link CleverTapAPI} to push events to, events are only stored
+     *                     if null
+     * @param events       events created by {@link EventOutbox}
+     */
+    @WorkerThread
+    static void deliver(@NonNull Context context, @Nullable CleverTapAPI cleverTapApi,
+                        @NonNull List<JSONObject> events) {
+
+        if (events.isEmpty()) {
+            return;
+        }
+
+        // keys are claimed before events are visible in outbox, so that OutboxDrainWork can't
+        // push them while they are pushed here
+        List<JSONObject> claimedEvents = new ArrayList<>(events.size());
+        if (cleverTapApi != null) {
+            for (JSONObject event : events) {
+                if (claim(event)) {
+                    claimedEvents.add(event);
+                }
+            }
+        }
+
+        // events are stored before pushing, so that they are delivered later by
+        // OutboxDrainWork if push fails or process is killed before it completes
+        if (EventOutbox.add(context, events)) {
+            OutboxDrainWork.schedule(context);
+        }
+
+        if (cleverTapApi == null) {
+            return;
+        }
+
+        // send events to CleverTap SDK, without waiting for each one before next
+        GeofenceEventPipeline pipeline = new GeofenceEventPipeline(context, cleverTapApi,
+                PUSH_DEADLINE_IN_MILLIS);
+        for (JSONObject event : claimedEvents) {
+            pipeline.submit(event);
+        }
+
+        EventOutbox.acknowledge(context, pipeline.awaitAll());
+    }
+
+    /**
+     * Submits given event to CleverTap SDK, waiting for oldest pending push first if
+     * {@link #MAX_IN_FLIGHT_PUSHES} are already pending. Event which is still being pushed by this
+     * or another pipeline, even after its deadline, is skipped.
+     *
+     * @param event event created by {@link EventOutbox}
+     */
+    @WorkerThread
+    void push(@NonNull JSONObject event) {
+        if (claim(event)) {
+            submit(event);
+        }
+    }
+
+    /**
+     * Marks given event as being pushed
+     *
+     * @return false if event is already being pushed
+     */
+    private static boolean claim(@NonNull JSONObject event) {
+        String key = event.optString(EventOutbox.KEY_EVENT_KEY);
+        if (!pushingKeys.add(key)) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Event with key = " + key + " is still being pushed, skipping it");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Same as {@link #push(JSONObject)} for event already claimed by {@link #claim(JSONObject)}
+     */
+    @WorkerThread
+    private void submit(@NonNull JSONObject event) {
+
+        String key = event.optString(EventOutbox.KEY_EVENT_KEY);
+
+        if (inFlightPushes.size() >= MAX_IN_FLIGHT_PUSHES) {
+            await(inFlightPushes.poll());
+        }
+
+        Future<?> future = null;
+        try {
+            if (EventOutbox.TYPE_LOCATION.equals(event.optString(EventOutbox.KEY_TYPE))) {
+                future = cleverTapApi.setLocationForGeofences(toLocation(event),
+                        Utils.getGeofenceSDKVersion());
+            } else {
+                JSONObject geofence = event.getJSONObject(EventOutbox.KEY_GEOFENCE);
+                if (event.optInt(EventOutbox.KEY_TRANSITION) == Geofence.GEOFENCE_TRANSITION_ENTER) {
+                    future = cleverTapApi.pushGeofenceEnteredEvent(geofence);
+                } else {
+                    future = cleverTapApi.pushGeoFenceExitedEvent(geofence);
+                }
+            }
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to push event with key = " + key);
+            e.printStackTrace();
+            pushingKeys.remove(key);
+            return;
+        }
+
+        if (future == null) {
+            // CleverTap SDK decided not to send it, nothing more to deliver
+            acknowledgedKeys.add(key);
+            pushingKeys.remove(key);
+            return;
+        }
+
+        inFlightPushes.add(new Push(key, future));
+    }
+
+    /**
+     * Waits for all pending pushes until deadline
+     *
+     * @return keys of events acknowledged by CleverTap SDK
+     */
+    @WorkerThread
+    @NonNull
+    List<String> awaitAll() {
+        while (!inFlightPushes.isEmpty()) {
+            await(inFlightPushes.poll());
+        }
+        return acknowledgedKeys;
+    }
+
+    private void await(@NonNull Push push) {
+        boolean isLate = false;
+        try {
+            CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Calling future for event with key = " + push.key);
+
+            push.future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+            CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Finished calling future for event with key = " + push.key);
+            acknowledgedKeys.add(push.key);
+        } catch (TimeoutException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Timed out pushing event with key = " + push.key
+                            + ", acknowledging it once it completes");
+            isLate = awaitLate(push);
+        } catch (InterruptedException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Interrupted pushing event with key = " + push.key
+                            + ", acknowledging it once it completes");
+            isLate = awaitLate(push);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to push event with key = " + push.key);
+            e.printStackTrace();
+        } finally {
+            if (!isLate) {
+                pushingKeys.remove(push.key);
+            }
+        }
+    }
+
+    /**
+     * Waits for given push on a background thread, without deadline, and acknowledges its event in
+     * {@link EventOutbox} once it completes. Until then the event is not pushed again.
+     *
+     * @return true if push is waited for, false if it could not be
+     */
+    private boolean awaitLate(@NonNull final Push push) {
+        try {
+            getLatePushExecutor().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        push.future.get();
+                        EventOutbox.acknowledge(context, Collections.singletonList(push.key));
+
+                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                "Acknowledged late push of event with key = " + push.key);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                "Failed to push event with key = " + push.key);
+                        e.printStackTrace();
+                    } finally {
+                        pushingKeys.remove(push.key);
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to wait for event with key = " + push.key);
+            return false;
+        }
+    }
+
+    /**
+     * Single thread which waits for late pushes one after another, stopped when idle
+     */
+    @NonNull
+    private static synchronized Executor getLatePushExecutor() {
+        if (latePushExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>());
+            executor.allowCoreThreadTimeOut(true);
+            latePushExecutor = executor;
+        }
+        return latePushExecutor;
+    }
+
+    @NonNull
+    private static Location toLocation(@NonNull JSONObject event) {
+        Location location = new Location("");
+        location.setLatitude(event.optDouble(EventOutbox.KEY_LATITUDE));
+        location.setLongitude(event.optDouble(EventOutbox.KEY_LONGITUDE));
+        location.setTime(event.optLong(EventOutbox.KEY_TIME));
+        return location;
+    }
+
+    private static final class Push {
+
+        @NonNull
+        final String key;
+
+        @NonNull
+        final Future<?> future;
+
+        Push(@NonNull String key, @NonNull Future<?> future) {
+            this.key = key;
+            this.future = future;
+        }
+    }
+}
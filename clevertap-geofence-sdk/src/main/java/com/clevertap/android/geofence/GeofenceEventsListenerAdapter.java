@@ -0,0 +1,36 @@
+package com.clevertap.android.geofence;
+
+import androidx.annotation.NonNull;
+
+import com.clevertap.android.geofence.interfaces.CTGeofenceEventsBatchListener;
+import com.clevertap.android.geofence.interfaces.CTGeofenceEventsListener;
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+import com.google.android.gms.location.Geofence;
+
+import java.util.List;
+
+/**
+ * Delivers batches of {@link CTGeofenceEvent} to a {@link CTGeofenceEventsListener}, one
+ * {@link org.json.JSONObject} per geofence, so that listeners written against json keep working.
+ * Every call receives its own json object.
+ */
+class GeofenceEventsListenerAdapter implements CTGeofenceEventsBatchListener {
+
+    @NonNull
+    private final CTGeofenceEventsListener listener;
+
+    GeofenceEventsListenerAdapter(@NonNull CTGeofenceEventsListener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void onGeofenceEvents(List<CTGeofenceEvent> events) {
+        for (CTGeofenceEvent event : events) {
+            if (event.getTransition() == Geofence.GEOFENCE_TRANSITION_ENTER) {
+                listener.onGeofenceEnteredEvent(event.toJSON());
+            } else {
+                listener.onGeofenceExitedEvent(event.toJSON());
+            }
+        }
+    }
+}
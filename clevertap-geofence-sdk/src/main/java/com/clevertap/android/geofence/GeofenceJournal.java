@@ -0,0 +1,150 @@
+package com.clevertap.android.geofence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes to a file which is otherwise replaced as a whole, so that a small
+ * change is stored without rewriting the whole file.
+ * <br><br>
+ * Every entry is a json object preceded by its length and CRC32 checksum, all numbers big endian.
+ * An entry is flushed to disk before {@link #append(JSONObject)} returns. An entry left incomplete
+ * by a process kill fails its checksum and is cut off along with anything after it by
+ * {@link #recover()}, so that entries are applied either completely or not at all.
+ */
+class GeofenceJournal {
+
+    private static final int ENTRY_HEADER_SIZE = 8;
+
+    @NonNull
+    private final File file;
+
+    GeofenceJournal(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Reads all complete entries in order of appending. Incomplete or corrupt tail of the
+     * journal is truncated.
+     *
+     * @return list of entries, empty if journal does not exist
+     * @throws IOException if journal could not be read
+     */
+    @WorkerThread
+    @NonNull
+    List<JSONObject> recover() throws IOException {
+
+        List<JSONObject> entries = new ArrayList<>();
+        if (!file.isFile()) {
+            return entries;
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            long length = randomAccessFile.length();
+            long validLength = 0;
+            CRC32 crc32 = new CRC32();
+
+            while (length - validLength >= ENTRY_HEADER_SIZE) {
+                randomAccessFile.seek(validLength);
+                int entryLength = randomAccessFile.readInt();
+                int checksum = randomAccessFile.readInt();
+
+                if (entryLength < 0 || entryLength > length - validLength - ENTRY_HEADER_SIZE) {
+                    break;
+                }
+
+                byte[] payload = new byte[entryLength];
+                randomAccessFile.readFully(payload);
+
+                crc32.reset();
+                crc32.update(payload, 0, entryLength);
+                if ((int) crc32.getValue() != checksum) {
+                    break;
+                }
+
+                try {
+                    entries.add(new JSONObject(new String(payload, "UTF-8")));
+                } catch (JSONException e) {
+                    break;
+                }
+                validLength += ENTRY_HEADER_SIZE + entryLength;
+            }
+
+            if (validLength < length) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Discarding " + (length - validLength) + " bytes of incomplete "
+                                + file.getName());
+                randomAccessFile.setLength(validLength);
+                randomAccessFile.getFD().sync();
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+
+        return entries;
+    }
+
+    /**
+     * Appends given entry and waits until it is flushed to disk
+     *
+     * @param entry json object to append
+     * @throws IOException if entry could not be written
+     */
+    @WorkerThread
+    void append(@NonNull JSONObject entry) throws IOException {
+
+        byte[] payload = entry.toString().getBytes("UTF-8");
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload, 0, payload.length);
+
+        ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc32.getValue());
+        buffer.put(payload);
+
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Failed to create directory " + parent);
+        }
+
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(buffer.array());
+            out.flush();
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * @return size of journal in bytes, 0 if it does not exist
+     */
+    long length() {
+        return file.isFile() ? file.length() : 0;
+    }
+
+    /**
+     * Removes all entries, once they are merged into the file they apply to
+     */
+    @WorkerThread
+    void delete() {
+        if (file.isFile() && !file.delete()) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to delete " + file.getName());
+        }
+    }
+}
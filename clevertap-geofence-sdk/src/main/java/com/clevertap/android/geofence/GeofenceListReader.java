@@ -0,0 +1,208 @@
+package com.clevertap.android.geofence;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads geofence list received from server one geofence at a time, so that a large list is parsed
+ * only once and never has to be held in memory as a whole.<br>
+ * Lists are read either from raw json text through {@link JsonReader}, or from an already parsed
+ * {@link JSONObject}. Geofences without integer id, valid latitude and longitude or positive
+ * integer radius can't be registered to OS and are skipped.
+ */
+class GeofenceListReader {
+
+    /**
+     * Receives valid geofences in order of the list
+     */
+    interface Listener {
+
+        void onGeofence(@NonNull JSONObject geofence) throws IOException;
+    }
+
+    private GeofenceListReader() {
+    }
+
+    /**
+     * Streams geofences of given json text to provided listener. Reader is closed once read.
+     *
+     * @param fenceListReader reader of json object containing an array of geofences
+     * @param listener        listener receiving valid geofences
+     * @return number of valid geofences read, -1 if json object holds no array of geofences
+     * @throws IOException if json text could not be read or is malformed
+     */
+    @WorkerThread
+    static int read(@NonNull Reader fenceListReader, @NonNull Listener listener)
+            throws IOException {
+
+        JsonReader reader = new JsonReader(fenceListReader);
+        try {
+            int validCount = -1;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!CTGeofenceConstants.KEY_GEOFENCES.equals(reader.nextName())
+                        || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                validCount = 0;
+                int skippedCount = 0;
+
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                        reader.skipValue();
+                        skippedCount++;
+                        continue;
+                    }
+
+                    JSONObject geofence = readObject(reader);
+                    if (isValid(geofence)) {
+                        listener.onGeofence(geofence);
+                        validCount++;
+                    } else {
+                        skippedCount++;
+                    }
+                }
+                reader.endArray();
+
+                logSkipped(skippedCount);
+            }
+            reader.endObject();
+
+            return validCount;
+        } catch (IllegalStateException e) {
+            // thrown by JsonReader on unexpected token
+            throw new IOException("Malformed geofence list: " + e.getMessage());
+        } catch (JSONException e) {
+            throw new IOException("Malformed geofence list: " + e.getMessage());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Same as {@link #read(Reader, Listener)} but for already parsed list
+     *
+     * @param fenceList {@link JSONObject} containing an array of geofences
+     * @param listener  listener receiving valid geofences
+     * @return number of valid geofences read, -1 if {@code fenceList} holds no array of geofences
+     * @throws IOException if listener fails
+     */
+    @WorkerThread
+    static int read(@NonNull JSONObject fenceList, @NonNull Listener listener) throws IOException {
+
+        JSONArray array = fenceList.optJSONArray(CTGeofenceConstants.KEY_GEOFENCES);
+        if (array == null) {
+            return -1;
+        }
+
+        int validCount = 0;
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject geofence = array.optJSONObject(i);
+            if (geofence != null && isValid(geofence)) {
+                listener.onGeofence(geofence);
+                validCount++;
+            }
+        }
+
+        logSkipped(array.length() - validCount);
+        return validCount;
+    }
+
+    /**
+     * @return true if given geofence can be registered to OS
+     */
+    static boolean isValid(@NonNull JSONObject geofence) {
+        try {
+            // same conversions as CTGeofence#from(JSONObject)
+            geofence.getInt(CTGeofenceConstants.KEY_ID);
+            double latitude = geofence.getDouble("lat");
+            double longitude = geofence.getDouble("lng");
+            return geofence.getInt("r") > 0 && Math.abs(latitude) <= 90
+                    && Math.abs(longitude) <= 180;
+        } catch (JSONException e) {
+            return false;
+        }
+    }
+
+    private static void logSkipped(int skippedCount) {
+        if (skippedCount > 0) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Skipped " + skippedCount + " invalid geofences");
+        }
+    }
+
+    @NonNull
+    private static JSONObject readObject(@NonNull JsonReader reader)
+            throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    @NonNull
+    private static JSONArray readArray(@NonNull JsonReader reader)
+            throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * Reads next value as type {@link JSONObject} would hold after parsing the same json text
+     */
+    private static Object readValue(@NonNull JsonReader reader) throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                return toNumber(reader.nextString());
+            default:
+                return reader.nextString();
+        }
+    }
+
+    @NonNull
+    private static Number toNumber(@NonNull String number) {
+        if (number.indexOf('.') < 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            try {
+                long longValue = Long.parseLong(number);
+                if (longValue <= Integer.MAX_VALUE && longValue >= Integer.MIN_VALUE) {
+                    return (int) longValue;
+                }
+                return longValue;
+            } catch (NumberFormatException e) {
+                // too large for long, fall through to double
+            }
+        }
+        return Double.valueOf(number);
+    }
+}
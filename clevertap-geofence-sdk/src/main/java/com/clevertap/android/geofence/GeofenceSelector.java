@@ -0,0 +1,282 @@
+package com.clevertap.android.geofence;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Selects geofences nearest to a reference location out of the full list received from server.<br>
+ * Geofences are ranked by great-circle distance from reference location using an in-place
+ * quickselect, so that selecting top n out of m geofences takes O(m) on average instead of
+ * O(m log m) of a full sort. Selected geofences keep their relative order from the original list.
+ */
+class GeofenceSelector {
+
+    private static final double EARTH_RADIUS_IN_METERS = 6371008.8;
+
+    private GeofenceSelector() {
+    }
+
+    /**
+     * Returns {@code count} geofences nearest to given reference location. Geofences without valid
+     * latitude or longitude are ranked last.
+     *
+     * @param geofences array of geofence objects
+     * @param count     number of geofences to select
+     * @param latitude  latitude of reference location
+     * @param longitude longitude of reference location
+     * @return array of selected geofences, in the same relative order as in {@code geofences}
+     */
+    @NonNull
+    static JSONArray selectNearest(@NonNull JSONArray geofences, int count, double latitude,
+                                   double longitude) {
+
+        int length = geofences.length();
+
+        if (count <= 0) {
+            return new JSONArray();
+        }
+
+        if (count >= length) {
+            return Utils.subArray(geofences, 0, length);
+        }
+
+        double[] distances = new double[length];
+        int[] indices = new int[length];
+
+        for (int i = 0; i < length; i++) {
+            indices[i] = i;
+            distances[i] = Double.POSITIVE_INFINITY;
+
+            JSONObject geofence = geofences.optJSONObject(i);
+            if (geofence != null) {
+                double fenceLatitude = geofence.optDouble("lat");
+                double fenceLongitude = geofence.optDouble("lng");
+                if (!Double.isNaN(fenceLatitude) && !Double.isNaN(fenceLongitude)) {
+                    distances[i] = distanceInMeters(latitude, longitude, fenceLatitude, fenceLongitude);
+                }
+            }
+        }
+
+        select(indices, distances, count);
+
+        // keep original order of selected geofences, so that an unchanged selection produces
+        // an identical list
+        int[] selected = Arrays.copyOf(indices, count);
+        Arrays.sort(selected);
+
+        JSONArray nearest = new JSONArray();
+        for (int index : selected) {
+            nearest.put(geofences.opt(index));
+        }
+        return nearest;
+    }
+
+    /**
+     * Selects geofences out of a list which is offered one geofence at a time, e.g. while it is
+     * being parsed, holding only selected geofences in memory. Geofences are ranked the same way
+     * as by {@link #selectNearest(JSONArray, int, double, double)}, or kept in order of the list
+     * when reference location is not known.
+     */
+    static class Selection {
+
+        private final int count;
+        private final boolean hasLocation;
+        private final double latitude;
+        private final double longitude;
+
+        /**
+         * Bounded max heap of selected geofences, farthest first
+         */
+        @NonNull
+        private final PriorityQueue<Candidate> candidates;
+        private int offeredCount;
+
+        /**
+         * Selects first {@code count} geofences of the list
+         */
+        Selection(int count) {
+            this(count, false, 0, 0);
+        }
+
+        /**
+         * Selects {@code count} geofences nearest to given reference location
+         */
+        Selection(int count, double latitude, double longitude) {
+            this(count, true, latitude, longitude);
+        }
+
+        private Selection(int count, boolean hasLocation, double latitude, double longitude) {
+            this.count = Math.max(count, 0);
+            this.hasLocation = hasLocation;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            // count is unbounded for software engine, heap grows with the list then
+            this.candidates = new PriorityQueue<>(Math.max(Math.min(this.count, 64), 1),
+                    new Comparator<Candidate>() {
+                        @Override
+                        public int compare(Candidate first, Candidate second) {
+                            // farther, or later in list when equally far, comes first
+                            int comparison = Double.compare(second.distance, first.distance);
+                            return comparison != 0 ? comparison
+                                    : (first.index < second.index ? 1
+                                            : (first.index == second.index ? 0 : -1));
+                        }
+                    });
+        }
+
+        /**
+         * Offers next geofence of the list
+         */
+        void offer(@NonNull JSONObject geofence) {
+            int index = offeredCount++;
+            if (count == 0) {
+                return;
+            }
+
+            if (!hasLocation) {
+                if (candidates.size() < count) {
+                    candidates.add(new Candidate(geofence, index, 0));
+                }
+                return;
+            }
+
+            double distance = Double.POSITIVE_INFINITY;
+            double fenceLatitude = geofence.optDouble("lat");
+            double fenceLongitude = geofence.optDouble("lng");
+            if (!Double.isNaN(fenceLatitude) && !Double.isNaN(fenceLongitude)) {
+                distance = distanceInMeters(latitude, longitude, fenceLatitude, fenceLongitude);
+            }
+
+            if (candidates.size() < count) {
+                candidates.add(new Candidate(geofence, index, distance));
+            } else if (distance < candidates.peek().distance) {
+                candidates.poll();
+                candidates.add(new Candidate(geofence, index, distance));
+            }
+        }
+
+        /**
+         * @return number of geofences offered so far
+         */
+        int getOfferedCount() {
+            return offeredCount;
+        }
+
+        /**
+         * @return array of selected geofences, in the same relative order as they were offered
+         */
+        @NonNull
+        JSONArray toJSONArray() {
+            Candidate[] selected = candidates.toArray(new Candidate[0]);
+            Arrays.sort(selected, new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate first, Candidate second) {
+                    return first.index < second.index ? -1 : (first.index == second.index ? 0 : 1);
+                }
+            });
+
+            JSONArray geofences = new JSONArray();
+            for (Candidate candidate : selected) {
+                geofences.put(candidate.geofence);
+            }
+            return geofences;
+        }
+
+        private static class Candidate {
+
+            @NonNull
+            final JSONObject geofence;
+            final int index;
+            final double distance;
+
+            Candidate(@NonNull JSONObject geofence, int index, double distance) {
+                this.geofence = geofence;
+                this.index = index;
+                this.distance = distance;
+            }
+        }
+    }
+
+    /**
+     * Great-circle distance between two points using haversine formula
+     *
+     * @return distance in meters
+     */
+    static double distanceInMeters(double fromLatitude, double fromLongitude, double toLatitude,
+                                   double toLongitude) {
+        double deltaLatitude = Math.toRadians(toLatitude - fromLatitude);
+        double deltaLongitude = Math.toRadians(toLongitude - fromLongitude);
+
+        double sinLatitude = Math.sin(deltaLatitude / 2);
+        double sinLongitude = Math.sin(deltaLongitude / 2);
+
+        double a = sinLatitude * sinLatitude + Math.cos(Math.toRadians(fromLatitude))
+                * Math.cos(Math.toRadians(toLatitude)) * sinLongitude * sinLongitude;
+
+        return 2 * EARTH_RADIUS_IN_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Rearranges {@code indices} so that first {@code count} entries point to the smallest
+     * distances, in no particular order
+     */
+    private static void select(int[] indices, double[] distances, int count) {
+        int left = 0;
+        int right = indices.length - 1;
+        int target = count - 1;
+
+        while (left < right) {
+            int pivotIndex = partition(indices, distances, left, right, left + (right - left) / 2);
+
+            if (pivotIndex == target) {
+                return;
+            } else if (pivotIndex < target) {
+                left = pivotIndex + 1;
+            } else {
+                right = pivotIndex - 1;
+            }
+        }
+    }
+
+    /**
+     * Lomuto partition of {@code indices[left..right]} around distance of {@code pivotIndex}
+     *
+     * @return final position of pivot
+     */
+    private static int partition(int[] indices, double[] distances, int left, int right,
+                                 int pivotIndex) {
+        int pivot = indices[pivotIndex];
+        swap(indices, pivotIndex, right);
+
+        int storeIndex = left;
+        for (int i = left; i < right; i++) {
+            if (isCloser(indices[i], pivot, distances)) {
+                swap(indices, storeIndex, i);
+                storeIndex++;
+            }
+        }
+        swap(indices, right, storeIndex);
+        return storeIndex;
+    }
+
+    /**
+     * Ties are broken by position in original list, so that partitioning stays balanced when many
+     * geofences are equally far, e.g. geofences without valid coordinates
+     */
+    private static boolean isCloser(int index, int otherIndex, double[] distances) {
+        return distances[index] < distances[otherIndex]
+                || (distances[index] == distances[otherIndex] && index < otherIndex);
+    }
+
+    private static void swap(int[] indices, int i, int j) {
+        int temp = indices[i];
+        indices[i] = indices[j];
+        indices[j] = temp;
+    }
+}
@@ -0,0 +1,889 @@
+package com.clevertap.android.geofence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.clevertap.android.geofence.model.CTGeofence;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read-only spatial index over full geofence catalog received from server, supporting k-nearest
+ * and radius queries without scanning the catalog.<br>
+ * Geofence centers are converted to points on unit sphere and kept in an implicit k-d tree, stored
+ * in primitive arrays ordered so that median of every range is the node splitting it. Straight line
+ * distance between points on unit sphere grows with great-circle distance, so queries prune
+ * subtrees exactly, including near poles and across antimeridian.
+ * <br><br>
+ * Index is persisted to {@link CTGeofenceConstants#INDEX_FILE_NAME} as a binary file holding the
+ * arrays followed by raw json records, which are read from file only on demand so that full
+ * catalog never has to be held in memory as json. Index over geofences already held in memory can
+ * also be created without a file, in which case json records are not available.
+ */
+class GeofenceSpatialIndex {
+
+    private static final int MAGIC = 0x43544749; // CTGI
+    private static final int VERSION = 1;
+
+    /**
+     * Ranges of at most this size are scanned linearly instead of being split further
+     */
+    private static final int LEAF_SIZE = 8;
+
+    private static final double EARTH_RADIUS_IN_METERS = 6371008.8;
+
+    private final int[] ids;
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final int[] radii;
+
+    /**
+     * Split axis of node at median of each range, 0 for x, 1 for y and 2 for z
+     */
+    private final byte[] axes;
+    private final double[][] points;
+    private final int maxRadius;
+
+    @Nullable
+    private final File file;
+    private final long recordsStart;
+    private final long[] recordOffsets;
+
+    private GeofenceSpatialIndex(int[] ids, double[] latitudes, double[] longitudes, int[] radii,
+                                 byte[] axes, @Nullable File file, long recordsStart,
+                                 long[] recordOffsets) {
+        this.ids = ids;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.radii = radii;
+        this.axes = axes;
+        this.file = file;
+        this.recordsStart = recordsStart;
+        this.recordOffsets = recordOffsets;
+        this.points = toPoints(latitudes, longitudes, ids.length);
+
+        int largestRadius = 0;
+        for (int radius : radii) {
+            largestRadius = Math.max(largestRadius, radius);
+        }
+        this.maxRadius = largestRadius;
+    }
+
+    /**
+     * Builds index over provided geofences and writes it to given file. Geofences without valid id,
+     * latitude or longitude are skipped.
+     *
+     * @param geofences array of geofence objects
+     * @param file      file to write index to, replaced only once index is completely written
+     * @return an instance of {@link GeofenceSpatialIndex} backed by given file
+     * @throws IOException if index could not be written
+     */
+    @WorkerThread
+    @NonNull
+    static GeofenceSpatialIndex build(@NonNull JSONArray geofences, @NonNull File file)
+            throws IOException {
+
+        Builder builder = new Builder(file);
+        try {
+            for (int i = 0; i < geofences.length(); i++) {
+                JSONObject geofence = geofences.optJSONObject(i);
+                if (geofence != null) {
+                    builder.add(geofence);
+                }
+            }
+            return builder.build();
+        } finally {
+            builder.close();
+        }
+    }
+
+    /**
+     * Creates index over geofences held in memory, without writing it to file. Json records are not
+     * available for such index.
+     *
+     * @param latitudes  latitudes of geofence centers
+     * @param longitudes longitudes of geofence centers, same length as {@code latitudes}
+     * @param radii      radii of geofences, same length as {@code latitudes}
+     * @return an instance of {@link GeofenceSpatialIndex} whose ids are positions in given arrays
+     */
+    @NonNull
+    static GeofenceSpatialIndex create(@NonNull double[] latitudes, @NonNull double[] longitudes,
+                                       @NonNull int[] radii) {
+
+        int count = latitudes.length;
+        byte[] axes = new byte[count];
+        int[] order = arrange(toPoints(latitudes, longitudes, count), axes, count);
+
+        double[] arrangedLatitudes = new double[count];
+        double[] arrangedLongitudes = new double[count];
+        int[] arrangedRadii = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            arrangedLatitudes[i] = latitudes[order[i]];
+            arrangedLongitudes[i] = longitudes[order[i]];
+            arrangedRadii[i] = radii[order[i]];
+        }
+
+        return new GeofenceSpatialIndex(order, arrangedLatitudes, arrangedLongitudes, arrangedRadii,
+                axes, null, 0, new long[count + 1]);
+    }
+
+    /**
+     * Loads index previously written by {@link #build(JSONArray, File)}. Json records are not
+     * loaded into memory.
+     *
+     * @param file index file
+     * @return an instance of {@link GeofenceSpatialIndex}, null if file does not exist
+     * @throws IOException if file could not be read or is not a valid index
+     */
+    @WorkerThread
+    @Nullable
+    static GeofenceSpatialIndex load(@NonNull File file) throws IOException {
+
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Unsupported geofence index format");
+            }
+
+            int count = in.readInt();
+
+            int[] ids = new int[count];
+            double[] latitudes = new double[count];
+            double[] longitudes = new double[count];
+            int[] radii = new int[count];
+            byte[] axes = new byte[count];
+            long[] recordOffsets = new long[count + 1];
+
+            for (int i = 0; i < count; i++) {
+                ids[i] = in.readInt();
+            }
+            for (int i = 0; i < count; i++) {
+                latitudes[i] = in.readDouble();
+            }
+            for (int i = 0; i < count; i++) {
+                longitudes[i] = in.readDouble();
+            }
+            for (int i = 0; i < count; i++) {
+                radii[i] = in.readInt();
+            }
+            in.readFully(axes);
+
+            long recordsStart = getHeaderSize(count);
+
+            // skip json records, only their offsets are needed
+            long recordsLength = file.length() - recordsStart - 8L * (count + 1);
+            long skipped = 0;
+            while (skipped < recordsLength) {
+                long n = in.skip(recordsLength - skipped);
+                if (n <= 0) {
+                    throw new IOException("Unexpected end of geofence index");
+                }
+                skipped += n;
+            }
+
+            for (int i = 0; i <= count; i++) {
+                recordOffsets[i] = in.readLong();
+            }
+
+            return new GeofenceSpatialIndex(ids, latitudes, longitudes, radii, axes, file,
+                    recordsStart, recordOffsets);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return number of indexed geofences
+     */
+    int size() {
+        return ids.length;
+    }
+
+    int getId(int position) {
+        return ids[position];
+    }
+
+    double getLatitude(int position) {
+        return latitudes[position];
+    }
+
+    double getLongitude(int position) {
+        return longitudes[position];
+    }
+
+    int getRadius(int position) {
+        return radii[position];
+    }
+
+    /**
+     * Finds {@code count} geofences nearest to given location
+     *
+     * @param latitude  latitude of query location
+     * @param longitude longitude of query location
+     * @param count     maximum number of geofences to return
+     * @return positions of nearest geofences, sorted by distance in ascending order
+     */
+    @NonNull
+    int[] nearest(double latitude, double longitude, int count) {
+
+        count = Math.min(count, ids.length);
+        if (count <= 0) {
+            return new int[0];
+        }
+
+        Matches matches = new Matches(count);
+        searchNearest(toPoint(latitude, longitude), 0, ids.length, matches);
+        return matches.sorted();
+    }
+
+    /**
+     * Finds geofences whose center lies within given distance of given location
+     *
+     * @param latitude       latitude of query location
+     * @param longitude      longitude of query location
+     * @param radiusInMeters query radius
+     * @return positions of geofences within radius, sorted by distance in ascending order
+     */
+    @NonNull
+    int[] withinRadius(double latitude, double longitude, double radiusInMeters) {
+
+        if (ids.length == 0 || radiusInMeters < 0) {
+            return new int[0];
+        }
+
+        double chord = 2 * Math.sin(Math.min(Math.PI, radiusInMeters / EARTH_RADIUS_IN_METERS) / 2);
+
+        Matches matches = new Matches(16);
+        searchRadius(toPoint(latitude, longitude), chord * chord, 0, ids.length, matches);
+        return matches.sorted();
+    }
+
+    /**
+     * Finds geofences whose circle, enlarged by given margin, contains given location
+     *
+     * @param latitude       latitude of query location
+     * @param longitude      longitude of query location
+     * @param marginInMeters distance added to radius of every geofence
+     * @return positions of containing geofences, sorted by distance in ascending order
+     */
+    @NonNull
+    int[] containing(double latitude, double longitude, double marginInMeters) {
+
+        int[] candidates = withinRadius(latitude, longitude, maxRadius + marginInMeters);
+        if (candidates.length == 0) {
+            return candidates;
+        }
+
+        double[] query = toPoint(latitude, longitude);
+        int[] positions = new int[candidates.length];
+        int count = 0;
+
+        for (int position : candidates) {
+            double chord = 2 * Math.sin(Math.min(Math.PI,
+                    (radii[position] + marginInMeters) / EARTH_RADIUS_IN_METERS) / 2);
+            if (squaredDistance(query, position) <= chord * chord) {
+                positions[count++] = position;
+            }
+        }
+        return Arrays.copyOf(positions, count);
+    }
+
+    /**
+     * Finds distance from given location to nearest geofence boundary, whether device is outside
+     * or inside the geofence
+     *
+     * @param latitude            latitude of query location
+     * @param longitude           longitude of query location
+     * @param maxDistanceInMeters distance beyond which boundaries are not searched
+     * @return distance in meters, {@link Double#POSITIVE_INFINITY} if no boundary lies within
+     * {@code maxDistanceInMeters}
+     */
+    double distanceToNearestBoundary(double latitude, double longitude,
+                                     double maxDistanceInMeters) {
+
+        int[] candidates = withinRadius(latitude, longitude, maxRadius + maxDistanceInMeters);
+
+        double[] query = toPoint(latitude, longitude);
+        double nearestDistance = Double.POSITIVE_INFINITY;
+
+        for (int position : candidates) {
+            double chord = Math.sqrt(squaredDistance(query, position));
+            double centerDistance = 2 * EARTH_RADIUS_IN_METERS * Math.asin(Math.min(1, chord / 2));
+            nearestDistance = Math.min(nearestDistance, Math.abs(centerDistance - radii[position]));
+        }
+
+        return nearestDistance <= maxDistanceInMeters ? nearestDistance : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Reads json records of given geofences from index file
+     *
+     * @param positions positions of geofences as returned by queries
+     * @return array of geofence objects in the same order as {@code positions}
+     * @throws IOException if index file could not be read
+     */
+    @WorkerThread
+    @NonNull
+    JSONArray getRecords(@NonNull int[] positions) throws IOException {
+
+        JSONArray records = new JSONArray();
+        if (positions.length == 0) {
+            return records;
+        }
+
+        if (file == null) {
+            throw new IOException("Geofence index is not backed by a file");
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            for (int position : positions) {
+                byte[] record = new byte[(int) (recordOffsets[position + 1] - recordOffsets[position])];
+                randomAccessFile.seek(recordsStart + recordOffsets[position]);
+                randomAccessFile.readFully(record);
+                try {
+                    records.put(new JSONObject(new String(record, "UTF-8")));
+                } catch (JSONException e) {
+                    throw new IOException("Corrupt geofence record " + ids[position]);
+                }
+            }
+        } finally {
+            randomAccessFile.close();
+        }
+        return records;
+    }
+
+    /**
+     * Converts given geofences to {@link CTGeofence} using indexed geometry only, without reading
+     * json records from file
+     *
+     * @param positions positions of geofences as returned by queries
+     * @return list of {@link CTGeofence} in the same order as {@code positions}
+     */
+    @NonNull
+    List<CTGeofence> toGeofences(@NonNull int[] positions) {
+        JSONArray geofences = new JSONArray();
+        try {
+            for (int position : positions) {
+                geofences.put(new JSONObject()
+                        .put(CTGeofenceConstants.KEY_ID, ids[position])
+                        .put("lat", latitudes[position])
+                        .put("lng", longitudes[position])
+                        .put("r", radii[position]));
+            }
+            return CTGeofence.from(new JSONObject().put(CTGeofenceConstants.KEY_GEOFENCES, geofences));
+        } catch (JSONException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    private void searchNearest(double[] query, int from, int to, Matches matches) {
+
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                matches.offer(i, squaredDistance(query, i));
+            }
+            return;
+        }
+
+        int median = (from + to) >>> 1;
+        int axis = axes[median];
+        double difference = query[axis] - points[axis][median];
+
+        matches.offer(median, squaredDistance(query, median));
+
+        if (difference < 0) {
+            searchNearest(query, from, median, matches);
+            if (!matches.isFull() || difference * difference < matches.farthest()) {
+                searchNearest(query, median + 1, to, matches);
+            }
+        } else {
+            searchNearest(query, median + 1, to, matches);
+            if (!matches.isFull() || difference * difference < matches.farthest()) {
+                searchNearest(query, from, median, matches);
+            }
+        }
+    }
+
+    private void searchRadius(double[] query, double squaredChord, int from, int to,
+                              Matches matches) {
+
+        if (to - from <= LEAF_SIZE) {
+            for (int i = from; i < to; i++) {
+                double distance = squaredDistance(query, i);
+                if (distance <= squaredChord) {
+                    matches.add(i, distance);
+                }
+            }
+            return;
+        }
+
+        int median = (from + to) >>> 1;
+        int axis = axes[median];
+        double difference = query[axis] - points[axis][median];
+
+        double distance = squaredDistance(query, median);
+        if (distance <= squaredChord) {
+            matches.add(median, distance);
+        }
+
+        if (difference <= 0 || difference * difference <= squaredChord) {
+            searchRadius(query, squaredChord, from, median, matches);
+        }
+        if (difference >= 0 || difference * difference <= squaredChord) {
+            searchRadius(query, squaredChord, median + 1, to, matches);
+        }
+    }
+
+    private double squaredDistance(double[] query, int position) {
+        double dx = query[0] - points[0][position];
+        double dy = query[1] - points[1][position];
+        double dz = query[2] - points[2][position];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Arranges given points in k-d tree order
+     *
+     * @return positions of points in k-d tree order
+     */
+    private static int[] arrange(double[][] points, byte[] axes, int count) {
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        arrange(order, points, axes, 0, count);
+        return order;
+    }
+
+    /**
+     * Recursively reorders {@code order[from..to)} so that median of every range is split node of
+     * the range along axis of largest spread
+     */
+    private static void arrange(int[] order, double[][] points, byte[] axes, int from, int to) {
+
+        if (to - from <= LEAF_SIZE) {
+            return;
+        }
+
+        int axis = 0;
+        double largestSpread = -1;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.MAX_VALUE, max = -Double.MAX_VALUE;
+            for (int i = from; i < to; i++) {
+                double value = points[a][order[i]];
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+            }
+            if (max - min > largestSpread) {
+                largestSpread = max - min;
+                axis = a;
+            }
+        }
+
+        int median = (from + to) >>> 1;
+        select(order, points[axis], from, to - 1, median);
+        axes[median] = (byte) axis;
+
+        arrange(order, points, axes, from, median);
+        arrange(order, points, axes, median + 1, to);
+    }
+
+    /**
+     * Quickselect of {@code order[left..right]} by given coordinate, so that {@code order[target]}
+     * is in its sorted position
+     */
+    private static void select(int[] order, double[] values, int left, int right, int target) {
+        while (left < right) {
+            int pivot = order[(left + right) >>> 1];
+            double pivotValue = values[pivot];
+            int i = left, j = right;
+            while (i <= j) {
+                while (values[order[i]] < pivotValue) {
+                    i++;
+                }
+                while (values[order[j]] > pivotValue) {
+                    j--;
+                }
+                if (i <= j) {
+                    int temp = order[i];
+                    order[i] = order[j];
+                    order[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (target <= j) {
+                right = j;
+            } else if (target >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    @NonNull
+    private static double[] toPoint(double latitude, double longitude) {
+        double latitudeRadians = Math.toRadians(latitude);
+        double longitudeRadians = Math.toRadians(longitude);
+        return new double[]{
+                Math.cos(latitudeRadians) * Math.cos(longitudeRadians),
+                Math.cos(latitudeRadians) * Math.sin(longitudeRadians),
+                Math.sin(latitudeRadians)
+        };
+    }
+
+    @NonNull
+    private static double[][] toPoints(double[] latitudes, double[] longitudes, int count) {
+        double[][] points = new double[3][count];
+        for (int i = 0; i < count; i++) {
+            double[] point = toPoint(latitudes[i], longitudes[i]);
+            points[0][i] = point[0];
+            points[1][i] = point[1];
+            points[2][i] = point[2];
+        }
+        return points;
+    }
+
+    private static long getHeaderSize(int count) {
+        return 4 + 4 + 4 // magic, version, count
+                + 4L * count + 8L * count + 8L * count + 4L * count // ids, latitudes, longitudes, radii
+                + count; // axes
+    }
+
+    /**
+     * Writes index one geofence at a time, so that geofences do not have to be held in memory as
+     * json until index is complete. Json records are spooled to a temporary file in order of
+     * addition and copied in k-d tree order once all geofences are added. Only geometry of added
+     * geofences is kept in memory.
+     */
+    static class Builder implements Closeable {
+
+        @NonNull
+        private final File file;
+        @NonNull
+        private final File recordsFile;
+        @Nullable
+        private DataOutputStream recordsOut;
+
+        private int count;
+        private int[] ids = new int[16];
+        private double[] latitudes = new double[16];
+        private double[] longitudes = new double[16];
+        private int[] radii = new int[16];
+        private long[] recordStarts = new long[17];
+
+        /**
+         * @param file file to write index to, replaced only once index is completely written
+         * @throws IOException if temporary file could not be created
+         */
+        @WorkerThread
+        Builder(@NonNull File file) throws IOException {
+            this.file = file;
+            this.recordsFile = new File(file.getPath() + ".records");
+
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Failed to create directory " + parent);
+            }
+
+            recordsOut = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(recordsFile)));
+        }
+
+        /**
+         * Adds geofence to index, geofences without valid id, latitude or longitude are skipped
+         *
+         * @param geofence geofence object
+         * @return true if geofence is added
+         * @throws IOException if geofence could not be written to temporary file
+         */
+        @WorkerThread
+        boolean add(@NonNull JSONObject geofence) throws IOException {
+            if (recordsOut == null) {
+                throw new IOException("Geofence index builder is closed");
+            }
+
+            if (!geofence.has(CTGeofenceConstants.KEY_ID)) {
+                return false;
+            }
+            double latitude = geofence.optDouble("lat");
+            double longitude = geofence.optDouble("lng");
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)
+                    || Math.abs(latitude) > 90 || Math.abs(longitude) > 180) {
+                return false;
+            }
+
+            if (count == ids.length) {
+                int capacity = count * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                radii = Arrays.copyOf(radii, capacity);
+                recordStarts = Arrays.copyOf(recordStarts, capacity + 1);
+            }
+
+            byte[] record = geofence.toString().getBytes("UTF-8");
+            recordsOut.write(record);
+
+            ids[count] = geofence.optInt(CTGeofenceConstants.KEY_ID);
+            latitudes[count] = latitude;
+            longitudes[count] = longitude;
+            radii[count] = geofence.optInt("r");
+            recordStarts[count + 1] = recordStarts[count] + record.length;
+            count++;
+            return true;
+        }
+
+        /**
+         * @return number of geofences added so far
+         */
+        int size() {
+            return count;
+        }
+
+        /**
+         * Writes index of added geofences to file. Builder is closed afterwards.
+         *
+         * @return an instance of {@link GeofenceSpatialIndex} backed by file of this builder
+         * @throws IOException if index could not be written
+         */
+        @WorkerThread
+        @NonNull
+        GeofenceSpatialIndex build() throws IOException {
+            if (recordsOut == null) {
+                throw new IOException("Geofence index builder is closed");
+            }
+            recordsOut.close();
+            recordsOut = null;
+
+            // arrange geofences in k-d tree order
+            byte[] axes = new byte[count];
+            int[] order = arrange(toPoints(latitudes, longitudes, count), axes, count);
+
+            int[] arrangedIds = new int[count];
+            double[] arrangedLatitudes = new double[count];
+            double[] arrangedLongitudes = new double[count];
+            int[] arrangedRadii = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                arrangedIds[i] = ids[order[i]];
+                arrangedLatitudes[i] = latitudes[order[i]];
+                arrangedLongitudes[i] = longitudes[order[i]];
+                arrangedRadii[i] = radii[order[i]];
+            }
+
+            long[] recordOffsets = new long[count + 1];
+            long recordsStart = getHeaderSize(count);
+
+            File tempFile = new File(file.getPath() + ".tmp");
+
+            RandomAccessFile records = new RandomAccessFile(recordsFile, "r");
+            FileOutputStream fileOut = new FileOutputStream(tempFile);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(count);
+                for (int id : arrangedIds) {
+                    out.writeInt(id);
+                }
+                for (double latitude : arrangedLatitudes) {
+                    out.writeDouble(latitude);
+                }
+                for (double longitude : arrangedLongitudes) {
+                    out.writeDouble(longitude);
+                }
+                for (int radius : arrangedRadii) {
+                    out.writeInt(radius);
+                }
+                out.write(axes);
+
+                long offset = 0;
+                byte[] record = new byte[0];
+                for (int i = 0; i < count; i++) {
+                    int length = (int) (recordStarts[order[i] + 1] - recordStarts[order[i]]);
+                    if (record.length < length) {
+                        record = new byte[length];
+                    }
+                    records.seek(recordStarts[order[i]]);
+                    records.readFully(record, 0, length);
+                    out.write(record, 0, length);
+                    recordOffsets[i] = offset;
+                    offset += length;
+                }
+                recordOffsets[count] = offset;
+
+                for (long recordOffset : recordOffsets) {
+                    out.writeLong(recordOffset);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+                records.close();
+                //noinspection ResultOfMethodCallIgnored
+                recordsFile.delete();
+            }
+
+            if (!tempFile.renameTo(file)) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+                throw new IOException("Failed to replace " + file);
+            }
+
+            return new GeofenceSpatialIndex(arrangedIds, arrangedLatitudes, arrangedLongitudes,
+                    arrangedRadii, axes, file, recordsStart, recordOffsets);
+        }
+
+        /**
+         * Discards temporary file if index was not built
+         */
+        @Override
+        public void close() {
+            if (recordsOut != null) {
+                try {
+                    recordsOut.close();
+                } catch (IOException e) {
+                    // temporary file is deleted anyway
+                }
+                recordsOut = null;
+            }
+            //noinspection ResultOfMethodCallIgnored
+            recordsFile.delete();
+        }
+    }
+
+    /**
+     * Positions matched by a query along with their squared distance from query point. Holds either
+     * a bounded max heap of nearest positions or an unbounded list of positions within a radius.
+     */
+    private static class Matches {
+
+        private int[] positions;
+        private double[] distances;
+        private int size;
+
+        Matches(int capacity) {
+            positions = new int[capacity];
+            distances = new double[capacity];
+        }
+
+        boolean isFull() {
+            return size == positions.length;
+        }
+
+        double farthest() {
+            return distances[0];
+        }
+
+        /**
+         * Adds position to bounded heap, replacing farthest position if heap is full
+         */
+        void offer(int position, double distance) {
+            if (size < positions.length) {
+                positions[size] = position;
+                distances[size] = distance;
+                siftUp(size++);
+            } else if (distance < distances[0]) {
+                positions[0] = position;
+                distances[0] = distance;
+                siftDown(0, size);
+            }
+        }
+
+        /**
+         * Adds position to unbounded list
+         */
+        void add(int position, double distance) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            positions[size] = position;
+            distances[size] = distance;
+            size++;
+        }
+
+        /**
+         * @return matched positions sorted by distance in ascending order
+         */
+        @NonNull
+        int[] sorted() {
+            // heapify and pop from farthest to nearest
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i, size);
+            }
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = positions[0];
+                swap(0, i);
+                siftDown(0, i);
+            }
+            return result;
+        }
+
+        private void siftUp(int index) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (distances[parent] >= distances[index]) {
+                    return;
+                }
+                swap(parent, index);
+                index = parent;
+            }
+        }
+
+        private void siftDown(int index, int heapSize) {
+            while (true) {
+                int largest = index;
+                int left = 2 * index + 1;
+                int right = left + 1;
+                if (left < heapSize && distances[left] > distances[largest]) {
+                    largest = left;
+                }
+                if (right < heapSize && distances[right] > distances[largest]) {
+                    largest = right;
+                }
+                if (largest == index) {
+                    return;
+                }
+                swap(index, largest);
+                index = largest;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int position = positions[i];
+            positions[i] = positions[j];
+            positions[j] = position;
+            double distance = distances[i];
+            distances[i] = distances[j];
+            distances[j] = distance;
+        }
+    }
+}
@@ -3,12 +3,26 @@ package com.clevertap.android.geofence;
 import android.content.Context;
 import android.content.SharedPreferences;
 
+import androidx.annotation.NonNull;
+
 public final class GeofenceStorageHelper {
 
+    private static final Object LOCATION_STATE_LOCK = new Object();
+
+    /**
+     * In memory copy of last persisted {@link LocationState}, null until read
+     */
+    private static LocationState locationState;
+
+    /**
+     * Preferences {@link #locationState} was read from or written to
+     */
+    private static SharedPreferences locationStatePrefs;
+
     static void putDouble(Context context, String key, double value) {
         SharedPreferences prefs = getPreferences(context);
         SharedPreferences.Editor editor = prefs.edit().putLong(key, Double.doubleToRawLongBits(value));
-        persist(editor);
+        persistInvalidatingLocationState(editor);
     }
 
     static double getDouble(Context context, String key, double defaultValue) {
@@ -22,13 +36,67 @@ public final class GeofenceStorageHelper {
     static void putLong(Context context, String key, long value) {
         SharedPreferences prefs = getPreferences(context);
         SharedPreferences.Editor editor = prefs.edit().putLong(key, value);
-        persist(editor);
+        persistInvalidatingLocationState(editor);
     }
 
     static long getLong(Context context, String key, long defaultValue) {
         return getPreferences(context).getLong(key, defaultValue);
     }
 
+    /**
+     * Returns last location sent to CleverTap. Preferences are read only on first call, later
+     * calls return in memory copy kept up to date by {@link #putLocationState(Context, LocationState)}
+     *
+     * @param context application {@link Context}
+     * @return last stored {@link LocationState}, {@link LocationState#NONE} if none is stored
+     */
+    @NonNull
+    static LocationState getLocationState(Context context) {
+        SharedPreferences prefs = getPreferences(context);
+
+        synchronized (LOCATION_STATE_LOCK) {
+            if (locationState == null || locationStatePrefs != prefs) {
+                locationState = new LocationState(
+                        getDouble(context, CTGeofenceConstants.KEY_LATITUDE,
+                                CTGeofenceConstants.DEFAULT_LATITUDE),
+                        getDouble(context, CTGeofenceConstants.KEY_LONGITUDE,
+                                CTGeofenceConstants.DEFAULT_LONGITUDE),
+                        getLong(context, CTGeofenceConstants.KEY_LAST_LOCATION_EP, 0));
+                locationStatePrefs = prefs;
+            }
+            return locationState;
+        }
+    }
+
+    /**
+     * Stores latitude, longitude and timestamp of given state together with a single commit, so
+     * that other readers of preferences, in this or another process, never see them partially
+     * updated
+     *
+     * @param context application {@link Context}
+     * @param state   {@link LocationState} to store
+     */
+    static void putLocationState(Context context, @NonNull LocationState state) {
+        SharedPreferences prefs = getPreferences(context);
+
+        synchronized (LOCATION_STATE_LOCK) {
+            if (state.equals(locationState) && locationStatePrefs == prefs) {
+                return;
+            }
+
+            SharedPreferences.Editor editor = prefs.edit()
+                    .putLong(CTGeofenceConstants.KEY_LATITUDE,
+                            Double.doubleToRawLongBits(state.latitude))
+                    .putLong(CTGeofenceConstants.KEY_LONGITUDE,
+                            Double.doubleToRawLongBits(state.longitude))
+                    .putLong(CTGeofenceConstants.KEY_LAST_LOCATION_EP, state.timestampMillis);
+
+            // on failure, state is read again from preferences next time
+            locationState = persist(editor) ? state : null;
+            locationStatePrefs = prefs;
+        }
+    }
+
     static SharedPreferences getPreferences(Context context, String namespace) {
         String path = CTGeofenceConstants.GEOFENCE_PREF_STORAGE_TAG;
 
@@ -42,11 +110,23 @@ public final class GeofenceStorageHelper {
         return getPreferences(context, null);
     }
 
-    static void persist(final SharedPreferences.Editor editor) {
+    static boolean persist(final SharedPreferences.Editor editor) {
         try {
-            editor.commit();
+            return editor.commit();
         } catch (Throwable t) {
             CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, "CRITICAL: Failed to persist shared preferences!");
+            return false;
+        }
+    }
+
+    /**
+     * Persists a change made to any key, after which in memory {@link LocationState} is read
+     * again from preferences
+     */
+    private static void persistInvalidatingLocationState(final SharedPreferences.Editor editor) {
+        synchronized (LOCATION_STATE_LOCK) {
+            persist(editor);
+            locationState = null;
         }
     }
 }
\ No newline at end of file
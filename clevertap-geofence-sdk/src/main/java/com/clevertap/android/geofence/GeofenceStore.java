@@ -0,0 +1,554 @@
+package com.clevertap.android.geofence;
+
+import android.content.Context;
+import android.location.Location;
+import android.util.SparseArray;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * In-memory view of the geofences registered to OS, indexed by geofence id.<br>
+ * Geofences are memory mapped from {@link CTGeofenceConstants#CACHED_BINARY_FILE_NAME} only once
+ * per process and replaced as a whole whenever {@link GeofenceUpdateTask} writes a new list, so
+ * that lookups on geofence transitions decode only the triggered geofence and do not parse the
+ * whole list. Small changes to the list are appended to {@link GeofenceJournal} in
+ * {@link CTGeofenceConstants#JOURNAL_FILE_NAME} instead of rewriting the binary file, and are
+ * applied again on load. Geofences stored by previous versions as json in
+ * {@link CTGeofenceConstants#CACHED_FILE_NAME} are migrated to binary file on first load. Lookups
+ * read the published snapshot without locking, so they can run concurrently with updates.<br>
+ * It also holds {@link GeofenceSpatialIndex} over full geofence catalog received from server, loaded
+ * from {@link CTGeofenceConstants#INDEX_FILE_NAME} on first query.
+ * This class is singleton, so only one copy of the geofences will be held in memory.
+ */
+class GeofenceStore {
+
+    /**
+     * Journal is merged into binary file once it grows beyond this size, or beyond size of binary
+     * file if that is larger
+     */
+    static final long JOURNAL_COMPACTION_SIZE = 16 * 1024;
+
+    private static final String KEY_JOURNAL_IDS = "ids";
+    private static final String KEY_JOURNAL_LIST = "list";
+
+    private static GeofenceStore geofenceStore;
+
+    /**
+     * Geofences registered to OS, {@code null} until loaded from file. Instances are immutable,
+     * a new list is always swapped in as a whole.
+     */
+    @Nullable
+    private volatile GeofenceCache geofences;
+
+    /**
+     * True if {@link #geofences} is what binary file and journal hold, so that changes to it can
+     * be journaled
+     */
+    private boolean isPersisted;
+
+    /**
+     * Index over full geofence catalog, {@code null} if not yet loaded or no catalog is stored
+     */
+    @Nullable
+    private volatile GeofenceSpatialIndex catalogIndex;
+    private volatile boolean isCatalogIndexLoaded;
+
+    private GeofenceStore() {
+    }
+
+    static GeofenceStore getInstance() {
+        if (geofenceStore == null) {
+            synchronized (GeofenceStore.class) {
+                if (geofenceStore == null) {
+                    geofenceStore = new GeofenceStore();
+                }
+            }
+        }
+        return geofenceStore;
+    }
+
+    /**
+     * Finds geofence with given request id of {@link com.google.android.gms.location.Geofence}.
+     * Loads geofences from file if they are not yet in memory.
+     *
+     * @param context   application {@link Context}
+     * @param requestId request id of triggered geofence
+     * @return a new {@link JSONObject} of stored geofence, null if not found
+     */
+    @WorkerThread
+    @Nullable
+    JSONObject getGeofence(@NonNull Context context, @Nullable String requestId) {
+        if (requestId == null) {
+            return null;
+        }
+
+        int id;
+        try {
+            id = Integer.parseInt(requestId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return getGeofences(context).get(id);
+    }
+
+    /**
+     * Same as {@link #getGeofence(Context, String)} but creates a {@link CTGeofenceEvent} of
+     * found geofence instead of decoding it into a {@link JSONObject}
+     *
+     * @param context            application {@link Context}
+     * @param requestId          request id of triggered geofence
+     * @param geofenceTransition int value of geofence transition event
+     * @param triggeringLocation {@link Location} which triggered transition, may be null
+     * @param timestamp          time of transition
+     * @return a new {@link CTGeofenceEvent}, null if not found
+     */
+    @WorkerThread
+    @Nullable
+    CTGeofenceEvent getGeofenceEvent(@NonNull Context context, @Nullable String requestId,
+                                     int geofenceTransition, @Nullable Location triggeringLocation,
+                                     long timestamp) {
+        if (requestId == null) {
+            return null;
+        }
+
+        int id;
+        try {
+            id = Integer.parseInt(requestId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return getGeofences(context).getEvent(id, geofenceTransition, triggeringLocation,
+                timestamp);
+    }
+
+    /**
+     * Returns all stored geofences, loading them from file if they are not yet in memory.
+     *
+     * @param context application {@link Context}
+     * @return an instance of {@link GeofenceCache}, empty if no geofences found in file
+     */
+    @WorkerThread
+    @NonNull
+    GeofenceCache getGeofences(@NonNull Context context) {
+        GeofenceCache current = geofences;
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (geofences == null) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Loading geofences from file into memory...");
+
+                File file = getCacheFile(context);
+                GeofenceCache loadedGeofences = null;
+
+                if (file.isFile()) {
+                    try {
+                        loadedGeofences = GeofenceCache.map(file);
+                    } catch (Exception e) {
+                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                "Failed to read geofences from file");
+                        e.printStackTrace();
+                    }
+                }
+
+                if (loadedGeofences != null) {
+                    loadedGeofences = recover(context, loadedGeofences);
+                } else {
+                    // journal applies only to binary file it was written for
+                    getJournal(context).delete();
+                    loadedGeofences = migrate(context, file);
+                }
+
+                geofences = loadedGeofences;
+                isPersisted = true;
+            }
+            //noinspection ConstantConditions
+            return geofences;
+        }
+    }
+
+    /**
+     * Writes provided list to {@link CTGeofenceConstants#CACHED_BINARY_FILE_NAME} and publishes it
+     * as new snapshot of stored geofences. If only a part of stored list changed, just the change is
+     * appended to {@link CTGeofenceConstants#JOURNAL_FILE_NAME}, until journal grows large enough
+     * to be merged into binary file. Loading geofences from file waits for the write, so that
+     * a concurrent lookup never reads a partially written file.
+     *
+     * @param context   application {@link Context}
+     * @param fenceList {@link JSONObject} containing an array of geofences, null to delete stored
+     *                  geofences
+     * @return true if file was written or deleted successfully
+     */
+    @WorkerThread
+    boolean publish(@NonNull Context context, @Nullable JSONObject fenceList) {
+        GeofenceCache newGeofences = GeofenceCache.encode(fenceList);
+        synchronized (this) {
+            File file = getCacheFile(context);
+            GeofenceJournal journal = getJournal(context);
+
+            boolean isWritten;
+            if (fenceList == null) {
+                FileUtils.deleteFile(context, FileUtils.getCachedFullPath(context,
+                        CTGeofenceConstants.CACHED_BINARY_FILE_NAME));
+                journal.delete();
+                isWritten = true;
+            } else if (isPersisted && geofences != null && file.isFile()
+                    && journal.length() < Math.max(JOURNAL_COMPACTION_SIZE, file.length())) {
+                //noinspection ConstantConditions
+                isWritten = append(journal, geofences, fenceList)
+                        || compact(newGeofences, file, journal);
+            } else {
+                isWritten = compact(newGeofences, file, journal);
+            }
+            // json file of previous versions is stale now and must never be migrated
+            FileUtils.deleteFile(context, FileUtils.getCachedFullPath(context,
+                    CTGeofenceConstants.CACHED_FILE_NAME));
+            geofences = newGeofences;
+            isPersisted = isWritten;
+            return isWritten;
+        }
+    }
+
+    /**
+     * Atomically replaces stored geofences with provided list, without writing it to file
+     *
+     * @param fenceList {@link JSONObject} containing an array of geofences
+     */
+    void replace(@Nullable JSONObject fenceList) {
+        GeofenceCache newGeofences = GeofenceCache.encode(fenceList);
+        synchronized (this) {
+            geofences = newGeofences;
+            isPersisted = false;
+        }
+    }
+
+    /**
+     * Returns index over full geofence catalog, loading it from file if it is not yet in memory
+     *
+     * @param context application {@link Context}
+     * @return an instance of {@link GeofenceSpatialIndex}, null if no catalog is stored
+     */
+    @WorkerThread
+    @Nullable
+    GeofenceSpatialIndex getCatalogIndex(@NonNull Context context) {
+        if (isCatalogIndexLoaded) {
+            return catalogIndex;
+        }
+
+        synchronized (this) {
+            if (!isCatalogIndexLoaded) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Loading geofence catalog index from file...");
+                try {
+                    catalogIndex = GeofenceSpatialIndex.load(getCatalogIndexFile(context));
+                } catch (Exception e) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Failed to read geofence catalog index from file");
+                    e.printStackTrace();
+                    catalogIndex = null;
+                }
+                isCatalogIndexLoaded = true;
+            }
+            return catalogIndex;
+        }
+    }
+
+    /**
+     * Replaces index over full geofence catalog. Must be called whenever a new index is written
+     * to {@link CTGeofenceConstants#INDEX_FILE_NAME}
+     *
+     * @param index an instance of {@link GeofenceSpatialIndex}, null if no catalog is stored
+     */
+    void replaceCatalogIndex(@Nullable GeofenceSpatialIndex index) {
+        synchronized (this) {
+            catalogIndex = index;
+            isCatalogIndexLoaded = true;
+        }
+    }
+
+    /**
+     * Drops in-memory geofences and catalog index, next lookup will load them again from file
+     */
+    void invalidate() {
+        synchronized (this) {
+            geofences = null;
+            isPersisted = false;
+            catalogIndex = null;
+            isCatalogIndexLoaded = false;
+        }
+    }
+
+    /**
+     * @param context application {@link Context}
+     * @return file where index over full geofence catalog is stored
+     */
+    @NonNull
+    static File getCatalogIndexFile(@NonNull Context context) {
+        return new File(context.getFilesDir() + "/"
+                + FileUtils.getCachedFullPath(context, CTGeofenceConstants.INDEX_FILE_NAME));
+    }
+
+    /**
+     * @param context application {@link Context}
+     * @return file where geofences registered to OS are stored
+     */
+    @NonNull
+    static File getCacheFile(@NonNull Context context) {
+        return new File(context.getFilesDir() + "/"
+                + FileUtils.getCachedFullPath(context, CTGeofenceConstants.CACHED_BINARY_FILE_NAME));
+    }
+
+    /**
+     * @param context application {@link Context}
+     * @return journal of changes to geofences stored in binary file
+     */
+    @NonNull
+    static GeofenceJournal getJournal(@NonNull Context context) {
+        return new GeofenceJournal(new File(context.getFilesDir() + "/"
+                + FileUtils.getCachedFullPath(context, CTGeofenceConstants.JOURNAL_FILE_NAME)));
+    }
+
+    /**
+     * Applies changes recorded in journal to geofences read from binary file
+     *
+     * @param context application {@link Context}
+     * @param base    geofences read from binary file
+     * @return geofences as of last journal entry, {@code base} if journal is empty or unreadable
+     */
+    @WorkerThread
+    @NonNull
+    private static GeofenceCache recover(@NonNull Context context, @NonNull GeofenceCache base) {
+        GeofenceJournal journal = getJournal(context);
+        try {
+            List<JSONObject> entries = journal.recover();
+            if (entries.isEmpty()) {
+                return base;
+            }
+
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Applying " + entries.size() + " journaled changes to geofences...");
+
+            GeofenceCache recovered = base;
+            for (JSONObject entry : entries) {
+                recovered = GeofenceCache.encode(applyJournalEntry(recovered, entry));
+            }
+            return recovered;
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to read geofence journal");
+            e.printStackTrace();
+            journal.delete();
+            return base;
+        }
+    }
+
+    /**
+     * Appends change from stored geofences to provided list to journal
+     *
+     * @return true if change was written to journal
+     */
+    @WorkerThread
+    private static boolean append(@NonNull GeofenceJournal journal, @NonNull GeofenceCache current,
+                                  @NonNull JSONObject fenceList) {
+        try {
+            journal.append(toJournalEntry(current, fenceList));
+            CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    CTGeofenceConstants.JOURNAL_FILE_NAME + ": append successful");
+            return true;
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to append geofence changes to journal");
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Writes whole list to binary file and clears journal, which is merged into it now
+     *
+     * @return true if binary file was written
+     */
+    @WorkerThread
+    private static boolean compact(@NonNull GeofenceCache geofences, @NonNull File file,
+                                   @NonNull GeofenceJournal journal) {
+        if (!write(geofences, file)) {
+            return false;
+        }
+        journal.delete();
+        return true;
+    }
+
+    /**
+     * Journal entry holds ids of new list in order, geofences which are added or changed and
+     * list properties other than geofences. Removed geofences are those missing from ids.
+     */
+    @NonNull
+    private static JSONObject toJournalEntry(@NonNull GeofenceCache current,
+                                             @NonNull JSONObject fenceList) throws JSONException {
+        JSONArray ids = new JSONArray();
+        JSONArray changedGeofences = new JSONArray();
+        JSONObject listProperties = new JSONObject();
+
+        JSONArray array = fenceList.optJSONArray(CTGeofenceConstants.KEY_GEOFENCES);
+        for (int i = 0; array != null && i < array.length(); i++) {
+            JSONObject geofence = array.optJSONObject(i);
+            if (geofence == null) {
+                continue;
+            }
+            int id;
+            try {
+                id = geofence.getInt(CTGeofenceConstants.KEY_ID);
+            } catch (JSONException e) {
+                // not stored, same as GeofenceCache#encode(JSONObject)
+                continue;
+            }
+            ids.put(id);
+
+            JSONObject storedGeofence = current.get(id);
+            if (storedGeofence == null || !isSame(storedGeofence, geofence)) {
+                changedGeofences.put(geofence);
+            }
+        }
+
+        Iterator<String> keys = fenceList.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            if (!CTGeofenceConstants.KEY_GEOFENCES.equals(key)) {
+                listProperties.put(key, fenceList.opt(key));
+            }
+        }
+
+        return new JSONObject()
+                .put(KEY_JOURNAL_IDS, ids)
+                .put(CTGeofenceConstants.KEY_GEOFENCES, changedGeofences)
+                .put(KEY_JOURNAL_LIST, listProperties);
+    }
+
+    /**
+     * @return geofence list resulting from given journal entry applied to given geofences
+     */
+    @NonNull
+    private static JSONObject applyJournalEntry(@NonNull GeofenceCache base,
+                                                @NonNull JSONObject entry) throws JSONException {
+        SparseArray<JSONObject> changedGeofences = new SparseArray<>();
+        JSONArray changedArray = entry.getJSONArray(CTGeofenceConstants.KEY_GEOFENCES);
+        for (int i = 0; i < changedArray.length(); i++) {
+            JSONObject geofence = changedArray.getJSONObject(i);
+            changedGeofences.put(geofence.getInt(CTGeofenceConstants.KEY_ID), geofence);
+        }
+
+        JSONArray ids = entry.getJSONArray(KEY_JOURNAL_IDS);
+        JSONArray geofences = new JSONArray();
+        for (int i = 0; i < ids.length(); i++) {
+            int id = ids.getInt(i);
+            JSONObject geofence = changedGeofences.get(id);
+            if (geofence == null) {
+                geofence = base.get(id);
+            }
+            if (geofence != null) {
+                geofences.put(geofence);
+            }
+        }
+
+        JSONObject listProperties = entry.optJSONObject(KEY_JOURNAL_LIST);
+        JSONObject fenceList = listProperties != null
+                ? new JSONObject(listProperties.toString()) : new JSONObject();
+        return fenceList.put(CTGeofenceConstants.KEY_GEOFENCES, geofences);
+    }
+
+    /**
+     * Compares geofence read back from {@link GeofenceCache} with geofence of new list. Numbers
+     * are compared by value, since stored coordinates are always decoded as double.
+     */
+    private static boolean isSame(@NonNull JSONObject storedGeofence,
+                                  @NonNull JSONObject geofence) {
+        if (storedGeofence.length() != geofence.length()) {
+            return false;
+        }
+        Iterator<String> keys = geofence.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            Object storedValue = storedGeofence.opt(key);
+            Object value = geofence.opt(key);
+            if (storedValue instanceof Number && value instanceof Number) {
+                if (Double.compare(((Number) storedValue).doubleValue(),
+                        ((Number) value).doubleValue()) != 0) {
+                    return false;
+                }
+            } else if (storedValue == null || !String.valueOf(storedValue)
+                    .equals(String.valueOf(value))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts geofences stored as json by previous versions to binary file
+     *
+     * @param context application {@link Context}
+     * @param file    file to write binary geofences to
+     * @return geofences read from json file, empty if no json file found
+     */
+    @WorkerThread
+    @NonNull
+    private static GeofenceCache migrate(@NonNull Context context, @NonNull File file) {
+
+        String fenceListString = FileUtils.readFromFile(context,
+                FileUtils.getCachedFullPath(context, CTGeofenceConstants.CACHED_FILE_NAME));
+
+        if (fenceListString.trim().equals("")) {
+            return GeofenceCache.encode(null);
+        }
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Migrating geofences from json file to binary file...");
+
+        JSONObject fenceList;
+        try {
+            fenceList = new JSONObject(fenceListString);
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to read geofences from file");
+            e.printStackTrace();
+            return GeofenceCache.encode(null);
+        }
+
+        GeofenceCache migratedGeofences = GeofenceCache.encode(fenceList);
+        if (write(migratedGeofences, file)) {
+            FileUtils.deleteFile(context, FileUtils.getCachedFullPath(context,
+                    CTGeofenceConstants.CACHED_FILE_NAME));
+        }
+        return migratedGeofences;
+    }
+
+    private static boolean write(@NonNull GeofenceCache geofences, @NonNull File file) {
+        try {
+            geofences.write(file);
+            CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    file.getName() + ": write successful");
+            return true;
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to write geofences to file");
+            e.printStackTrace();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,391 @@
+package com.clevertap.android.geofence;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.google.android.gms.location.Geofence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per geofence state machine deciding which transitions are reported to CleverTap.<br>
+ * Geofences are registered to OS with initial enter trigger, on every update and on boot, so
+ * device already inside a geofence receives its enter transition again, and location jitter at
+ * a boundary produces enter and exit in quick succession. For every geofence, filter keeps whether
+ * device is actually inside and whether it was last reported inside:
+ * <ul>
+ * <li>enter while inside and exit while outside are suppressed as duplicates</li>
+ * <li>transition back to last reported state before the other one was reported is suppressed as
+ * flap</li>
+ * <li>transition within {@link CTGeofenceSettings#getTransitionHysteresis()} of last reported one,
+ * or enter before {@link CTGeofenceSettings#getMinDwellTime()} has passed, is deferred and
+ * reported by {@link #reconcile(long, List, List)} once it still holds after that time</li>
+ * </ul>
+ * Geofences without any state accept either transition, so state lost along with cached files
+ * never suppresses a real transition. State is stored in a compact binary file, a version followed
+ * by count of records and then for every geofence its integer id, a byte of flags and times of
+ * last reported and last actual transition, all numbers big endian.
+ */
+class GeofenceTransitionFilter {
+
+    static final int RESULT_REPORTED = 0;
+    static final int RESULT_SUPPRESSED_DUPLICATE = 1;
+    static final int RESULT_SUPPRESSED_FLAP = 2;
+    static final int RESULT_DEFERRED = 3;
+
+    private static final int VERSION = 1;
+    private static final int FLAG_INSIDE = 1;
+    private static final int FLAG_REPORTED_INSIDE = 2;
+
+    private static final Object LOCK = new Object();
+
+    private static class State {
+
+        boolean inside;
+        boolean reportedInside;
+        long reportedAt;
+        long changedAt;
+    }
+
+    private final long transitionHysteresis;
+    private final long minDwellTime;
+    @NonNull
+    private final Map<Integer, State> states = new LinkedHashMap<>();
+    @Nullable
+    private final CTGeofenceTransitionStats stats;
+    private boolean isChanged;
+
+    GeofenceTransitionFilter(long transitionHysteresis, long minDwellTime,
+                             @Nullable CTGeofenceTransitionStats stats) {
+        this.transitionHysteresis = transitionHysteresis;
+        this.minDwellTime = minDwellTime;
+        this.stats = stats;
+    }
+
+    /**
+     * Filters transitions of given geofences and adds reported ones to {@code enteredIds} or
+     * {@code exitedIds}, along with deferred transitions which have become due. State is read from
+     * and written back to file.
+     *
+     * @param context               application {@link Context}
+     * @param triggeringGeofenceIds ids of triggered geofences, may be empty to only report due
+     *                              deferred transitions
+     * @param geofenceTransition    one of {@link Geofence#GEOFENCE_TRANSITION_ENTER} or
+     *                              {@link Geofence#GEOFENCE_TRANSITION_EXIT}
+     * @param enteredIds            receives ids of geofences whose enter must be reported
+     * @param exitedIds             receives ids of geofences whose exit must be reported
+     */
+    @WorkerThread
+    static void filter(@NonNull Context context, @NonNull List<String> triggeringGeofenceIds,
+                       int geofenceTransition, @NonNull List<String> enteredIds,
+                       @NonNull List<String> exitedIds) {
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(context);
+        CTGeofenceSettings settings = ctGeofenceAPI.getGeofenceSettings();
+        long now = System.currentTimeMillis();
+
+        synchronized (LOCK) {
+            GeofenceTransitionFilter filter = new GeofenceTransitionFilter(
+                    settings != null ? settings.getTransitionHysteresis() : 0,
+                    settings != null ? settings.getMinDwellTime() : 0,
+                    ctGeofenceAPI.getTransitionStats());
+            File file = getFile(context);
+            filter.read(file);
+
+            boolean isEnter = geofenceTransition == Geofence.GEOFENCE_TRANSITION_ENTER;
+            List<String> transitionIds = isEnter ? enteredIds : exitedIds;
+
+            for (String requestId : triggeringGeofenceIds) {
+                int id;
+                try {
+                    id = Integer.parseInt(requestId);
+                } catch (NumberFormatException e) {
+                    // geofences registered by SDK always have integer ids, pass anything else on
+                    transitionIds.add(requestId);
+                    continue;
+                }
+
+                int result = filter.onTransition(id, isEnter, now);
+                if (result == RESULT_REPORTED) {
+                    transitionIds.add(requestId);
+                } else {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Transition " + geofenceTransition + " of geofence with id = "
+                                    + requestId + " is not reported now, result = " + result);
+                }
+            }
+
+            filter.reconcile(now, enteredIds, exitedIds);
+            if (filter.isChanged) {
+                filter.write(file);
+            }
+        }
+    }
+
+    /**
+     * @return true if a transition is deferred, so that it is reported by next
+     * {@link #filter(Context, List, int, List, List)} once due
+     */
+    @WorkerThread
+    static boolean hasDeferred(@NonNull Context context) {
+
+        CTGeofenceSettings settings = CTGeofenceAPI.getInstance(context).getGeofenceSettings();
+        if (settings == null
+                || (settings.getTransitionHysteresis() == 0 && settings.getMinDwellTime() == 0)) {
+            // nothing is ever deferred, skip reading file
+            return false;
+        }
+
+        synchronized (LOCK) {
+            GeofenceTransitionFilter filter = new GeofenceTransitionFilter(
+                    settings.getTransitionHysteresis(), settings.getMinDwellTime(), null);
+            filter.read(getFile(context));
+            return filter.hasDeferred();
+        }
+    }
+
+    /**
+     * Removes state of given geofences, once they are no longer monitored or are registered again,
+     * so that initial enter reported by OS on registration establishes their state afresh
+     *
+     * @param context      application {@link Context}
+     * @param geofenceIds  ids of removed or registered geofences
+     */
+    @WorkerThread
+    static void forget(@NonNull Context context, @NonNull Collection<String> geofenceIds) {
+
+        if (geofenceIds.isEmpty()) {
+            return;
+        }
+
+        synchronized (LOCK) {
+            File file = getFile(context);
+            if (!file.isFile()) {
+                return;
+            }
+
+            GeofenceTransitionFilter filter = new GeofenceTransitionFilter(0, 0, null);
+            filter.read(file);
+            if (filter.forget(geofenceIds)) {
+                filter.write(file);
+            }
+        }
+    }
+
+    @NonNull
+    static File getFile(@NonNull Context context) {
+        return new File(context.getFilesDir() + "/"
+                + FileUtils.getCachedFullPath(context, CTGeofenceConstants.TRANSITION_STATE_FILE_NAME));
+    }
+
+    /**
+     * Applies transition of given geofence to its state
+     *
+     * @param id      geofence id
+     * @param isEnter true for enter, false for exit
+     * @param now     current time in milliseconds
+     * @return one of {@link #RESULT_REPORTED}, {@link #RESULT_SUPPRESSED_DUPLICATE},
+     * {@link #RESULT_SUPPRESSED_FLAP} or {@link #RESULT_DEFERRED}
+     */
+    int onTransition(int id, boolean isEnter, long now) {
+
+        State state = states.get(id);
+        if (state == null) {
+            // unknown geofence, last reported state is assumed opposite of this transition
+            state = new State();
+            state.inside = !isEnter;
+            state.reportedInside = !isEnter;
+            states.put(id, state);
+            isChanged = true;
+        }
+
+        int result;
+        if (state.inside == isEnter) {
+            result = RESULT_SUPPRESSED_DUPLICATE;
+        } else {
+            state.inside = isEnter;
+            state.changedAt = now;
+            isChanged = true;
+
+            if (state.reportedInside == isEnter) {
+                // back to reported state before the other transition was reported
+                result = RESULT_SUPPRESSED_FLAP;
+            } else if (isDue(state, now)) {
+                report(state, now);
+                result = RESULT_REPORTED;
+            } else {
+                result = RESULT_DEFERRED;
+            }
+        }
+
+        if (stats != null) {
+            stats.record(result);
+        }
+        return result;
+    }
+
+    /**
+     * Reports deferred transitions which still hold once hysteresis and dwell time have passed
+     *
+     * @param now        current time in milliseconds
+     * @param enteredIds receives ids of geofences whose enter must be reported
+     * @param exitedIds  receives ids of geofences whose exit must be reported
+     */
+    void reconcile(long now, @NonNull List<String> enteredIds, @NonNull List<String> exitedIds) {
+        for (Map.Entry<Integer, State> entry : states.entrySet()) {
+            State state = entry.getValue();
+            if (state.inside != state.reportedInside && isDue(state, now)) {
+                report(state, now);
+                isChanged = true;
+                (state.inside ? enteredIds : exitedIds).add(String.valueOf(entry.getKey()));
+                if (stats != null) {
+                    stats.record(RESULT_REPORTED);
+                }
+            }
+        }
+    }
+
+    boolean hasDeferred() {
+        for (State state : states.values()) {
+            if (state.inside != state.reportedInside) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if state of any of given geofences was removed
+     */
+    boolean forget(@NonNull Collection<String> geofenceIds) {
+        boolean isRemoved = false;
+        for (Iterator<Integer> iterator = states.keySet().iterator(); iterator.hasNext(); ) {
+            if (geofenceIds.contains(String.valueOf(iterator.next()))) {
+                iterator.remove();
+                isRemoved = true;
+            }
+        }
+        isChanged |= isRemoved;
+        return isRemoved;
+    }
+
+    /**
+     * Replaces state with the one stored in given file. Missing or corrupt file leaves state empty.
+     */
+    @WorkerThread
+    void read(@NonNull File file) {
+
+        states.clear();
+        if (!file.isFile()) {
+            return;
+        }
+
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(
+                    new FileInputStream(file)));
+            try {
+                if (in.readInt() != VERSION) {
+                    return;
+                }
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    int id = in.readInt();
+                    byte flags = in.readByte();
+                    State state = new State();
+                    state.inside = (flags & FLAG_INSIDE) != 0;
+                    state.reportedInside = (flags & FLAG_REPORTED_INSIDE) != 0;
+                    state.reportedAt = in.readLong();
+                    state.changedAt = in.readLong();
+                    states.put(id, state);
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            states.clear();
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to read geofence transition state");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes state to a temporary file which then replaces given file, so that a process kill
+     * keeps either old state or new one
+     */
+    @WorkerThread
+    void write(@NonNull File file) {
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try {
+            File parent = file.getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Failed to create directory " + parent);
+            }
+
+            FileOutputStream fileOut = new FileOutputStream(tempFile);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut));
+            try {
+                out.writeInt(VERSION);
+                out.writeInt(states.size());
+                for (Map.Entry<Integer, State> entry : states.entrySet()) {
+                    State state = entry.getValue();
+                    out.writeInt(entry.getKey());
+                    out.writeByte((state.inside ? FLAG_INSIDE : 0)
+                            | (state.reportedInside ? FLAG_REPORTED_INSIDE : 0));
+                    out.writeLong(state.reportedAt);
+                    out.writeLong(state.changedAt);
+                }
+                out.flush();
+                fileOut.getFD().sync();
+            } finally {
+                out.close();
+            }
+
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("Failed to rename " + tempFile.getName());
+            }
+        } catch (IOException e) {
+            if (tempFile.isFile() && !tempFile.delete()) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Failed to delete " + tempFile.getName());
+            }
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to write geofence transition state");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @return true if transition to current state can be reported now. Time running backwards, as
+     * on clock change, does not hold transitions back.
+     */
+    private boolean isDue(@NonNull State state, long now) {
+        long sinceReported = now - state.reportedAt;
+        if (sinceReported >= 0 && sinceReported < transitionHysteresis) {
+            return false;
+        }
+        long sinceChanged = now - state.changedAt;
+        return !state.inside || sinceChanged < 0 || sinceChanged >= minDwellTime;
+    }
+
+    private static void report(@NonNull State state, long now) {
+        state.reportedInside = state.inside;
+        state.reportedAt = now;
+    }
+}
@@ -1,6 +1,7 @@
 package com.clevertap.android.geofence;
 
 import android.content.Context;
+import android.location.Location;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -9,29 +10,93 @@ import androidx.annotation.WorkerThread;
 import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
 import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
 import com.clevertap.android.geofence.model.CTGeofence;
-import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
 
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * A task of type {@link CTGeofenceTask} responsible for Adding/Replacing(remove followed by add)
- * Geofences into file and OS
+ * A task of type {@link CTGeofenceTask} responsible for Adding/Replacing(remove of changed followed
+ * by add of new) Geofences into file and OS.<br>
+ * Full list received from server is kept in {@link GeofenceSpatialIndex}, when more geofences are
+ * received than can be monitored, geofences nearest to last known location are selected again out
+ * of it on every accepted location through reselection task.<br>
+ * In that case one more geofence, the reselection boundary, is registered around the location used
+ * for selection, its exit is handled by {@link PushGeofenceEventTask} to select nearest geofences
+ * again even when no location updates are received.
  */
 class GeofenceUpdateTask implements CTGeofenceTask {
 
     private final Context context;
     @Nullable
     private final CTGeofenceAdapter ctGeofenceAdapter;
+    @Nullable
     private final JSONObject fenceList;
     @Nullable
+    private final Reader fenceListReader;
+    private final boolean isReselection;
+    @Nullable
+    private final Location reselectionLocation;
+    @Nullable
     private OnCompleteListener onCompleteListener;
+    @Nullable
+    private static volatile GeofenceDiff lastGeofenceDiff;
+
+    private static final Object REGISTRATION_LOCK = new Object();
 
     GeofenceUpdateTask(Context context, @Nullable JSONObject fenceList) {
+        this(context, fenceList, false);
+    }
+
+    GeofenceUpdateTask(Context context, @Nullable JSONObject fenceList, boolean isReselection) {
+        this(context, fenceList, isReselection, null);
+    }
+
+    /**
+     * @param context             application {@link Context}
+     * @param fenceList           new geofence list received from server, null to add back
+     *                            geofences from file on device reboot
+     * @param isReselection       true to select nearest geofences again out of stored catalog,
+     *                            {@code fenceList} is ignored in this case
+     * @param reselectionLocation location around which nearest geofences are selected, null to
+     *                            use last known location
+     */
+    GeofenceUpdateTask(Context context, @Nullable JSONObject fenceList, boolean isReselection,
+                       @Nullable Location reselectionLocation) {
+        this(context, fenceList, null, isReselection, reselectionLocation);
+    }
+
+    /**
+     * Creates task registering geofence list which is parsed one geofence at a time while task
+     * executes, instead of being held in memory as a whole
+     *
+     * @param context         application {@link Context}
+     * @param fenceListReader reader of json text of geofence list received from server, closed
+     *                        once task executes
+     * @return an instance of {@link GeofenceUpdateTask}
+     */
+    @NonNull
+    static GeofenceUpdateTask fromReader(Context context, @NonNull Reader fenceListReader) {
+        return new GeofenceUpdateTask(context, null, fenceListReader, false, null);
+    }
+
+    private GeofenceUpdateTask(Context context, @Nullable JSONObject fenceList,
+                               @Nullable Reader fenceListReader, boolean isReselection,
+                               @Nullable Location reselectionLocation) {
         this.context = context.getApplicationContext();
         this.fenceList = fenceList;
+        this.fenceListReader = fenceListReader;
+        this.isReselection = isReselection;
+        this.reselectionLocation = reselectionLocation;
         ctGeofenceAdapter = CTGeofenceAPI.getInstance(this.context).getCtGeofenceAdapter();
     }
 
@@ -42,8 +107,10 @@ class GeofenceUpdateTask implements CTGeofenceTask {
     @Override
     public void execute() {
 
-        if (ctGeofenceAdapter == null)
+        if (ctGeofenceAdapter == null) {
+            closeQuietly(fenceListReader);
             return;
+        }
 
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                 "Executing GeofenceUpdateTask...");
@@ -51,39 +118,32 @@ class GeofenceUpdateTask implements CTGeofenceTask {
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                 "Reading previously registered geofences from file...");
 
-        String oldFenceListString = FileUtils.readFromFile(context,
-                FileUtils.getCachedFullPath(context, CTGeofenceConstants.CACHED_FILE_NAME));
+        GeofenceCache oldGeofences = GeofenceStore.getInstance().getGeofences(context);
+        JSONObject ctOldGeofenceObject = oldGeofences.size() > 0 ? oldGeofences.toJSON() : null;
 
-        if (!oldFenceListString.trim().equals("")) {
+        List<CTGeofence> ctOldGeofenceList = toGeofenceList(ctOldGeofenceObject);
 
-            List<String> ctOldGeofenceIdList = null;
-            JSONObject ctOldGeofenceObject = null;
-            try {
-                ctOldGeofenceObject = new JSONObject(oldFenceListString);
-                ctOldGeofenceIdList = Utils.jsonToGeoFenceList(ctOldGeofenceObject);
-            } catch (Exception e) {
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Failed to read previously registered geofences from file");
-                e.printStackTrace();
+        if (isReselection) {
+            // select nearest geofences around last known location out of stored catalog
+            JSONObject nearestGeofences = selectFromCatalog();
+            if (nearestGeofences == null) {
+                return;
             }
-
-            if (fenceList != null) {
-                //remove previously added geofences
-                ctGeofenceAdapter.removeAllGeofence(ctOldGeofenceIdList, new OnSuccessListener() {
-                    @Override
-                    public void onSuccess(Object o) {
-                        // called on same calling thread
-                        addGeofences(fenceList);
-                    }
-                });
-            } else {
-                // In case device reboot, boot receiver will pass null fenceList which simply means
-                // read old fences from file and add back to Geofence Client
-                addGeofences(ctOldGeofenceObject);
+            addGeofences(nearestGeofences, ctOldGeofenceList);
+        } else if (fenceList != null || fenceListReader != null) {
+            // new list is read only once, writing catalog index and selecting geofences to
+            // monitor along the way
+            JSONObject selectedGeofences = ingestGeofences();
+            if (selectedGeofences == null) {
+                return;
             }
+            // replace previously added geofences with only the delta
+            addGeofences(selectedGeofences, ctOldGeofenceList);
         } else {
-            // add new fences
-            addGeofences(fenceList);
+            // In case device reboot, boot receiver will pass null fenceList which simply means
+            // read old fences from file and add back to Geofence Client. OS drops all geofences
+            // on reboot, so nothing is registered at this point
+            addGeofences(ctOldGeofenceObject, null);
         }
 
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
@@ -93,25 +153,25 @@ class GeofenceUpdateTask implements CTGeofenceTask {
     /**
      * Extracts top n geofences from provided {@link JSONObject} as requested by User through
      * {@link com.clevertap.android.geofence.CTGeofenceSettings.Builder#setGeofenceMonitoringCount(int)}
-     * and store it to file followed by registration to OS through
-     * {@link GoogleGeofenceAdapter#addAllGeofence(List, OnSuccessListener)}
+     * and store it to file followed by registration to OS. Only the difference with registered
+     * geofences is sent to OS, removed and changed geofences through
+     * {@link CTGeofenceAdapter#removeAllGeofenceAsync(List, CancellationToken)} and added and
+     * changed geofences through {@link CTGeofenceAdapter#addAllGeofenceAsync(List, CancellationToken)},
+     * without waiting for OS on calling thread
      * <br>Caller will be notified on registration of the geofences through {@link OnCompleteListener}
      *
      * @param geofenceObject json response containing list of geofences
+     * @param registeredGeofences geofences currently registered to OS, null if nothing is registered
      */
     @WorkerThread
-    private void addGeofences(@Nullable JSONObject geofenceObject) {
+    private void addGeofences(@Nullable JSONObject geofenceObject,
+                              @Nullable List<CTGeofence> registeredGeofences) {
 
         if (geofenceObject == null || ctGeofenceAdapter == null) {
             return;
         }
 
-        int geofenceMoitoringCount = CTGeofenceSettings.DEFAULT_GEO_MONITOR_COUNT;
-        CTGeofenceSettings geofenceSettings = CTGeofenceAPI.getInstance(context).getGeofenceSettings();
-
-        if (geofenceSettings != null) {
-            geofenceMoitoringCount = geofenceSettings.getGeofenceMonitoringCount();
-        }
+        int geofenceMoitoringCount = getGeofenceMonitoringCount();
 
         JSONObject fenceSubList = new JSONObject();
 
@@ -127,14 +187,35 @@ class GeofenceUpdateTask implements CTGeofenceTask {
                 geofenceMoitoringCount = geofenceObjectJSONArray.length();
             }
 
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Extracting Top " + geofenceMoitoringCount + " new geofences out of " +
-                            geofenceObjectJSONArray.length() + "...");
+            JSONArray jsonSubArray;
+            Location location = getSelectionLocation();
+
+            if (location != null) {
+
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Extracting " + geofenceMoitoringCount + " nearest geofences out of " +
+                                geofenceObjectJSONArray.length() + "...");
 
-            JSONArray jsonSubArray = Utils.subArray(geofenceObjectJSONArray,
-                    0, geofenceMoitoringCount);
+                jsonSubArray = GeofenceSelector.selectNearest(geofenceObjectJSONArray,
+                        geofenceMoitoringCount, location.getLatitude(), location.getLongitude());
+            } else {
+                // location is not known yet, fallback to server order
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Extracting Top " + geofenceMoitoringCount + " new geofences out of " +
+                                geofenceObjectJSONArray.length() + "...");
+
+                jsonSubArray = Utils.subArray(geofenceObjectJSONArray,
+                        0, geofenceMoitoringCount);
+            }
             fenceSubList.put(CTGeofenceConstants.KEY_GEOFENCES, jsonSubArray);
 
+            if (location != null) {
+                JSONObject reselectionBoundary = createReselectionBoundary(jsonSubArray, location);
+                if (reselectionBoundary != null) {
+                    fenceSubList.put(CTGeofenceConstants.KEY_RESELECTION_BOUNDARY, reselectionBoundary);
+                }
+            }
+
             CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                     "Successfully created geofence sublist");
         } catch (Exception e) {
@@ -146,9 +227,9 @@ class GeofenceUpdateTask implements CTGeofenceTask {
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                 "Writing " + geofenceMoitoringCount + " new geofences to file...");
 
-        //add new geofences, this will overwrite old ones
-        boolean writeJsonToFile = FileUtils.writeJsonToFile(context, FileUtils.getCachedDirName(context),
-                CTGeofenceConstants.CACHED_FILE_NAME, fenceSubList);
+        //add new geofences, this will overwrite old ones and swap in-memory geofences so that
+        // transitions are looked up against new list
+        boolean writeJsonToFile = GeofenceStore.getInstance().publish(context, fenceSubList);
 
         if (writeJsonToFile) {
             CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
@@ -163,20 +244,480 @@ class GeofenceUpdateTask implements CTGeofenceTask {
             }
         }
 
-        List<CTGeofence> ctGeofenceList = CTGeofence.from(fenceSubList);
+        List<CTGeofence> ctGeofenceList = toGeofenceList(fenceSubList);
 
-        ctGeofenceAdapter.addAllGeofence(ctGeofenceList, new OnSuccessListener() {
+        // file is written before registration so that transitions are looked up against new list,
+        // so until registration succeeds file does not tell what OS monitors. A registration which
+        // failed, or never completed because process was killed, is made up for by registering
+        // all geofences of next list rather than only the difference
+        final long registrationId;
+        final GeofenceDiff geofenceDiff;
+        synchronized (REGISTRATION_LOCK) {
+            long pendingRegistrationId = GeofenceStorageHelper.getLong(context,
+                    CTGeofenceConstants.KEY_PENDING_REGISTRATION, 0);
+
+            if (pendingRegistrationId != 0 && registeredGeofences != null) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Previous registration is not known to have succeeded, registering all geofences");
+                geofenceDiff = GeofenceDiff.computeFull(registeredGeofences, ctGeofenceList);
+            } else {
+                geofenceDiff = GeofenceDiff.compute(registeredGeofences, ctGeofenceList);
+            }
+
+            registrationId = Math.max(System.currentTimeMillis(), pendingRegistrationId + 1);
+            GeofenceStorageHelper.putLong(context, CTGeofenceConstants.KEY_PENDING_REGISTRATION,
+                    registrationId);
+        }
+        lastGeofenceDiff = geofenceDiff;
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Geofence delta to register: " + geofenceDiff);
+
+        // removed geofences and those registered again start over without transition state. OS
+        // reports initial enter of every geofence registered, whether changed or re-registered on
+        // boot, and state kept from before may be stale, e.g. device left geofence while off
+        List<String> idsToForget = new ArrayList<>(geofenceDiff.getIdsToRemove());
+        for (CTGeofence geofence : geofenceDiff.getGeofencesToAdd()) {
+            idsToForget.add(geofence.getId());
+        }
+        GeofenceTransitionFilter.forget(context, idsToForget);
+
+        // registration is chained after any registration still in progress, so that OS receives
+        // changes in the same order as they are written to file
+        TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
             @Override
-            public void onSuccess(Object o) {
-                if (onCompleteListener != null) {
-                    onCompleteListener.onComplete();
+            public Task<Void> then(@NonNull Task<Void> task) {
+                return registerGeofences(ctGeofenceAdapter, geofenceDiff,
+                        TaskUtils.getCancellationToken());
+            }
+        }).addOnCompleteListener(TaskUtils.getExecutor(), new com.google.android.gms.tasks.OnCompleteListener<Void>() {
+            @Override
+            public void onComplete(@NonNull Task<Void> task) {
+                if (task.isSuccessful()) {
+                    onRegistrationSucceeded(context, registrationId);
+                } else {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Geofence registration failed, all geofences will be registered with next list");
                 }
+                sendOnCompleteEvent();
             }
         });
     }
 
+    /**
+     * Marks geofences written to file as registered to OS, unless a later registration has started
+     * meanwhile
+     *
+     * @param context        application {@link Context}
+     * @param registrationId id of succeeded registration
+     */
+    private static void onRegistrationSucceeded(@NonNull Context context, long registrationId) {
+        synchronized (REGISTRATION_LOCK) {
+            if (GeofenceStorageHelper.getLong(context,
+                    CTGeofenceConstants.KEY_PENDING_REGISTRATION, 0) == registrationId) {
+                GeofenceStorageHelper.putLong(context,
+                        CTGeofenceConstants.KEY_PENDING_REGISTRATION, 0);
+            }
+        }
+    }
+
+    /**
+     * Removes deleted and changed geofences followed by registration of new and changed geofences
+     * to OS, without blocking calling thread. Registration is attempted even if removal fails.
+     *
+     * @param ctGeofenceAdapter adapter to register geofences through
+     * @param geofenceDiff      difference to apply to registered geofences
+     * @param cancellationToken token to stop waiting for OS
+     * @return a {@link Task} which completes once registration completes, immediately if there is
+     * nothing to register. It fails if either removal or registration fails.
+     */
+    @NonNull
+    private static Task<Void> registerGeofences(@NonNull final CTGeofenceAdapter ctGeofenceAdapter,
+                                                @NonNull final GeofenceDiff geofenceDiff,
+                                                @NonNull final CancellationToken cancellationToken) {
+
+        Task<Void> removeTask = geofenceDiff.getIdsToRemove().isEmpty()
+                ? TaskUtils.<Void>forResult(null)
+                : ctGeofenceAdapter.removeAllGeofenceAsync(geofenceDiff.getIdsToRemove(),
+                cancellationToken);
+
+        return removeTask.continueWithTask(TaskUtils.getExecutor(),
+                new Continuation<Void, Task<Void>>() {
+                    @Override
+                    public Task<Void> then(@NonNull final Task<Void> removeTask) {
+                        Task<Void> addTask;
+                        if (geofenceDiff.getGeofencesToAdd().isEmpty()) {
+                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                    "No new or changed geofences to register");
+                            addTask = TaskUtils.forResult(null);
+                        } else {
+                            addTask = ctGeofenceAdapter.addAllGeofenceAsync(
+                                    geofenceDiff.getGeofencesToAdd(), cancellationToken);
+                        }
+
+                        if (removeTask.isSuccessful()) {
+                            return addTask;
+                        }
+
+                        // removed geofences may still be monitored by OS
+                        return addTask.continueWithTask(TaskUtils.getExecutor(),
+                                new Continuation<Void, Task<Void>>() {
+                                    @Override
+                                    public Task<Void> then(@NonNull Task<Void> task) {
+                                        return removeTask;
+                                    }
+                                });
+                    }
+                });
+    }
+
+    /**
+     * Reads new geofence list received from server once, validating every geofence. Valid geofences
+     * are written to {@link GeofenceSpatialIndex} over full list as they are read, while only
+     * geofences selected for monitoring, nearest to last known location or else first ones of the
+     * list, are kept in memory.
+     *
+     * @return {@link JSONObject} containing an array of selected geofences, empty if new list
+     * holds no array of geofences, null if new list could not be read
+     */
+    @WorkerThread
+    @Nullable
+    private JSONObject ingestGeofences() {
+
+        int geofenceMonitoringCount = getGeofenceMonitoringCount();
+        Location location = getSelectionLocation();
+
+        GeofenceSelector.Selection selection = location != null
+                ? new GeofenceSelector.Selection(geofenceMonitoringCount, location.getLatitude(),
+                location.getLongitude())
+                : new GeofenceSelector.Selection(geofenceMonitoringCount);
+
+        GeofenceSpatialIndex.Builder indexBuilder = null;
+        try {
+            indexBuilder = new GeofenceSpatialIndex.Builder(
+                    GeofenceStore.getCatalogIndexFile(context));
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to create geofence catalog index file");
+            e.printStackTrace();
+        }
+
+        Ingestion ingestion = new Ingestion(selection, indexBuilder);
+        int validCount;
+
+        try {
+            validCount = fenceListReader != null
+                    ? GeofenceListReader.read(fenceListReader, ingestion)
+                    : GeofenceListReader.read(fenceList, ingestion);
+        } catch (Exception e) {
+            ingestion.discardIndex();
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to read new geofence list");
+            e.printStackTrace();
+            if (CTGeofenceAPI.getInstance(context).getCleverTapApi() != null) {
+                CTGeofenceAPI.getInstance(context)
+                        .getCleverTapApi()
+                        .pushGeoFenceError(CTGeofenceConstants.ERROR_CODE,
+                                "Failed to read new geofence list");
+            }
+            return null;
+        }
+
+        if (validCount < 0) {
+            // no geofences to index, previous catalog index is kept
+            ingestion.discardIndex();
+            return new JSONObject();
+        }
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Read " + validCount + " valid geofences out of new geofence list");
+
+        writeCatalogIndex(ingestion.indexBuilder);
+
+        try {
+            return new JSONObject().put(CTGeofenceConstants.KEY_GEOFENCES,
+                    selection.toJSONArray());
+        } catch (JSONException e) {
+            // key is never null
+            return null;
+        }
+    }
+
+    /**
+     * Completes {@link GeofenceSpatialIndex} over full geofence list received from server and
+     * stores it to {@link CTGeofenceConstants#INDEX_FILE_NAME}, so that nearest geofences can be
+     * selected again when location changes
+     *
+     * @param indexBuilder builder holding all geofences of the list, null if index could not be
+     *                     written while list was read
+     */
+    @WorkerThread
+    private void writeCatalogIndex(@Nullable GeofenceSpatialIndex.Builder indexBuilder) {
+
+        GeofenceSpatialIndex catalogIndex = null;
+        try {
+            if (indexBuilder == null) {
+                throw new IOException("Geofence catalog index was not written");
+            }
+            catalogIndex = indexBuilder.build();
+
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Geofence catalog index of " + catalogIndex.size() + " geofences written to file");
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to write geofence catalog index to file");
+            e.printStackTrace();
+            // never leave index of previous catalog behind
+            FileUtils.deleteFile(context,
+                    FileUtils.getCachedFullPath(context, CTGeofenceConstants.INDEX_FILE_NAME));
+        } finally {
+            if (indexBuilder != null) {
+                indexBuilder.close();
+            }
+        }
+
+        GeofenceStore.getInstance().replaceCatalogIndex(catalogIndex);
+    }
+
+    /**
+     * Selects geofences nearest to last known location out of {@link GeofenceSpatialIndex} over
+     * full geofence catalog
+     *
+     * @return {@link JSONObject} containing an array of nearest geofences, null if selection is not
+     * possible or would not change monitored geofences
+     */
+    @WorkerThread
+    @Nullable
+    private JSONObject selectFromCatalog() {
+
+        int geofenceMonitoringCount = getGeofenceMonitoringCount();
+        GeofenceSpatialIndex catalogIndex = GeofenceStore.getInstance().getCatalogIndex(context);
+
+        if (catalogIndex == null || catalogIndex.size() <= geofenceMonitoringCount) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "All geofences of catalog are already monitored");
+            return null;
+        }
+
+        Location location = getSelectionLocation();
+        if (location == null) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Last location is not known, can't select nearest geofences");
+            return null;
+        }
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Selecting " + geofenceMonitoringCount + " nearest geofences out of catalog of "
+                        + catalogIndex.size() + "...");
+
+        try {
+            int[] nearest = catalogIndex.nearest(location.getLatitude(), location.getLongitude(),
+                    geofenceMonitoringCount);
+            return new JSONObject().put(CTGeofenceConstants.KEY_GEOFENCES,
+                    catalogIndex.getRecords(nearest));
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to select nearest geofences out of catalog");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Creates reselection boundary around provided location when full geofence catalog can't be
+     * monitored at once. Its radius is taken from
+     * {@link CTGeofenceSettings.Builder#setReselectionRadius(int)} or else distance of farthest
+     * selected geofence
+     *
+     * @param selectedGeofences geofences selected for monitoring
+     * @param location          location used for selection
+     * @return {@link JSONObject} with center and radius of reselection boundary, null if it is not
+     * required
+     */
+    @WorkerThread
+    @Nullable
+    private JSONObject createReselectionBoundary(@NonNull JSONArray selectedGeofences,
+                                                 @NonNull Location location) throws JSONException {
+
+        int geofenceMonitoringCount = getGeofenceMonitoringCount();
+        GeofenceSpatialIndex catalogIndex = GeofenceStore.getInstance().getCatalogIndex(context);
+
+        if (catalogIndex == null || catalogIndex.size() <= geofenceMonitoringCount) {
+            return null;
+        }
+
+        if (geofenceMonitoringCount >= GoogleGeofenceAdapter.MAX_GEOFENCE_COUNT) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Geofence monitoring count leaves no room for reselection boundary");
+            return null;
+        }
+
+        CTGeofenceSettings geofenceSettings = CTGeofenceAPI.getInstance(context).getGeofenceSettings();
+        int radius = geofenceSettings != null ? geofenceSettings.getReselectionRadius() : 0;
+
+        if (radius <= 0) {
+            double farthestDistance = 0;
+            for (int i = 0; i < selectedGeofences.length(); i++) {
+                JSONObject geofence = selectedGeofences.getJSONObject(i);
+                farthestDistance = Math.max(farthestDistance, GeofenceSelector.distanceInMeters(
+                        location.getLatitude(), location.getLongitude(),
+                        geofence.getDouble("lat"), geofence.getDouble("lng")));
+            }
+            radius = Math.max((int) Math.ceil(farthestDistance),
+                    GoogleGeofenceAdapter.MIN_RADIUS_IN_METERS);
+        }
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Reselection boundary of " + radius + " meters created");
+
+        return new JSONObject()
+                .put("lat", location.getLatitude())
+                .put("lng", location.getLongitude())
+                .put("r", radius);
+    }
+
+    /**
+     * Returns location around which nearest geofences are selected, which is either provided
+     * location or last known location
+     *
+     * @return an instance of {@link Location}, null if location is not known yet
+     */
+    @Nullable
+    private Location getSelectionLocation() {
+        if (reselectionLocation != null) {
+            return reselectionLocation;
+        }
+
+        LocationState lastState = GeofenceStorageHelper.getLocationState(context);
+        return lastState.isKnown() ? lastState.toLocation() : null;
+    }
+
+    /**
+     * Converts geofences stored in file to list of {@link CTGeofence} to register, including
+     * reselection boundary if present, which is monitored only for exit transition
+     *
+     * @param geofenceObject {@link JSONObject} containing an array of geofences
+     * @return list of {@link CTGeofence}, empty if {@code geofenceObject} is null
+     */
+    @NonNull
+    private static List<CTGeofence> toGeofenceList(@Nullable JSONObject geofenceObject) {
+
+        if (geofenceObject == null) {
+            return new ArrayList<>();
+        }
+
+        List<CTGeofence> geofenceList = CTGeofence.from(geofenceObject);
+
+        JSONObject reselectionBoundary = geofenceObject.optJSONObject(
+                CTGeofenceConstants.KEY_RESELECTION_BOUNDARY);
+
+        if (reselectionBoundary != null) {
+            try {
+                geofenceList.add(new CTGeofence.Builder(CTGeofenceConstants.RESELECTION_GEOFENCE_ID)
+                        .setLatitude(reselectionBoundary.getDouble("lat"))
+                        .setLongitude(reselectionBoundary.getDouble("lng"))
+                        .setRadius(reselectionBoundary.getInt("r"))
+                        .setTransitionType(Geofence.GEOFENCE_TRANSITION_EXIT)
+                        .build());
+            } catch (JSONException e) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Failed to read reselection boundary");
+                e.printStackTrace();
+            }
+        }
+
+        return geofenceList;
+    }
+
+    /**
+     * Software geofence engine monitors all geofences, since it's not limited by OS
+     */
+    private int getGeofenceMonitoringCount() {
+        CTGeofenceSettings geofenceSettings = CTGeofenceAPI.getInstance(context).getGeofenceSettings();
+
+        if (geofenceSettings != null) {
+            if (geofenceSettings.getGeofenceEngine() == CTGeofenceSettings.GEOFENCE_ENGINE_SOFTWARE) {
+                return Integer.MAX_VALUE;
+            }
+            return geofenceSettings.getGeofenceMonitoringCount();
+        }
+        return CTGeofenceSettings.DEFAULT_GEO_MONITOR_COUNT;
+    }
+
+    /**
+     * Notifies listeners when task execution completes
+     */
+    private void sendOnCompleteEvent() {
+        if (onCompleteListener != null) {
+            onCompleteListener.onComplete();
+        }
+    }
+
+    /**
+     * Returns the difference applied by most recent geofence registration in this process, can be
+     * used to monitor how many geofences were added, removed, changed or left unchanged
+     *
+     * @return an instance of {@link GeofenceDiff}, null if no geofences registered yet
+     */
+    @Nullable
+    static GeofenceDiff getLastGeofenceDiff() {
+        return lastGeofenceDiff;
+    }
+
     @Override
     public void setOnCompleteListener(@NonNull OnCompleteListener onCompleteListener) {
         this.onCompleteListener = onCompleteListener;
     }
+
+    private static void closeQuietly(@Nullable Reader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+
+    /**
+     * Receives valid geofences of new list as they are read, offering them to selection of
+     * geofences to monitor and writing them to catalog index
+     */
+    private static class Ingestion implements GeofenceListReader.Listener {
+
+        @NonNull
+        private final GeofenceSelector.Selection selection;
+        @Nullable
+        private GeofenceSpatialIndex.Builder indexBuilder;
+
+        Ingestion(@NonNull GeofenceSelector.Selection selection,
+                  @Nullable GeofenceSpatialIndex.Builder indexBuilder) {
+            this.selection = selection;
+            this.indexBuilder = indexBuilder;
+        }
+
+        @Override
+        public void onGeofence(@NonNull JSONObject geofence) {
+            selection.offer(geofence);
+
+            if (indexBuilder != null) {
+                try {
+                    indexBuilder.add(geofence);
+                } catch (IOException e) {
+                    // selection goes on, list can't be read again to write index later
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Failed to write geofence catalog index to file");
+                    e.printStackTrace();
+                    discardIndex();
+                }
+            }
+        }
+
+        void discardIndex() {
+            if (indexBuilder != null) {
+                indexBuilder.close();
+                indexBuilder = null;
+            }
+        }
+    }
 }
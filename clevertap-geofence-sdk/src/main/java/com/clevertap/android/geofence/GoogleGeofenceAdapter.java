@@ -14,6 +14,7 @@ import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingClient;
 import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.CancellationToken;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
@@ -30,6 +31,9 @@ import static android.app.PendingIntent.FLAG_UPDATE_CURRENT;
 class GoogleGeofenceAdapter implements CTGeofenceAdapter {
 
     private static final long GEOFENCE_EXPIRATION_IN_MILLISECONDS = Geofence.NEVER_EXPIRE;
+    // maximum number of geofences an app can register to OS at a time
+    static final int MAX_GEOFENCE_COUNT = 100;
+    static final int MIN_RADIUS_IN_METERS = 100;
     private final Context context;
     private final GeofencingClient geofencingClient;
 
@@ -55,24 +59,13 @@ class GoogleGeofenceAdapter implements CTGeofenceAdapter {
             return;
         }
 
-        ArrayList<Geofence> googleFenceList = getGoogleGeofences(fenceList);
         Void aVoid = null;
 
         try {
-            // should get same pendingIntent on each app launch or else instance will leak
-            PendingIntent geofencePendingIntent = PendingIntentFactory.getPendingIntent(context,
-                    PendingIntentFactory.PENDING_INTENT_GEOFENCE, FLAG_UPDATE_CURRENT);
-
-            @SuppressLint("MissingPermission")
-            Task<Void> addGeofenceTask = geofencingClient.addGeofences(getGeofencingRequest(googleFenceList), geofencePendingIntent);
             // blocking task
-            aVoid = Tasks.await(addGeofenceTask);
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, "Geofence registered successfully");
-
+            aVoid = Tasks.await(addAllGeofenceAsync(fenceList, null));
         } catch (Exception e) {
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Failed to add geofences for monitoring");
-            e.printStackTrace();
+            // already logged
         } finally {
             onSuccessListener.onSuccess(aVoid);
         }
@@ -98,15 +91,10 @@ class GoogleGeofenceAdapter implements CTGeofenceAdapter {
 
         Void aVoid = null;
         try {
-            Task<Void> removeGeofenceTask = geofencingClient.removeGeofences(fenceIdList);
             // blocking task
-            aVoid = Tasks.await(removeGeofenceTask);
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, "Geofence removed successfully");
-
+            aVoid = Tasks.await(removeAllGeofenceAsync(fenceIdList, null));
         } catch (Exception e) {
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Failed to remove registered geofences");
-            e.printStackTrace();
+            // already logged
         } finally {
             onSuccessListener.onSuccess(aVoid);
         }
@@ -131,20 +119,123 @@ class GoogleGeofenceAdapter implements CTGeofenceAdapter {
         }
 
         try {
-            Task<Void> removeGeofenceTask = geofencingClient.removeGeofences(pendingIntent);
-
             // blocking task
-            Tasks.await(removeGeofenceTask);
+            Tasks.await(stopGeofenceMonitoringAsync(pendingIntent, null));
+        } catch (Exception e) {
+            // already logged
+        }
+    }
 
-            // cancel pending intent when no further updates required
-            pendingIntent.cancel();
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, "Geofence removed successfully");
+    /**
+     * Registers list of geofences to OS for monitoring, using {@link GeofencingClient}, without
+     * blocking calling thread
+     *
+     * @param fenceList         list of {@link CTGeofence}
+     * @param cancellationToken token to stop waiting for registration, can be null
+     * @return a {@link Task} which completes on registration, immediately if list is empty
+     */
+    @SuppressLint("MissingPermission")
+    @NonNull
+    @Override
+    public Task<Void> addAllGeofenceAsync(@Nullable List<CTGeofence> fenceList,
+                                          @Nullable CancellationToken cancellationToken) {
 
+        if (fenceList == null || fenceList.isEmpty()) {
+            return TaskUtils.forResult(null);
+        }
+
+        Task<Void> addGeofenceTask = null;
+        try {
+            ArrayList<Geofence> googleFenceList = getGoogleGeofences(fenceList);
+
+            // should get same pendingIntent on each app launch or else instance will leak
+            PendingIntent geofencePendingIntent = PendingIntentFactory.getPendingIntent(context,
+                    PendingIntentFactory.PENDING_INTENT_GEOFENCE, FLAG_UPDATE_CURRENT);
+
+            addGeofenceTask = geofencingClient.addGeofences(getGeofencingRequest(googleFenceList),
+                    geofencePendingIntent);
         } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return TaskUtils.logCompletion(
+                TaskUtils.withTimeout(addGeofenceTask, TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS,
+                        cancellationToken),
+                "Geofence registered successfully",
+                "Failed to add geofences for monitoring");
+    }
+
+    /**
+     * Unregisters list of geofences from OS, using {@link GeofencingClient}, without blocking
+     * calling thread
+     *
+     * @param fenceIdList       list of {@link CTGeofence} Ids to unregister
+     * @param cancellationToken token to stop waiting for un-registration, can be null
+     * @return a {@link Task} which completes on un-registration, immediately if list is empty
+     */
+    @NonNull
+    @Override
+    public Task<Void> removeAllGeofenceAsync(@Nullable List<String> fenceIdList,
+                                             @Nullable CancellationToken cancellationToken) {
+
+        if (fenceIdList == null || fenceIdList.isEmpty()) {
+            return TaskUtils.forResult(null);
+        }
+
+        Task<Void> removeGeofenceTask = null;
+        try {
+            removeGeofenceTask = geofencingClient.removeGeofences(fenceIdList);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        return TaskUtils.logCompletion(
+                TaskUtils.withTimeout(removeGeofenceTask, TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS,
+                        cancellationToken),
+                "Geofence removed successfully",
+                "Failed to remove registered geofences");
+    }
+
+    /**
+     * Unregisters all geofences associated with given {@link PendingIntent} from OS, using
+     * {@link GeofencingClient}, without blocking calling thread. Pending intent is cancelled once
+     * geofences are removed.
+     *
+     * @param pendingIntent     of type {@link PendingIntentFactory#PENDING_INTENT_GEOFENCE}
+     * @param cancellationToken token to stop waiting for un-registration, can be null
+     * @return a {@link Task} which completes on un-registration, immediately if pending intent is
+     * null
+     */
+    @NonNull
+    @Override
+    public Task<Void> stopGeofenceMonitoringAsync(@Nullable final PendingIntent pendingIntent,
+                                                  @Nullable CancellationToken cancellationToken) {
+
+        if (pendingIntent == null) {
             CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Failed to remove registered geofences");
+                    "Can't stop geofence monitoring since provided pendingIntent is null");
+            return TaskUtils.forResult(null);
+        }
+
+        Task<Void> removeGeofenceTask = null;
+        try {
+            removeGeofenceTask = geofencingClient.removeGeofences(pendingIntent);
+        } catch (Exception e) {
             e.printStackTrace();
         }
+
+        Task<Void> stopTask = TaskUtils.withTimeout(removeGeofenceTask,
+                TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS, cancellationToken)
+                .addOnSuccessListener(TaskUtils.getExecutor(), new OnSuccessListener<Void>() {
+                    @Override
+                    public void onSuccess(Void aVoid) {
+                        // cancel pending intent when no further updates required
+                        pendingIntent.cancel();
+                    }
+                });
+
+        return TaskUtils.logCompletion(stopTask, "Geofence removed successfully",
+                "Failed to remove registered geofences");
     }
 
     /**
@@ -181,10 +272,23 @@ class GoogleGeofenceAdapter implements CTGeofenceAdapter {
                     .setCircularRegion(ctGeofence.getLatitude(), ctGeofence.getLongitude(),
                             ctGeofence.getRadius())
                     .setExpirationDuration(GEOFENCE_EXPIRATION_IN_MILLISECONDS)
-                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER |
-                            Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .setTransitionTypes(getTransitionTypes(ctGeofence))
                     .build());
         }
         return googleFenceList;
     }
+
+    /**
+     * Returns transition types requested by provided {@link CTGeofence}, both enter and exit
+     * transitions are monitored if none is requested
+     *
+     * @param ctGeofence an instance of {@link CTGeofence}
+     * @return transition types as bitwise OR of {@link Geofence} transition constants
+     */
+    private int getTransitionTypes(@NonNull CTGeofence ctGeofence) {
+        if (ctGeofence.getTransitionType() != 0) {
+            return ctGeofence.getTransitionType();
+        }
+        return Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT;
+    }
 }
@@ -18,6 +18,8 @@ import com.clevertap.android.sdk.CleverTapAPI;
 import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
 import com.google.android.gms.tasks.Tasks;
 
@@ -56,8 +58,14 @@ class GoogleLocationAdapter implements CTLocationAdapter {
      */
     private static final long FLEX_INTERVAL_IN_MILLIS = 10 * 60 * 1000;
 
+    /**
+     * Maximum age of a cached location returned by {@link #getLastLocationAsync(CancellationToken)}
+     */
+    static final long LAST_LOCATION_MAX_AGE_IN_MILLIS = 60 * 1000;
+
     private final Context context;
     private final FusedLocationProviderClient fusedProviderClient;
+    private final LastLocationCache lastLocationCache = new LastLocationCache();
     private boolean backgroundLocationUpdatesEnabled;
     private int locationFetchMode;
 
@@ -69,6 +77,7 @@ class GoogleLocationAdapter implements CTLocationAdapter {
     private long interval;
     private long fastestInterval;
     private float smallestDisplacement;
+    private long maxWaitTime;
 
     GoogleLocationAdapter(@NonNull Context context) {
         this.context = context.getApplicationContext();
@@ -86,6 +95,24 @@ class GoogleLocationAdapter implements CTLocationAdapter {
     @WorkerThread
     @Override
     public void requestLocationUpdates() {
+        try {
+            // blocking task
+            Tasks.await(requestLocationUpdatesAsync(null));
+        } catch (Exception e) {
+            // already logged
+        }
+    }
+
+    /**
+     * Same as {@link #requestLocationUpdates()}, without blocking calling thread
+     *
+     * @param cancellationToken token to stop waiting for registration, can be null
+     * @return a {@link Task} which completes once location updates are requested
+     */
+    @SuppressLint("MissingPermission")
+    @NonNull
+    @Override
+    public Task<Void> requestLocationUpdatesAsync(@Nullable CancellationToken cancellationToken) {
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                 "requestLocationUpdates() called");
 
@@ -100,7 +127,7 @@ class GoogleLocationAdapter implements CTLocationAdapter {
                         .pushGeoFenceError(CTGeofenceConstants.ERROR_CODE,
                                 "not requesting location updates since background location updates is not enabled");
             }
-            return;
+            return TaskUtils.forResult(null);
         }
 
         if (locationFetchMode == CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC) {
@@ -114,31 +141,29 @@ class GoogleLocationAdapter implements CTLocationAdapter {
             CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                     "requesting current location periodically..");
 
+            Task<Void> requestLocationUpdatesTask = null;
             try {
                 // will overwrite location request if change in location config is detected
-                @SuppressLint("MissingPermission")
-                Task<Void> requestLocationUpdatesTask = fusedProviderClient.requestLocationUpdates(getLocationRequest(), pendingIntent);
-
-                // blocking task
-                Tasks.await(requestLocationUpdatesTask);
-
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Finished requesting current location periodically..");
+                requestLocationUpdatesTask = fusedProviderClient.requestLocationUpdates(getLocationRequest(), pendingIntent);
             } catch (Exception e) {
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Failed to request location updates");
                 e.printStackTrace();
             }
+
+            return TaskUtils.logCompletion(
+                    TaskUtils.withTimeout(requestLocationUpdatesTask,
+                            TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS, cancellationToken),
+                    "Finished requesting current location periodically..",
+                    "Failed to request location updates");
         } else {
 
             // remove previously registered location request
             PendingIntent pendingIntent = PendingIntentFactory.getPendingIntent(context,
                     PendingIntentFactory.PENDING_INTENT_LOCATION, FLAG_NO_CREATE);
 
-            clearLocationUpdates(pendingIntent);
-
             // start periodic work for location updates
             scheduleManualLocationUpdates();
+
+            return clearLocationUpdates(pendingIntent, cancellationToken);
         }
     }
 
@@ -198,8 +223,28 @@ class GoogleLocationAdapter implements CTLocationAdapter {
     @WorkerThread
     @Override
     public void removeLocationUpdates(@Nullable PendingIntent pendingIntent) {
-        clearLocationUpdates(pendingIntent);
+        try {
+            // blocking task
+            Tasks.await(removeLocationUpdatesAsync(pendingIntent, null));
+        } catch (Exception e) {
+            // already logged
+        }
+    }
+
+    /**
+     * Same as {@link #removeLocationUpdates(PendingIntent)}, without blocking calling thread
+     *
+     * @param pendingIntent     instance of {@link PendingIntent} of type
+     *                          {@link PendingIntentFactory#PENDING_INTENT_LOCATION}
+     * @param cancellationToken token to stop waiting for un-registration, can be null
+     * @return a {@link Task} which completes once location updates are removed
+     */
+    @NonNull
+    @Override
+    public Task<Void> removeLocationUpdatesAsync(@Nullable PendingIntent pendingIntent,
+                                                 @Nullable CancellationToken cancellationToken) {
         clearLocationWorkRequest();
+        return clearLocationUpdates(pendingIntent, cancellationToken);
     }
 
     /**
@@ -215,32 +260,102 @@ class GoogleLocationAdapter implements CTLocationAdapter {
     public void getLastLocation(@NonNull final CTLocationCallback callback) {
         //thread safe
 
-        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, "Requesting Last Location..");
-
         Location location = null;
         try {
-            @SuppressLint("MissingPermission")
-            Task<Location> lastLocation = fusedProviderClient.getLastLocation();
-
             // blocking task
-            location = Tasks.await(lastLocation);
+            location = Tasks.await(getLastLocationAsync(null));
+        } catch (Exception e) {
+            // already logged
+        } finally {
+            callback.onLocationComplete(location);
+        }
 
-            if (location != null) {
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "New Location = " + location.getLatitude() + "," +
-                                location.getLongitude());
-            }
+    }
 
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, "Last location request completed");
+    /**
+     * Same as {@link #getLastLocation(CTLocationCallback)}, without blocking calling thread.
+     * Location received within last {@link #LAST_LOCATION_MAX_AGE_IN_MILLIS} is returned without
+     * a request to OS.
+     *
+     * @param cancellationToken token to stop waiting for location, can be null
+     * @return a {@link Task} with last known location, null if not known
+     */
+    @NonNull
+    @Override
+    public Task<Location> getLastLocationAsync(@Nullable CancellationToken cancellationToken) {
+        return getLastLocationAsync(LAST_LOCATION_MAX_AGE_IN_MILLIS, cancellationToken);
+    }
 
+    /**
+     * Same as {@link #getLastLocationAsync(CancellationToken)}, with maximum age of cached location
+     * given by caller. Concurrent calls share a single request to OS.
+     *
+     * @param maxAgeMillis      maximum age of cached location in milliseconds, 0 to always
+     *                          request location from OS
+     * @param cancellationToken token to stop waiting for location, can be null. Cancelling it does
+     *                          not affect other callers waiting for same request.
+     * @return a {@link Task} with last known location, null if not known
+     */
+    @NonNull
+    Task<Location> getLastLocationAsync(long maxAgeMillis,
+                                        @Nullable CancellationToken cancellationToken) {
+
+        Task<Location> lastLocationTask = lastLocationCache.get(maxAgeMillis,
+                new LastLocationCache.Loader() {
+                    @NonNull
+                    @Override
+                    public Task<Location> load() {
+                        return requestLastLocation();
+                    }
+                });
+
+        if (cancellationToken == null || lastLocationTask.isComplete()) {
+            return lastLocationTask;
+        }
+
+        // request is shared, so cancel waiting for it instead of request itself
+        return TaskUtils.withTimeout(lastLocationTask, TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS,
+                cancellationToken);
+    }
+
+    /**
+     * Caches location received through location updates, so that it is returned by
+     * {@link #getLastLocationAsync(long, CancellationToken)} without a request to OS
+     *
+     * @param location location received from OS
+     */
+    void onLocationReceived(@Nullable Location location) {
+        lastLocationCache.offer(location);
+    }
+
+    @SuppressLint("MissingPermission")
+    @NonNull
+    private Task<Location> requestLastLocation() {
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, "Requesting Last Location..");
+
+        Task<Location> lastLocation = null;
+        try {
+            lastLocation = fusedProviderClient.getLastLocation();
         } catch (Exception e) {
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Failed to request last location");
             e.printStackTrace();
-        } finally {
-            callback.onLocationComplete(location);
         }
 
+        Task<Location> lastLocationTask = TaskUtils.withTimeout(lastLocation,
+                TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS, null)
+                .addOnSuccessListener(TaskUtils.getExecutor(), new OnSuccessListener<Location>() {
+                    @Override
+                    public void onSuccess(Location location) {
+                        if (location != null) {
+                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                    "New Location = " + location.getLatitude() + "," +
+                                            location.getLongitude());
+                        }
+                    }
+                });
+
+        return TaskUtils.logCompletion(lastLocationTask, "Last location request completed",
+                "Failed to request last location");
     }
 
     /**
@@ -254,6 +369,7 @@ class GoogleLocationAdapter implements CTLocationAdapter {
         locationRequest.setFastestInterval(fastestInterval);
         locationRequest.setPriority(locationAccuracy);
         locationRequest.setSmallestDisplacement(smallestDisplacement);
+        locationRequest.setMaxWaitTime(maxWaitTime);
 
         return locationRequest;
     }
@@ -275,6 +391,7 @@ class GoogleLocationAdapter implements CTLocationAdapter {
         interval = geofenceSettings.getInterval();
         fastestInterval = geofenceSettings.getFastestInterval();
         smallestDisplacement = geofenceSettings.getSmallestDisplacement();
+        maxWaitTime = geofenceSettings.getMaxWaitTime();
 
         int accuracy = geofenceSettings.getLocationAccuracy();
         switch (accuracy) {
@@ -288,6 +405,40 @@ class GoogleLocationAdapter implements CTLocationAdapter {
                 locationAccuracy = LocationRequest.PRIORITY_LOW_POWER;
                 break;
         }
+
+        if (geofenceSettings.isAdaptiveLocationUpdatesEnabled()
+                && locationFetchMode == CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC) {
+            applyLocationTier(LocationSamplingScheduler.getTier(context));
+        }
+    }
+
+    /**
+     * Adjusts config settings to given tier selected by {@link LocationSamplingScheduler}
+     *
+     * @param tier one of {@link LocationSamplingScheduler#LOCATION_TIER_NONE},
+     *             {@link LocationSamplingScheduler#LOCATION_TIER_NEAR},
+     *             {@link LocationSamplingScheduler#LOCATION_TIER_MEDIUM} or
+     *             {@link LocationSamplingScheduler#LOCATION_TIER_FAR}
+     */
+    private void applyLocationTier(int tier) {
+        switch (tier) {
+            case LocationSamplingScheduler.LOCATION_TIER_NEAR:
+                interval = Math.min(interval, LocationSamplingScheduler.NEAR_INTERVAL_IN_MILLIS);
+                fastestInterval = Math.min(fastestInterval,
+                        LocationSamplingScheduler.NEAR_FASTEST_INTERVAL_IN_MILLIS);
+                smallestDisplacement = Math.min(smallestDisplacement,
+                        LocationSamplingScheduler.NEAR_SMALLEST_DISPLACEMENT_IN_METERS);
+                locationAccuracy = LocationRequest.PRIORITY_HIGH_ACCURACY;
+                break;
+            case LocationSamplingScheduler.LOCATION_TIER_FAR:
+                interval *= LocationSamplingScheduler.FAR_RELAXATION_FACTOR;
+                fastestInterval *= LocationSamplingScheduler.FAR_RELAXATION_FACTOR;
+                smallestDisplacement *= LocationSamplingScheduler.FAR_RELAXATION_FACTOR;
+                locationAccuracy = LocationRequest.PRIORITY_LOW_POWER;
+                break;
+            default:
+                // as configured
+        }
     }
 
     /**
@@ -322,37 +473,43 @@ class GoogleLocationAdapter implements CTLocationAdapter {
 
     /**
      * Removes Location Update of type ({@link CTGeofenceSettings#FETCH_CURRENT_LOCATION_PERIODIC})
-     * using {@link FusedLocationProviderClient}
-     * <br><br>
-     * <b>Must be called from background thread</b>
+     * using {@link FusedLocationProviderClient}, without blocking calling thread. Pending intent is
+     * cancelled once location updates are removed.
+     *
+     * @return a {@link Task} which completes once location updates are removed, immediately if
+     * pending intent is null
      */
-    @WorkerThread
-    private void clearLocationUpdates(@Nullable PendingIntent pendingIntent) {
+    @NonNull
+    private Task<Void> clearLocationUpdates(@Nullable final PendingIntent pendingIntent,
+                                            @Nullable CancellationToken cancellationToken) {
         if (pendingIntent == null) {
             CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                     "Can't stop location updates since provided pendingIntent is null");
-            return;
+            return TaskUtils.forResult(null);
         }
 
-        try {
-
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "removing periodic current location request..");
-
-            Task<Void> removeLocationUpdatesTask = fusedProviderClient.removeLocationUpdates(pendingIntent);
-
-            // blocking task
-            Tasks.await(removeLocationUpdatesTask);
-
-            pendingIntent.cancel();
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "removing periodic current location request..");
 
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Successfully removed periodic current location request");
+        Task<Void> removeLocationUpdatesTask = null;
+        try {
+            removeLocationUpdatesTask = fusedProviderClient.removeLocationUpdates(pendingIntent);
         } catch (Exception e) {
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Failed to remove location updates");
             e.printStackTrace();
         }
+
+        Task<Void> clearTask = TaskUtils.withTimeout(removeLocationUpdatesTask,
+                TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS, cancellationToken)
+                .addOnSuccessListener(TaskUtils.getExecutor(), new OnSuccessListener<Void>() {
+                    @Override
+                    public void onSuccess(Void aVoid) {
+                        pendingIntent.cancel();
+                    }
+                });
+
+        return TaskUtils.logCompletion(clearTask,
+                "Successfully removed periodic current location request",
+                "Failed to remove location updates");
     }
 
 }
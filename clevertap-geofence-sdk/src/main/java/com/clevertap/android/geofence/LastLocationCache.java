@@ -0,0 +1,116 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+
+/**
+ * Keeps newest known location, so that callers asking for last location within a short time of
+ * each other are served without a new request to OS.<br>
+ * A cached location is returned only if it is not older than age given by caller. Otherwise a
+ * request is made through {@link Loader}, which is shared by all callers arriving while it is
+ * pending, so that concurrent callers cause a single request to OS.
+ */
+class LastLocationCache {
+
+    /**
+     * Requests last location from OS
+     */
+    interface Loader {
+
+        @NonNull
+        Task<Location> load();
+    }
+
+    private final Object lock = new Object();
+
+    @Nullable
+    private Location lastLocation;
+
+    @Nullable
+    private Task<Location> pendingTask;
+
+    /**
+     * Returns a location not older than given age, requesting it through given loader unless it
+     * is cached or already being requested
+     *
+     * @param maxAgeMillis maximum age of cached location in milliseconds, 0 to always request
+     * @param loader       loader requesting location from OS
+     * @return a {@link Task} with location, null if not known
+     */
+    @NonNull
+    Task<Location> get(long maxAgeMillis, @NonNull Loader loader) {
+
+        final Task<Location> task;
+        synchronized (lock) {
+            Location location = getFreshLocation(maxAgeMillis);
+            if (location != null) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Using cached last location");
+                return TaskUtils.forResult(location);
+            }
+
+            if (pendingTask != null) {
+                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                        "Joining pending last location request");
+                return pendingTask;
+            }
+
+            task = loader.load();
+            pendingTask = task;
+        }
+
+        task.addOnCompleteListener(TaskUtils.getExecutor(), new OnCompleteListener<Location>() {
+            @Override
+            public void onComplete(@NonNull Task<Location> completedTask) {
+                synchronized (lock) {
+                    if (completedTask.isSuccessful()) {
+                        offer(completedTask.getResult());
+                    }
+                    if (pendingTask == task) {
+                        pendingTask = null;
+                    }
+                }
+            }
+        });
+
+        return task;
+    }
+
+    /**
+     * Caches given location if it is newer than cached one
+     *
+     * @param location location received from OS, ignored if null
+     */
+    void offer(@Nullable Location location) {
+        if (location == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (lastLocation == null || location.getTime() >= lastLocation.getTime()) {
+                lastLocation = location;
+            }
+        }
+    }
+
+    /**
+     * @param maxAgeMillis maximum age of location in milliseconds
+     * @return cached location not older than given age, null if none
+     */
+    @Nullable
+    Location getFreshLocation(long maxAgeMillis) {
+        synchronized (lock) {
+            if (lastLocation == null) {
+                return null;
+            }
+
+            long ageMillis = System.currentTimeMillis() - lastLocation.getTime();
+            return ageMillis >= 0 && ageMillis <= maxAgeMillis ? lastLocation : null;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.clevertap.android.geofence;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.clevertap.android.geofence.interfaces.CTLocationAdapter;
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
+
+/**
+ * Adapts location updates of {@link CTGeofenceSettings#FETCH_CURRENT_LOCATION_PERIODIC} to distance
+ * of device from nearest geofence boundary, when enabled through
+ * {@link CTGeofenceSettings.Builder#enableAdaptiveLocationUpdates(boolean)}.<br>
+ * Distance is divided into tiers. Location updates are requested more often and more accurately
+ * near a boundary, as configured in far from any, and less often in between. Location updates
+ * are requested again only when tier changes, which is stored in preferences so that it
+ * survives process restarts.
+ */
+class LocationSamplingScheduler {
+
+    /**
+     * Location updates are requested as configured in {@link CTGeofenceSettings}
+     */
+    static final int LOCATION_TIER_NONE = 0;
+
+    /**
+     * Device is near a geofence boundary, location updates are requested more often
+     */
+    static final int LOCATION_TIER_NEAR = 1;
+
+    /**
+     * Device is at moderate distance from geofence boundaries, location updates are requested as
+     * configured
+     */
+    static final int LOCATION_TIER_MEDIUM = 2;
+
+    /**
+     * Device is far from any geofence boundary, location updates are requested less often
+     */
+    static final int LOCATION_TIER_FAR = 3;
+
+    /**
+     * Boundaries nearer than this select {@link #LOCATION_TIER_NEAR}
+     */
+    static final float NEAR_DISTANCE_IN_METERS = 1000;
+
+    /**
+     * Boundaries farther than this select {@link #LOCATION_TIER_FAR}
+     */
+    static final float FAR_DISTANCE_IN_METERS = 5000;
+
+    /**
+     * Distance by which a tier is extended while it is current, so that a device moving along a
+     * tier limit does not switch tiers on every location
+     */
+    static final float HYSTERESIS_IN_METERS = 200;
+
+    static final long NEAR_INTERVAL_IN_MILLIS = 5 * 60 * 1000;
+    static final long NEAR_FASTEST_INTERVAL_IN_MILLIS = 60 * 1000;
+    static final float NEAR_SMALLEST_DISPLACEMENT_IN_METERS = 50;
+
+    /**
+     * Factor by which interval, fastest interval and displacement are multiplied in
+     * {@link #LOCATION_TIER_FAR}
+     */
+    static final int FAR_RELAXATION_FACTOR = 2;
+
+    private LocationSamplingScheduler() {
+    }
+
+    /**
+     * @param context application {@link Context}
+     * @return tier for which location updates are currently requested
+     */
+    static int getTier(@NonNull Context context) {
+        return (int) GeofenceStorageHelper.getLong(context, CTGeofenceConstants.KEY_LOCATION_TIER,
+                LOCATION_TIER_NONE);
+    }
+
+    /**
+     * @param context application {@link Context}
+     * @return number of times location updates were requested again because of tier change
+     */
+    static long getTierSwitchCount(@NonNull Context context) {
+        return GeofenceStorageHelper.getLong(context,
+                CTGeofenceConstants.KEY_LOCATION_TIER_SWITCH_COUNT, 0);
+    }
+
+    /**
+     * Selects tier for given location and requests location updates again if it has changed
+     *
+     * @param context  application {@link Context}
+     * @param location latest location of device
+     * @return true if tier has changed
+     */
+    @WorkerThread
+    static boolean onLocationChanged(@NonNull Context context, @Nullable Location location) {
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(context);
+        CTGeofenceSettings geofenceSettings = ctGeofenceAPI.getGeofenceSettings();
+        final CTLocationAdapter ctLocationAdapter = ctGeofenceAPI.getCtLocationAdapter();
+
+        if (location == null || geofenceSettings == null || ctLocationAdapter == null
+                || !geofenceSettings.isAdaptiveLocationUpdatesEnabled()
+                || !geofenceSettings.isBackgroundLocationUpdatesEnabled()
+                || geofenceSettings.getLocationFetchMode()
+                != CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC) {
+            return false;
+        }
+
+        int currentTier = getTier(context);
+        int newTier = LOCATION_TIER_NONE;
+
+        GeofenceSpatialIndex catalogIndex = GeofenceStore.getInstance().getCatalogIndex(context);
+        if (catalogIndex != null) {
+            double distance = catalogIndex.distanceToNearestBoundary(location.getLatitude(),
+                    location.getLongitude(), FAR_DISTANCE_IN_METERS + HYSTERESIS_IN_METERS);
+            newTier = selectTier(currentTier, distance);
+        }
+
+        if (newTier == currentTier) {
+            return false;
+        }
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Location tier changed from " + currentTier + " to " + newTier
+                        + ", requesting location updates again");
+
+        SharedPreferences.Editor editor = GeofenceStorageHelper.getPreferences(context).edit()
+                .putLong(CTGeofenceConstants.KEY_LOCATION_TIER, newTier)
+                .putLong(CTGeofenceConstants.KEY_LOCATION_TIER_SWITCH_COUNT,
+                        getTierSwitchCount(context) + 1);
+        GeofenceStorageHelper.persist(editor);
+
+        // location request is built from stored tier
+        TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+            @Override
+            public Task<Void> then(@NonNull Task<Void> task) {
+                return ctLocationAdapter.requestLocationUpdatesAsync(
+                        TaskUtils.getCancellationToken());
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Selects tier for given distance from nearest geofence boundary
+     *
+     * @param currentTier         tier for which location updates are currently requested
+     * @param distanceInMeters    distance from nearest boundary,
+     *                            {@link Double#POSITIVE_INFINITY} if none is near
+     * @return one of {@link #LOCATION_TIER_NEAR},
+     * {@link #LOCATION_TIER_MEDIUM} or {@link #LOCATION_TIER_FAR}
+     */
+    static int selectTier(int currentTier, double distanceInMeters) {
+        double nearLimit = NEAR_DISTANCE_IN_METERS;
+        if (currentTier == LOCATION_TIER_NEAR) {
+            nearLimit += HYSTERESIS_IN_METERS;
+        }
+
+        double farLimit = FAR_DISTANCE_IN_METERS;
+        if (currentTier == LOCATION_TIER_FAR) {
+            farLimit -= HYSTERESIS_IN_METERS;
+        }
+
+        if (distanceInMeters < nearLimit) {
+            return LOCATION_TIER_NEAR;
+        }
+        if (distanceInMeters > farLimit) {
+            return LOCATION_TIER_FAR;
+        }
+        return LOCATION_TIER_MEDIUM;
+    }
+
+    /**
+     * Restores tier configured by {@link CTGeofenceSettings}, once location updates are removed
+     *
+     * @param context application {@link Context}
+     */
+    static void reset(@NonNull Context context) {
+        GeofenceStorageHelper.putLong(context, CTGeofenceConstants.KEY_LOCATION_TIER,
+                LOCATION_TIER_NONE);
+    }
+}
@@ -0,0 +1,80 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Immutable record of last location sent to CleverTap, stored as a whole by
+ * {@link GeofenceStorageHelper#putLocationState(android.content.Context, LocationState)}
+ */
+final class LocationState {
+
+    /**
+     * State before any location is sent, or after geofence SDK is deactivated
+     */
+    static final LocationState NONE = new LocationState(CTGeofenceConstants.DEFAULT_LATITUDE,
+            CTGeofenceConstants.DEFAULT_LONGITUDE, 0);
+
+    final double latitude;
+
+    final double longitude;
+
+    /**
+     * Epoch time in milliseconds of fix of location which was sent, 0 if it never was
+     */
+    final long timestampMillis;
+
+    LocationState(double latitude, double longitude, long timestampMillis) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.timestampMillis = timestampMillis;
+    }
+
+    /**
+     * @return true if a location was sent since geofence SDK is activated
+     */
+    boolean isKnown() {
+        return timestampMillis != 0;
+    }
+
+    @NonNull
+    Location toLocation() {
+        Location location = new Location("");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        LocationState that = (LocationState) o;
+        return Double.compare(that.latitude, latitude) == 0
+                && Double.compare(that.longitude, longitude) == 0
+                && timestampMillis == that.timestampMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        long latitudeBits = Double.doubleToLongBits(latitude);
+        long longitudeBits = Double.doubleToLongBits(longitude);
+        int result = (int) (latitudeBits ^ (latitudeBits >>> 32));
+        result = 31 * result + (int) (longitudeBits ^ (longitudeBits >>> 32));
+        result = 31 * result + (int) (timestampMillis ^ (timestampMillis >>> 32));
+        return result;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "LocationState{latitude=" + latitude + ", longitude=" + longitude
+                + ", timestampMillis=" + timestampMillis + '}';
+    }
+}
@@ -0,0 +1,144 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Prepares batch of locations delivered by OS for processing. Inaccurate locations are dropped
+ * and remaining path is simplified using Douglas-Peucker algorithm, which keeps only locations
+ * needed to follow the path within given tolerance, so that turns of a fast moving device are
+ * kept while locations along a straight line are dropped.<br>
+ * Simplified path is meant for throttling location pings only. A dropped location may be the only
+ * one inside a geofence, so geofences are evaluated against all accurate locations.
+ */
+class LocationTrajectory {
+
+    /**
+     * Maximum distance of a dropped location from simplified path, half the minimum geofence
+     * radius, so that locations pinged to server stay close to where device actually went
+     */
+    static final float TOLERANCE_IN_METERS = GoogleGeofenceAdapter.MIN_RADIUS_IN_METERS / 2f;
+
+    private static final double EARTH_RADIUS_IN_METERS = 6371008.8;
+
+    private LocationTrajectory() {
+    }
+
+    /**
+     * Drops locations less accurate than given radius, keeping locations without accuracy
+     *
+     * @param locations   list of {@link Location}, oldest first
+     * @param minAccuracy accuracy radius in meters, 0 to keep all locations
+     * @return list of accurate locations in same order
+     */
+    @NonNull
+    static List<Location> filterByAccuracy(@NonNull List<Location> locations, float minAccuracy) {
+        List<Location> accurateLocations = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            if (location == null) {
+                continue;
+            }
+            if (minAccuracy > 0 && location.hasAccuracy() && location.getAccuracy() > minAccuracy) {
+                continue;
+            }
+            accurateLocations.add(location);
+        }
+
+        if (accurateLocations.size() < locations.size()) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Dropped " + (locations.size() - accurateLocations.size())
+                            + " inaccurate locations");
+        }
+        return accurateLocations;
+    }
+
+    /**
+     * Simplifies path through given locations, always keeping first and last one
+     *
+     * @param locations          list of {@link Location}, oldest first
+     * @param toleranceInMeters maximum distance of a dropped location from simplified path
+     * @return locations on simplified path in same order
+     */
+    @NonNull
+    static List<Location> simplify(@NonNull List<Location> locations, float toleranceInMeters) {
+        int size = locations.size();
+        if (size <= 2) {
+            return new ArrayList<>(locations);
+        }
+
+        // project on plane tangent at first location, accurate enough over a batch
+        double[] x = new double[size];
+        double[] y = new double[size];
+        double originLatitude = Math.toRadians(locations.get(0).getLatitude());
+        double originLongitude = Math.toRadians(locations.get(0).getLongitude());
+        double cosLatitude = Math.cos(originLatitude);
+        for (int i = 0; i < size; i++) {
+            Location location = locations.get(i);
+            x[i] = (Math.toRadians(location.getLongitude()) - originLongitude) * cosLatitude
+                    * EARTH_RADIUS_IN_METERS;
+            y[i] = (Math.toRadians(location.getLatitude()) - originLatitude)
+                    * EARTH_RADIUS_IN_METERS;
+        }
+
+        boolean[] isKept = new boolean[size];
+        isKept[0] = true;
+        isKept[size - 1] = true;
+
+        // iterative, so that long batches can't overflow stack
+        Deque<int[]> segments = new ArrayDeque<>();
+        segments.push(new int[]{0, size - 1});
+        while (!segments.isEmpty()) {
+            int[] segment = segments.pop();
+            int first = segment[0];
+            int last = segment[1];
+
+            double maxDistance = -1;
+            int farthest = -1;
+            for (int i = first + 1; i < last; i++) {
+                double distance = distanceToSegment(x[i], y[i], x[first], y[first], x[last],
+                        y[last]);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+
+            if (farthest != -1 && maxDistance > toleranceInMeters) {
+                isKept[farthest] = true;
+                segments.push(new int[]{first, farthest});
+                segments.push(new int[]{farthest, last});
+            }
+        }
+
+        List<Location> simplified = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (isKept[i]) {
+                simplified.add(locations.get(i));
+            }
+        }
+        return simplified;
+    }
+
+    private static double distanceToSegment(double px, double py, double ax, double ay,
+                                            double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+
+        double t = 0;
+        if (lengthSquared > 0) {
+            t = ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+            t = Math.max(0, Math.min(1, t));
+        }
+
+        double nearestX = ax + t * dx;
+        double nearestY = ay + t * dy;
+        return Math.hypot(px - nearestX, py - nearestY);
+    }
+}
@@ -7,8 +7,15 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
+import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
 import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
 import com.clevertap.android.geofence.interfaces.CTLocationAdapter;
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
+
+import org.json.JSONObject;
+
+import java.util.List;
 
 import static android.app.PendingIntent.FLAG_NO_CREATE;
 
@@ -35,7 +42,9 @@ class LocationUpdateTask implements CTGeofenceTask {
     /**
      * Writes new {@link CTGeofenceSettings} to file. Requests/Removes Location updates based on change
      * in config settings and avoids duplicate request of location updates if pending intent
-     * already exists in the system and is active
+     * already exists in the system and is active.<br>
+     * Requests to OS are not waited for on calling thread, {@link OnCompleteListener} is notified
+     * once they complete.
      */
     @WorkerThread
     @Override
@@ -56,24 +65,50 @@ class LocationUpdateTask implements CTGeofenceTask {
                 PendingIntentFactory.PENDING_INTENT_LOCATION, FLAG_NO_CREATE);
 
 
+        Task<Void> locationUpdatesTask = null;
+
         // if background location disabled and if location update request is already registered then remove it
         if (!this.ctGeofenceSettings.isBackgroundLocationUpdatesEnabled() && locationPendingIntent != null) {
-            ctLocationAdapter.removeLocationUpdates(locationPendingIntent);
+            final PendingIntent pendingIntent = locationPendingIntent;
+            locationUpdatesTask = TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+                @Override
+                public Task<Void> then(@NonNull Task<Void> task) {
+                    return ctLocationAdapter.removeLocationUpdatesAsync(pendingIntent,
+                            TaskUtils.getCancellationToken());
+                }
+            });
         } else if (isRequestLocation(locationPendingIntent)) {
 
             // if background location enabled and if location update request is not already registered
             // or there is change in accuracy or fetch mode settings then request location updates
-            ctLocationAdapter.requestLocationUpdates();
+            locationUpdatesTask = TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+                @Override
+                public Task<Void> then(@NonNull Task<Void> task) {
+                    return ctLocationAdapter.requestLocationUpdatesAsync(
+                            TaskUtils.getCancellationToken());
+                }
+            });
         } else {
             CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                     "Dropping duplicate location update request");
         }
 
+        switchGeofenceEngineIfChanged();
+
         // write new settings to file
         Utils.writeSettingsToFile(context, ctGeofenceSettings);
 
-        if (onCompleteListener != null) {
-            onCompleteListener.onComplete();
+        if (locationUpdatesTask != null) {
+            // notify once OS has processed location update request, without waiting for it here
+            locationUpdatesTask.addOnCompleteListener(TaskUtils.getExecutor(),
+                    new com.google.android.gms.tasks.OnCompleteListener<Void>() {
+                        @Override
+                        public void onComplete(@NonNull Task<Void> task) {
+                            sendOnCompleteEvent();
+                        }
+                    });
+        } else {
+            sendOnCompleteEvent();
         }
 
         CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
@@ -96,6 +131,8 @@ class LocationUpdateTask implements CTGeofenceTask {
         long lastInterval = -1;
         long lastFastestInterval = -1;
         float lastDisplacement = -1;
+        long lastMaxWaitTime = -1;
+        boolean lastAdaptiveLocationUpdates = false;
 
         @SuppressWarnings("ConstantConditions") // ctGeofenceSettings won't be null
                 int currentAccuracy = ctGeofenceSettings.getLocationAccuracy();
@@ -103,6 +140,8 @@ class LocationUpdateTask implements CTGeofenceTask {
         long currentInterval = ctGeofenceSettings.getInterval();
         long currentFastestInterval = ctGeofenceSettings.getFastestInterval();
         float currentDisplacement = ctGeofenceSettings.getSmallestDisplacement();
+        long currentMaxWaitTime = ctGeofenceSettings.getMaxWaitTime();
+        boolean currentAdaptiveLocationUpdates = ctGeofenceSettings.isAdaptiveLocationUpdatesEnabled();
 
 
         // read settings from file
@@ -113,13 +152,17 @@ class LocationUpdateTask implements CTGeofenceTask {
             lastInterval = lastGeofenceSettings.getInterval();
             lastFastestInterval = lastGeofenceSettings.getFastestInterval();
             lastDisplacement = lastGeofenceSettings.getSmallestDisplacement();
+            lastMaxWaitTime = lastGeofenceSettings.getMaxWaitTime();
+            lastAdaptiveLocationUpdates = lastGeofenceSettings.isAdaptiveLocationUpdatesEnabled();
         }
 
         boolean isCurrentLocationFetchModeChanged =
                 currentFetchMode == CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC &&
                         (currentAccuracy != lastAccuracy || currentInterval != lastInterval
                                 || currentFastestInterval != lastFastestInterval
-                                || currentDisplacement != lastDisplacement);
+                                || currentDisplacement != lastDisplacement
+                                || currentMaxWaitTime != lastMaxWaitTime
+                                || currentAdaptiveLocationUpdates != lastAdaptiveLocationUpdates);
 
         boolean isLastLocationFetchModeChanged =
                 currentFetchMode == CTGeofenceSettings.FETCH_LAST_LOCATION_PERIODIC &&
@@ -130,6 +173,133 @@ class LocationUpdateTask implements CTGeofenceTask {
                         || isLastLocationFetchModeChanged || currentFetchMode != lastFetchMode);
     }
 
+    /**
+     * Stops monitoring of geofences by last geofence engine stored in file, if it's different from
+     * current one, and registers last received geofence list to current geofence engine. Geofences
+     * registered to last geofence engine are removed by id before monitoring is stopped, so that
+     * none is left registered to OS even if its {@link PendingIntent} does not exist anymore.
+     */
+    @WorkerThread
+    private void switchGeofenceEngineIfChanged() {
+
+        CTGeofenceSettings lastGeofenceSettings = Utils.readSettingsFromFile(context);
+
+        @SuppressWarnings("ConstantConditions") // ctGeofenceSettings won't be null
+                int currentGeofenceEngine = ctGeofenceSettings.getGeofenceEngine();
+
+        if (lastGeofenceSettings == null
+                || lastGeofenceSettings.getGeofenceEngine() == currentGeofenceEngine) {
+            return;
+        }
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Geofence engine changed to " + currentGeofenceEngine + ", switching geofences");
+
+        final CTGeofenceAdapter lastGeofenceAdapter = createGeofenceAdapter(
+                lastGeofenceSettings.getGeofenceEngine());
+        final PendingIntent geofencePendingIntent;
+        if (lastGeofenceSettings.getGeofenceEngine() == CTGeofenceSettings.GEOFENCE_ENGINE_SOFTWARE) {
+            geofencePendingIntent = null;
+        } else {
+            geofencePendingIntent = PendingIntentFactory.getPendingIntent(context,
+                    PendingIntentFactory.PENDING_INTENT_GEOFENCE, FLAG_NO_CREATE);
+        }
+
+        // read before geofence catalog, which deletes registered geofences from file. Reselection
+        // boundary is registered along with geofences but not stored as one
+        final List<String> registeredGeofenceIds = GeofenceStore.getInstance()
+                .getGeofences(context).getIds();
+        registeredGeofenceIds.add(CTGeofenceConstants.RESELECTION_GEOFENCE_ID);
+
+        if (lastGeofenceAdapter != null) {
+            // registration to current engine is enqueued after this
+            TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+                @Override
+                public Task<Void> then(@NonNull Task<Void> task) {
+                    return lastGeofenceAdapter.removeAllGeofenceAsync(registeredGeofenceIds,
+                            TaskUtils.getCancellationToken());
+                }
+            });
+            TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+                @Override
+                public Task<Void> then(@NonNull Task<Void> task) {
+                    return lastGeofenceAdapter.stopGeofenceMonitoringAsync(geofencePendingIntent,
+                            TaskUtils.getCancellationToken());
+                }
+            });
+        }
+
+        CTGeofenceTaskManager.getInstance().postAsyncSafely("SwitchGeofenceEngine",
+                new GeofenceUpdateTask(context, readGeofenceCatalog()));
+    }
+
+    /**
+     * @param geofenceEngine one of {@link CTGeofenceSettings#GEOFENCE_ENGINE_OS} or
+     *                       {@link CTGeofenceSettings#GEOFENCE_ENGINE_SOFTWARE}
+     * @return adapter of given geofence engine, null if it can't be created
+     */
+    @Nullable
+    private CTGeofenceAdapter createGeofenceAdapter(int geofenceEngine) {
+        if (geofenceEngine == CTGeofenceSettings.GEOFENCE_ENGINE_SOFTWARE) {
+            return CTGeofenceFactory.createSoftwareGeofenceAdapter(context);
+        }
+
+        try {
+            return CTGeofenceFactory.createGeofenceAdapter(context);
+        } catch (IllegalStateException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Can't remove geofences of last geofence engine: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reads full geofence catalog from {@link GeofenceSpatialIndex}, so that geofences are selected
+     * again as per limits of current geofence engine. Previously registered geofences are deleted
+     * from file since nothing is registered to current geofence engine yet.
+     *
+     * @return {@link JSONObject} containing full geofence catalog, null to register previously
+     * registered geofences from file if catalog is not available
+     */
+    @WorkerThread
+    @Nullable
+    private JSONObject readGeofenceCatalog() {
+
+        GeofenceSpatialIndex catalogIndex = GeofenceStore.getInstance().getCatalogIndex(context);
+
+        if (catalogIndex == null) {
+            return null;
+        }
+
+        try {
+            int[] positions = new int[catalogIndex.size()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+
+            JSONObject geofenceCatalog = new JSONObject().put(CTGeofenceConstants.KEY_GEOFENCES,
+                    catalogIndex.getRecords(positions));
+
+            GeofenceStore.getInstance().publish(context, null);
+
+            return geofenceCatalog;
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to read geofence catalog from index");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Notifies listeners when task execution completes
+     */
+    private void sendOnCompleteEvent() {
+        if (onCompleteListener != null) {
+            onCompleteListener.onComplete();
+        }
+    }
+
     @Override
     public void setOnCompleteListener(@NonNull OnCompleteListener onCompleteListener) {
         this.onCompleteListener = onCompleteListener;
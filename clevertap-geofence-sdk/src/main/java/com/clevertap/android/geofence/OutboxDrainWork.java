@@ -0,0 +1,178 @@
+package com.clevertap.android.geofence;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.clevertap.android.sdk.CleverTapAPI;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.clevertap.android.geofence.CTGeofenceConstants.TAG_WORK_DRAIN_OUTBOX;
+
+/**
+ * A {@link Worker} which delivers events left pending in {@link EventOutbox}, in batches of
+ * {@link #BATCH_SIZE} events. It is scheduled whenever events are added to outbox and retried with
+ * exponential backoff until outbox is empty. Events which a task is pushing at the same time,
+ * e.g. {@link PushGeofenceEventTask} on read queue of {@link CTGeofenceTaskManager}, are skipped by
+ * {@link GeofenceEventPipeline} and left pending for a later attempt.
+ */
+public class OutboxDrainWork extends Worker {
+
+    static final int BATCH_SIZE = 50;
+
+    /**
+     * Delay before first attempt, giving task which added events time to deliver them itself
+     */
+    static final long INITIAL_DELAY_IN_MILLIS = 60 * 1000;
+
+    static final long BACKOFF_DELAY_IN_MILLIS = 30 * 1000;
+
+    /**
+     * Work gives up after this many attempts, events are kept until work is scheduled again
+     */
+    static final int MAX_RUN_ATTEMPTS = 10;
+
+    public OutboxDrainWork(@NonNull Context context, @NonNull WorkerParameters workerParams) {
+        super(context, workerParams);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Handling work in OutboxDrainWork...");
+
+        final Context context = getApplicationContext();
+        final AtomicBoolean isDrained = new AtomicBoolean(false);
+
+        try {
+            CTGeofenceTaskManager.getInstance().postAsyncSafely("DrainOutbox",
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            if (Utils.initCTGeofenceApiIfRequired(context)) {
+                                isDrained.set(drain(context));
+                            }
+                        }
+                    }).get();
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to drain outbox");
+            e.printStackTrace();
+        }
+
+        if (isDrained.get()) {
+            return Result.success();
+        }
+
+        if (getRunAttemptCount() + 1 >= MAX_RUN_ATTEMPTS) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Giving up draining outbox until new events are added");
+            return Result.failure();
+        }
+        return Result.retry();
+    }
+
+    /**
+     * Pushes pending events of {@link EventOutbox} batch by batch, until it is empty or a batch is
+     * not delivered completely. Only newest of pending location events is pushed, older ones are
+     * superseded by it. Events being pushed by a task at the same time are not pushed again, so
+     * their batch counts as not delivered completely.
+     *
+     * @param context application {@link Context}
+     * @return true if outbox is empty
+     */
+    @WorkerThread
+    static boolean drain(@NonNull Context context) {
+
+        CleverTapAPI cleverTapApi = CTGeofenceAPI.getInstance(context).getCleverTapApi();
+        if (cleverTapApi == null) {
+            return false;
+        }
+
+        while (true) {
+            List<JSONObject> events = EventOutbox.peek(context, BATCH_SIZE);
+            if (events.isEmpty()) {
+                return true;
+            }
+
+            JSONObject newestLocationEvent = null;
+            List<String> supersededKeys = new ArrayList<>();
+            for (JSONObject event : events) {
+                if (EventOutbox.TYPE_LOCATION.equals(event.optString(EventOutbox.KEY_TYPE))) {
+                    if (newestLocationEvent != null) {
+                        supersededKeys.add(newestLocationEvent.optString(EventOutbox.KEY_EVENT_KEY));
+                    }
+                    newestLocationEvent = event;
+                }
+            }
+
+            GeofenceEventPipeline pipeline = new GeofenceEventPipeline(context, cleverTapApi,
+                    GeofenceEventPipeline.PUSH_DEADLINE_IN_MILLIS);
+            for (JSONObject event : events) {
+                if (!EventOutbox.TYPE_LOCATION.equals(event.optString(EventOutbox.KEY_TYPE))
+                        || event == newestLocationEvent) {
+                    pipeline.push(event);
+                }
+            }
+
+            List<String> deliveredKeys = new ArrayList<>(pipeline.awaitAll());
+            deliveredKeys.addAll(supersededKeys);
+            EventOutbox.acknowledge(context, deliveredKeys);
+
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Delivered " + deliveredKeys.size() + " of " + events.size()
+                            + " events from outbox");
+
+            if (deliveredKeys.size() < events.size()) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Schedules work delivering pending events of {@link EventOutbox} once network is available,
+     * unless it is already scheduled
+     *
+     * @param context application {@link Context}
+     */
+    static void schedule(@NonNull Context context) {
+        try {
+            OneTimeWorkRequest drainRequest = new OneTimeWorkRequest.Builder(OutboxDrainWork.class)
+                    .setConstraints(new Constraints.Builder()
+                            .setRequiredNetworkType(NetworkType.CONNECTED)
+                            .build())
+                    .setInitialDelay(INITIAL_DELAY_IN_MILLIS, TimeUnit.MILLISECONDS)
+                    .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_DELAY_IN_MILLIS,
+                            TimeUnit.MILLISECONDS)
+                    .build();
+
+            WorkManager.getInstance(context).enqueueUniqueWork(TAG_WORK_DRAIN_OUTBOX,
+                    ExistingWorkPolicy.KEEP, drainRequest);
+
+        } catch (NoClassDefFoundError t) {
+            CTGeofenceAPI.getLogger().info(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "WorkManager dependency is missing");
+        } catch (Throwable t) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to schedule outbox drain work request");
+            t.printStackTrace();
+        }
+    }
+}
@@ -10,16 +10,16 @@ import androidx.annotation.WorkerThread;
 
 import com.clevertap.android.geofence.interfaces.CTGeofenceEventsListener;
 import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
 import com.clevertap.android.sdk.CleverTapAPI;
 import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofenceStatusCodes;
 import com.google.android.gms.location.GeofencingEvent;
 
-import org.json.JSONArray;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Future;
 
 /**
  * A task of type {@link CTGeofenceTask} responsible for processing and sending {@code GeoCluster Entered}
@@ -28,19 +28,45 @@ import java.util.concurrent.Future;
 class PushGeofenceEventTask implements CTGeofenceTask {
 
     private final Context context;
-    @NonNull private final Intent intent;
+    @Nullable private final Intent intent;
+    @Nullable private final List<String> triggeringGeofenceIds;
+    @Nullable private final Location triggeringLocation;
+    private final int geofenceTransition;
     @Nullable
     private OnCompleteListener onCompleteListener;
 
     PushGeofenceEventTask(Context context, @NonNull Intent intent) {
         this.context = context.getApplicationContext();
         this.intent = intent;
+        this.triggeringGeofenceIds = null;
+        this.triggeringLocation = null;
+        this.geofenceTransition = 0;
+    }
+
+    /**
+     * Creates task for geofence transition detected within SDK by {@link SoftwareGeofenceAdapter},
+     * instead of one received from OS through {@link Intent}
+     *
+     * @param context               application {@link Context}
+     * @param triggeringGeofenceIds ids of triggered geofences
+     * @param triggeringLocation    {@link Location} object which triggered geofence event
+     * @param geofenceTransition    one of {@link Geofence#GEOFENCE_TRANSITION_ENTER} or
+     *                              {@link Geofence#GEOFENCE_TRANSITION_EXIT}
+     */
+    PushGeofenceEventTask(Context context, @NonNull List<String> triggeringGeofenceIds,
+                          @Nullable Location triggeringLocation, int geofenceTransition) {
+        this.context = context.getApplicationContext();
+        this.intent = null;
+        this.triggeringGeofenceIds = triggeringGeofenceIds;
+        this.triggeringLocation = triggeringLocation;
+        this.geofenceTransition = geofenceTransition;
     }
 
     /**
      * Creates {@link com.clevertap.android.sdk.CleverTapAPI} instance if it's null, mostly in killed state.
      * On Enter or Exit transition triggered {@link GeofencingEvent} will be sent to {@link #pushGeofenceEvents(List, Location, int)}
-     * for further processing, if it has no error in it.<br>
+     * for further processing, if it has no error in it. Transitions detected within SDK are processed
+     * directly.<br>
      * Caller will be notified of completion of the task through {@link OnCompleteListener}
      */
     @WorkerThread
@@ -56,6 +82,14 @@ class PushGeofenceEventTask implements CTGeofenceTask {
             return;
         }
 
+        if (intent == null) {
+            // transition detected within SDK, there is no GeofencingEvent to read
+            if (triggeringGeofenceIds != null) {
+                pushGeofenceEventsById(triggeringGeofenceIds, triggeringLocation, geofenceTransition);
+            }
+            sendOnCompleteEvent();
+            return;
+        }
 
         GeofencingEvent geofencingEvent = GeofencingEvent.fromIntent(intent);
 
@@ -86,8 +120,8 @@ class PushGeofenceEventTask implements CTGeofenceTask {
             final List<Geofence> triggeringGeofences = geofencingEvent.getTriggeringGeofences();
             final Location triggeringLocation = geofencingEvent.getTriggeringLocation();
 
-            // send geofence event through queue to avoid loss of old geofence data
-            // for example. while searching triggered geofence in file, it may be overwritten by new fences received from server
+            // triggered geofences are searched in published snapshot of GeofenceStore, so new
+            // fences received from server concurrently can't overwrite them mid lookup
 
             pushGeofenceEvents(triggeringGeofences, triggeringLocation, geofenceTransition);
 
@@ -115,10 +149,14 @@ class PushGeofenceEventTask implements CTGeofenceTask {
     }
 
     /**
-     * Searches triggered geofences in file and sends them to CleverTap SDK to raise {@code GeoCluster Entered}
-     * or {@code GeoCluster Exited} events. Error will be sent to CleverTap in case triggered geofence
-     * not found in file.<br>
-     * Apps will be notified of events through {@link CTGeofenceEventsListener} on main thread
+     * Searches triggered geofences in {@link GeofenceStore} and sends them to CleverTap SDK to raise
+     * {@code GeoCluster Entered} or {@code GeoCluster Exited} events. Error will be sent to CleverTap
+     * in case triggered geofence not found in file. Events are added to {@link EventOutbox} and
+     * pushed through {@link GeofenceEventPipeline}, those whose push fails are delivered later by
+     * {@link OutboxDrainWork}.<br>
+     * Apps will be notified of events through {@link GeofenceEventBus}, once per geofence event.
+     * Notification does not depend on availability of CleverTap SDK instance, since events are
+     * kept in {@link EventOutbox} until they are delivered.
      *
      * @param triggeringGeofences List of triggered {@link Geofence}
      * @param triggeringLocation {@link Location} object which triggered geofence event
@@ -141,126 +179,189 @@ class PushGeofenceEventTask implements CTGeofenceTask {
 
         }
 
-        // Search triggered geofences in file by id and send stored geofence object to CT SDK
-        String oldFenceListString = FileUtils.readFromFile(context,
-                FileUtils.getCachedFullPath(context, CTGeofenceConstants.CACHED_FILE_NAME));
-        if (!oldFenceListString.trim().equals("")) {
-
-            JSONObject jsonObject;
-            try {
-                jsonObject = new JSONObject(oldFenceListString);
-                JSONArray jsonArray = jsonObject.getJSONArray(CTGeofenceConstants.KEY_GEOFENCES);
-
-                for (Geofence triggeredGeofence : triggeringGeofences) {
-
-                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                            "Searching Triggered geofence with id = " + triggeredGeofence.getRequestId()
-                                    + " in file...");
-
-                    boolean isTriggeredGeofenceFound = false;
-
-                    for (int i = 0; i < jsonArray.length(); i++) {
-                        final JSONObject geofence = jsonArray.getJSONObject(i);
-                        if (String.valueOf(geofence.getInt(CTGeofenceConstants.KEY_ID))
-                                .equals(triggeredGeofence.getRequestId())) {
-                            // triggered geofence found in file
-
-                            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                    "Triggered geofence with id = " + triggeredGeofence.getRequestId()
-                                            + " is found in file! Sending it to CT SDK");
-
-                            isTriggeredGeofenceFound = true;
-
-                            if (triggeringLocation != null) {
-                                geofence.put("triggered_lat", triggeringLocation.getLatitude());
-                                geofence.put("triggered_lng", triggeringLocation.getLongitude());
-                            }
-
-                            Future<?> future;
-
-                            CleverTapAPI cleverTapApi = CTGeofenceAPI.getInstance(context).getCleverTapApi();
-
-                            if (cleverTapApi == null) {
-                                return;
-                            }
-
-                            final CTGeofenceEventsListener ctGeofenceEventsListener = CTGeofenceAPI
-                                    .getInstance(context).getCtGeofenceEventsListener();
-
-                            if (geofenceTransition == Geofence.GEOFENCE_TRANSITION_ENTER) {
-
-                                // send event to CleverTap SDK
-                                future = cleverTapApi.pushGeofenceEnteredEvent(geofence);
-
-                                // send event to Listener on main thread
-                                if (ctGeofenceEventsListener != null) {
-                                    com.clevertap.android.sdk.Utils.runOnUiThread(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            ctGeofenceEventsListener.onGeofenceEnteredEvent(geofence);
-                                        }
-                                    });
-                                }
-
-                            } else {
-
-                                // send event to CleverTap SDK
-                                future = cleverTapApi.pushGeoFenceExitedEvent(geofence);
-
-                                // send event to Listener on main thread
-                                if (ctGeofenceEventsListener != null) {
-                                    com.clevertap.android.sdk.Utils.runOnUiThread(new Runnable() {
-                                        @Override
-                                        public void run() {
-                                            ctGeofenceEventsListener.onGeofenceExitedEvent(geofence);
-                                        }
-                                    });
-                                }
-                            }
-
-                            try {
-                                CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                        "Calling future for geofence event with id = " +
-                                                triggeredGeofence.getRequestId());
-                                future.get();
-
-                                CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                        "Finished calling future for geofence event with id = " +
-                                                triggeredGeofence.getRequestId());
-                            } catch (Exception e) {
-                                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                        "Failed to push geofence event with id = " +
-                                                triggeredGeofence.getRequestId());
-                                e.printStackTrace();
-                            }
-
-                            break;
-                        }
-                    }
-
-                    if (!isTriggeredGeofenceFound) {
-                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                                "Triggered geofence with id = " + triggeredGeofence.getRequestId()
-                                        + " is not found in file! Dropping this event");
-                        if(CTGeofenceAPI.getInstance(context).getCleverTapApi() != null){
-                            CTGeofenceAPI.getInstance(context)
-                                    .getCleverTapApi()
-                                    .pushGeoFenceError(CTGeofenceConstants.ERROR_CODE,
-                                            "Triggered geofence with id = " +
-                                                    triggeredGeofence.getRequestId()
-                                                    + " is not found in file! Dropping this event");
-                        }
-                    }
+        List<String> triggeringGeofenceIds = new ArrayList<>(triggeringGeofences.size());
+        for (Geofence triggeredGeofence : triggeringGeofences) {
+            triggeringGeofenceIds.add(triggeredGeofence.getRequestId());
+        }
 
-                }
-            } catch (Exception e) {
+        pushGeofenceEventsById(triggeringGeofenceIds, triggeringLocation, geofenceTransition);
+    }
+
+    /**
+     * Same as {@link #pushGeofenceEvents(List, Location, int)} but for ids of triggered geofences.
+     * Transitions are first passed through {@link GeofenceTransitionFilter}, which drops
+     * duplicate and flapping ones and adds deferred ones which have become due, so ids may be
+     * empty just to report those.
+     *
+     * @param triggeringGeofenceIds List of triggered geofence ids
+     * @param triggeringLocation {@link Location} object which triggered geofence event
+     * @param geofenceTransition int value of geofence transition event
+     */
+    @WorkerThread
+    private void pushGeofenceEventsById(@NonNull List<String> triggeringGeofenceIds,
+                                        @Nullable Location triggeringLocation, int geofenceTransition) {
+
+        List<String> geofenceIds = removeReselectionBoundary(triggeringGeofenceIds);
+
+        CleverTapAPI cleverTapApi = CTGeofenceAPI.getInstance(context).getCleverTapApi();
+
+        List<CTGeofenceEvent> geofenceEvents = createGeofenceEvents(geofenceIds, triggeringLocation,
+                geofenceTransition, cleverTapApi);
+
+        // queued only once triggered geofences are looked up, since reselection runs concurrently
+        // on main queue and publishes newly selected geofences, which may not include them
+        if (geofenceIds.size() < triggeringGeofenceIds.size()
+                && geofenceTransition == Geofence.GEOFENCE_TRANSITION_EXIT) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Exited reselection boundary, selecting nearest geofences again");
+
+            CTGeofenceTaskManager.getInstance().postAsyncSafely("ReselectGeofences",
+                    new GeofenceUpdateTask(context, null, true, triggeringLocation));
+        }
+
+        if (geofenceEvents.isEmpty()) {
+            return;
+        }
+
+        // send all events to listeners at once, each on its own executor or main thread
+        CTGeofenceAPI.getInstance(context).getEventBus().postGeofenceEvents(geofenceEvents);
+
+        // json is built once for outbox, and the same object is pushed to CleverTap SDK
+        List<JSONObject> events = new ArrayList<>(geofenceEvents.size());
+        for (CTGeofenceEvent geofenceEvent : geofenceEvents) {
+            JSONObject event = EventOutbox.geofenceEvent(geofenceEvent.toJSON(),
+                    geofenceEvent.getTransition(), geofenceEvent.getTimestamp());
+            if (event != null) {
+                events.add(event);
+            }
+        }
+
+        GeofenceEventPipeline.deliver(context, cleverTapApi, events);
+    }
+
+    /**
+     * Passes triggered geofences through {@link GeofenceTransitionFilter} and creates an event for
+     * each transition reported
+     *
+     * @param geofenceIds        ids of triggered geofences
+     * @param triggeringLocation {@link Location} object which triggered geofence event
+     * @param geofenceTransition int value of geofence transition event
+     * @param cleverTapApi       receives errors of geofences not found, may be null
+     * @return created events, empty if nothing is to be reported
+     */
+    @WorkerThread
+    @NonNull
+    private List<CTGeofenceEvent> createGeofenceEvents(@NonNull List<String> geofenceIds,
+                                                       @Nullable Location triggeringLocation,
+                                                       int geofenceTransition,
+                                                       @Nullable CleverTapAPI cleverTapApi) {
+
+        List<String> enteredGeofenceIds = new ArrayList<>();
+        List<String> exitedGeofenceIds = new ArrayList<>();
+        GeofenceTransitionFilter.filter(context, geofenceIds, geofenceTransition,
+                enteredGeofenceIds, exitedGeofenceIds);
+
+        List<CTGeofenceEvent> geofenceEvents = new ArrayList<>(enteredGeofenceIds.size()
+                + exitedGeofenceIds.size());
+
+        if (enteredGeofenceIds.isEmpty() && exitedGeofenceIds.isEmpty()) {
+            return geofenceEvents;
+        }
+
+        // Search triggered geofences in memory by id and send stored geofence object to CT SDK
+        GeofenceCache geofences = GeofenceStore.getInstance().getGeofences(context);
+        if (geofences.size() == 0) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "No registered geofences found! Dropping triggered geofence events");
+            return geofenceEvents;
+        }
+
+        // identifies event along with geofence id and transition, so that a transition delivered
+        // again by OS is not pushed twice
+        long transitionTime = triggeringLocation != null && triggeringLocation.getTime() > 0
+                ? triggeringLocation.getTime() : System.currentTimeMillis();
+
+        addGeofenceEvents(enteredGeofenceIds, triggeringLocation,
+                Geofence.GEOFENCE_TRANSITION_ENTER, transitionTime, cleverTapApi, geofenceEvents);
+        addGeofenceEvents(exitedGeofenceIds, triggeringLocation,
+                Geofence.GEOFENCE_TRANSITION_EXIT, transitionTime, cleverTapApi, geofenceEvents);
+
+        return geofenceEvents;
+    }
+
+    /**
+     * Searches given geofences in {@link GeofenceStore} and creates an event for each one found
+     *
+     * @param geofenceIds        ids of geofences whose transition is reported
+     * @param triggeringLocation {@link Location} object which triggered geofence event
+     * @param geofenceTransition int value of geofence transition event
+     * @param transitionTime     time of transition
+     * @param cleverTapApi       instance receiving errors, may be null
+     * @param geofenceEvents     receives created events
+     */
+    @WorkerThread
+    private void addGeofenceEvents(@NonNull List<String> geofenceIds,
+                                   @Nullable Location triggeringLocation,
+                                   int geofenceTransition, long transitionTime,
+                                   @Nullable CleverTapAPI cleverTapApi,
+                                   @NonNull List<CTGeofenceEvent> geofenceEvents) {
+
+        for (String requestId : geofenceIds) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Searching Triggered geofence with id = " + requestId
+                            + " in file...");
+
+            CTGeofenceEvent geofenceEvent = GeofenceStore.getInstance().getGeofenceEvent(context,
+                    requestId, geofenceTransition, triggeringLocation, transitionTime);
+
+            if (geofenceEvent == null) {
                 CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Failed to read triggered geofences from file");
-                e.printStackTrace();
+                        "Triggered geofence with id = " + requestId
+                                + " is not found in file! Dropping this event");
+                if (cleverTapApi != null) {
+                    cleverTapApi.pushGeoFenceError(CTGeofenceConstants.ERROR_CODE,
+                            "Triggered geofence with id = " +
+                                    requestId
+                                    + " is not found in file! Dropping this event");
+                }
+                continue;
             }
+
+            // triggered geofence found in file
+
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Triggered geofence with id = " + requestId
+                            + " is found in file! Sending it to CT SDK");
+
+            geofenceEvents.add(geofenceEvent);
         }
     }
 
+    /**
+     * Removes reselection boundary registered by {@link GeofenceUpdateTask} from triggered geofences,
+     * since it is internal to SDK and must never be sent to CleverTap SDK or
+     * {@link CTGeofenceEventsListener}. On its exit, nearest geofences are selected again around
+     * triggering location, by a task queued asynchronously on main queue of
+     * {@link CTGeofenceTaskManager} while this task runs on read queue.
+     *
+     * @param triggeringGeofenceIds List of triggered geofence ids
+     * @return ids of triggered geofences other than reselection boundary
+     */
+    @NonNull
+    private static List<String> removeReselectionBoundary(
+            @NonNull List<String> triggeringGeofenceIds) {
+
+        List<String> geofenceIds = new ArrayList<>(triggeringGeofenceIds.size());
+
+        for (String requestId : triggeringGeofenceIds) {
+            if (!CTGeofenceConstants.RESELECTION_GEOFENCE_ID.equals(requestId)) {
+                geofenceIds.add(requestId);
+            }
+        }
+
+        return geofenceIds;
+    }
+
     @Override
     public void setOnCompleteListener(@NonNull OnCompleteListener onCompleteListener) {
         this.onCompleteListener = onCompleteListener;
@@ -1,20 +1,32 @@
 package com.clevertap.android.geofence;
 
 import android.content.Context;
+import android.location.Location;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 
 import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
+import com.clevertap.android.geofence.interfaces.CTLocationAdapter;
 import com.clevertap.android.geofence.interfaces.CTLocationUpdatesListener;
+import com.clevertap.android.sdk.CleverTapAPI;
+import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.LocationResult;
 
-import java.util.concurrent.Future;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * A task of type {@link CTGeofenceTask} responsible for sending Location received from OS to
  * CleverTap SDK which will in turn send it to server to fetch latest geofence list.
+ * All accurate locations of the batch delivered by OS are evaluated against software geofences,
+ * while only locations on path simplified by {@link LocationTrajectory} are throttled and pinged.
+ * Accepted locations are added to {@link EventOutbox} before they are pushed, so that they are
+ * delivered later if push fails.
  */
 class PushLocationEventTask implements CTGeofenceTask {
 
@@ -49,18 +61,58 @@ class PushLocationEventTask implements CTGeofenceTask {
         }
 
         try {
+            CTLocationAdapter ctLocationAdapter = CTGeofenceAPI.getInstance(context).getCtLocationAdapter();
+            if (ctLocationAdapter instanceof GoogleLocationAdapter) {
+                // spares a request to OS when last location is asked for soon after
+                ((GoogleLocationAdapter) ctLocationAdapter)
+                        .onLocationReceived(locationResult.getLastLocation());
+            }
+
             Utils.notifyLocationUpdates(context,locationResult.getLastLocation());
 
-            @SuppressWarnings("ConstantConditions") //getCleverTapApi() won't be null here
-                    Future<?> future = null;
+            List<Location> accurateLocations = getAccurateLocations();
 
-            if (locationResult.getLastLocation()!=null)
-            {
-                future = CTGeofenceAPI.getInstance(context)
-                        .processTriggeredLocation(locationResult.getLastLocation());
+            // every accurate location is evaluated, since simplified path may skip the only
+            // location inside a geofence
+            Utils.evaluateSoftwareGeofences(context, accurateLocations);
+
+            // transitions held back by hysteresis or dwell time are reported once due, even when
+            // no further transition is received
+            if (GeofenceTransitionFilter.hasDeferred(context)) {
+                CTGeofenceTaskManager.getInstance().postAsyncSafely("PushGeofenceEvent",
+                        new PushGeofenceEventTask(context, Collections.<String>emptyList(),
+                                locationResult.getLastLocation(), Geofence.GEOFENCE_TRANSITION_ENTER));
+            }
+
+            LocationSamplingScheduler.onLocationChanged(context, locationResult.getLastLocation());
+
+            // every location on path is throttled, so that a fast moving device pings server
+            // along the way
+            List<Location> locations = LocationTrajectory.simplify(accurateLocations,
+                    LocationTrajectory.TOLERANCE_IN_METERS);
+
+            CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Throttling " + locations.size() + " out of "
+                            + locationResult.getLocations().size() + " locations");
+
+            List<JSONObject> events = new ArrayList<>();
+            Location lastAcceptedLocation = null;
+            for (Location location : locations) {
+                if (CTGeofenceAPI.getInstance(context).acceptTriggeredLocation(location)) {
+                    lastAcceptedLocation = location;
+                    JSONObject event = EventOutbox.locationEvent(location);
+                    if (event != null) {
+                        events.add(event);
+                    }
+                }
             }
 
-            if (future == null) {
+            // geofences are selected again only once per batch, around where device is now
+            if (lastAcceptedLocation != null) {
+                CTGeofenceAPI.getInstance(context).reselectGeofences(lastAcceptedLocation);
+            }
+
+            if (events.isEmpty()) {
                 CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                         "Dropping location ping event to CT server");
                 return;
@@ -69,7 +121,8 @@ class PushLocationEventTask implements CTGeofenceTask {
             CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                     "Calling future for setLocationForGeofences()");
 
-            future.get();
+            GeofenceEventPipeline.deliver(context,
+                    CTGeofenceAPI.getInstance(context).getCleverTapApi(), events);
 
             CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
                     "Finished calling future for setLocationForGeofences()");
@@ -84,6 +137,21 @@ class PushLocationEventTask implements CTGeofenceTask {
 
     }
 
+    /**
+     * Drops inaccurate locations of the batch, as per
+     * {@link CTLocationThrottlePolicy#getMinAccuracy()}
+     *
+     * @return list of accurate {@link Location}, oldest first
+     */
+    @NonNull
+    private List<Location> getAccurateLocations() {
+        CTGeofenceSettings geofenceSettings = CTGeofenceAPI.getInstance(context).getGeofenceSettings();
+        float minAccuracy = geofenceSettings != null
+                ? geofenceSettings.getLocationThrottlePolicy().getMinAccuracy() : 0;
+
+        return LocationTrajectory.filterByAccuracy(locationResult.getLocations(), minAccuracy);
+    }
+
     /**
      * Notifies listeners when task execution completes
      */
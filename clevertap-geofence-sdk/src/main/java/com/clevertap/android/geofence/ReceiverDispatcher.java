@@ -0,0 +1,300 @@
+package com.clevertap.android.geofence;
+
+import android.content.BroadcastReceiver;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.clevertap.android.geofence.CTGeofenceAPI.GEOFENCE_LOG_TAG;
+
+/**
+ * Dispatches work of SDK's {@link BroadcastReceiver}s off main thread and finishes their
+ * {@link BroadcastReceiver.PendingResult} once work posted to {@link CTGeofenceTaskManager} is
+ * complete or deadline of the broadcast is reached, whichever happens first.<br>
+ * Work is dispatched on a single thread with a bounded queue, and all pending results are finished
+ * from a single watchdog thread, so that a burst of broadcasts does not create a thread per
+ * broadcast. Watchdog is woken up as soon as any watched task completes, irrespective of queue it
+ * was posted to. Once queue is full, work runs on the calling thread instead, so that no broadcast is
+ * lost. This class is singleton, so only one queue will be created and shared.
+ */
+class ReceiverDispatcher {
+
+    /**
+     * Maximum number of broadcasts waiting to be dispatched, work of further broadcasts runs on
+     * main thread
+     */
+    static final int MAX_QUEUED_BROADCASTS = 64;
+
+    /**
+     * Interval in which watchdog checks work which can't notify its completion, i.e. whose
+     * {@link Future} is not a {@link CTGeofenceTaskManager.TaskFuture}
+     */
+    static final long POLL_INTERVAL_IN_MILLIS = 100;
+
+    private static ReceiverDispatcher receiverDispatcher;
+
+    private final ExecutorService dispatchExecutor;
+    private final ExecutorService watchdogExecutor;
+
+    private final Object lock = new Object();
+
+    /**
+     * Dispatched broadcasts in order of dispatch, guarded by {@link #lock}
+     */
+    private final List<Broadcast> dispatchedBroadcasts = new ArrayList<>();
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    // guarded by lock
+    private boolean isWatchdogRunning;
+    private boolean isWakeUpRequested;
+
+    private final Runnable wakeUpWatchdog = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                isWakeUpRequested = true;
+                lock.notifyAll();
+            }
+        }
+    };
+
+    private ReceiverDispatcher() {
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(1, 1,
+                30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(MAX_QUEUED_BROADCASTS));
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+
+        dispatchExecutor = threadPoolExecutor;
+        watchdogExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    static ReceiverDispatcher getInstance() {
+        if (receiverDispatcher == null) {
+            synchronized (ReceiverDispatcher.class) {
+                if (receiverDispatcher == null) {
+                    receiverDispatcher = new ReceiverDispatcher();
+                }
+            }
+        }
+        return receiverDispatcher;
+    }
+
+    /**
+     * Runs given work on dispatch thread and finishes provided {@link BroadcastReceiver.PendingResult}
+     * once {@link Future} returned by the work is done, or once {@code timeoutInMillis} has passed
+     * since this call
+     *
+     * @param name            name of receiver, used for logging
+     * @param result          result of {@link BroadcastReceiver#goAsync()}
+     * @param timeoutInMillis deadline of the broadcast, must be less than 10 secs to prevent ANR
+     * @param work            work posting tasks to {@link CTGeofenceTaskManager}, returning
+     *                        {@link Future} of the last task posted or null if nothing is pending.
+     *                        It may run on main thread, so anything heavier than posting tasks
+     *                        belongs in the posted tasks
+     */
+    @MainThread
+    void dispatch(@NonNull String name, @Nullable BroadcastReceiver.PendingResult result,
+                  long timeoutInMillis, @NonNull final Callable<Future<?>> work) {
+
+        final Broadcast broadcast = new Broadcast(name, result,
+                System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutInMillis));
+
+        inFlightCount.incrementAndGet();
+
+        Runnable dispatchWork = new Runnable() {
+            @Override
+            public void run() {
+                Future<?> future = null;
+                try {
+                    future = work.call();
+                } catch (Throwable t) {
+                    CTGeofenceAPI.getLogger().debug(GEOFENCE_LOG_TAG,
+                            "Exception while processing " + broadcast.name + " receiver intent");
+                    t.printStackTrace();
+                }
+                watch(broadcast, future);
+            }
+        };
+
+        try {
+            dispatchExecutor.execute(dispatchWork);
+        } catch (RejectedExecutionException e) {
+            // work of every receiver only posts tasks to task manager, so it is cheap enough to
+            // run on main thread
+            CTGeofenceAPI.getLogger().debug(GEOFENCE_LOG_TAG,
+                    "Too many pending broadcasts! Processing " + name
+                            + " receiver intent on main thread");
+            dispatchWork.run();
+        }
+    }
+
+    /**
+     * @return number of broadcasts received whose {@link BroadcastReceiver.PendingResult} is not
+     * finished yet
+     */
+    int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    /**
+     * Hands over dispatched broadcast to watchdog, starting watchdog if it is not running and waking
+     * it up otherwise, once broadcast's work completes as well as right away
+     */
+    private void watch(@NonNull Broadcast broadcast, @Nullable Future<?> future) {
+        synchronized (lock) {
+            broadcast.future = future;
+            dispatchedBroadcasts.add(broadcast);
+
+            if (!isWatchdogRunning) {
+                isWatchdogRunning = true;
+                watchdogExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        runWatchdog();
+                    }
+                });
+            } else {
+                isWakeUpRequested = true;
+                lock.notifyAll();
+            }
+        }
+
+        // called outside lock, since listener runs right away if task is already complete
+        if (future instanceof CTGeofenceTaskManager.TaskFuture) {
+            ((CTGeofenceTaskManager.TaskFuture) future).addListener(wakeUpWatchdog);
+        }
+    }
+
+    /**
+     * Finishes dispatched broadcasts as their work completes or their deadline passes, until none
+     * is left. Watchdog sleeps until the earliest deadline and is woken up by completion of any
+     * watched task, so that work completing ahead of older work, e.g. a geofence transition on
+     * read queue, finishes its broadcast right away. Work which can't notify its completion is
+     * checked every {@link #POLL_INTERVAL_IN_MILLIS}.
+     */
+    private void runWatchdog() {
+
+        while (true) {
+
+            List<Broadcast> finishedBroadcasts = new ArrayList<>();
+            boolean isPending = false;
+            long waitTime = 0;
+
+            synchronized (lock) {
+                isWakeUpRequested = false;
+
+                long now = System.nanoTime();
+                long earliestDeadline = now;
+                boolean isPollRequired = false;
+
+                Iterator<Broadcast> iterator = dispatchedBroadcasts.iterator();
+                while (iterator.hasNext()) {
+                    Broadcast broadcast = iterator.next();
+
+                    if (broadcast.future == null || broadcast.future.isDone()
+                            || broadcast.deadline - now <= 0) {
+                        iterator.remove();
+                        finishedBroadcasts.add(broadcast);
+                    } else {
+                        if (!isPending || broadcast.deadline - earliestDeadline < 0) {
+                            earliestDeadline = broadcast.deadline;
+                        }
+                        isPending = true;
+                        isPollRequired |= !(broadcast.future
+                                instanceof CTGeofenceTaskManager.TaskFuture);
+                    }
+                }
+
+                if (!isPending && finishedBroadcasts.isEmpty()) {
+                    isWatchdogRunning = false;
+                    return;
+                }
+
+                waitTime = earliestDeadline - now;
+                if (isPollRequired) {
+                    waitTime = Math.min(waitTime,
+                            TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_IN_MILLIS));
+                }
+            }
+
+            for (Broadcast broadcast : finishedBroadcasts) {
+                finish(broadcast);
+            }
+
+            if (isPending) {
+                synchronized (lock) {
+                    try {
+                        // wake up requested while finishing broadcasts is not missed
+                        if (!isWakeUpRequested) {
+                            TimeUnit.NANOSECONDS.timedWait(lock, waitTime);
+                        }
+                    } catch (InterruptedException e) {
+                        // pending broadcasts are checked in next iteration
+                    }
+                }
+            }
+        }
+    }
+
+    private void finish(@NonNull Broadcast broadcast) {
+
+        if (broadcast.future != null && !broadcast.future.isDone()) {
+            CTGeofenceAPI.getLogger().debug(GEOFENCE_LOG_TAG,
+                    "Timeout " + broadcast.name + " receiver execution limit");
+        }
+
+        try {
+            if (broadcast.result != null) {
+                broadcast.result.finish();
+
+                CTGeofenceAPI.getLogger().debug(GEOFENCE_LOG_TAG,
+                        broadcast.name + " receiver Pending Intent is finished");
+            }
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(GEOFENCE_LOG_TAG,
+                    "Failed to finish " + broadcast.name + " receiver Pending Intent");
+            e.printStackTrace();
+        } finally {
+            inFlightCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * A received broadcast along with its deadline and pending work
+     */
+    private static class Broadcast {
+
+        final String name;
+        @Nullable
+        final BroadcastReceiver.PendingResult result;
+
+        /**
+         * Deadline in {@link System#nanoTime()} time base
+         */
+        final long deadline;
+
+        // guarded by lock
+        @Nullable
+        Future<?> future;
+
+        Broadcast(@NonNull String name, @Nullable BroadcastReceiver.PendingResult result,
+                  long deadline) {
+            this.name = name;
+            this.result = result;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.clevertap.android.geofence;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
+import com.clevertap.android.geofence.model.CTGeofence;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Monitors geofences within SDK instead of registering them to OS. Enter and exit transitions are
+ * evaluated against locations received through {@link CTLocationUpdateReceiver},
+ * {@link BackgroundLocationWork} and {@link CTGeofenceAPI#triggerLocation()}, so any number of
+ * geofences can be monitored. Registered geofences are kept in a {@link GeofenceSpatialIndex} so that
+ * every location is matched only against geofences around it.
+ * <br><br>
+ * Registered geofences are persisted to {@link CTGeofenceConstants#SOFTWARE_GEOFENCES_FILE_NAME} and
+ * ids of geofences device is inside of to {@link CTGeofenceConstants#SOFTWARE_GEOFENCE_STATE_FILE_NAME},
+ * so that transitions are detected across app restarts. Transitions are sent through
+ * {@link PushGeofenceEventTask}, same as transitions received from OS.
+ */
+class SoftwareGeofenceAdapter implements CTGeofenceAdapter {
+
+    /**
+     * Upper limit of location accuracy by which a geofence must be left before exit is detected
+     */
+    private static final float MAX_EXIT_MARGIN_IN_METERS = 100;
+
+    private static final String KEY_TRANSITION_TYPE = "transition";
+    private static final String KEY_INSIDE = "inside";
+
+    private static final OnSuccessListener NO_OP_LISTENER = new OnSuccessListener() {
+        @Override
+        public void onSuccess(Object o) {
+        }
+    };
+
+    private final Context context;
+
+    /**
+     * Registered geofences keyed by id, {@code null} until loaded from file
+     */
+    @Nullable
+    private Map<String, CTGeofence> geofences;
+
+    /**
+     * Registered geofences in order of ids of {@link #geofenceIndex}
+     */
+    @NonNull
+    private List<CTGeofence> indexedGeofences = new ArrayList<>();
+    @Nullable
+    private GeofenceSpatialIndex geofenceIndex;
+
+    @NonNull
+    private Set<String> insideGeofenceIds = new HashSet<>();
+
+    SoftwareGeofenceAdapter(@NonNull Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * Adds list of geofences to geofences monitored within SDK. Device is considered outside of
+     * added geofences, so that enter transition is triggered on next location if device is already
+     * inside, same as {@link com.google.android.gms.location.GeofencingRequest#INITIAL_TRIGGER_ENTER}
+     * <br><br>
+     * <b>Must be called from background thread</b>
+     *
+     * @param fenceList list of {@link CTGeofence}
+     * @param onSuccessListener callback for successful registration
+     */
+    @SuppressWarnings("unchecked")
+    @WorkerThread
+    @Override
+    public synchronized void addAllGeofence(@Nullable List<CTGeofence> fenceList,
+                                            @NonNull OnSuccessListener onSuccessListener) {
+
+        if (fenceList == null || fenceList.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<String, CTGeofence> registeredGeofences = getGeofences();
+
+            for (CTGeofence ctGeofence : fenceList) {
+                registeredGeofences.put(ctGeofence.getId(), ctGeofence);
+                insideGeofenceIds.remove(ctGeofence.getId());
+            }
+
+            onGeofencesChanged();
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Geofence registered successfully to software geofence engine");
+
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to add geofences for monitoring");
+            e.printStackTrace();
+        } finally {
+            onSuccessListener.onSuccess(null);
+        }
+    }
+
+    /**
+     * Removes list of geofences from geofences monitored within SDK, without triggering exit
+     * transition
+     * <br><br>
+     * <b>Must be called from background thread</b>
+     *
+     * @param fenceIdList list of {@link CTGeofence} Ids to unregister
+     * @param onSuccessListener callback for successful removal of geofences
+     */
+    @SuppressWarnings("unchecked")
+    @WorkerThread
+    @Override
+    public synchronized void removeAllGeofence(@Nullable List<String> fenceIdList,
+                                               @NonNull OnSuccessListener onSuccessListener) {
+
+        if (fenceIdList == null || fenceIdList.isEmpty()) {
+            return;
+        }
+
+        try {
+            Map<String, CTGeofence> registeredGeofences = getGeofences();
+
+            for (String fenceId : fenceIdList) {
+                registeredGeofences.remove(fenceId);
+                insideGeofenceIds.remove(fenceId);
+            }
+
+            onGeofencesChanged();
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Geofence removed successfully from software geofence engine");
+
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to remove registered geofences");
+            e.printStackTrace();
+        } finally {
+            onSuccessListener.onSuccess(null);
+        }
+    }
+
+    /**
+     * Stops monitoring of all geofences and deletes their state. Provided {@link PendingIntent} is
+     * not used, since no geofences are registered to OS.
+     * <br><br>
+     * <b>Must be called from background thread</b>
+     *
+     * @param pendingIntent not used
+     */
+    @WorkerThread
+    @Override
+    public synchronized void stopGeofenceMonitoring(@Nullable PendingIntent pendingIntent) {
+
+        geofences = new LinkedHashMap<>();
+        indexedGeofences = new ArrayList<>();
+        geofenceIndex = null;
+        insideGeofenceIds = new HashSet<>();
+
+        FileUtils.deleteFile(context, FileUtils.getCachedFullPath(context,
+                CTGeofenceConstants.SOFTWARE_GEOFENCES_FILE_NAME));
+        FileUtils.deleteFile(context, FileUtils.getCachedFullPath(context,
+                CTGeofenceConstants.SOFTWARE_GEOFENCE_STATE_FILE_NAME));
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Geofence removed successfully from software geofence engine");
+    }
+
+    /**
+     * Same as {@link #addAllGeofence(List, OnSuccessListener)}, since geofences are registered
+     * within SDK without waiting for OS
+     *
+     * @return already completed {@link Task}
+     */
+    @WorkerThread
+    @NonNull
+    @Override
+    public Task<Void> addAllGeofenceAsync(@Nullable List<CTGeofence> fenceList,
+                                          @Nullable CancellationToken cancellationToken) {
+        addAllGeofence(fenceList, NO_OP_LISTENER);
+        return TaskUtils.forResult(null);
+    }
+
+    /**
+     * Same as {@link #removeAllGeofence(List, OnSuccessListener)}, since geofences are removed
+     * within SDK without waiting for OS
+     *
+     * @return already completed {@link Task}
+     */
+    @WorkerThread
+    @NonNull
+    @Override
+    public Task<Void> removeAllGeofenceAsync(@Nullable List<String> fenceIdList,
+                                             @Nullable CancellationToken cancellationToken) {
+        removeAllGeofence(fenceIdList, NO_OP_LISTENER);
+        return TaskUtils.forResult(null);
+    }
+
+    /**
+     * Same as {@link #stopGeofenceMonitoring(PendingIntent)}, since geofences are removed within
+     * SDK without waiting for OS
+     *
+     * @return already completed {@link Task}
+     */
+    @WorkerThread
+    @NonNull
+    @Override
+    public Task<Void> stopGeofenceMonitoringAsync(@Nullable PendingIntent pendingIntent,
+                                                  @Nullable CancellationToken cancellationToken) {
+        stopGeofenceMonitoring(pendingIntent);
+        return TaskUtils.forResult(null);
+    }
+
+    /**
+     * Evaluates enter and exit transitions of registered geofences against provided locations, in
+     * the order they were received. Transitions are sent through {@link PushGeofenceEventTask}.
+     * <br><br>
+     * <b>Must be called from background thread</b>
+     *
+     * @param locations list of {@link Location}, oldest first
+     */
+    @WorkerThread
+    synchronized void onLocationsChanged(@Nullable List<Location> locations) {
+
+        if (locations == null || getGeofences().isEmpty()) {
+            return;
+        }
+
+        for (Location location : locations) {
+            if (location != null) {
+                evaluate(location);
+            }
+        }
+    }
+
+    /**
+     * Device enters a geofence once location is within its radius, and exits only once location is
+     * farther than its radius by accuracy of location, so that location jitter at the edge does not
+     * trigger repeated transitions
+     *
+     * @param location instance of {@link Location}
+     */
+    @WorkerThread
+    private void evaluate(@NonNull Location location) {
+
+        if (geofenceIndex == null) {
+            return;
+        }
+
+        double exitMargin = location.hasAccuracy() ?
+                Math.min(location.getAccuracy(), MAX_EXIT_MARGIN_IN_METERS) : 0;
+
+        int[] positions = geofenceIndex.containing(location.getLatitude(), location.getLongitude(),
+                exitMargin);
+
+        Set<String> currentGeofenceIds = new HashSet<>();
+        List<String> enteredGeofenceIds = new ArrayList<>();
+        List<String> exitedGeofenceIds = new ArrayList<>();
+
+        for (int position : positions) {
+            CTGeofence ctGeofence = indexedGeofences.get(geofenceIndex.getId(position));
+            boolean isInside = insideGeofenceIds.contains(ctGeofence.getId());
+
+            if (isInside || GeofenceSelector.distanceInMeters(location.getLatitude(),
+                    location.getLongitude(), ctGeofence.getLatitude(), ctGeofence.getLongitude())
+                    <= ctGeofence.getRadius()) {
+
+                currentGeofenceIds.add(ctGeofence.getId());
+
+                if (!isInside && isMonitored(ctGeofence, Geofence.GEOFENCE_TRANSITION_ENTER)) {
+                    enteredGeofenceIds.add(ctGeofence.getId());
+                }
+            }
+        }
+
+        for (String insideGeofenceId : insideGeofenceIds) {
+            CTGeofence ctGeofence = getGeofences().get(insideGeofenceId);
+            if (!currentGeofenceIds.contains(insideGeofenceId) && ctGeofence != null
+                    && isMonitored(ctGeofence, Geofence.GEOFENCE_TRANSITION_EXIT)) {
+                exitedGeofenceIds.add(insideGeofenceId);
+            }
+        }
+
+        if (!currentGeofenceIds.equals(insideGeofenceIds)) {
+            insideGeofenceIds = currentGeofenceIds;
+            writeState();
+        }
+
+        pushGeofenceEvents(exitedGeofenceIds, location, Geofence.GEOFENCE_TRANSITION_EXIT);
+        pushGeofenceEvents(enteredGeofenceIds, location, Geofence.GEOFENCE_TRANSITION_ENTER);
+    }
+
+    /**
+     * Sends triggered geofences to {@link PushGeofenceEventTask}, which runs on read queue of
+     * {@link CTGeofenceTaskManager}
+     */
+    @WorkerThread
+    private void pushGeofenceEvents(@NonNull List<String> geofenceIds, @NonNull Location location,
+                                    int geofenceTransition) {
+
+        if (geofenceIds.isEmpty()) {
+            return;
+        }
+
+        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                "Software geofence engine detected transition " + geofenceTransition
+                        + " for geofences " + geofenceIds);
+
+        CTGeofenceTaskManager.getInstance().postAsyncSafely("PushGeofenceEvent",
+                new PushGeofenceEventTask(context, geofenceIds, location, geofenceTransition));
+    }
+
+    /**
+     * Persists registered geofences and rebuilds {@link GeofenceSpatialIndex} over them
+     */
+    @WorkerThread
+    private void onGeofencesChanged() throws JSONException {
+
+        JSONArray geofenceArray = new JSONArray();
+        for (CTGeofence ctGeofence : getGeofences().values()) {
+            geofenceArray.put(new JSONObject()
+                    .put(CTGeofenceConstants.KEY_ID, ctGeofence.getId())
+                    .put("lat", ctGeofence.getLatitude())
+                    .put("lng", ctGeofence.getLongitude())
+                    .put("r", ctGeofence.getRadius())
+                    .put(KEY_TRANSITION_TYPE, ctGeofence.getTransitionType()));
+        }
+
+        FileUtils.writeJsonToFile(context, FileUtils.getCachedDirName(context),
+                CTGeofenceConstants.SOFTWARE_GEOFENCES_FILE_NAME,
+                new JSONObject().put(CTGeofenceConstants.KEY_GEOFENCES, geofenceArray));
+        writeState();
+
+        index();
+    }
+
+    @WorkerThread
+    private void writeState() {
+        try {
+            FileUtils.writeJsonToFile(context, FileUtils.getCachedDirName(context),
+                    CTGeofenceConstants.SOFTWARE_GEOFENCE_STATE_FILE_NAME,
+                    new JSONObject().put(KEY_INSIDE, new JSONArray(insideGeofenceIds)));
+        } catch (JSONException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to write software geofence state to file");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns registered geofences, loading them along with their state from file if they are not
+     * yet in memory
+     */
+    @WorkerThread
+    @NonNull
+    private Map<String, CTGeofence> getGeofences() {
+
+        if (geofences != null) {
+            return geofences;
+        }
+
+        geofences = new LinkedHashMap<>();
+        insideGeofenceIds = new HashSet<>();
+
+        try {
+            String geofencesString = FileUtils.readFromFile(context, FileUtils.getCachedFullPath(
+                    context, CTGeofenceConstants.SOFTWARE_GEOFENCES_FILE_NAME));
+
+            if (!geofencesString.trim().equals("")) {
+                JSONArray geofenceArray = new JSONObject(geofencesString)
+                        .getJSONArray(CTGeofenceConstants.KEY_GEOFENCES);
+
+                for (int i = 0; i < geofenceArray.length(); i++) {
+                    JSONObject geofence = geofenceArray.getJSONObject(i);
+                    String id = geofence.getString(CTGeofenceConstants.KEY_ID);
+                    geofences.put(id, new CTGeofence.Builder(id)
+                            .setLatitude(geofence.getDouble("lat"))
+                            .setLongitude(geofence.getDouble("lng"))
+                            .setRadius(geofence.getInt("r"))
+                            .setTransitionType(geofence.optInt(KEY_TRANSITION_TYPE))
+                            .build());
+                }
+            }
+
+            String stateString = FileUtils.readFromFile(context, FileUtils.getCachedFullPath(
+                    context, CTGeofenceConstants.SOFTWARE_GEOFENCE_STATE_FILE_NAME));
+
+            if (!stateString.trim().equals("")) {
+                JSONArray insideArray = new JSONObject(stateString).getJSONArray(KEY_INSIDE);
+                for (int i = 0; i < insideArray.length(); i++) {
+                    if (geofences.containsKey(insideArray.getString(i))) {
+                        insideGeofenceIds.add(insideArray.getString(i));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to read software geofences from file");
+            e.printStackTrace();
+        }
+
+        index();
+        return geofences;
+    }
+
+    private void index() {
+
+        indexedGeofences = new ArrayList<>(getGeofences().values());
+        int count = indexedGeofences.size();
+
+        double[] latitudes = new double[count];
+        double[] longitudes = new double[count];
+        int[] radii = new int[count];
+
+        for (int i = 0; i < count; i++) {
+            CTGeofence ctGeofence = indexedGeofences.get(i);
+            latitudes[i] = ctGeofence.getLatitude();
+            longitudes[i] = ctGeofence.getLongitude();
+            radii[i] = ctGeofence.getRadius();
+        }
+
+        geofenceIndex = GeofenceSpatialIndex.create(latitudes, longitudes, radii);
+    }
+
+    /**
+     * @return true if given transition is monitored for provided geofence, both enter and exit
+     * transitions are monitored if none is requested
+     */
+    private static boolean isMonitored(@NonNull CTGeofence ctGeofence, int geofenceTransition) {
+        return ctGeofence.getTransitionType() == 0
+                || (ctGeofence.getTransitionType() & geofenceTransition) != 0;
+    }
+}
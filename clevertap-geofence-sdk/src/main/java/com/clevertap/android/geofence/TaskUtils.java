@@ -0,0 +1,196 @@
+package com.clevertap.android.geofence;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Helpers to compose {@link Task}s returned by asynchronous methods of
+ * {@link com.clevertap.android.geofence.interfaces.CTGeofenceAdapter} and
+ * {@link com.clevertap.android.geofence.interfaces.CTLocationAdapter}, so that calls to Google
+ * Play Services never park a thread of {@link CTGeofenceTaskManager}.
+ * <br><br>
+ * Continuations and timeouts run on a single shared background thread which is released when
+ * idle. Requests to OS which must not overlap, e.g. removal of geofences followed by addition, are
+ * chained one after another through {@link #enqueue(Continuation)}.
+ */
+class TaskUtils {
+
+    /**
+     * Maximum time to wait for a request to Google Play Services to complete
+     */
+    static final long DEFAULT_TIMEOUT_IN_MILLIS = 30 * 1000;
+
+    private static final ScheduledThreadPoolExecutor executor;
+
+    static {
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Object lock = new Object();
+
+    // guarded by lock
+    @NonNull
+    private static Task<Void> lastEnqueuedTask = forResult(null);
+    @NonNull
+    private static CancellationTokenSource cancellationTokenSource = new CancellationTokenSource();
+
+    private TaskUtils() {
+    }
+
+    /**
+     * @return executor on which continuations of adapter {@link Task}s are run
+     */
+    @NonNull
+    static Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @return already completed {@link Task} with given result
+     */
+    @NonNull
+    static <T> Task<T> forResult(@Nullable T result) {
+        TaskCompletionSource<T> taskCompletionSource = new TaskCompletionSource<>();
+        taskCompletionSource.setResult(result);
+        return taskCompletionSource.getTask();
+    }
+
+    /**
+     * Returns a {@link Task} which completes along with given task, or fails with
+     * {@link TimeoutException} if given task does not complete within given time, or is cancelled
+     * when given {@link CancellationToken} is cancelled, whichever happens first
+     *
+     * @param task              task to wait for, null is treated as a failed task
+     * @param timeoutInMillis   maximum time to wait for given task
+     * @param cancellationToken token to cancel waiting, can be null
+     * @return an instance of {@link Task}
+     */
+    @NonNull
+    static <T> Task<T> withTimeout(@Nullable Task<T> task, long timeoutInMillis,
+                                   @Nullable CancellationToken cancellationToken) {
+
+        final TaskCompletionSource<T> taskCompletionSource = cancellationToken != null
+                ? new TaskCompletionSource<T>(cancellationToken) : new TaskCompletionSource<T>();
+
+        if (task == null) {
+            taskCompletionSource.trySetException(new IllegalStateException("Task is null"));
+            return taskCompletionSource.getTask();
+        }
+
+        final ScheduledFuture<?> timeoutFuture = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                taskCompletionSource.trySetException(new TimeoutException("Timed out waiting for task"));
+            }
+        }, timeoutInMillis, TimeUnit.MILLISECONDS);
+
+        task.addOnCompleteListener(executor, new OnCompleteListener<T>() {
+            @Override
+            public void onComplete(@NonNull Task<T> completedTask) {
+                timeoutFuture.cancel(false);
+
+                if (completedTask.isCanceled()) {
+                    taskCompletionSource.trySetException(new CancellationException("Task is cancelled"));
+                } else if (completedTask.isSuccessful()) {
+                    taskCompletionSource.trySetResult(completedTask.getResult());
+                } else {
+                    taskCompletionSource.trySetException(completedTask.getException());
+                }
+            }
+        });
+
+        return taskCompletionSource.getTask();
+    }
+
+    /**
+     * Logs outcome of given {@link Task} once it completes
+     *
+     * @return same task, for chaining
+     */
+    @NonNull
+    static <T> Task<T> logCompletion(@NonNull Task<T> task, @NonNull final String successMessage,
+                                     @NonNull final String failureMessage) {
+        return task.addOnCompleteListener(executor, new OnCompleteListener<T>() {
+            @Override
+            public void onComplete(@NonNull Task<T> completedTask) {
+                if (completedTask.isSuccessful()) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, successMessage);
+                } else {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG, failureMessage);
+                    if (completedTask.getException() != null) {
+                        completedTask.getException().printStackTrace();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts given work once all previously enqueued work is complete, successfully or not.
+     * Work receives the last completed {@link Task} and returns a {@link Task} representing its own
+     * completion.
+     *
+     * @param work work issuing requests to OS
+     * @return a {@link Task} which completes along with {@link Task} returned by the work
+     */
+    @NonNull
+    static Task<Void> enqueue(@NonNull final Continuation<Void, Task<Void>> work) {
+        synchronized (lock) {
+            lastEnqueuedTask = lastEnqueuedTask.continueWithTask(executor,
+                    new Continuation<Void, Task<Void>>() {
+                        @Override
+                        public Task<Void> then(@NonNull Task<Void> task) {
+                            try {
+                                Task<Void> workTask = work.then(task);
+                                return workTask != null ? workTask : TaskUtils.<Void>forResult(null);
+                            } catch (Exception e) {
+                                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                        "Failed to execute enqueued work");
+                                e.printStackTrace();
+                                return forResult(null);
+                            }
+                        }
+                    });
+            return lastEnqueuedTask;
+        }
+    }
+
+    /**
+     * @return token which is cancelled by next call to {@link #cancelPending()}
+     */
+    @NonNull
+    static CancellationToken getCancellationToken() {
+        synchronized (lock) {
+            return cancellationTokenSource.getToken();
+        }
+    }
+
+    /**
+     * Stops waiting for requests issued with token of {@link #getCancellationToken()}, so that
+     * enqueued work following them starts without waiting for their timeout
+     */
+    static void cancelPending() {
+        CancellationTokenSource previousSource;
+        synchronized (lock) {
+            previousSource = cancellationTokenSource;
+            cancellationTokenSource = new CancellationTokenSource();
+        }
+        previousSource.cancel();
+    }
+}
@@ -11,6 +11,7 @@ import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
 import androidx.core.content.ContextCompat;
 
+import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
 import com.clevertap.android.geofence.interfaces.CTLocationUpdatesListener;
 import com.clevertap.android.sdk.CleverTapAPI;
 
@@ -27,6 +28,16 @@ class Utils {
     private static Boolean isFusedLocationDependencyAvailable;
     private static Boolean isConcurrentFuturesDependencyAvailable;
 
+    private static final Object SETTINGS_LOCK = new Object();
+
+    /**
+     * Settings last read from or written to {@link CTGeofenceConstants#SETTINGS_FILE_NAME}, so that
+     * file is parsed at most once per process. Instances are immutable and swapped as a whole.
+     */
+    @Nullable
+    private static volatile CTGeofenceSettings lastSettings;
+    private static volatile boolean isLastSettingsLoaded;
+
     /**
      * Checks if Application has provided permission
      *
@@ -148,7 +159,8 @@ class Utils {
     }
 
     /**
-     * Reads {@link CTGeofenceSettings} from file.
+     * Reads {@link CTGeofenceSettings} from file. File is parsed only once per process, later calls
+     * return the same immutable snapshot until settings are written again.
      * <br>
      * <b>Must be called from background thread</b>
      *
@@ -159,47 +171,48 @@ class Utils {
     @Nullable
     static CTGeofenceSettings readSettingsFromFile(@NonNull Context context) {
 
-        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                "Reading settings from file...");
+        if (isLastSettingsLoaded) {
+            return lastSettings;
+        }
 
-        CTGeofenceSettings ctGeofenceSettings = null;
+        synchronized (SETTINGS_LOCK) {
+            if (isLastSettingsLoaded) {
+                return lastSettings;
+            }
 
-        String settingsString = FileUtils.readFromFile(context,
-                FileUtils.getCachedFullPath(context, CTGeofenceConstants.SETTINGS_FILE_NAME));
-        if (!settingsString.trim().equals("")) {
-            try {
-                JSONObject jsonObject = new JSONObject(settingsString);
-
-                ctGeofenceSettings = new CTGeofenceSettings.Builder()
-                        .enableBackgroundLocationUpdates(jsonObject.getBoolean(CTGeofenceConstants.KEY_LAST_BG_LOCATION_UPDATES))
-                        .setLocationAccuracy((byte) jsonObject.getInt(CTGeofenceConstants.KEY_LAST_ACCURACY))
-                        .setLocationFetchMode((byte) jsonObject.getInt(CTGeofenceConstants.KEY_LAST_FETCH_MODE))
-                        .setLogLevel(jsonObject.getInt(CTGeofenceConstants.KEY_LAST_LOG_LEVEL))
-                        .setGeofenceMonitoringCount(jsonObject.getInt(CTGeofenceConstants.KEY_LAST_GEO_COUNT))
-                        .setId(jsonObject.getString(CTGeofenceConstants.KEY_ID))
-                        .setInterval(jsonObject.getLong(CTGeofenceConstants.KEY_LAST_INTERVAL))
-                        .setFastestInterval(jsonObject.getLong(CTGeofenceConstants.KEY_LAST_FASTEST_INTERVAL))
-                        .setSmallestDisplacement((float) jsonObject.getDouble(CTGeofenceConstants.KEY_LAST_DISPLACEMENT))
-                        .build();
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Reading settings from file...");
 
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Read settings successfully from file");
+            CTGeofenceSettings ctGeofenceSettings = null;
+
+            String settingsString = FileUtils.readFromFile(context,
+                    FileUtils.getCachedFullPath(context, CTGeofenceConstants.SETTINGS_FILE_NAME));
+            if (!settingsString.trim().equals("")) {
+                try {
+                    ctGeofenceSettings = settingsFromJSON(new JSONObject(settingsString));
 
-            } catch (Exception e) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Read settings successfully from file");
+
+                } catch (Exception e) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Failed to read geofence settings from file");
+                }
+            } else {
                 CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Failed to read geofence settings from file");
+                        "Settings not found in file...");
             }
-        } else {
-            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                    "Settings not found in file...");
-        }
-
-        return ctGeofenceSettings;
 
+            lastSettings = ctGeofenceSettings;
+            isLastSettingsLoaded = true;
+            return ctGeofenceSettings;
+        }
     }
 
     /**
-     * Writes {@link CTGeofenceSettings} to file.
+     * Writes {@link CTGeofenceSettings} to file, unless content hash of settings matches the one
+     * stored along with last written settings. Snapshot returned by
+     * {@link #readSettingsFromFile(Context)} is replaced with written settings.
      * <br>
      * <b>Must be called from background thread</b>
      *
@@ -209,9 +222,6 @@ class Utils {
     @WorkerThread
     static void writeSettingsToFile(Context context, @NonNull CTGeofenceSettings ctGeofenceSettings) {
 
-        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                "Writing new settings to file...");
-
         JSONObject settings = new JSONObject();
         try {
             settings.put(CTGeofenceConstants.KEY_LAST_ACCURACY, ctGeofenceSettings.getLocationAccuracy());
@@ -223,17 +233,67 @@ class Utils {
             settings.put(CTGeofenceConstants.KEY_LAST_INTERVAL, ctGeofenceSettings.getInterval());
             settings.put(CTGeofenceConstants.KEY_LAST_FASTEST_INTERVAL, ctGeofenceSettings.getFastestInterval());
             settings.put(CTGeofenceConstants.KEY_LAST_DISPLACEMENT, ctGeofenceSettings.getSmallestDisplacement());
+            settings.put(CTGeofenceConstants.KEY_LAST_RESELECTION_RADIUS, ctGeofenceSettings.getReselectionRadius());
+            if (ctGeofenceSettings.isAdaptiveLocationUpdatesEnabled()) {
+                settings.put(CTGeofenceConstants.KEY_LAST_ADAPTIVE_LOCATION_UPDATES, true);
+            }
+            if (ctGeofenceSettings.getMaxWaitTime() > 0) {
+                settings.put(CTGeofenceConstants.KEY_LAST_MAX_WAIT_TIME, ctGeofenceSettings.getMaxWaitTime());
+            }
+            if (ctGeofenceSettings.getTransitionHysteresis() > 0) {
+                settings.put(CTGeofenceConstants.KEY_LAST_TRANSITION_HYSTERESIS,
+                        ctGeofenceSettings.getTransitionHysteresis());
+            }
+            if (ctGeofenceSettings.getMinDwellTime() > 0) {
+                settings.put(CTGeofenceConstants.KEY_LAST_MIN_DWELL_TIME, ctGeofenceSettings.getMinDwellTime());
+            }
+            settings.put(CTGeofenceConstants.KEY_LAST_GEOFENCE_ENGINE, ctGeofenceSettings.getGeofenceEngine());
+
+            CTLocationThrottlePolicy throttlePolicy = ctGeofenceSettings.getCustomLocationThrottlePolicy();
+            if (throttlePolicy != null) {
+                settings.put(CTGeofenceConstants.KEY_LAST_THROTTLE_POLICY, new JSONObject()
+                        .put(CTGeofenceConstants.KEY_THROTTLE_MATCH_MODE, throttlePolicy.getMatchMode())
+                        .put(CTGeofenceConstants.KEY_THROTTLE_MIN_INTERVAL, throttlePolicy.getMinInterval())
+                        .put(CTGeofenceConstants.KEY_THROTTLE_MIN_DISPLACEMENT,
+                                throttlePolicy.getMinDisplacement())
+                        .put(CTGeofenceConstants.KEY_THROTTLE_MAX_TRAVEL_DISTANCE,
+                                throttlePolicy.getMaxTravelDistance())
+                        .put(CTGeofenceConstants.KEY_THROTTLE_MIN_ACCURACY, throttlePolicy.getMinAccuracy()));
+            }
             settings.put(CTGeofenceConstants.KEY_ID, CTGeofenceAPI.getInstance(context).getAccountId());
 
-            boolean writeJsonToFile = FileUtils.writeJsonToFile(context, FileUtils.getCachedDirName(context),
-                    CTGeofenceConstants.SETTINGS_FILE_NAME, settings);
+            long settingsHash = contentHash(settings.toString());
+
+            synchronized (SETTINGS_LOCK) {
+                // snapshot is valid again only once it matches file
+                isLastSettingsLoaded = false;
+
+                if (settingsHash == GeofenceStorageHelper.getLong(context,
+                        CTGeofenceConstants.KEY_SETTINGS_HASH, 0)) {
+                    CTGeofenceAPI.getLogger().verbose(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Settings unchanged, skipping write to file");
+                } else {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Writing new settings to file...");
+
+                    boolean writeJsonToFile = FileUtils.writeJsonToFile(context,
+                            FileUtils.getCachedDirName(context),
+                            CTGeofenceConstants.SETTINGS_FILE_NAME, settings);
+
+                    if (writeJsonToFile) {
+                        GeofenceStorageHelper.putLong(context, CTGeofenceConstants.KEY_SETTINGS_HASH,
+                                settingsHash);
+                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                "New settings successfully written to file");
+                    } else {
+                        CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                                "Failed to write new settings to file");
+                        return;
+                    }
+                }
 
-            if (writeJsonToFile) {
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "New settings successfully written to file");
-            } else {
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Failed to write new settings to file");
+                lastSettings = settingsFromJSON(settings);
+                isLastSettingsLoaded = true;
             }
 
         } catch (JSONException e) {
@@ -246,6 +306,73 @@ class Utils {
 
     }
 
+    /**
+     * Drops in-memory settings snapshot and hash of written settings, must be called whenever
+     * settings file is deleted
+     *
+     * @param context application {@link Context}
+     */
+    static void invalidateSettings(@NonNull Context context) {
+        synchronized (SETTINGS_LOCK) {
+            lastSettings = null;
+            isLastSettingsLoaded = false;
+            GeofenceStorageHelper.putLong(context, CTGeofenceConstants.KEY_SETTINGS_HASH, 0);
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of given content
+     */
+    static long contentHash(@NonNull String content) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < content.length(); i++) {
+            hash ^= content.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @NonNull
+    private static CTGeofenceSettings settingsFromJSON(@NonNull JSONObject jsonObject)
+            throws JSONException {
+
+        CTLocationThrottlePolicy throttlePolicy = null;
+        JSONObject throttleObject = jsonObject.optJSONObject(CTGeofenceConstants.KEY_LAST_THROTTLE_POLICY);
+        if (throttleObject != null) {
+            throttlePolicy = new CTLocationThrottlePolicy.Builder()
+                    .setMatchMode((byte) throttleObject.getInt(CTGeofenceConstants.KEY_THROTTLE_MATCH_MODE))
+                    .setMinInterval(throttleObject.getLong(CTGeofenceConstants.KEY_THROTTLE_MIN_INTERVAL))
+                    .setMinDisplacement((float) throttleObject.getDouble(
+                            CTGeofenceConstants.KEY_THROTTLE_MIN_DISPLACEMENT))
+                    .setMaxTravelDistance((float) throttleObject.getDouble(
+                            CTGeofenceConstants.KEY_THROTTLE_MAX_TRAVEL_DISTANCE))
+                    .setMinAccuracy((float) throttleObject.getDouble(
+                            CTGeofenceConstants.KEY_THROTTLE_MIN_ACCURACY))
+                    .build();
+        }
+
+        return new CTGeofenceSettings.Builder()
+                .enableBackgroundLocationUpdates(jsonObject.getBoolean(CTGeofenceConstants.KEY_LAST_BG_LOCATION_UPDATES))
+                .setLocationAccuracy((byte) jsonObject.getInt(CTGeofenceConstants.KEY_LAST_ACCURACY))
+                .setLocationFetchMode((byte) jsonObject.getInt(CTGeofenceConstants.KEY_LAST_FETCH_MODE))
+                .setLogLevel(jsonObject.getInt(CTGeofenceConstants.KEY_LAST_LOG_LEVEL))
+                .setGeofenceMonitoringCount(jsonObject.getInt(CTGeofenceConstants.KEY_LAST_GEO_COUNT))
+                .setId(jsonObject.getString(CTGeofenceConstants.KEY_ID))
+                .setInterval(jsonObject.getLong(CTGeofenceConstants.KEY_LAST_INTERVAL))
+                .setFastestInterval(jsonObject.getLong(CTGeofenceConstants.KEY_LAST_FASTEST_INTERVAL))
+                .setSmallestDisplacement((float) jsonObject.getDouble(CTGeofenceConstants.KEY_LAST_DISPLACEMENT))
+                .setReselectionRadius(jsonObject.optInt(CTGeofenceConstants.KEY_LAST_RESELECTION_RADIUS))
+                .setMaxWaitTime(jsonObject.optLong(CTGeofenceConstants.KEY_LAST_MAX_WAIT_TIME))
+                .setTransitionHysteresis(jsonObject.optLong(CTGeofenceConstants.KEY_LAST_TRANSITION_HYSTERESIS))
+                .setMinDwellTime(jsonObject.optLong(CTGeofenceConstants.KEY_LAST_MIN_DWELL_TIME))
+                .enableAdaptiveLocationUpdates(jsonObject.optBoolean(
+                        CTGeofenceConstants.KEY_LAST_ADAPTIVE_LOCATION_UPDATES, false))
+                .setGeofenceEngine((byte) jsonObject.optInt(CTGeofenceConstants.KEY_LAST_GEOFENCE_ENGINE,
+                        CTGeofenceSettings.GEOFENCE_ENGINE_OS))
+                .setLocationThrottlePolicy(throttlePolicy)
+                .build();
+    }
+
     /**
      * Creates {@link com.clevertap.android.sdk.CleverTapAPI} instance if it's null and initializes
      * Geofence SDK, mostly in killed state.
@@ -261,23 +388,30 @@ class Utils {
 
         CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(context);
 
-        if (ctGeofenceAPI.getCleverTapApi() == null) {
-            CTGeofenceSettings ctGeofenceSettings = Utils.readSettingsFromFile(context);
-            if (ctGeofenceSettings == null) {
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Could not initialize CT instance! Dropping this call");
-                return false;
-            }
+        if (ctGeofenceAPI.getCleverTapApi() != null) {
+            return true;
+        }
 
-            CleverTapAPI cleverTapAPI = CleverTapAPI.getGlobalInstance(context, ctGeofenceSettings.getId());
+        // tasks of main and read queue of CTGeofenceTaskManager may init concurrently
+        synchronized (CTGeofenceAPI.class) {
+            if (ctGeofenceAPI.getCleverTapApi() == null) {
+                CTGeofenceSettings ctGeofenceSettings = Utils.readSettingsFromFile(context);
+                if (ctGeofenceSettings == null) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Could not initialize CT instance! Dropping this call");
+                    return false;
+                }
 
-            if (cleverTapAPI == null) {
-                CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
-                        "Critical issue :: After calling  CleverTapAPI.getGlobalInstance also init is failed! Dropping this call");
-                return false;
-            }
+                CleverTapAPI cleverTapAPI = CleverTapAPI.getGlobalInstance(context, ctGeofenceSettings.getId());
 
-            ctGeofenceAPI.init(ctGeofenceSettings, cleverTapAPI);
+                if (cleverTapAPI == null) {
+                    CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                            "Critical issue :: After calling  CleverTapAPI.getGlobalInstance also init is failed! Dropping this call");
+                    return false;
+                }
+
+                ctGeofenceAPI.init(ctGeofenceSettings, cleverTapAPI);
+            }
         }
 
         return true;
@@ -318,22 +452,29 @@ class Utils {
     }
 
     /**
-     * Notifies Listener for location update on main thread through {@link CTLocationUpdatesListener}
+     * Notifies all {@link CTLocationUpdatesListener} of location update through
+     * {@link GeofenceEventBus}, each on its own executor or main thread
      *
      * @param context application {@link Context}
      * @param location instance of {@link Location}
      */
-    static void notifyLocationUpdates(@NonNull Context context, @Nullable final Location location) {
-        final CTLocationUpdatesListener ctLocationUpdatesListener = CTGeofenceAPI.getInstance(context)
-                .getCtLocationUpdatesListener();
-
-        if (ctLocationUpdatesListener != null) {
-            com.clevertap.android.sdk.Utils.runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    ctLocationUpdatesListener.onLocationUpdates(location);
-                }
-            });
+    static void notifyLocationUpdates(@NonNull Context context, @Nullable Location location) {
+        CTGeofenceAPI.getInstance(context).getEventBus().postLocationUpdate(location);
+    }
+
+    /**
+     * Sends locations to {@link SoftwareGeofenceAdapter} to detect geofence transitions, if
+     * geofences are monitored within SDK as per {@link CTGeofenceSettings#GEOFENCE_ENGINE_SOFTWARE}
+     *
+     * @param context   application {@link Context}
+     * @param locations list of {@link Location}, oldest first
+     */
+    @WorkerThread
+    static void evaluateSoftwareGeofences(@NonNull Context context, @NonNull List<Location> locations) {
+        CTGeofenceAdapter ctGeofenceAdapter = CTGeofenceAPI.getInstance(context).getCtGeofenceAdapter();
+
+        if (ctGeofenceAdapter instanceof SoftwareGeofenceAdapter) {
+            ((SoftwareGeofenceAdapter) ctGeofenceAdapter).onLocationsChanged(locations);
         }
     }
 }
@@ -3,7 +3,9 @@ package com.clevertap.android.geofence.interfaces;
 import android.app.PendingIntent;
 
 import com.clevertap.android.geofence.model.CTGeofence;
+import com.google.android.gms.tasks.CancellationToken;
 import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
 
 import java.util.List;
 
@@ -37,4 +39,38 @@ public interface CTGeofenceAdapter {
     */
    void stopGeofenceMonitoring(PendingIntent pendingIntent);
 
+   /**
+    * Asynchronous variant of {@link #addAllGeofence(List, OnSuccessListener)}, which doesn't block
+    * calling thread
+    *
+    * @param fenceList list of {@link CTGeofence}
+    * @param cancellationToken token to stop waiting for registration, can be null
+    * @return a {@link Task} which completes on registration, fails if registration fails or times out
+    */
+   Task<Void> addAllGeofenceAsync(List<CTGeofence> fenceList, CancellationToken cancellationToken);
+
+   /**
+    * Asynchronous variant of {@link #removeAllGeofence(List, OnSuccessListener)}, which doesn't
+    * block calling thread
+    *
+    * @param fenceIdList list of {@link CTGeofence} Ids
+    * @param cancellationToken token to stop waiting for un-registration, can be null
+    * @return a {@link Task} which completes on un-registration, fails if un-registration fails or
+    * times out
+    */
+   Task<Void> removeAllGeofenceAsync(List<String> fenceIdList, CancellationToken cancellationToken);
+
+   /**
+    * Asynchronous variant of {@link #stopGeofenceMonitoring(PendingIntent)}, which doesn't block
+    * calling thread
+    *
+    * @param pendingIntent instance of {@link PendingIntent}
+    * @param cancellationToken token to stop waiting for un-registration, can be null
+    * @return a {@link Task} which completes on un-registration, fails if un-registration fails or
+    * times out
+    */
+   Task<Void> stopGeofenceMonitoringAsync(PendingIntent pendingIntent,
+                                          CancellationToken cancellationToken);
+
+
 }
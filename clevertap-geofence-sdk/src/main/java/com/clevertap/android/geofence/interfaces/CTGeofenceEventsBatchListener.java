@@ -0,0 +1,22 @@
+package com.clevertap.android.geofence.interfaces;
+
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+
+import java.util.List;
+
+/**
+ * Callback interface to get all geofence enter/exit events of a single geofence event from OS
+ * at once, instead of one callback per geofence as with {@link CTGeofenceEventsListener}.
+ */
+public interface CTGeofenceEventsBatchListener {
+
+    /**
+     * This method will be invoked once per geofence event from OS, with all geofences it entered
+     * and exited. Json of an event, with the structure described in
+     * {@link CTGeofenceEventsListener#onGeofenceEnteredEvent(org.json.JSONObject)}, is available
+     * through {@link CTGeofenceEvent#toJSON()}.
+     *
+     * @param events unmodifiable list of {@link CTGeofenceEvent}, entered geofences first
+     */
+    void onGeofenceEvents(List<CTGeofenceEvent> events);
+}
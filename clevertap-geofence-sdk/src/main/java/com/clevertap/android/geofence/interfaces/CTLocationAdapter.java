@@ -1,6 +1,10 @@
 package com.clevertap.android.geofence.interfaces;
 
 import android.app.PendingIntent;
+import android.location.Location;
+
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.Task;
 
 /**
  * Interface that defines API-type(Google APIs/Android platform APIs) class that can be used to add
@@ -24,4 +28,34 @@ public interface CTLocationAdapter {
      */
     void getLastLocation(CTLocationCallback callback);
 
+    /**
+     * Asynchronous variant of {@link #requestLocationUpdates()}, which doesn't block calling thread
+     *
+     * @param cancellationToken token to stop waiting for registration, can be null
+     * @return a {@link Task} which completes on registration, fails if registration fails or times out
+     */
+    Task<Void> requestLocationUpdatesAsync(CancellationToken cancellationToken);
+
+    /**
+     * Asynchronous variant of {@link #removeLocationUpdates(PendingIntent)}, which doesn't block
+     * calling thread
+     *
+     * @param pendingIntent instance of {@link PendingIntent}
+     * @param cancellationToken token to stop waiting for un-registration, can be null
+     * @return a {@link Task} which completes on un-registration, fails if un-registration fails or
+     * times out
+     */
+    Task<Void> removeLocationUpdatesAsync(PendingIntent pendingIntent,
+                                          CancellationToken cancellationToken);
+
+    /**
+     * Asynchronous variant of {@link #getLastLocation(CTLocationCallback)}, which doesn't block
+     * calling thread
+     *
+     * @param cancellationToken token to stop waiting for location, can be null
+     * @return a {@link Task} with Last Known Location or null if not known, fails if request fails
+     * or times out
+     */
+    Task<Location> getLastLocationAsync(CancellationToken cancellationToken);
+
 }
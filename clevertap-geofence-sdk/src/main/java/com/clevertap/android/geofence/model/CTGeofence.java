@@ -39,31 +39,31 @@ public class CTGeofence {
         private double longitude;
         private int radius;
 
-        Builder(String id) {
+        public Builder(String id) {
             this.id = id;
         }
 
-        CTGeofence.Builder setTransitionType(int transitionType) {
+        public CTGeofence.Builder setTransitionType(int transitionType) {
             this.transitionType = transitionType;
             return this;
         }
 
-        CTGeofence.Builder setLatitude(double latitude) {
+        public CTGeofence.Builder setLatitude(double latitude) {
             this.latitude = latitude;
             return this;
         }
 
-        CTGeofence.Builder setLongitude(double longitude) {
+        public CTGeofence.Builder setLongitude(double longitude) {
             this.longitude = longitude;
             return this;
         }
 
-        CTGeofence.Builder setRadius(int radius) {
+        public CTGeofence.Builder setRadius(int radius) {
             this.radius = radius;
             return this;
         }
 
-        CTGeofence build() {
+        public CTGeofence build() {
             return new CTGeofence(this);
         }
     }
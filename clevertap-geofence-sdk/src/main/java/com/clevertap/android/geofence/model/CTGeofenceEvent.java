@@ -0,0 +1,231 @@
+package com.clevertap.android.geofence.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.clevertap.android.geofence.CTGeofenceAPI;
+import com.clevertap.android.geofence.CTGeofenceConstants;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Immutable geofence enter or exit event, holding triggered geofence and triggering location as
+ * primitive values.<br>
+ * Other properties of the geofence received from server, e.g. gcName, are kept as json text and
+ * parsed only when {@link #toJSON()} is called, which builds a new {@link JSONObject} every time so
+ * that no consumer can modify what another one receives.
+ */
+public final class CTGeofenceEvent {
+
+    private static final String KEY_GC_ID = "gcId";
+    private static final String KEY_LATITUDE = "lat";
+    private static final String KEY_LONGITUDE = "lng";
+    private static final String KEY_RADIUS = "r";
+    private static final String KEY_TRIGGERED_LATITUDE = "triggered_lat";
+    private static final String KEY_TRIGGERED_LONGITUDE = "triggered_lng";
+
+    private final int id;
+    private final int gcId;
+    private final double latitude;
+    private final double longitude;
+    private final int radius;
+    private final int transition;
+    private final double triggeringLatitude;
+    private final double triggeringLongitude;
+    private final long timestamp;
+    @Nullable
+    private final String properties;
+
+    private CTGeofenceEvent(Builder builder) {
+        id = builder.id;
+        gcId = builder.gcId;
+        latitude = builder.latitude;
+        longitude = builder.longitude;
+        radius = builder.radius;
+        transition = builder.transition;
+        triggeringLatitude = builder.triggeringLatitude;
+        triggeringLongitude = builder.triggeringLongitude;
+        timestamp = builder.timestamp;
+        properties = builder.properties;
+    }
+
+    public static final class Builder {
+
+        private final int id;
+        private int gcId;
+        private double latitude = Double.NaN;
+        private double longitude = Double.NaN;
+        private int radius;
+        private int transition;
+        private double triggeringLatitude = Double.NaN;
+        private double triggeringLongitude = Double.NaN;
+        private long timestamp;
+        private String properties;
+
+        public Builder(int id) {
+            this.id = id;
+        }
+
+        public CTGeofenceEvent.Builder setGcId(int gcId) {
+            this.gcId = gcId;
+            return this;
+        }
+
+        public CTGeofenceEvent.Builder setLatitude(double latitude) {
+            this.latitude = latitude;
+            return this;
+        }
+
+        public CTGeofenceEvent.Builder setLongitude(double longitude) {
+            this.longitude = longitude;
+            return this;
+        }
+
+        public CTGeofenceEvent.Builder setRadius(int radius) {
+            this.radius = radius;
+            return this;
+        }
+
+        /**
+         * @param transition one of {@link Geofence#GEOFENCE_TRANSITION_ENTER} or
+         *                   {@link Geofence#GEOFENCE_TRANSITION_EXIT}
+         * @return {@link CTGeofenceEvent.Builder}
+         */
+        public CTGeofenceEvent.Builder setTransition(int transition) {
+            this.transition = transition;
+            return this;
+        }
+
+        public CTGeofenceEvent.Builder setTriggeringLocation(double latitude, double longitude) {
+            this.triggeringLatitude = latitude;
+            this.triggeringLongitude = longitude;
+            return this;
+        }
+
+        /**
+         * @param timestamp time of transition in milliseconds since epoch
+         * @return {@link CTGeofenceEvent.Builder}
+         */
+        public CTGeofenceEvent.Builder setTimestamp(long timestamp) {
+            this.timestamp = timestamp;
+            return this;
+        }
+
+        /**
+         * @param properties json text of other geofence properties, e.g. gcName, added as is to
+         *                   {@link #toJSON()}
+         * @return {@link CTGeofenceEvent.Builder}
+         */
+        public CTGeofenceEvent.Builder setProperties(@Nullable String properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public CTGeofenceEvent build() {
+            return new CTGeofenceEvent(this);
+        }
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getGcId() {
+        return gcId;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return one of {@link Geofence#GEOFENCE_TRANSITION_ENTER} or
+     * {@link Geofence#GEOFENCE_TRANSITION_EXIT}
+     */
+    public int getTransition() {
+        return transition;
+    }
+
+    /**
+     * @return true if location which triggered this event is known
+     */
+    public boolean hasTriggeringLocation() {
+        return !Double.isNaN(triggeringLatitude) && !Double.isNaN(triggeringLongitude);
+    }
+
+    /**
+     * @return latitude of location which triggered this event, NaN if not known
+     */
+    public double getTriggeringLatitude() {
+        return triggeringLatitude;
+    }
+
+    /**
+     * @return longitude of location which triggered this event, NaN if not known
+     */
+    public double getTriggeringLongitude() {
+        return triggeringLongitude;
+    }
+
+    /**
+     * @return time of transition in milliseconds since epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Builds json object of this event, with the structure described in
+     * {@link com.clevertap.android.geofence.interfaces.CTGeofenceEventsListener}. Properties
+     * received from server are kept as they are, primitive values are added for those missing.
+     *
+     * @return a new {@link JSONObject} on every call
+     */
+    @NonNull
+    public JSONObject toJSON() {
+        JSONObject json = new JSONObject();
+        try {
+            if (properties != null) {
+                json = new JSONObject(properties);
+            }
+        } catch (JSONException e) {
+            CTGeofenceAPI.getLogger().debug(CTGeofenceAPI.GEOFENCE_LOG_TAG,
+                    "Failed to read properties of geofence with id = " + id);
+        }
+
+        try {
+            if (!json.has(CTGeofenceConstants.KEY_ID)) {
+                json.put(CTGeofenceConstants.KEY_ID, id);
+            }
+            if (!json.has(KEY_GC_ID) && gcId != 0) {
+                json.put(KEY_GC_ID, gcId);
+            }
+            if (!Double.isNaN(latitude) && !json.has(KEY_LATITUDE)) {
+                json.put(KEY_LATITUDE, latitude);
+            }
+            if (!Double.isNaN(longitude) && !json.has(KEY_LONGITUDE)) {
+                json.put(KEY_LONGITUDE, longitude);
+            }
+            if (radius > 0 && !json.has(KEY_RADIUS)) {
+                json.put(KEY_RADIUS, radius);
+            }
+            if (hasTriggeringLocation()) {
+                json.put(KEY_TRIGGERED_LATITUDE, triggeringLatitude);
+                json.put(KEY_TRIGGERED_LONGITUDE, triggeringLongitude);
+            }
+        } catch (JSONException e) {
+            // values are never NaN and keys are never null
+        }
+        return json;
+    }
+}
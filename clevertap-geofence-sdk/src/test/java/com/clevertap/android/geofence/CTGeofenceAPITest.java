@@ -10,8 +10,10 @@ import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
 import com.clevertap.android.geofence.interfaces.CTGeofenceEventsListener;
 import com.clevertap.android.geofence.interfaces.CTLocationAdapter;
 import com.clevertap.android.geofence.interfaces.CTLocationUpdatesListener;
+import com.clevertap.android.geofence.model.CTGeofence;
 import com.clevertap.android.sdk.CleverTapAPI;
 import com.clevertap.android.sdk.GeofenceCallback;
+import com.google.android.gms.tasks.CancellationToken;
 
 import org.json.JSONObject;
 import org.junit.After;
@@ -34,9 +36,15 @@ import org.robolectric.annotation.Config;
 import org.robolectric.shadows.ShadowApplication;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
 import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static android.app.PendingIntent.FLAG_NO_CREATE;
 import static android.app.PendingIntent.FLAG_UPDATE_CURRENT;
@@ -47,11 +55,16 @@ import static org.hamcrest.Matchers.samePropertyValuesAs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -198,6 +211,37 @@ public class CTGeofenceAPITest extends BaseTestCase {
         verify(cleverTapAPI).setLocationForGeofences(any(Location.class), anyInt());
     }
 
+    @Test
+    public void testProcessTriggeredLocationKeepsFailedPingInOutbox() throws Exception {
+        // when location is accepted but push to CleverTap SDK fails
+
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LATITUDE, DEFAULT_LATITUDE);
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LONGITUDE, DEFAULT_LONGITUDE);
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LAST_LOCATION_EP,
+                System.currentTimeMillis() - 2400000);// move to past by 40 minutes
+
+        Future failedFuture = Mockito.mock(Future.class);
+        when(failedFuture.get(anyLong(), any(TimeUnit.class)))
+                .thenThrow(new ExecutionException(new IllegalStateException()));
+        when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt()))
+                .thenReturn(failedFuture);
+
+        Location location = new Location("");
+        location.setLatitude(19.23041616);
+        location.setLongitude(72.82488101);
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+        ctGeofenceAPI.init(null, cleverTapAPI);
+        ctGeofenceAPI.processTriggeredLocation(location);
+
+        verify(cleverTapAPI).setLocationForGeofences(any(Location.class), anyInt());
+
+        List<JSONObject> storedEvents = EventOutbox.peek(application, 10);
+        assertEquals(1, storedEvents.size());
+        assertEquals(EventOutbox.TYPE_LOCATION, storedEvents.get(0).getString(EventOutbox.KEY_TYPE));
+        assertEquals(19.23041616, storedEvents.get(0).getDouble(EventOutbox.KEY_LATITUDE), 0);
+    }
+
     @Test
     public void testProcessTriggeredLocationTC2() {
         // when delta t is satisfied
@@ -292,6 +336,82 @@ public class CTGeofenceAPITest extends BaseTestCase {
         verify(cleverTapAPI, never()).setLocationForGeofences(any(Location.class), anyInt());
     }
 
+    @Test
+    public void testProcessTriggeredLocationTC5() {
+        // when delta d is satisfied and policy requires any one of delta t or delta d
+
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LATITUDE, DEFAULT_LATITUDE);
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LONGITUDE, DEFAULT_LONGITUDE);
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LAST_LOCATION_EP,
+                System.currentTimeMillis() - 1500000);// move to past by 25 minutes
+
+        Location location = new Location("");
+        double newLat = 19.23041616;
+        double newLng = 72.82488101;
+
+        location.setLatitude(newLat);
+        location.setLongitude(newLng);
+
+        CTGeofenceSettings settings = new CTGeofenceSettings.Builder()
+                .setLocationThrottlePolicy(new CTLocationThrottlePolicy.Builder()
+                        .setMatchMode(CTLocationThrottlePolicy.MATCH_ANY)
+                        .build())
+                .build();
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+        ctGeofenceAPI.init(settings, cleverTapAPI);
+        ctGeofenceAPI.processTriggeredLocation(location);
+
+        assertEquals(newLat, GeofenceStorageHelper.getDouble(application,
+                CTGeofenceConstants.KEY_LATITUDE, 0), 0);
+        assertEquals(newLng, GeofenceStorageHelper.getDouble(application,
+                CTGeofenceConstants.KEY_LONGITUDE, 0), 0);
+        verify(cleverTapAPI).setLocationForGeofences(any(Location.class), anyInt());
+
+        // same location again is not sent
+        ctGeofenceAPI.processTriggeredLocation(location);
+        verify(cleverTapAPI).setLocationForGeofences(any(Location.class), anyInt());
+
+        CTLocationPingStats stats = ctGeofenceAPI.getLocationPingStats();
+        assertEquals(1, stats.getAcceptedCount());
+        assertEquals(1, stats.getRejectedForThrottleCount());
+        assertEquals(0, stats.getRejectedForAccuracyCount());
+        assertEquals(1, stats.getRejectedCount());
+    }
+
+    @Test
+    public void testProcessTriggeredLocationTC6() {
+        // when batched locations are throttled as per their fix time
+
+        long lastFixTime = System.currentTimeMillis() - 7200000;// move to past by 2 hours
+
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LATITUDE, DEFAULT_LATITUDE);
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LONGITUDE, DEFAULT_LONGITUDE);
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LAST_LOCATION_EP,
+                lastFixTime);
+
+        Location firstLocation = new Location("");
+        firstLocation.setLatitude(19.23041616);
+        firstLocation.setLongitude(72.82488101);
+        firstLocation.setTime(lastFixTime + 2400000);// 40 minutes after last ping
+
+        Location secondLocation = new Location("");
+        secondLocation.setLatitude(19.24041616);
+        secondLocation.setLongitude(72.83488101);
+        secondLocation.setTime(lastFixTime + 3000000);// 10 minutes after first location
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+        ctGeofenceAPI.init(null, cleverTapAPI);
+
+        assertTrue(ctGeofenceAPI.acceptTriggeredLocation(firstLocation));
+        assertEquals(firstLocation.getTime(), GeofenceStorageHelper.getLong(application,
+                CTGeofenceConstants.KEY_LAST_LOCATION_EP, 0));
+
+        assertFalse(ctGeofenceAPI.acceptTriggeredLocation(secondLocation));
+        assertEquals(firstLocation.getTime(), GeofenceStorageHelper.getLong(application,
+                CTGeofenceConstants.KEY_LAST_LOCATION_EP, 0));
+    }
+
     @Test
     public void testInitDefaultConfig() {
         CTGeofenceSettings actual = CTGeofenceAPI.getInstance(application).initDefaultConfig();
@@ -351,10 +471,17 @@ public class CTGeofenceAPITest extends BaseTestCase {
         PendingIntent locationUpdates = PendingIntentFactory.getPendingIntent(application,
                 PendingIntentFactory.PENDING_INTENT_LOCATION, FLAG_UPDATE_CURRENT);
 
+        when(geofenceAdapter.stopGeofenceMonitoringAsync(any(PendingIntent.class),
+                any(CancellationToken.class))).thenReturn(TaskUtils.<Void>forResult(null));
+        when(locationAdapter.removeLocationUpdatesAsync(any(PendingIntent.class),
+                any(CancellationToken.class))).thenReturn(TaskUtils.<Void>forResult(null));
+
         argumentCaptor.getValue().run();
 
-        verify(geofenceAdapter).stopGeofenceMonitoring(geofenceMonitoring);
-        verify(locationAdapter).removeLocationUpdates(locationUpdates);
+        verify(geofenceAdapter, timeout(5000)).stopGeofenceMonitoringAsync(eq(geofenceMonitoring),
+                any(CancellationToken.class));
+        verify(locationAdapter, timeout(5000)).removeLocationUpdatesAsync(eq(locationUpdates),
+                any(CancellationToken.class));
 
         PowerMockito.verifyStatic(FileUtils.class);
         FileUtils.deleteDirectory(any(Context.class),FileUtils.getCachedDirName(application));
@@ -421,6 +548,44 @@ public class CTGeofenceAPITest extends BaseTestCase {
         verify(executorService).submit(any(Runnable.class));
     }
 
+    @Test
+    public void testHandleGeoFencesStreamTC1() throws Exception {
+
+        // when location access permission is not granted, reader is closed
+
+        when(Utils.hasPermission(application,Manifest.permission.ACCESS_FINE_LOCATION)).thenReturn(false);
+
+        StringReader reader = new StringReader(GeofenceJSON.GEOFENCE_JSON_STRING);
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+        CTGeofenceTaskManager.getInstance().setExecutorService(executorService);
+        ctGeofenceAPI.handleGeoFencesStream(reader);
+
+        verify(executorService,never()).submit(any(Runnable.class));
+
+        try {
+            reader.read();
+            Assert.fail("Reader is not closed");
+        } catch (IOException e) {
+            // closed
+        }
+    }
+
+    @Test
+    public void testHandleGeoFencesStreamTC2() {
+
+        // when location access permission and background location permission is granted
+
+        when(Utils.hasPermission(application,Manifest.permission.ACCESS_FINE_LOCATION)).thenReturn(true);
+        when(Utils.hasBackgroundLocationPermission(application)).thenReturn(true);
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+        CTGeofenceTaskManager.getInstance().setExecutorService(executorService);
+        ctGeofenceAPI.handleGeoFencesStream(new StringReader(GeofenceJSON.GEOFENCE_JSON_STRING));
+
+        verify(executorService).submit(any(Runnable.class));
+    }
+
     @Test
     public void testInitBackgroundLocationUpdatesTC1() {
 
@@ -508,6 +673,64 @@ public class CTGeofenceAPITest extends BaseTestCase {
     }
 
 
+    @Test
+    public void testGetNearestGeofencesTC1() {
+
+        // when no geofences are received yet
+
+        GeofenceStore.getInstance().replaceCatalogIndex(null);
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+
+        assertTrue(ctGeofenceAPI.getNearestGeofences(19.092962, 72.849717, 10).isEmpty());
+        assertTrue(ctGeofenceAPI.getGeofencesWithinRadius(19.092962, 72.849717, 1000).isEmpty());
+    }
+
+    @Test
+    public void testGetNearestGeofencesTC2() throws Exception {
+
+        // when geofence catalog is indexed
+
+        JSONObject catalog = GeofenceJSON.getGeofence();
+        catalog.getJSONArray("geofences").getJSONObject(1).put("lat", 18.5204).put("lng", 73.8567);
+
+        GeofenceStore.getInstance().replaceCatalogIndex(GeofenceSpatialIndex.build(
+                catalog.getJSONArray("geofences"), new File(application.getFilesDir(), "index.bin")));
+
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+
+        List<CTGeofence> nearest = ctGeofenceAPI.getNearestGeofences(18.5314, 73.8446, 2);
+        assertEquals(2, nearest.size());
+        assertEquals("310002", nearest.get(0).getId());
+        assertEquals("310001", nearest.get(1).getId());
+
+        List<CTGeofence> withinRadius = ctGeofenceAPI.getGeofencesWithinRadius(18.5314, 73.8446, 5000);
+        assertEquals(1, withinRadius.size());
+        assertEquals("310002", withinRadius.get(0).getId());
+
+        GeofenceStore.getInstance().invalidate();
+    }
+
+    @Test
+    public void testGetGeofenceRegistrationStats() throws Exception {
+        CTGeofenceAPI ctGeofenceAPI = CTGeofenceAPI.getInstance(application);
+        Field field = GeofenceUpdateTask.class.getDeclaredField("lastGeofenceDiff");
+        field.setAccessible(true);
+
+        field.set(null, null);
+        assertNull(ctGeofenceAPI.getGeofenceRegistrationStats());
+
+        field.set(null, GeofenceDiff.compute(CTGeofence.from(GeofenceJSON.getFirst()),
+                CTGeofence.from(GeofenceJSON.getGeofence())));
+
+        CTGeofenceRegistrationStats stats = ctGeofenceAPI.getGeofenceRegistrationStats();
+        assertNotNull(stats);
+        assertEquals(1, stats.getAddedCount());
+        assertEquals(0, stats.getRemovedCount());
+        assertEquals(0, stats.getChangedCount());
+        assertEquals(1, stats.getUnchangedCount());
+
+        field.set(null, null);
+    }
 
     @After
     public void cleanup() throws NoSuchFieldException, IllegalAccessException {
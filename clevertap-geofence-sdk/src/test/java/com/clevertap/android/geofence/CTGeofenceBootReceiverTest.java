@@ -8,6 +8,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -23,9 +24,12 @@ import org.robolectric.annotation.Config;
 import java.util.concurrent.Callable;
 
 import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 @RunWith(RobolectricTestRunner.class)
@@ -138,6 +142,58 @@ public class CTGeofenceBootReceiverTest extends BaseTestCase {
         verify(pendingResult).finish();
     }
 
+    @Test
+    public void testOnReceiveWhenIntentNotNullTC5() {
+
+        // when init runs in task posted to task manager instead of receiver's work
+
+        CTGeofenceBootReceiver receiver = new CTGeofenceBootReceiver();
+        CTGeofenceBootReceiver spy = Mockito.spy(receiver);
+        when(spy.goAsync()).thenReturn(pendingResult);
+
+        final Boolean[] isFinished = {false};
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                isFinished[0] = true;
+                return null;
+            }
+        }).when(pendingResult).finish();
+
+        PowerMockito.when(Utils.hasPermission(application, Manifest.permission.ACCESS_FINE_LOCATION))
+                .thenReturn(true);
+        PowerMockito.when(Utils.hasBackgroundLocationPermission(application)).thenReturn(true);
+        PowerMockito.when(Utils.initCTGeofenceApiIfRequired(application)).thenReturn(true);
+
+        Intent intent = new Intent(Intent.ACTION_BOOT_COMPLETED);
+
+        spy.onReceive(application, intent);
+
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return isFinished[0];
+            }
+        });
+
+        ArgumentCaptor<Runnable> runnableCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(taskManager).postAsyncSafely(eq("RegisterOnBoot"), runnableCaptor.capture());
+
+        verifyStatic(Utils.class, never());
+        Utils.initCTGeofenceApiIfRequired(application);
+
+        runnableCaptor.getValue().run();
+
+        verifyStatic(Utils.class);
+        Utils.initCTGeofenceApiIfRequired(application);
+
+        verify(taskManager).postAsyncSafely(eq("ProcessGeofenceUpdatesOnBoot"),
+                any(GeofenceUpdateTask.class));
+        verify(taskManager).postAsyncSafely(eq("IntitializeLocationUpdatesOnBoot"),
+                any(LocationUpdateTask.class));
+    }
+
     @Test
     public void testOnReceiveWhenIntentNotNullTC3() {
 
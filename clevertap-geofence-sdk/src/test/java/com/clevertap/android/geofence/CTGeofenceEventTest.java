@@ -0,0 +1,102 @@
+package com.clevertap.android.geofence;
+
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class CTGeofenceEventTest extends BaseTestCase {
+
+    @Test
+    public void testBuilder() {
+        CTGeofenceEvent event = new CTGeofenceEvent.Builder(310001)
+                .setGcId(31)
+                .setLatitude(19.092962)
+                .setLongitude(72.849717)
+                .setRadius(500)
+                .setTransition(Geofence.GEOFENCE_TRANSITION_ENTER)
+                .setTriggeringLocation(19.092699, 72.849596)
+                .setTimestamp(1584340160000L)
+                .build();
+
+        assertEquals(310001, event.getId());
+        assertEquals(31, event.getGcId());
+        assertEquals(19.092962, event.getLatitude(), 0);
+        assertEquals(72.849717, event.getLongitude(), 0);
+        assertEquals(500, event.getRadius());
+        assertEquals(Geofence.GEOFENCE_TRANSITION_ENTER, event.getTransition());
+        assertTrue(event.hasTriggeringLocation());
+        assertEquals(19.092699, event.getTriggeringLatitude(), 0);
+        assertEquals(72.849596, event.getTriggeringLongitude(), 0);
+        assertEquals(1584340160000L, event.getTimestamp());
+    }
+
+    @Test
+    public void testToJSONWithProperties() throws Exception {
+        CTGeofenceEvent event = new CTGeofenceEvent.Builder(310001)
+                .setGcId(31)
+                .setLatitude(19.092962)
+                .setLongitude(72.849717)
+                .setRadius(500)
+                .setTriggeringLocation(19.092699, 72.849596)
+                .setProperties("{\"gcId\":31,\"gcName\":\"GeoFence Cluster Details\"}")
+                .build();
+
+        JSONObject expected = new JSONObject()
+                .put("id", 310001)
+                .put("lat", 19.092962)
+                .put("lng", 72.849717)
+                .put("r", 500)
+                .put("gcId", 31)
+                .put("gcName", "GeoFence Cluster Details")
+                .put("triggered_lat", 19.092699)
+                .put("triggered_lng", 72.849596);
+
+        JSONAssert.assertEquals(expected, event.toJSON(), true);
+    }
+
+    @Test
+    public void testToJSONWithoutOptionalValues() throws Exception {
+        CTGeofenceEvent event = new CTGeofenceEvent.Builder(310001).build();
+
+        assertFalse(event.hasTriggeringLocation());
+        JSONAssert.assertEquals(new JSONObject().put("id", 310001), event.toJSON(), true);
+    }
+
+    @Test
+    public void testToJSONReturnsNewObject() throws Exception {
+        CTGeofenceEvent event = new CTGeofenceEvent.Builder(310001)
+                .setProperties("{\"gcName\":\"GeoFence Cluster Details\"}")
+                .build();
+
+        JSONObject first = event.toJSON();
+        first.remove("gcName");
+
+        JSONObject second = event.toJSON();
+        assertNotSame(first, second);
+        assertEquals("GeoFence Cluster Details", second.getString("gcName"));
+    }
+
+    @Test
+    public void testToJSONWhenPropertiesAreInvalid() throws Exception {
+        CTGeofenceEvent event = new CTGeofenceEvent.Builder(310001)
+                .setProperties("invalid")
+                .build();
+
+        JSONAssert.assertEquals(new JSONObject().put("id", 310001), event.toJSON(), true);
+    }
+}
@@ -19,6 +19,9 @@ import static com.clevertap.android.geofence.CTGeofenceSettings.DEFAULT_GEO_MONI
 import static com.clevertap.android.geofence.CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC;
 import static com.clevertap.android.geofence.CTGeofenceSettings.FETCH_LAST_LOCATION_PERIODIC;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 @RunWith(RobolectricTestRunner.class)
 @Config(sdk = 28,
@@ -52,6 +55,12 @@ public class CTGeofenceSettingsTest extends BaseTestCase {
         assertEquals(GoogleLocationAdapter.INTERVAL_IN_MILLIS,defaultSettings.getInterval());
         assertEquals(GoogleLocationAdapter.INTERVAL_FASTEST_IN_MILLIS,defaultSettings.getFastestInterval());
         assertEquals(GoogleLocationAdapter.SMALLEST_DISPLACEMENT_IN_METERS,defaultSettings.getSmallestDisplacement(),0);
+        assertEquals(0,defaultSettings.getReselectionRadius());
+        assertEquals(0,defaultSettings.getMaxWaitTime());
+        assertEquals(0,defaultSettings.getTransitionHysteresis());
+        assertEquals(0,defaultSettings.getMinDwellTime());
+        assertEquals(false,defaultSettings.isAdaptiveLocationUpdatesEnabled());
+        assertEquals(CTGeofenceSettings.GEOFENCE_ENGINE_OS,defaultSettings.getGeofenceEngine());
     }
 
     @Test
@@ -67,6 +76,12 @@ public class CTGeofenceSettingsTest extends BaseTestCase {
                 .setInterval(2000000)
                 .setFastestInterval(1900000)
                 .setSmallestDisplacement(780)
+                .setReselectionRadius(5000)
+                .setGeofenceEngine(CTGeofenceSettings.GEOFENCE_ENGINE_SOFTWARE)
+                .setMaxWaitTime(8000000)
+                .setTransitionHysteresis(60000)
+                .setMinDwellTime(120000)
+                .enableAdaptiveLocationUpdates(true)
                 .build();
 
 
@@ -79,6 +94,12 @@ public class CTGeofenceSettingsTest extends BaseTestCase {
         assertEquals(2000000,customSettings.getInterval());
         assertEquals(1900000,customSettings.getFastestInterval());
         assertEquals(780,customSettings.getSmallestDisplacement(),0);
+        assertEquals(5000,customSettings.getReselectionRadius());
+        assertEquals(CTGeofenceSettings.GEOFENCE_ENGINE_SOFTWARE,customSettings.getGeofenceEngine());
+        assertEquals(8000000,customSettings.getMaxWaitTime());
+        assertEquals(60000,customSettings.getTransitionHysteresis());
+        assertEquals(120000,customSettings.getMinDwellTime());
+        assertEquals(true,customSettings.isAdaptiveLocationUpdatesEnabled());
 
         // when interval, fastestInterval and displacement are invalid
 
@@ -86,12 +107,75 @@ public class CTGeofenceSettingsTest extends BaseTestCase {
                 .setInterval(120000)
                 .setFastestInterval(120000)
                 .setSmallestDisplacement(100)
+                .setReselectionRadius(50)
+                .setMaxWaitTime(-1)
+                .setTransitionHysteresis(-1)
+                .setMinDwellTime(-1)
                 .build();
 
 
         assertEquals(1800000,inValidSettings.getInterval());
         assertEquals(1800000,inValidSettings.getFastestInterval());
         assertEquals(200,inValidSettings.getSmallestDisplacement(),0);
+        assertEquals(100,inValidSettings.getReselectionRadius());
+        assertEquals(0,inValidSettings.getMaxWaitTime());
+        assertEquals(0,inValidSettings.getTransitionHysteresis());
+        assertEquals(0,inValidSettings.getMinDwellTime());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+
+        CTGeofenceSettings settings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(98)
+                .setInterval(2000000)
+                .build();
+        CTGeofenceSettings sameSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(98)
+                .setInterval(2000000)
+                .build();
+        CTGeofenceSettings otherSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(98)
+                .setInterval(2000000)
+                .setId("4RW-Z6Z-485Z")
+                .build();
+
+        // id is null in both
+        assertEquals(settings, sameSettings);
+        assertEquals(settings.hashCode(), sameSettings.hashCode());
+
+        assertNotEquals(settings, otherSettings);
+        assertNotEquals(otherSettings, settings);
+    }
+
+    @Test
+    public void testLocationThrottlePolicy() {
+
+        // when policy is not set, it is derived from interval and displacement
+        CTGeofenceSettings settings = new CTGeofenceSettings.Builder()
+                .setInterval(2000000)
+                .setSmallestDisplacement(780)
+                .build();
+
+        CTLocationThrottlePolicy derivedPolicy = settings.getLocationThrottlePolicy();
+        assertEquals(CTLocationThrottlePolicy.MATCH_ALL, derivedPolicy.getMatchMode());
+        assertEquals(2000000, derivedPolicy.getMinInterval());
+        assertEquals(780, derivedPolicy.getMinDisplacement(), 0);
+        assertNull(settings.getCustomLocationThrottlePolicy());
+
+        // when policy is set
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder()
+                .setMatchMode(CTLocationThrottlePolicy.MATCH_ANY)
+                .setMinInterval(600000)
+                .build();
+        CTGeofenceSettings customSettings = new CTGeofenceSettings.Builder()
+                .setInterval(2000000)
+                .setSmallestDisplacement(780)
+                .setLocationThrottlePolicy(policy)
+                .build();
+
+        assertSame(policy, customSettings.getLocationThrottlePolicy());
+        assertNotEquals(settings, customSettings);
     }
 
 }
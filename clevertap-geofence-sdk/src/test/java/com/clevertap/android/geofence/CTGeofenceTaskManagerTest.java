@@ -10,7 +10,12 @@ import org.mockito.MockitoAnnotations;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 
 import static org.awaitility.Awaitility.await;
@@ -274,4 +279,93 @@ public class CTGeofenceTaskManagerTest extends BaseTestCase {
         Assert.assertNull(nestedFuture[0]);
     }
 
+    @Test
+    public void testPostAsyncSafelySupersededTasks() throws Exception {
+
+        // when tasks are queued behind a running task
+
+        final List<String> executedTasks = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(1);
+        CTGeofenceTaskManager taskManager = CTGeofenceTaskManager.getInstance();
+
+        Future<?> blockingFuture = taskManager.postAsyncSafely("Blocking", blockingRunnable(latch));
+
+        awaitEmptyQueue();
+
+        Future<?> firstUpdateFuture = taskManager.postAsyncSafely("ProcessGeofenceUpdates",
+                recordingRunnable(executedTasks, "update1"));
+        taskManager.postAsyncSafely("PushLocationEvent", recordingRunnable(executedTasks, "location"));
+        Future<?> secondUpdateFuture = taskManager.postAsyncSafely("ProcessGeofenceUpdates",
+                recordingRunnable(executedTasks, "update2"));
+
+        // first update is superseded by second one
+        Assert.assertEquals(2, taskManager.getQueuedTaskCount());
+        Assert.assertSame(firstUpdateFuture, secondUpdateFuture);
+
+        latch.countDown();
+        blockingFuture.get();
+        secondUpdateFuture.get();
+
+        // superseded update moves behind location
+        Assert.assertEquals(Arrays.asList("location", "update2"), executedTasks);
+    }
+
+    @Test
+    public void testPostAsyncSafelyReadTaskRunsConcurrently() throws Exception {
+
+        // when geofence transition is posted while main queue is blocked
+
+        final List<String> executedTasks = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch latch = new CountDownLatch(1);
+        CTGeofenceTaskManager taskManager = CTGeofenceTaskManager.getInstance();
+
+        Future<?> blockingFuture = taskManager.postAsyncSafely("ProcessGeofenceUpdates",
+                blockingRunnable(latch));
+
+        awaitEmptyQueue();
+
+        Future<?> transitionFuture = taskManager.postAsyncSafely("PushGeofenceEvent",
+                recordingRunnable(executedTasks, "transition"));
+
+        Assert.assertNotNull(transitionFuture);
+        transitionFuture.get();
+
+        Assert.assertEquals(Collections.singletonList("transition"), executedTasks);
+        Assert.assertFalse(blockingFuture.isDone());
+
+        latch.countDown();
+        blockingFuture.get();
+    }
+
+    private static void awaitEmptyQueue() {
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return CTGeofenceTaskManager.getInstance().getQueuedTaskCount() == 0;
+            }
+        });
+    }
+
+    private static Runnable blockingRunnable(final CountDownLatch latch) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+    }
+
+    private static Runnable recordingRunnable(final List<String> executedTasks, final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executedTasks.add(name);
+            }
+        };
+    }
+
 }
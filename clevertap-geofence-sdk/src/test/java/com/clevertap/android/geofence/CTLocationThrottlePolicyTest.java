@@ -0,0 +1,173 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.clevertap.android.geofence.CTLocationThrottlePolicy.RESULT_ACCEPTED;
+import static com.clevertap.android.geofence.CTLocationThrottlePolicy.RESULT_REJECTED_ACCURACY;
+import static com.clevertap.android.geofence.CTLocationThrottlePolicy.RESULT_REJECTED_THROTTLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class})
+public class CTLocationThrottlePolicyTest extends BaseTestCase {
+
+    private static final long NOW_MILLIS = 1584340160000L;
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+
+    private LocationState lastState;
+    private Location nearLocation;
+    private Location farLocation;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getLogger()).thenReturn(new Logger(Logger.DEBUG));
+
+        lastState = new LocationState(19.23051746, 72.82425874, NOW_MILLIS - 1500000);
+
+        // about 70 meters away from last location
+        nearLocation = new Location("");
+        nearLocation.setLatitude(19.23041616);
+        nearLocation.setLongitude(72.82488101);
+
+        // about 2 kilometers away from last location
+        farLocation = new Location("");
+        farLocation.setLatitude(19.24851746);
+        farLocation.setLongitude(72.82425874);
+    }
+
+    @Test
+    public void testDefaultPolicy() {
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder().build();
+
+        assertEquals(CTLocationThrottlePolicy.MATCH_ALL, policy.getMatchMode());
+        assertEquals(GoogleLocationAdapter.INTERVAL_IN_MILLIS, policy.getMinInterval());
+        assertEquals(GoogleLocationAdapter.SMALLEST_DISPLACEMENT_IN_METERS,
+                policy.getMinDisplacement(), 0);
+        assertEquals(0, policy.getMaxTravelDistance(), 0);
+        assertEquals(0, policy.getMinAccuracy(), 0);
+    }
+
+    @Test
+    public void testInvalidValues() {
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder()
+                .setMatchMode((byte) 7)
+                .setMinInterval(-1)
+                .setMinDisplacement(-1)
+                .setMaxTravelDistance(-1)
+                .setMinAccuracy(-1)
+                .build();
+
+        assertEquals(CTLocationThrottlePolicy.MATCH_ALL, policy.getMatchMode());
+        assertEquals(0, policy.getMinInterval());
+        assertEquals(0, policy.getMinDisplacement(), 0);
+        assertEquals(0, policy.getMaxTravelDistance(), 0);
+        assertEquals(0, policy.getMinAccuracy(), 0);
+    }
+
+    @Test
+    public void testEvaluateMatchAll() {
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder().build();
+
+        // 25 minutes passed
+        assertEquals(RESULT_REJECTED_THROTTLE, policy.evaluate(farLocation, lastState, NOW_MILLIS));
+        assertEquals(RESULT_REJECTED_THROTTLE, policy.evaluate(nearLocation, lastState, NOW_MILLIS));
+
+        // 40 minutes passed
+        long laterMillis = NOW_MILLIS + 900000;
+        assertEquals(RESULT_ACCEPTED, policy.evaluate(farLocation, lastState, laterMillis));
+        assertEquals(RESULT_REJECTED_THROTTLE, policy.evaluate(nearLocation, lastState, laterMillis));
+    }
+
+    @Test
+    public void testEvaluateMatchAny() {
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder()
+                .setMatchMode(CTLocationThrottlePolicy.MATCH_ANY)
+                .build();
+
+        // 25 minutes passed
+        assertEquals(RESULT_ACCEPTED, policy.evaluate(farLocation, lastState, NOW_MILLIS));
+        assertEquals(RESULT_REJECTED_THROTTLE, policy.evaluate(nearLocation, lastState, NOW_MILLIS));
+
+        // 40 minutes passed
+        assertEquals(RESULT_ACCEPTED, policy.evaluate(nearLocation, lastState, NOW_MILLIS + 900000));
+    }
+
+    @Test
+    public void testEvaluateAdjustsIntervalToSpeed() {
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder()
+                .setMaxTravelDistance(10000)
+                .build();
+
+        // without speed minimum interval is not adjusted
+        assertEquals(GoogleLocationAdapter.INTERVAL_IN_MILLIS, policy.getIntervalFor(farLocation));
+        assertEquals(RESULT_REJECTED_THROTTLE, policy.evaluate(farLocation, lastState, NOW_MILLIS));
+
+        // 10 kilometers are covered in about 8 minutes at 20 m/s
+        farLocation.setSpeed(20);
+        assertEquals(500000, policy.getIntervalFor(farLocation));
+        assertEquals(RESULT_ACCEPTED, policy.evaluate(farLocation, lastState, NOW_MILLIS));
+
+        // and in more than 30 minutes at 1 m/s
+        farLocation.setSpeed(1);
+        assertEquals(GoogleLocationAdapter.INTERVAL_IN_MILLIS, policy.getIntervalFor(farLocation));
+    }
+
+    @Test
+    public void testEvaluateRejectsInaccurateLocation() {
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder()
+                .setMinAccuracy(100)
+                .build();
+        long laterMillis = NOW_MILLIS + 900000;
+
+        // without accuracy
+        assertEquals(RESULT_REJECTED_ACCURACY, policy.evaluate(farLocation, lastState, laterMillis));
+
+        farLocation.setAccuracy(500);
+        assertEquals(RESULT_REJECTED_ACCURACY, policy.evaluate(farLocation, lastState, laterMillis));
+
+        farLocation.setAccuracy(50);
+        assertEquals(RESULT_ACCEPTED, policy.evaluate(farLocation, lastState, laterMillis));
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        CTLocationThrottlePolicy policy = new CTLocationThrottlePolicy.Builder()
+                .setMatchMode(CTLocationThrottlePolicy.MATCH_ANY)
+                .setMinAccuracy(100)
+                .build();
+        CTLocationThrottlePolicy samePolicy = new CTLocationThrottlePolicy.Builder()
+                .setMatchMode(CTLocationThrottlePolicy.MATCH_ANY)
+                .setMinAccuracy(100)
+                .build();
+
+        assertEquals(policy, samePolicy);
+        assertEquals(policy.hashCode(), samePolicy.hashCode());
+        assertNotEquals(policy, new CTLocationThrottlePolicy.Builder().build());
+    }
+}
@@ -27,7 +27,10 @@ import java.util.concurrent.Callable;
 import edu.emory.mathcs.backport.java.util.Arrays;
 
 import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.when;
 
@@ -106,8 +109,26 @@ public class CTLocationUpdateReceiverTest extends BaseTestCase {
         CTLocationUpdateReceiver spy = Mockito.spy(receiver);
         when(spy.goAsync()).thenReturn(pendingResult);
 
+        final Boolean[] isFinished = {false};
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) throws Throwable {
+                isFinished[0] = true;
+                return null;
+            }
+        }).when(pendingResult).finish();
+
         spy.onReceive(application, null);
 
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return isFinished[0];
+            }
+        });
+
         verify(pendingResult).finish();
+        verify(taskManager, never()).postAsyncSafely(anyString(), any(PushLocationEventTask.class));
     }
 }
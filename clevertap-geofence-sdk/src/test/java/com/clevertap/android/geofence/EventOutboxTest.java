@@ -0,0 +1,165 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.reflect.Whitebox;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class EventOutboxTest extends BaseTestCase {
+
+    @Test
+    public void testAddAndPeek() throws Exception {
+        assertTrue(EventOutbox.peek(application, 10).isEmpty());
+
+        JSONObject enteredEvent = EventOutbox.geofenceEvent(geofence(1),
+                Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L);
+        JSONObject exitedEvent = EventOutbox.geofenceEvent(geofence(2),
+                Geofence.GEOFENCE_TRANSITION_EXIT, 1584340160000L);
+        JSONObject locationEvent = EventOutbox.locationEvent(location(19.0760, 72.8777));
+
+        assertTrue(EventOutbox.add(application, Arrays.asList(enteredEvent, exitedEvent)));
+        assertTrue(EventOutbox.add(application, Collections.singletonList(locationEvent)));
+
+        // events are kept in order of adding until acknowledged
+        List<JSONObject> events = EventOutbox.peek(application, 10);
+        assertEquals(3, events.size());
+        assertEquals(enteredEvent.toString(), events.get(0).toString());
+        assertEquals(exitedEvent.toString(), events.get(1).toString());
+        assertEquals(locationEvent.toString(), events.get(2).toString());
+
+        assertEquals(2, EventOutbox.peek(application, 2).size());
+    }
+
+    @Test
+    public void testAddSkipsPendingKeys() throws Exception {
+        JSONObject event = EventOutbox.geofenceEvent(geofence(1),
+                Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L);
+        long length;
+
+        EventOutbox.add(application, Collections.singletonList(event));
+        length = EventOutbox.getFile(application).length();
+
+        // same transition delivered again
+        EventOutbox.add(application, Collections.singletonList(EventOutbox.geofenceEvent(
+                geofence(1), Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L)));
+
+        assertEquals(1, EventOutbox.peek(application, 10).size());
+        assertEquals(length, EventOutbox.getFile(application).length());
+    }
+
+    @Test
+    public void testAcknowledge() throws Exception {
+        JSONObject first = EventOutbox.geofenceEvent(geofence(1),
+                Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L);
+        JSONObject second = EventOutbox.geofenceEvent(geofence(2),
+                Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L);
+
+        EventOutbox.add(application, Arrays.asList(first, second));
+        EventOutbox.acknowledge(application,
+                Collections.singletonList(first.getString(EventOutbox.KEY_EVENT_KEY)));
+
+        List<JSONObject> events = EventOutbox.peek(application, 10);
+        assertEquals(1, events.size());
+        assertEquals(second.toString(), events.get(0).toString());
+
+        // journal is deleted once nothing is pending
+        EventOutbox.acknowledge(application,
+                Collections.singletonList(second.getString(EventOutbox.KEY_EVENT_KEY)));
+
+        assertTrue(EventOutbox.peek(application, 10).isEmpty());
+        assertFalse(EventOutbox.getFile(application).exists());
+    }
+
+    @Test
+    public void testAcknowledgeCompactsJournal() throws Exception {
+        JSONObject pendingEvent = EventOutbox.geofenceEvent(geofence(0),
+                Geofence.GEOFENCE_TRANSITION_EXIT, 1584340160000L);
+        EventOutbox.add(application, Collections.singletonList(pendingEvent));
+
+        // enough events to grow journal well beyond compaction size
+        for (int id = 1; id <= 200; id++) {
+            JSONObject event = EventOutbox.geofenceEvent(geofence(id),
+                    Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L);
+            EventOutbox.add(application, Collections.singletonList(event));
+            EventOutbox.acknowledge(application,
+                    Collections.singletonList(event.getString(EventOutbox.KEY_EVENT_KEY)));
+        }
+
+        assertTrue(EventOutbox.getFile(application).length() <= EventOutbox.COMPACTION_SIZE);
+
+        List<JSONObject> events = EventOutbox.peek(application, 10);
+        assertEquals(1, events.size());
+        assertEquals(pendingEvent.toString(), events.get(0).toString());
+    }
+
+    @Test
+    public void testAddDropsOldestBeyondMaxPendingEvents() throws Exception {
+        List<JSONObject> events = new ArrayList<>();
+        for (int id = 0; id <= EventOutbox.MAX_PENDING_EVENTS; id++) {
+            events.add(EventOutbox.geofenceEvent(geofence(id),
+                    Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L));
+        }
+
+        EventOutbox.add(application, events);
+
+        List<JSONObject> pendingEvents = EventOutbox.peek(application, Integer.MAX_VALUE);
+        assertEquals(EventOutbox.MAX_PENDING_EVENTS, pendingEvents.size());
+        assertEquals(1, pendingEvents.get(0).getJSONObject(EventOutbox.KEY_GEOFENCE).getInt("id"));
+    }
+
+    @Test
+    public void testPendingEventsMatchJournal() throws Exception {
+        JSONObject first = EventOutbox.geofenceEvent(geofence(1),
+                Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L);
+        JSONObject second = EventOutbox.geofenceEvent(geofence(2),
+                Geofence.GEOFENCE_TRANSITION_ENTER, 1584340160000L);
+
+        EventOutbox.add(application, Arrays.asList(first, second, first));
+        EventOutbox.acknowledge(application,
+                Collections.singletonList(first.getString(EventOutbox.KEY_EVENT_KEY)));
+        List<JSONObject> events = EventOutbox.peek(application, 10);
+
+        // events kept in memory are same as replayed from journal
+        Whitebox.setInternalState(EventOutbox.class, "pendingEvents", (Object) null);
+        List<JSONObject> recoveredEvents = EventOutbox.peek(application, 10);
+
+        assertEquals(1, events.size());
+        assertEquals(second.toString(), events.get(0).toString());
+        assertEquals(events.toString(), recoveredEvents.toString());
+
+        // journal changed by someone else is replayed again
+        assertTrue(EventOutbox.getFile(application).delete());
+        assertTrue(EventOutbox.peek(application, 10).isEmpty());
+    }
+
+    private static JSONObject geofence(int id) throws Exception {
+        return new JSONObject().put("id", id).put("lat", 19.09).put("lng", 72.84).put("r", 500);
+    }
+
+    private static Location location(double latitude, double longitude) {
+        Location location = new Location("");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setTime(1584340160000L);
+        return location;
+    }
+}
@@ -0,0 +1,52 @@
+package com.clevertap.android.geofence;
+
+import com.clevertap.android.geofence.fakes.GeofenceJSON;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.io.File;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class FileUtilsTest extends BaseTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void testWriteJsonToFileReplacesFile() throws Exception {
+        assertTrue(FileUtils.writeJsonToFile(application, CTGeofenceConstants.CACHED_DIR_NAME,
+                CTGeofenceConstants.SETTINGS_FILE_NAME, GeofenceJSON.getGeofence()));
+        assertTrue(FileUtils.writeJsonToFile(application, CTGeofenceConstants.CACHED_DIR_NAME,
+                CTGeofenceConstants.SETTINGS_FILE_NAME, GeofenceJSON.getFirst()));
+
+        String content = FileUtils.readFromFile(application, FileUtils.getCachedFullPath(application,
+                CTGeofenceConstants.SETTINGS_FILE_NAME));
+        JSONAssert.assertEquals(GeofenceJSON.getFirst().toString(), content, true);
+
+        // temporary file is renamed over previous file
+        assertArrayEquals(new String[]{CTGeofenceConstants.SETTINGS_FILE_NAME},
+                new File(application.getFilesDir(), CTGeofenceConstants.CACHED_DIR_NAME).list());
+    }
+
+    @Test
+    public void testWriteJsonToFileWhenJsonIsNull() {
+        assertFalse(FileUtils.writeJsonToFile(application, CTGeofenceConstants.CACHED_DIR_NAME,
+                CTGeofenceConstants.SETTINGS_FILE_NAME, null));
+        assertFalse(new File(application.getFilesDir(), CTGeofenceConstants.CACHED_DIR_NAME + "/"
+                + CTGeofenceConstants.SETTINGS_FILE_NAME).exists());
+    }
+}
@@ -0,0 +1,154 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import com.clevertap.android.geofence.fakes.GeofenceJSON;
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class GeofenceCacheTest extends BaseTestCase {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        file = new File(application.getFilesDir(),
+                "geofence/" + CTGeofenceConstants.CACHED_BINARY_FILE_NAME);
+    }
+
+    @Test
+    public void testWriteAndMap() throws Exception {
+        JSONObject fenceList = GeofenceJSON.getGeofence();
+        fenceList.put(CTGeofenceConstants.KEY_RESELECTION_BOUNDARY,
+                new JSONObject().put("lat", 19.09).put("lng", 72.84).put("r", 1000));
+
+        GeofenceCache.encode(fenceList).write(file);
+        GeofenceCache geofences = GeofenceCache.map(file);
+
+        assertEquals(2, geofences.size());
+        JSONAssert.assertEquals(fenceList, geofences.toJSON(), true);
+
+        // extra properties are stored along with geofence
+        JSONAssert.assertEquals(GeofenceJSON.getLastFromGeofenceArray().getJSONObject(0),
+                geofences.get(310002), true);
+    }
+
+    @Test
+    public void testGetUsesIdIndex() throws Exception {
+        JSONArray array = new JSONArray();
+        for (int id = 100; id > 0; id--) {
+            array.put(new JSONObject().put("id", id * 7).put("lat", id / 10.0)
+                    .put("lng", -id / 10.0).put("r", id).put("gcName", "Geofence " + id));
+        }
+
+        GeofenceCache geofences = GeofenceCache.encode(new JSONObject().put("geofences", array));
+
+        assertEquals(100, geofences.size());
+        for (int id = 1; id <= 100; id++) {
+            JSONObject geofence = geofences.get(id * 7);
+            assertEquals(id * 7, geofence.getInt("id"));
+            assertEquals(id, geofence.getInt("r"));
+            assertEquals("Geofence " + id, geofence.getString("gcName"));
+        }
+        assertNull(geofences.get(0));
+        assertNull(geofences.get(701));
+    }
+
+    @Test
+    public void testGetIds() throws Exception {
+        GeofenceCache geofences = GeofenceCache.encode(GeofenceJSON.getGeofence());
+
+        assertEquals(Arrays.asList("310001", "310002"), geofences.getIds());
+        assertEquals(0, GeofenceCache.encode(null).getIds().size());
+
+        // ids are in order of the list, not sorted
+        JSONArray array = new JSONArray()
+                .put(new JSONObject().put("id", 3).put("lat", 19.09).put("lng", 72.84).put("r", 100))
+                .put(new JSONObject().put("id", 1).put("lat", 19.09).put("lng", 72.84).put("r", 100))
+                .put(new JSONObject().put("id", 2).put("lat", 19.09).put("lng", 72.84).put("r", 100));
+
+        assertEquals(Arrays.asList("3", "1", "2"),
+                GeofenceCache.encode(new JSONObject().put("geofences", array)).getIds());
+    }
+
+    @Test
+    public void testEncodeKeepsNonNumericValuesAsProperties() throws Exception {
+        JSONArray array = new JSONArray()
+                .put(new JSONObject().put("id", "5").put("lat", "19.09").put("r", 100.5))
+                .put(new JSONObject().put("lat", 19.09).put("lng", 72.84));
+
+        GeofenceCache geofences = GeofenceCache.encode(new JSONObject().put("geofences", array));
+
+        // geofence without id is skipped
+        assertEquals(1, geofences.size());
+        JSONAssert.assertEquals(array.getJSONObject(0), geofences.get(5), true);
+    }
+
+    @Test
+    public void testGetEventMatchesGet() throws Exception {
+        GeofenceCache geofences = GeofenceCache.encode(GeofenceJSON.getGeofence());
+        Location location = new Location("");
+        location.setLatitude(19.092699);
+        location.setLongitude(72.849596);
+
+        CTGeofenceEvent event = geofences.getEvent(310001, Geofence.GEOFENCE_TRANSITION_EXIT,
+                location, 1584340160000L);
+
+        assertEquals(310001, event.getId());
+        assertEquals(31, event.getGcId());
+        assertEquals(19.092962, event.getLatitude(), 0);
+        assertEquals(72.849717, event.getLongitude(), 0);
+        assertEquals(500, event.getRadius());
+        assertEquals(Geofence.GEOFENCE_TRANSITION_EXIT, event.getTransition());
+        assertEquals(1584340160000L, event.getTimestamp());
+
+        JSONObject expected = geofences.get(310001);
+        expected.put("triggered_lat", 19.092699);
+        expected.put("triggered_lng", 72.849596);
+        JSONAssert.assertEquals(expected, event.toJSON(), true);
+
+        assertNull(geofences.getEvent(310003, Geofence.GEOFENCE_TRANSITION_EXIT, location,
+                1584340160000L));
+    }
+
+    @Test
+    public void testEncodeWhenListIsNull() {
+        GeofenceCache geofences = GeofenceCache.encode(null);
+
+        assertEquals(0, geofences.size());
+        assertNull(geofences.get(310001));
+        assertEquals(0, geofences.toJSON().optJSONArray("geofences").length());
+    }
+
+    @Test(expected = IOException.class)
+    public void testMapWhenFileIsInvalid() throws Exception {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(GeofenceJSON.getGeofenceString().getBytes("UTF-8"));
+        out.close();
+
+        GeofenceCache.map(file);
+    }
+}
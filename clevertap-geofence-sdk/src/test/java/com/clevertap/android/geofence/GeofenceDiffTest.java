@@ -0,0 +1,113 @@
+package com.clevertap.android.geofence;
+
+import com.clevertap.android.geofence.fakes.GeofenceJSON;
+import com.clevertap.android.geofence.model.CTGeofence;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class GeofenceDiffTest extends BaseTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void testComputeWhenNothingRegistered() {
+        List<CTGeofence> newGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+
+        GeofenceDiff diff = GeofenceDiff.compute(null, newGeofences);
+
+        assertEquals(2, diff.getAddedCount());
+        assertEquals(0, diff.getRemovedCount());
+        assertEquals(0, diff.getChangedCount());
+        assertEquals(0, diff.getUnchangedCount());
+        assertEquals(2, diff.getGeofencesToAdd().size());
+        assertTrue(diff.getIdsToRemove().isEmpty());
+    }
+
+    @Test
+    public void testComputeWhenListIsUnchanged() {
+        List<CTGeofence> registeredGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+        List<CTGeofence> newGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+
+        GeofenceDiff diff = GeofenceDiff.compute(registeredGeofences, newGeofences);
+
+        assertEquals(2, diff.getUnchangedCount());
+        assertTrue(diff.getGeofencesToAdd().isEmpty());
+        assertTrue(diff.getIdsToRemove().isEmpty());
+    }
+
+    @Test
+    public void testComputeFullRegistersUnchangedGeofences() {
+        List<CTGeofence> registeredGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+        List<CTGeofence> newGeofences = CTGeofence.from(GeofenceJSON.getFirst());
+
+        GeofenceDiff diff = GeofenceDiff.computeFull(registeredGeofences, newGeofences);
+
+        assertEquals(1, diff.getRemovedCount());
+        assertEquals(1, diff.getUnchangedCount());
+        assertEquals(Collections.singletonList("310002"), diff.getIdsToRemove());
+        assertEquals(1, diff.getGeofencesToAdd().size());
+        assertEquals("310001", diff.getGeofencesToAdd().get(0).getId());
+    }
+
+    @Test
+    public void testComputeWhenGeofenceIsRemoved() {
+        List<CTGeofence> registeredGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+        List<CTGeofence> newGeofences = CTGeofence.from(GeofenceJSON.getFirst());
+
+        GeofenceDiff diff = GeofenceDiff.compute(registeredGeofences, newGeofences);
+
+        assertEquals(1, diff.getRemovedCount());
+        assertEquals(1, diff.getUnchangedCount());
+        assertEquals(Collections.singletonList("310002"), diff.getIdsToRemove());
+        assertTrue(diff.getGeofencesToAdd().isEmpty());
+    }
+
+    @Test
+    public void testComputeWhenGeofenceIsChanged() throws Exception {
+        List<CTGeofence> registeredGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+
+        JSONObject changedJson = GeofenceJSON.getGeofence();
+        changedJson.getJSONArray("geofences").getJSONObject(1).put("lat", 19.1);
+        List<CTGeofence> newGeofences = CTGeofence.from(changedJson);
+
+        GeofenceDiff diff = GeofenceDiff.compute(registeredGeofences, newGeofences);
+
+        assertEquals(1, diff.getChangedCount());
+        assertEquals(1, diff.getUnchangedCount());
+        assertEquals(Collections.singletonList("310002"), diff.getIdsToRemove());
+        assertEquals(1, diff.getGeofencesToAdd().size());
+        assertEquals("310002", diff.getGeofencesToAdd().get(0).getId());
+    }
+
+    @Test
+    public void testGeometryHash() throws Exception {
+        CTGeofence first = CTGeofence.from(GeofenceJSON.getGeofence()).get(0);
+
+        JSONObject changedRadius = GeofenceJSON.getFirst();
+        changedRadius.getJSONArray("geofences").getJSONObject(0).put("r", 501);
+        CTGeofence changed = CTGeofence.from(changedRadius).get(0);
+
+        assertEquals(GeofenceDiff.geometryHash(first),
+                GeofenceDiff.geometryHash(CTGeofence.from(GeofenceJSON.getFirst()).get(0)));
+        assertNotEquals(GeofenceDiff.geometryHash(first), GeofenceDiff.geometryHash(changed));
+    }
+}
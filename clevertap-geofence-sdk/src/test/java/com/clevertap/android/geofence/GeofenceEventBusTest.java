@@ -0,0 +1,231 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import com.clevertap.android.geofence.interfaces.CTGeofenceEventsBatchListener;
+import com.clevertap.android.geofence.interfaces.CTGeofenceEventsListener;
+import com.clevertap.android.geofence.interfaces.CTLocationUpdatesListener;
+import com.clevertap.android.geofence.model.CTGeofenceEvent;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class, com.clevertap.android.sdk.Utils.class})
+public class GeofenceEventBusTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    private GeofenceEventBus eventBus;
+    private List<Runnable> executedRunnables;
+    private Executor executor;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class, com.clevertap.android.sdk.Utils.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getLogger()).thenReturn(new Logger(Logger.DEBUG));
+
+        eventBus = new GeofenceEventBus();
+        executedRunnables = new ArrayList<>();
+        executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                executedRunnables.add(command);
+                command.run();
+            }
+        };
+    }
+
+    @Test
+    public void testPostGeofenceEventsBatchesPerListener() throws Exception {
+        CTGeofenceEventsListener listener = Mockito.mock(CTGeofenceEventsListener.class);
+        CTGeofenceEventsBatchListener batchListener = Mockito.mock(CTGeofenceEventsBatchListener.class);
+        CTGeofenceEvent first = event(310001, Geofence.GEOFENCE_TRANSITION_ENTER);
+        CTGeofenceEvent second = event(310002, Geofence.GEOFENCE_TRANSITION_ENTER);
+        CTGeofenceEvent third = event(310003, Geofence.GEOFENCE_TRANSITION_EXIT);
+
+        eventBus.addGeofenceEventsListener(listener, executor);
+        eventBus.addGeofenceEventsBatchListener(batchListener, executor);
+
+        eventBus.postGeofenceEvents(Arrays.asList(first, second, third));
+
+        // one task per listener, not per geofence
+        assertEquals(2, executedRunnables.size());
+
+        verify(batchListener).onGeofenceEvents(Arrays.asList(first, second, third));
+
+        ArgumentCaptor<JSONObject> enteredCaptor = ArgumentCaptor.forClass(JSONObject.class);
+        ArgumentCaptor<JSONObject> exitedCaptor = ArgumentCaptor.forClass(JSONObject.class);
+
+        InOrder inOrder = Mockito.inOrder(listener);
+        inOrder.verify(listener, times(2)).onGeofenceEnteredEvent(enteredCaptor.capture());
+        inOrder.verify(listener).onGeofenceExitedEvent(exitedCaptor.capture());
+
+        assertEquals(310001, enteredCaptor.getAllValues().get(0).getInt("id"));
+        assertEquals(310002, enteredCaptor.getAllValues().get(1).getInt("id"));
+        assertEquals(310003, exitedCaptor.getValue().getInt("id"));
+    }
+
+    @Test
+    public void testPostGeofenceEventsOnMainThreadWhenExecutorIsNull() {
+        CTGeofenceEventsListener firstListener = Mockito.mock(CTGeofenceEventsListener.class);
+        CTGeofenceEventsListener secondListener = Mockito.mock(CTGeofenceEventsListener.class);
+
+        eventBus.addGeofenceEventsListener(firstListener, null);
+        eventBus.addGeofenceEventsListener(secondListener, executor);
+
+        eventBus.postGeofenceEvents(Arrays.asList(event(310001, Geofence.GEOFENCE_TRANSITION_ENTER),
+                event(310002, Geofence.GEOFENCE_TRANSITION_ENTER)));
+
+        ArgumentCaptor<Runnable> runnableArgumentCaptor = ArgumentCaptor.forClass(Runnable.class);
+
+        verifyStatic(com.clevertap.android.sdk.Utils.class, times(1));
+        com.clevertap.android.sdk.Utils.runOnUiThread(runnableArgumentCaptor.capture());
+
+        runnableArgumentCaptor.getValue().run();
+        verify(firstListener, times(2)).onGeofenceEnteredEvent(any(JSONObject.class));
+        verify(secondListener, times(2)).onGeofenceEnteredEvent(any(JSONObject.class));
+    }
+
+    @Test
+    public void testListenersReceiveSeparateJson() {
+        final List<JSONObject> received = new ArrayList<>();
+        CTGeofenceEventsListener listener = new CTGeofenceEventsListener() {
+            @Override
+            public void onGeofenceEnteredEvent(JSONObject geofenceEnteredEventProperties) {
+                received.add(geofenceEnteredEventProperties);
+                geofenceEnteredEventProperties.remove("id");
+            }
+
+            @Override
+            public void onGeofenceExitedEvent(JSONObject geofenceExitedEventProperties) {
+            }
+        };
+        CTGeofenceEventsListener otherListener = Mockito.mock(CTGeofenceEventsListener.class);
+
+        eventBus.addGeofenceEventsListener(listener, executor);
+        eventBus.addGeofenceEventsListener(otherListener, executor);
+
+        eventBus.postGeofenceEvents(
+                Collections.singletonList(event(310001, Geofence.GEOFENCE_TRANSITION_ENTER)));
+
+        // changes made by one listener are not seen by another
+        ArgumentCaptor<JSONObject> captor = ArgumentCaptor.forClass(JSONObject.class);
+        verify(otherListener).onGeofenceEnteredEvent(captor.capture());
+        assertEquals(1, received.size());
+        assertEquals(310001, captor.getValue().optInt("id"));
+    }
+
+    @Test
+    public void testRemoveGeofenceEventsListener() {
+        CTGeofenceEventsListener listener = Mockito.mock(CTGeofenceEventsListener.class);
+
+        // listener is held through an adapter, adding again still replaces it
+        eventBus.addGeofenceEventsListener(listener, executor);
+        eventBus.addGeofenceEventsListener(listener, executor);
+
+        eventBus.postGeofenceEvents(
+                Collections.singletonList(event(310001, Geofence.GEOFENCE_TRANSITION_EXIT)));
+
+        verify(listener, times(1)).onGeofenceExitedEvent(any(JSONObject.class));
+
+        eventBus.removeGeofenceEventsListener(listener);
+        eventBus.postGeofenceEvents(
+                Collections.singletonList(event(310001, Geofence.GEOFENCE_TRANSITION_EXIT)));
+
+        verify(listener, times(1)).onGeofenceExitedEvent(any(JSONObject.class));
+    }
+
+    @Test
+    public void testAddAndRemoveListeners() {
+        CTLocationUpdatesListener listener = Mockito.mock(CTLocationUpdatesListener.class);
+        CTLocationUpdatesListener otherListener = Mockito.mock(CTLocationUpdatesListener.class);
+        Location location = new Location("");
+
+        // adding again only replaces executor
+        eventBus.addLocationUpdatesListener(listener, null);
+        eventBus.addLocationUpdatesListener(listener, executor);
+        eventBus.addLocationUpdatesListener(otherListener, executor);
+
+        eventBus.postLocationUpdate(location);
+
+        assertEquals(2, executedRunnables.size());
+        verify(listener).onLocationUpdates(location);
+        verify(otherListener).onLocationUpdates(location);
+
+        eventBus.removeLocationUpdatesListener(listener);
+        eventBus.postLocationUpdate(location);
+
+        verify(listener, times(1)).onLocationUpdates(location);
+        verify(otherListener, times(2)).onLocationUpdates(location);
+    }
+
+    @Test
+    public void testPostWhenExecutorRejects() {
+        CTGeofenceEventsBatchListener rejectedListener = Mockito.mock(CTGeofenceEventsBatchListener.class);
+        CTGeofenceEventsBatchListener batchListener = Mockito.mock(CTGeofenceEventsBatchListener.class);
+
+        eventBus.addGeofenceEventsBatchListener(rejectedListener, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        eventBus.addGeofenceEventsBatchListener(batchListener, executor);
+
+        eventBus.postGeofenceEvents(
+                Collections.singletonList(event(310001, Geofence.GEOFENCE_TRANSITION_ENTER)));
+
+        // other listeners still receive events
+        verify(rejectedListener, never()).onGeofenceEvents(Mockito.<CTGeofenceEvent>anyList());
+        verify(batchListener).onGeofenceEvents(Mockito.<CTGeofenceEvent>anyList());
+    }
+
+    private static CTGeofenceEvent event(int id, int transition) {
+        return new CTGeofenceEvent.Builder(id)
+                .setLatitude(19.092699)
+                .setLongitude(72.849596)
+                .setRadius(200)
+                .setTransition(transition)
+                .setTimestamp(1584340160000L)
+                .build();
+    }
+}
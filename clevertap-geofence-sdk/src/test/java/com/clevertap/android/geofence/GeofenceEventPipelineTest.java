@@ -0,0 +1,236 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import com.clevertap.android.sdk.CleverTapAPI;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.powermock.reflect.Whitebox;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class, CleverTapAPI.class, Utils.class})
+public class GeofenceEventPipelineTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    @Mock
+    public CleverTapAPI cleverTapAPI;
+    private Logger logger;
+    private List<Runnable> latePushRunnables;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class, Utils.class);
+
+        super.setUp();
+
+        logger = new Logger(Logger.DEBUG);
+        when(CTGeofenceAPI.getLogger()).thenReturn(logger);
+
+        // late pushes are waited for only when a test runs them
+        latePushRunnables = new ArrayList<>();
+        Whitebox.setInternalState(GeofenceEventPipeline.class, "latePushExecutor", new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                latePushRunnables.add(command);
+            }
+        });
+        ((Set) Whitebox.getInternalState(GeofenceEventPipeline.class, "pushingKeys")).clear();
+    }
+
+    @Test
+    public void testAwaitAllStopsAtDeadline() throws Exception {
+        Future acknowledgedFuture = Mockito.mock(Future.class);
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class)))
+                .thenReturn(acknowledgedFuture);
+        when(cleverTapAPI.pushGeoFenceExitedEvent(any(JSONObject.class)))
+                .thenReturn(pendingFuture(), pendingFuture());
+
+        GeofenceEventPipeline pipeline = new GeofenceEventPipeline(application, cleverTapAPI, 200);
+
+        JSONObject enteredEvent = event(1, Geofence.GEOFENCE_TRANSITION_ENTER);
+        pipeline.push(enteredEvent);
+        pipeline.push(event(2, Geofence.GEOFENCE_TRANSITION_EXIT));
+        pipeline.push(event(3, Geofence.GEOFENCE_TRANSITION_EXIT));
+
+        long startTime = System.nanoTime();
+        List<String> acknowledgedKeys = pipeline.awaitAll();
+
+        // pending pushes share one deadline instead of waiting for it one after another
+        assertTrue(System.nanoTime() - startTime < TimeUnit.MILLISECONDS.toNanos(400));
+
+        verify(acknowledgedFuture).get(anyLong(), any(TimeUnit.class));
+        assertEquals(Collections.singletonList(enteredEvent.getString(EventOutbox.KEY_EVENT_KEY)),
+                acknowledgedKeys);
+    }
+
+    @Test
+    public void testFailedPushIsNotAcknowledged() throws Exception {
+        Future failedFuture = Mockito.mock(Future.class);
+        when(failedFuture.get(anyLong(), any(TimeUnit.class)))
+                .thenThrow(new ExecutionException(new IllegalStateException()));
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(failedFuture);
+
+        GeofenceEventPipeline pipeline = new GeofenceEventPipeline(application, cleverTapAPI,
+                GeofenceEventPipeline.PUSH_DEADLINE_IN_MILLIS);
+
+        pipeline.push(event(1, Geofence.GEOFENCE_TRANSITION_ENTER));
+
+        assertTrue(pipeline.awaitAll().isEmpty());
+    }
+
+    @Test
+    public void testTimedOutPushIsAcknowledgedOnCompletion() throws Exception {
+        FutureTask<Void> lateFuture = pendingFuture();
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(lateFuture);
+
+        JSONObject event = event(1, Geofence.GEOFENCE_TRANSITION_ENTER);
+        EventOutbox.add(application, Collections.singletonList(event));
+
+        GeofenceEventPipeline pipeline = new GeofenceEventPipeline(application, cleverTapAPI, 50);
+        pipeline.push(event);
+
+        assertTrue(pipeline.awaitAll().isEmpty());
+        assertEquals(1, latePushRunnables.size());
+
+        // event still being pushed by CleverTap SDK is not pushed again
+        GeofenceEventPipeline nextPipeline = new GeofenceEventPipeline(application, cleverTapAPI,
+                GeofenceEventPipeline.PUSH_DEADLINE_IN_MILLIS);
+        nextPipeline.push(event);
+        assertTrue(nextPipeline.awaitAll().isEmpty());
+        verify(cleverTapAPI, times(1)).pushGeofenceEnteredEvent(any(JSONObject.class));
+        assertEquals(1, EventOutbox.peek(application, 10).size());
+
+        lateFuture.run();
+        latePushRunnables.get(0).run();
+
+        assertTrue(EventOutbox.peek(application, 10).isEmpty());
+    }
+
+    @Test
+    public void testFailedLatePushStaysPending() throws Exception {
+        Future failedFuture = Mockito.mock(Future.class);
+        when(failedFuture.get(anyLong(), any(TimeUnit.class))).thenThrow(new TimeoutException());
+        when(failedFuture.get()).thenThrow(new ExecutionException(new IllegalStateException()));
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(failedFuture);
+
+        JSONObject event = event(1, Geofence.GEOFENCE_TRANSITION_ENTER);
+        EventOutbox.add(application, Collections.singletonList(event));
+
+        GeofenceEventPipeline pipeline = new GeofenceEventPipeline(application, cleverTapAPI,
+                GeofenceEventPipeline.PUSH_DEADLINE_IN_MILLIS);
+        pipeline.push(event);
+        assertTrue(pipeline.awaitAll().isEmpty());
+
+        latePushRunnables.get(0).run();
+
+        // failed event is pushed again
+        assertEquals(1, EventOutbox.peek(application, 10).size());
+        pipeline = new GeofenceEventPipeline(application, cleverTapAPI,
+                GeofenceEventPipeline.PUSH_DEADLINE_IN_MILLIS);
+        pipeline.push(event);
+        verify(cleverTapAPI, times(2)).pushGeofenceEnteredEvent(any(JSONObject.class));
+    }
+
+    @Test
+    public void testPushLocationEvent() throws Exception {
+        Future future = Mockito.mock(Future.class);
+        when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt())).thenReturn(future);
+
+        Location location = new Location("");
+        location.setLatitude(19.0760);
+        location.setLongitude(72.8777);
+        location.setTime(1584340160000L);
+        JSONObject locationEvent = EventOutbox.locationEvent(location);
+
+        GeofenceEventPipeline pipeline = new GeofenceEventPipeline(application, cleverTapAPI,
+                GeofenceEventPipeline.PUSH_DEADLINE_IN_MILLIS);
+        pipeline.push(locationEvent);
+
+        assertEquals(Collections.singletonList(locationEvent.getString(EventOutbox.KEY_EVENT_KEY)),
+                pipeline.awaitAll());
+
+        ArgumentCaptor<Location> locationCaptor = ArgumentCaptor.forClass(Location.class);
+        verify(cleverTapAPI).setLocationForGeofences(locationCaptor.capture(), anyInt());
+        assertEquals(19.0760, locationCaptor.getValue().getLatitude(), 0);
+        assertEquals(72.8777, locationCaptor.getValue().getLongitude(), 0);
+        assertEquals(1584340160000L, locationCaptor.getValue().getTime());
+    }
+
+    @Test
+    public void testPushWaitsForOldestWhenPipelineIsFull() throws Exception {
+        Future future = Mockito.mock(Future.class);
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(future);
+
+        GeofenceEventPipeline pipeline = new GeofenceEventPipeline(application, cleverTapAPI,
+                GeofenceEventPipeline.PUSH_DEADLINE_IN_MILLIS);
+
+        for (int id = 1; id <= GeofenceEventPipeline.MAX_IN_FLIGHT_PUSHES; id++) {
+            pipeline.push(event(id, Geofence.GEOFENCE_TRANSITION_ENTER));
+        }
+        verify(future, times(0)).get(anyLong(), any(TimeUnit.class));
+
+        pipeline.push(event(0, Geofence.GEOFENCE_TRANSITION_ENTER));
+        verify(future, times(1)).get(anyLong(), any(TimeUnit.class));
+
+        assertEquals(GeofenceEventPipeline.MAX_IN_FLIGHT_PUSHES + 1, pipeline.awaitAll().size());
+        verify(future, times(GeofenceEventPipeline.MAX_IN_FLIGHT_PUSHES + 1))
+                .get(anyLong(), any(TimeUnit.class));
+    }
+
+    private static FutureTask<Void> pendingFuture() {
+        // never run
+        return new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, null);
+    }
+
+    private static JSONObject event(int id, int geofenceTransition) throws Exception {
+        JSONObject geofence = new JSONObject().put("id", id).put("lat", 19.09).put("lng", 72.84)
+                .put("r", 500);
+        return EventOutbox.geofenceEvent(geofence, geofenceTransition, 1584340160000L);
+    }
+}
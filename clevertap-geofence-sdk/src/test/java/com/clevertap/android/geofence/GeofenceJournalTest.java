@@ -0,0 +1,105 @@
+package com.clevertap.android.geofence;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class GeofenceJournalTest extends BaseTestCase {
+
+    private File file;
+    private GeofenceJournal journal;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        file = new File(application.getFilesDir(),
+                "geofence/" + CTGeofenceConstants.JOURNAL_FILE_NAME);
+        journal = new GeofenceJournal(file);
+    }
+
+    @Test
+    public void testAppendAndRecover() throws Exception {
+        JSONObject first = new JSONObject().put("ids", 1);
+        JSONObject second = new JSONObject().put("name", "Geofence \u00fc");
+
+        journal.append(first);
+        journal.append(second);
+
+        List<JSONObject> entries = new GeofenceJournal(file).recover();
+
+        assertEquals(2, entries.size());
+        JSONAssert.assertEquals(first, entries.get(0), true);
+        JSONAssert.assertEquals(second, entries.get(1), true);
+    }
+
+    @Test
+    public void testRecoverWhenJournalIsMissing() throws Exception {
+        assertTrue(journal.recover().isEmpty());
+        assertEquals(0, journal.length());
+    }
+
+    @Test
+    public void testRecoverTruncatesIncompleteEntry() throws Exception {
+        journal.append(new JSONObject().put("id", 1));
+        long length = journal.length();
+        journal.append(new JSONObject().put("id", 2));
+
+        // process was killed while writing second entry
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.setLength(journal.length() - 3);
+        randomAccessFile.close();
+
+        List<JSONObject> entries = journal.recover();
+
+        assertEquals(1, entries.size());
+        assertEquals(1, entries.get(0).getInt("id"));
+        assertEquals(length, journal.length());
+
+        // appending goes on after last complete entry
+        journal.append(new JSONObject().put("id", 3));
+        assertEquals(3, journal.recover().get(1).getInt("id"));
+    }
+
+    @Test
+    public void testRecoverTruncatesCorruptEntry() throws Exception {
+        journal.append(new JSONObject().put("id", 1));
+        journal.append(new JSONObject().put("id", 2));
+        long length = journal.length();
+
+        // flip a byte of first entry payload
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        randomAccessFile.seek(9);
+        int value = randomAccessFile.read();
+        randomAccessFile.seek(9);
+        randomAccessFile.write(value ^ 0xFF);
+        randomAccessFile.close();
+
+        assertTrue(journal.recover().isEmpty());
+        assertEquals(0, journal.length());
+        assertTrue(length > 0);
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        journal.append(new JSONObject().put("id", 1));
+        journal.delete();
+
+        assertEquals(0, journal.length());
+        assertTrue(journal.recover().isEmpty());
+    }
+}
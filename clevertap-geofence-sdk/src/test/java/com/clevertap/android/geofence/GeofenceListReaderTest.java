@@ -0,0 +1,106 @@
+package com.clevertap.android.geofence;
+
+import com.clevertap.android.geofence.fakes.GeofenceJSON;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class GeofenceListReaderTest extends BaseTestCase {
+
+    private List<JSONObject> geofences;
+    private GeofenceListReader.Listener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        geofences = new ArrayList<>();
+        listener = new GeofenceListReader.Listener() {
+            @Override
+            public void onGeofence(JSONObject geofence) {
+                geofences.add(geofence);
+            }
+        };
+    }
+
+    @Test
+    public void testReadFromJsonText() throws Exception {
+        int validCount = GeofenceListReader.read(
+                new StringReader(GeofenceJSON.GEOFENCE_JSON_STRING), listener);
+
+        assertEquals(2, validCount);
+        JSONArray expected = GeofenceJSON.getGeofenceArray();
+        for (int i = 0; i < expected.length(); i++) {
+            JSONAssert.assertEquals(expected.getJSONObject(i), geofences.get(i), true);
+        }
+        // numbers are read as parsed by org.json
+        assertTrue(geofences.get(0).get("id") instanceof Integer);
+        assertTrue(geofences.get(0).get("lat") instanceof Double);
+    }
+
+    @Test
+    public void testReadSkipsInvalidGeofences() throws Exception {
+        String json = "{\"other\":{\"geofences\":[]},\"geofences\":["
+                + "{\"id\":1,\"lat\":19.07,\"lng\":72.87,\"r\":500},"
+                + "{\"id\":\"x\",\"lat\":19.07,\"lng\":72.87,\"r\":500},"
+                + "{\"id\":3,\"lat\":95,\"lng\":72.87,\"r\":500},"
+                + "{\"id\":4,\"lat\":19.07,\"lng\":72.87,\"r\":0},"
+                + "[1,2],null,"
+                + "{\"id\":7,\"lat\":\"18.52\",\"lng\":73.85,\"r\":200,\"tags\":[\"a\",null]}"
+                + "]}";
+
+        int validCount = GeofenceListReader.read(new StringReader(json), listener);
+
+        assertEquals(2, validCount);
+        assertEquals(1, geofences.get(0).getInt("id"));
+        assertEquals(7, geofences.get(1).getInt("id"));
+        assertEquals(2, geofences.get(1).getJSONArray("tags").length());
+    }
+
+    @Test
+    public void testReadWhenListHasNoGeofences() throws Exception {
+        assertEquals(-1, GeofenceListReader.read(new StringReader("{\"geofences\":{}}"), listener));
+        assertEquals(-1, GeofenceListReader.read(new JSONObject(), listener));
+        assertTrue(geofences.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testReadWhenJsonIsMalformed() throws Exception {
+        GeofenceListReader.read(new StringReader("{\"geofences\":[{\"id\":1,"), listener);
+    }
+
+    @Test
+    public void testReadFromJSONObject() throws Exception {
+        JSONObject fenceList = GeofenceJSON.getGeofence();
+        fenceList.getJSONArray("geofences").put(new JSONObject().put("id", 3));
+
+        assertEquals(2, GeofenceListReader.read(fenceList, listener));
+        assertEquals(2, geofences.size());
+    }
+
+    @Test
+    public void testIsValid() throws Exception {
+        assertTrue(GeofenceListReader.isValid(GeofenceJSON.getGeofenceArray().getJSONObject(0)));
+        assertFalse(GeofenceListReader.isValid(new JSONObject().put("id", 1)));
+        assertFalse(GeofenceListReader.isValid(new JSONObject().put("id", 1).put("lat", 10)
+                .put("lng", 190).put("r", 100)));
+    }
+}
@@ -0,0 +1,154 @@
+package com.clevertap.android.geofence;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class GeofenceSelectorTest extends BaseTestCase {
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+    }
+
+    @Test
+    public void testDistanceInMeters() {
+        // Mumbai to Pune is about 120 km
+        double distance = GeofenceSelector.distanceInMeters(19.0760, 72.8777, 18.5204, 73.8567);
+        assertEquals(120000, distance, 2000);
+
+        assertEquals(0, GeofenceSelector.distanceInMeters(19.0760, 72.8777, 19.0760, 72.8777), 0);
+    }
+
+    @Test
+    public void testSelectNearestKeepsOriginalOrder() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(geofence(1, 28.6139, 77.2090)) // Delhi
+                .put(geofence(2, 18.5204, 73.8567)) // Pune
+                .put(geofence(3, 12.9716, 77.5946)) // Bengaluru
+                .put(geofence(4, 19.0760, 72.8777)); // Mumbai
+
+        // from Thane
+        JSONArray nearest = GeofenceSelector.selectNearest(geofences, 2, 19.2183, 72.9781);
+
+        assertEquals(2, nearest.length());
+        assertEquals(2, nearest.getJSONObject(0).getInt("id"));
+        assertEquals(4, nearest.getJSONObject(1).getInt("id"));
+    }
+
+    @Test
+    public void testSelectNearestWhenCountIsOutOfRange() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(geofence(1, 28.6139, 77.2090))
+                .put(geofence(2, 18.5204, 73.8567));
+
+        assertEquals(0, GeofenceSelector.selectNearest(geofences, 0, 19.2183, 72.9781).length());
+        assertEquals(2, GeofenceSelector.selectNearest(geofences, 5, 19.2183, 72.9781).length());
+    }
+
+    @Test
+    public void testSelectNearestRanksInvalidCoordinatesLast() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(new JSONObject().put("id", 1))
+                .put(geofence(2, 28.6139, 77.2090))
+                .put(new JSONObject().put("id", 3).put("lat", 19.2183));
+
+        JSONArray nearest = GeofenceSelector.selectNearest(geofences, 1, 19.2183, 72.9781);
+
+        assertEquals(1, nearest.length());
+        assertEquals(2, nearest.getJSONObject(0).getInt("id"));
+    }
+
+    @Test
+    public void testSelectNearestMatchesFullSort() throws Exception {
+        Random random = new Random(42);
+        JSONArray geofences = new JSONArray();
+        final List<double[]> distances = new ArrayList<>();
+
+        for (int i = 0; i < 1000; i++) {
+            double latitude = -60 + random.nextDouble() * 120;
+            double longitude = -180 + random.nextDouble() * 360;
+            geofences.put(geofence(i, latitude, longitude));
+            distances.add(new double[]{GeofenceSelector.distanceInMeters(19.2183, 72.9781,
+                    latitude, longitude), i});
+        }
+
+        Collections.sort(distances, new Comparator<double[]>() {
+            @Override
+            public int compare(double[] o1, double[] o2) {
+                return Double.compare(o1[0], o2[0]);
+            }
+        });
+
+        List<Integer> expectedIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            expectedIds.add((int) distances.get(i)[1]);
+        }
+        Collections.sort(expectedIds);
+
+        JSONArray nearest = GeofenceSelector.selectNearest(geofences, 50, 19.2183, 72.9781);
+
+        List<Integer> actualIds = new ArrayList<>();
+        for (int i = 0; i < nearest.length(); i++) {
+            actualIds.add(nearest.getJSONObject(i).getInt("id"));
+        }
+
+        assertEquals(expectedIds, actualIds);
+    }
+
+    @Test
+    public void testSelectionMatchesSelectNearest() throws Exception {
+        Random random = new Random(7);
+        JSONArray geofences = new JSONArray();
+        GeofenceSelector.Selection selection = new GeofenceSelector.Selection(50, 19.2183, 72.9781);
+
+        for (int i = 0; i < 1000; i++) {
+            JSONObject geofence = geofence(i, -60 + random.nextDouble() * 120,
+                    -180 + random.nextDouble() * 360);
+            geofences.put(geofence);
+            selection.offer(geofence);
+        }
+
+        assertEquals(1000, selection.getOfferedCount());
+        assertEquals(GeofenceSelector.selectNearest(geofences, 50, 19.2183, 72.9781).toString(),
+                selection.toJSONArray().toString());
+    }
+
+    @Test
+    public void testSelectionWithoutLocationKeepsFirst() throws Exception {
+        GeofenceSelector.Selection selection = new GeofenceSelector.Selection(2);
+        selection.offer(geofence(1, 28.6139, 77.2090));
+        selection.offer(geofence(2, 18.5204, 73.8567));
+        selection.offer(geofence(3, 12.9716, 77.5946));
+
+        JSONArray selected = selection.toJSONArray();
+
+        assertEquals(2, selected.length());
+        assertEquals(1, selected.getJSONObject(0).getInt("id"));
+        assertEquals(2, selected.getJSONObject(1).getInt("id"));
+    }
+
+    private static JSONObject geofence(int id, double latitude, double longitude) throws Exception {
+        return new JSONObject()
+                .put("id", id)
+                .put("lat", latitude)
+                .put("lng", longitude)
+                .put("r", 500);
+    }
+}
@@ -0,0 +1,291 @@
+package com.clevertap.android.geofence;
+
+import com.clevertap.android.geofence.fakes.GeofenceJSON;
+import com.clevertap.android.geofence.model.CTGeofence;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class GeofenceSpatialIndexTest extends BaseTestCase {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        file = new File(application.getFilesDir(), "geofence/" + CTGeofenceConstants.INDEX_FILE_NAME);
+    }
+
+    @Test
+    public void testBuildAndLoad() throws Exception {
+        JSONArray geofences = GeofenceJSON.getGeofence().getJSONArray("geofences");
+
+        GeofenceSpatialIndex builtIndex = GeofenceSpatialIndex.build(geofences, file);
+        GeofenceSpatialIndex loadedIndex = GeofenceSpatialIndex.load(file);
+
+        assertEquals(2, builtIndex.size());
+        assertEquals(2, loadedIndex.size());
+
+        int[] nearest = loadedIndex.nearest(19.092962, 72.849717, 2);
+        JSONArray records = loadedIndex.getRecords(nearest);
+
+        // records are stored as received including extra keys
+        for (int i = 0; i < records.length(); i++) {
+            JSONObject record = records.getJSONObject(i);
+            assertEquals(loadedIndex.getId(nearest[i]), record.getInt("id"));
+            assertEquals("GeoFence Cluster Details", record.getString("gcName"));
+        }
+    }
+
+    @Test
+    public void testLoadWhenFileIsMissing() throws Exception {
+        assertNull(GeofenceSpatialIndex.load(new File(application.getFilesDir(), "missing.bin")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadWhenFileIsInvalid() throws Exception {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(GeofenceJSON.getGeofenceString().getBytes("UTF-8"));
+        out.close();
+
+        GeofenceSpatialIndex.load(file);
+    }
+
+    @Test
+    public void testBuildSkipsInvalidGeofences() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(geofence(1, 19.0760, 72.8777))
+                .put(new JSONObject().put("lat", 19.0760).put("lng", 72.8777))
+                .put(new JSONObject().put("id", 3).put("lat", 19.0760))
+                .put(geofence(4, 91, 72.8777));
+
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.build(geofences, file);
+
+        assertEquals(1, index.size());
+        assertEquals(1, index.getId(0));
+    }
+
+    @Test
+    public void testNearestIsSortedByDistance() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(geofence(1, 28.6139, 77.2090)) // Delhi
+                .put(geofence(2, 18.5204, 73.8567)) // Pune
+                .put(geofence(3, 12.9716, 77.5946)) // Bengaluru
+                .put(geofence(4, 19.0760, 72.8777)); // Mumbai
+
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.build(geofences, file);
+
+        // from Thane
+        int[] nearest = index.nearest(19.2183, 72.9781, 3);
+
+        assertEquals(3, nearest.length);
+        assertEquals(4, index.getId(nearest[0]));
+        assertEquals(2, index.getId(nearest[1]));
+        assertEquals(3, index.getId(nearest[2]));
+
+        assertEquals(4, index.nearest(19.2183, 72.9781, 10).length);
+        assertEquals(0, index.nearest(19.2183, 72.9781, 0).length);
+    }
+
+    @Test
+    public void testNearestAcrossAntimeridian() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(geofence(1, -17.7134, 178.0650)) // Fiji
+                .put(geofence(2, -13.7590, -172.1046)) // Samoa
+                .put(geofence(3, -33.8688, 151.2093)); // Sydney
+
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.build(geofences, file);
+
+        int[] nearest = index.nearest(-17.5, -179.9, 1);
+
+        assertEquals(1, index.getId(nearest[0]));
+    }
+
+    @Test
+    public void testWithinRadius() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(geofence(1, 28.6139, 77.2090)) // Delhi
+                .put(geofence(2, 18.5204, 73.8567)) // Pune
+                .put(geofence(3, 19.0760, 72.8777)); // Mumbai
+
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.build(geofences, file);
+
+        // Mumbai is about 17 km and Pune about 120 km from Thane
+        int[] withinRadius = index.withinRadius(19.2183, 72.9781, 150000);
+
+        assertEquals(2, withinRadius.length);
+        assertEquals(3, index.getId(withinRadius[0]));
+        assertEquals(2, index.getId(withinRadius[1]));
+
+        assertEquals(1, index.withinRadius(19.2183, 72.9781, 20000).length);
+        assertEquals(0, index.withinRadius(19.2183, 72.9781, 1000).length);
+    }
+
+    @Test
+    public void testDistanceToNearestBoundary() throws Exception {
+        JSONArray geofences = new JSONArray()
+                .put(geofence(1, 19.0760, 72.8777)) // Mumbai
+                .put(geofence(2, 18.5204, 73.8567)); // Pune
+
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.build(geofences, file);
+
+        // 0.01 degree of latitude is about 1112 m, geofence radius is 500 m
+        assertEquals(612, index.distanceToNearestBoundary(19.0860, 72.8777, 5000), 2);
+
+        // inside geofence distance is measured to its boundary as well
+        assertEquals(500, index.distanceToNearestBoundary(19.0760, 72.8777, 5000), 1);
+
+        // Thane is about 17 km from Mumbai
+        assertEquals(Double.POSITIVE_INFINITY,
+                index.distanceToNearestBoundary(19.2183, 72.9781, 5000), 0);
+    }
+
+    @Test
+    public void testBuilderWritesSameIndexAsBuild() throws Exception {
+        JSONArray geofences = GeofenceJSON.getGeofence().getJSONArray("geofences");
+        geofences.put(new JSONObject().put("id", 3).put("lat", 95).put("lng", 72.8).put("r", 100));
+
+        GeofenceSpatialIndex.Builder builder = new GeofenceSpatialIndex.Builder(file);
+        assertTrue(builder.add(geofences.getJSONObject(0)));
+        assertTrue(builder.add(geofences.getJSONObject(1)));
+        assertFalse(builder.add(geofences.getJSONObject(2)));
+        assertEquals(2, builder.size());
+
+        GeofenceSpatialIndex index = builder.build();
+        builder.close();
+
+        assertEquals(2, index.size());
+        assertEquals(2, GeofenceSpatialIndex.load(file).size());
+        // temporary files are removed
+        assertEquals(1, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void testBuilderCloseDiscardsIndex() throws Exception {
+        GeofenceSpatialIndex.Builder builder = new GeofenceSpatialIndex.Builder(file);
+        builder.add(GeofenceJSON.getGeofenceArray().getJSONObject(0));
+        builder.close();
+
+        assertNull(GeofenceSpatialIndex.load(file));
+        assertEquals(0, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void testToGeofences() throws Exception {
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.build(
+                GeofenceJSON.getFirst().getJSONArray("geofences"), file);
+
+        List<CTGeofence> geofences = index.toGeofences(new int[]{0});
+
+        assertEquals(1, geofences.size());
+        assertEquals("310001", geofences.get(0).getId());
+        assertEquals(19.092962, geofences.get(0).getLatitude(), 0);
+        assertEquals(72.849717, geofences.get(0).getLongitude(), 0);
+        assertEquals(500, geofences.get(0).getRadius());
+    }
+
+    @Test
+    public void testCreateAndContaining() throws Exception {
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.create(
+                new double[]{28.6139, 19.0760, 19.0760},
+                new double[]{77.2090, 72.8777, 72.8877},
+                new int[]{500, 500, 2000});
+
+        assertEquals(3, index.size());
+
+        // about 500 meters east of first Mumbai geofence
+        int[] containing = index.containing(19.0760, 72.8825, 0);
+
+        assertEquals(1, containing.length);
+        assertEquals(2, index.getId(containing[0]));
+
+        // margin is added to radius of every geofence
+        containing = index.containing(19.0760, 72.8825, 100);
+
+        assertEquals(2, containing.length);
+        assertEquals(1, index.getId(containing[0]));
+        assertEquals(2, index.getId(containing[1]));
+    }
+
+    @Test(expected = IOException.class)
+    public void testGetRecordsWhenIndexIsInMemory() throws Exception {
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.create(new double[]{19.0760},
+                new double[]{72.8777}, new int[]{500});
+
+        index.getRecords(new int[]{0});
+    }
+
+    @Test
+    public void testQueriesMatchFullScan() throws Exception {
+        Random random = new Random(42);
+        JSONArray geofences = new JSONArray();
+
+        for (int i = 0; i < 5000; i++) {
+            // half of geofences are clustered around a city
+            double latitude = i % 2 == 0 ? -60 + random.nextDouble() * 120 : 19 + random.nextGaussian() * 0.2;
+            double longitude = i % 2 == 0 ? -180 + random.nextDouble() * 360 : 72.9 + random.nextGaussian() * 0.2;
+            geofences.put(geofence(i, latitude, longitude));
+        }
+
+        GeofenceSpatialIndex.build(geofences, file);
+        GeofenceSpatialIndex index = GeofenceSpatialIndex.load(file);
+
+        double[][] queries = {{19.05, 72.85}, {40.7128, -74.0060}, {-33.8688, 151.2093}, {0, 179.9}};
+
+        for (double[] query : queries) {
+            double[] distances = new double[index.size()];
+            for (int i = 0; i < index.size(); i++) {
+                distances[i] = GeofenceSelector.distanceInMeters(query[0], query[1],
+                        index.getLatitude(i), index.getLongitude(i));
+            }
+            double[] sortedDistances = distances.clone();
+            Arrays.sort(sortedDistances);
+
+            int[] nearest = index.nearest(query[0], query[1], 50);
+            double[] nearestDistances = new double[nearest.length];
+            for (int i = 0; i < nearest.length; i++) {
+                nearestDistances[i] = distances[nearest[i]];
+            }
+            assertArrayEquals(Arrays.copyOf(sortedDistances, 50), nearestDistances, 1e-6);
+
+            int expectedWithinRadius = 0;
+            for (double distance : distances) {
+                if (distance <= 500000) {
+                    expectedWithinRadius++;
+                }
+            }
+            assertEquals(expectedWithinRadius, index.withinRadius(query[0], query[1], 500000).length);
+        }
+    }
+
+    private static JSONObject geofence(int id, double latitude, double longitude) throws Exception {
+        return new JSONObject()
+                .put("id", id)
+                .put("lat", latitude)
+                .put("lng", longitude)
+                .put("r", 500);
+    }
+}
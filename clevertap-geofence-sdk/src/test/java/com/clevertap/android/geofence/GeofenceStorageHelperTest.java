@@ -0,0 +1,64 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+public class GeofenceStorageHelperTest extends BaseTestCase {
+
+    @Test
+    public void testGetLocationStateWhenNoneIsStored() {
+        LocationState state = GeofenceStorageHelper.getLocationState(application);
+
+        assertEquals(LocationState.NONE, state);
+        assertFalse(state.isKnown());
+    }
+
+    @Test
+    public void testPutLocationStateStoresAllValues() {
+        LocationState expected = new LocationState(19.23041616, 72.82488101, 1584340160000L);
+
+        GeofenceStorageHelper.putLocationState(application, expected);
+
+        // kept in memory
+        assertSame(expected, GeofenceStorageHelper.getLocationState(application));
+        assertTrue(expected.isKnown());
+
+        // and stored in same preferences keys as before
+        assertEquals(19.23041616, GeofenceStorageHelper.getDouble(application,
+                CTGeofenceConstants.KEY_LATITUDE, 0), 0);
+        assertEquals(72.82488101, GeofenceStorageHelper.getDouble(application,
+                CTGeofenceConstants.KEY_LONGITUDE, 0), 0);
+        assertEquals(1584340160000L, GeofenceStorageHelper.getLong(application,
+                CTGeofenceConstants.KEY_LAST_LOCATION_EP, 0));
+    }
+
+    @Test
+    public void testGetLocationStateReadsValuesStoredByKey() {
+        GeofenceStorageHelper.putLocationState(application, LocationState.NONE);
+
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LATITUDE, 18.5314);
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LONGITUDE, 73.8446);
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LAST_LOCATION_EP,
+                1584340160000L);
+
+        LocationState state = GeofenceStorageHelper.getLocationState(application);
+        assertEquals(new LocationState(18.5314, 73.8446, 1584340160000L), state);
+
+        Location location = state.toLocation();
+        assertEquals(18.5314, location.getLatitude(), 0);
+        assertEquals(73.8446, location.getLongitude(), 0);
+    }
+}
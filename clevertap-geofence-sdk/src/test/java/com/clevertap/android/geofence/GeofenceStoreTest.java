@@ -0,0 +1,286 @@
+package com.clevertap.android.geofence;
+
+import android.content.Context;
+
+import com.clevertap.android.geofence.fakes.GeofenceJSON;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.powermock.api.mockito.PowerMockito.verifyStatic;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class, FileUtils.class})
+public class GeofenceStoreTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    private Logger logger;
+    @Mock
+    public CTGeofenceAPI ctGeofenceAPI;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class, FileUtils.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getInstance(application)).thenReturn(ctGeofenceAPI);
+        logger = new Logger(Logger.DEBUG);
+        when(CTGeofenceAPI.getLogger()).thenReturn(logger);
+
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.CACHED_BINARY_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.CACHED_BINARY_FILE_NAME);
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.JOURNAL_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.JOURNAL_FILE_NAME);
+
+        GeofenceStore.getInstance().invalidate();
+    }
+
+    @Test
+    public void testGetInstance() {
+        GeofenceStore instance = GeofenceStore.getInstance();
+        assertSame(instance, GeofenceStore.getInstance());
+    }
+
+    @Test
+    public void testGetGeofenceLoadsFileOnlyOnce() throws Exception {
+
+        when(FileUtils.readFromFile(any(Context.class), anyString()))
+                .thenReturn(GeofenceJSON.getGeofenceString());
+
+        JSONObject first = GeofenceStore.getInstance().getGeofence(application, "310001");
+        JSONObject last = GeofenceStore.getInstance().getGeofence(application, "310002");
+
+        JSONAssert.assertEquals(GeofenceJSON.getFirstFromGeofenceArray().getJSONObject(0), first, true);
+        JSONAssert.assertEquals(GeofenceJSON.getLastFromGeofenceArray().getJSONObject(0), last, true);
+
+        verifyStatic(FileUtils.class, times(1));
+        FileUtils.readFromFile(any(Context.class), anyString());
+    }
+
+    @Test
+    public void testGetGeofenceWhenNotFound() {
+
+        when(FileUtils.readFromFile(any(Context.class), anyString()))
+                .thenReturn(GeofenceJSON.getGeofenceString());
+
+        assertNull(GeofenceStore.getInstance().getGeofence(application, "312201"));
+        assertNull(GeofenceStore.getInstance().getGeofence(application, "invalid"));
+        assertNull(GeofenceStore.getInstance().getGeofence(application, null));
+    }
+
+    @Test
+    public void testGetGeofencesWhenFileIsEmptyOrInvalid() {
+
+        when(FileUtils.readFromFile(any(Context.class), anyString())).thenReturn("");
+        assertEquals(0, GeofenceStore.getInstance().getGeofences(application).size());
+
+        GeofenceStore.getInstance().invalidate();
+
+        when(FileUtils.readFromFile(any(Context.class), anyString()))
+                .thenReturn(GeofenceJSON.getEmptyJson().toString());
+        assertEquals(0, GeofenceStore.getInstance().getGeofences(application).size());
+    }
+
+    @Test
+    public void testReplaceSwapsGeofencesWithoutReadingFile() throws Exception {
+
+        GeofenceStore.getInstance().replace(GeofenceJSON.getFirst());
+
+        assertEquals(1, GeofenceStore.getInstance().getGeofences(application).size());
+        JSONAssert.assertEquals(GeofenceJSON.getFirstFromGeofenceArray().getJSONObject(0),
+                GeofenceStore.getInstance().getGeofence(application, "310001"), true);
+        assertNull(GeofenceStore.getInstance().getGeofence(application, "310002"));
+
+        verifyStatic(FileUtils.class, times(0));
+        FileUtils.readFromFile(any(Context.class), anyString());
+    }
+
+    @Test
+    public void testPublishWritesFileAndSwapsGeofences() throws Exception {
+
+        assertTrue(GeofenceStore.getInstance().publish(application, GeofenceJSON.getFirst()));
+
+        GeofenceCache storedGeofences = GeofenceCache.map(GeofenceStore.getCacheFile(application));
+        JSONAssert.assertEquals(GeofenceJSON.getFirst(), storedGeofences.toJSON(), true);
+
+        assertEquals(1, GeofenceStore.getInstance().getGeofences(application).size());
+
+        // null list deletes file and clears geofences
+        assertTrue(GeofenceStore.getInstance().publish(application, null));
+
+        verifyStatic(FileUtils.class);
+        FileUtils.deleteFile(any(Context.class), eq(CTGeofenceConstants.CACHED_BINARY_FILE_NAME));
+
+        assertEquals(0, GeofenceStore.getInstance().getGeofences(application).size());
+        verifyStatic(FileUtils.class, times(0));
+        FileUtils.readFromFile(any(Context.class), anyString());
+    }
+
+    @Test
+    public void testPublishAppendsChangesToJournal() throws Exception {
+
+        when(FileUtils.readFromFile(any(Context.class), anyString())).thenReturn("");
+        GeofenceStore.getInstance().getGeofences(application);
+        assertTrue(GeofenceStore.getInstance().publish(application, GeofenceJSON.getGeofence()));
+        long fileLength = GeofenceStore.getCacheFile(application).length();
+
+        JSONObject newFenceList = GeofenceJSON.getFirst();
+        newFenceList.getJSONArray("geofences").put(new JSONObject().put("id", 310003)
+                .put("lat", 18.5204).put("lng", 73.8567).put("r", 200));
+        newFenceList.put(CTGeofenceConstants.KEY_RESELECTION_BOUNDARY,
+                new JSONObject().put("lat", 19.09).put("lng", 72.84).put("r", 1000));
+
+        assertTrue(GeofenceStore.getInstance().publish(application, newFenceList));
+
+        // binary file is kept as is and only the change is journaled
+        assertEquals(fileLength, GeofenceStore.getCacheFile(application).length());
+        assertTrue(GeofenceStore.getJournal(application).length() > 0);
+        JSONAssert.assertEquals(newFenceList,
+                GeofenceStore.getInstance().getGeofences(application).toJSON(), true);
+
+        // next process start applies journal to binary file
+        GeofenceStore.getInstance().invalidate();
+        JSONAssert.assertEquals(newFenceList,
+                GeofenceStore.getInstance().getGeofences(application).toJSON(), true);
+
+        // null list deletes journal too
+        assertTrue(GeofenceStore.getInstance().publish(application, null));
+        assertEquals(0, GeofenceStore.getJournal(application).length());
+    }
+
+    @Test
+    public void testPublishCompactsJournal() throws Exception {
+
+        when(FileUtils.readFromFile(any(Context.class), anyString())).thenReturn("");
+        GeofenceStore.getInstance().getGeofences(application);
+
+        JSONObject lastFenceList = null;
+        for (int i = 0; i < 200; i++) {
+            lastFenceList = i % 2 == 0 ? GeofenceJSON.getGeofence() : GeofenceJSON.getFirst();
+            assertTrue(GeofenceStore.getInstance().publish(application, lastFenceList));
+            assertTrue(GeofenceStore.getJournal(application).length()
+                    < GeofenceStore.JOURNAL_COMPACTION_SIZE + 1024);
+        }
+
+        GeofenceStore.getInstance().invalidate();
+        JSONAssert.assertEquals(lastFenceList,
+                GeofenceStore.getInstance().getGeofences(application).toJSON(), true);
+    }
+
+    @Test
+    public void testGetGeofencesDiscardsIncompleteJournalEntry() throws Exception {
+
+        when(FileUtils.readFromFile(any(Context.class), anyString())).thenReturn("");
+        GeofenceStore.getInstance().getGeofences(application);
+        GeofenceStore.getInstance().publish(application, GeofenceJSON.getGeofence());
+        GeofenceStore.getInstance().publish(application, GeofenceJSON.getFirst());
+        long journalLength = GeofenceStore.getJournal(application).length();
+
+        // process was killed while appending next entry
+        File journalFile = new File(application.getFilesDir(), CTGeofenceConstants.JOURNAL_FILE_NAME);
+        FileOutputStream out = new FileOutputStream(journalFile, true);
+        out.write(new byte[]{0, 0, 1, 0, 12, 34, 56, 78, '{'});
+        out.close();
+
+        GeofenceStore.getInstance().invalidate();
+
+        JSONAssert.assertEquals(GeofenceJSON.getFirst(),
+                GeofenceStore.getInstance().getGeofences(application).toJSON(), true);
+        assertEquals(journalLength, GeofenceStore.getJournal(application).length());
+    }
+
+    @Test
+    public void testGetGeofencesMigratesJsonFile() throws Exception {
+
+        when(FileUtils.readFromFile(any(Context.class), anyString()))
+                .thenReturn(GeofenceJSON.getGeofenceString());
+
+        assertEquals(2, GeofenceStore.getInstance().getGeofences(application).size());
+
+        // json file is converted to binary file and deleted
+        GeofenceCache storedGeofences = GeofenceCache.map(GeofenceStore.getCacheFile(application));
+        JSONAssert.assertEquals(GeofenceJSON.getGeofence(), storedGeofences.toJSON(), true);
+
+        verifyStatic(FileUtils.class);
+        FileUtils.deleteFile(any(Context.class), eq(""));
+
+        // next process start reads binary file only
+        GeofenceStore.getInstance().invalidate();
+        when(FileUtils.readFromFile(any(Context.class), anyString())).thenReturn("");
+
+        assertEquals(2, GeofenceStore.getInstance().getGeofences(application).size());
+        JSONAssert.assertEquals(GeofenceJSON.getLastFromGeofenceArray().getJSONObject(0),
+                GeofenceStore.getInstance().getGeofence(application, "310002"), true);
+    }
+
+    @Test
+    public void testInvalidateReloadsFromFile() {
+
+        GeofenceStore.getInstance().replace(GeofenceJSON.getFirst());
+
+        when(FileUtils.readFromFile(any(Context.class), anyString()))
+                .thenReturn(GeofenceJSON.getGeofenceString());
+        GeofenceStore.getInstance().invalidate();
+
+        assertEquals(2, GeofenceStore.getInstance().getGeofences(application).size());
+    }
+
+    @Test
+    public void testGetCatalogIndexLoadsFileOnlyOnce() throws Exception {
+
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.INDEX_FILE_NAME);
+
+        GeofenceSpatialIndex.build(GeofenceJSON.getGeofence().getJSONArray("geofences"),
+                GeofenceStore.getCatalogIndexFile(application));
+
+        GeofenceSpatialIndex catalogIndex = GeofenceStore.getInstance().getCatalogIndex(application);
+
+        assertEquals(2, catalogIndex.size());
+        assertSame(catalogIndex, GeofenceStore.getInstance().getCatalogIndex(application));
+    }
+
+    @Test
+    public void testGetCatalogIndexWhenFileIsMissing() {
+
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn("missing.bin");
+
+        assertNull(GeofenceStore.getInstance().getCatalogIndex(application));
+    }
+}
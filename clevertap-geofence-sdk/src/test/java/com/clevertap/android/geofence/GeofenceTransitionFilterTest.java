@@ -0,0 +1,190 @@
+package com.clevertap.android.geofence;
+
+import com.google.android.gms.location.Geofence;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class})
+public class GeofenceTransitionFilterTest extends BaseTestCase {
+
+    private static final long NOW = 1584340160000L;
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    @Mock
+    public CTGeofenceAPI ctGeofenceAPI;
+    private CTGeofenceTransitionStats stats;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class);
+
+        super.setUp();
+
+        stats = new CTGeofenceTransitionStats();
+        when(CTGeofenceAPI.getInstance(application)).thenReturn(ctGeofenceAPI);
+        when(CTGeofenceAPI.getLogger()).thenReturn(new Logger(Logger.DEBUG));
+        when(ctGeofenceAPI.getTransitionStats()).thenReturn(stats);
+    }
+
+    @Test
+    public void testOnTransitionSuppressesDuplicates() {
+        GeofenceTransitionFilter filter = new GeofenceTransitionFilter(0, 0, stats);
+
+        // unknown geofence accepts either transition
+        assertEquals(GeofenceTransitionFilter.RESULT_REPORTED, filter.onTransition(1, true, NOW));
+        assertEquals(GeofenceTransitionFilter.RESULT_REPORTED, filter.onTransition(2, false, NOW));
+
+        // enter registered again while inside, exit while outside
+        assertEquals(GeofenceTransitionFilter.RESULT_SUPPRESSED_DUPLICATE,
+                filter.onTransition(1, true, NOW + 1000));
+        assertEquals(GeofenceTransitionFilter.RESULT_SUPPRESSED_DUPLICATE,
+                filter.onTransition(2, false, NOW + 1000));
+
+        assertEquals(GeofenceTransitionFilter.RESULT_REPORTED,
+                filter.onTransition(1, false, NOW + 2000));
+
+        assertEquals(3, stats.getReportedCount());
+        assertEquals(2, stats.getSuppressedDuplicateCount());
+        assertFalse(filter.hasDeferred());
+    }
+
+    @Test
+    public void testOnTransitionAppliesHysteresis() {
+        GeofenceTransitionFilter filter = new GeofenceTransitionFilter(60000, 0, stats);
+        List<String> enteredIds = new ArrayList<>();
+        List<String> exitedIds = new ArrayList<>();
+
+        assertEquals(GeofenceTransitionFilter.RESULT_REPORTED, filter.onTransition(1, true, NOW));
+
+        // jitter at boundary, device is back inside before exit is reported
+        assertEquals(GeofenceTransitionFilter.RESULT_DEFERRED,
+                filter.onTransition(1, false, NOW + 10000));
+        assertEquals(GeofenceTransitionFilter.RESULT_SUPPRESSED_FLAP,
+                filter.onTransition(1, true, NOW + 20000));
+        assertFalse(filter.hasDeferred());
+
+        // exit which still holds is reported once hysteresis has passed
+        assertEquals(GeofenceTransitionFilter.RESULT_DEFERRED,
+                filter.onTransition(1, false, NOW + 30000));
+        filter.reconcile(NOW + 50000, enteredIds, exitedIds);
+        assertTrue(exitedIds.isEmpty());
+
+        filter.reconcile(NOW + 60000, enteredIds, exitedIds);
+        assertTrue(enteredIds.isEmpty());
+        assertEquals(Collections.singletonList("1"), exitedIds);
+        assertFalse(filter.hasDeferred());
+
+        assertEquals(2, stats.getReportedCount());
+        assertEquals(1, stats.getSuppressedFlapCount());
+        assertEquals(2, stats.getDeferredCount());
+    }
+
+    @Test
+    public void testOnTransitionAppliesMinDwellTime() {
+        GeofenceTransitionFilter filter = new GeofenceTransitionFilter(0, 120000, stats);
+        List<String> enteredIds = new ArrayList<>();
+        List<String> exitedIds = new ArrayList<>();
+
+        // passing through geofence is not reported at all
+        assertEquals(GeofenceTransitionFilter.RESULT_DEFERRED, filter.onTransition(1, true, NOW));
+        assertEquals(GeofenceTransitionFilter.RESULT_SUPPRESSED_FLAP,
+                filter.onTransition(1, false, NOW + 60000));
+
+        assertEquals(GeofenceTransitionFilter.RESULT_DEFERRED,
+                filter.onTransition(1, true, NOW + 100000));
+        assertTrue(filter.hasDeferred());
+
+        filter.reconcile(NOW + 220000, enteredIds, exitedIds);
+        assertEquals(Collections.singletonList("1"), enteredIds);
+        assertTrue(exitedIds.isEmpty());
+
+        // exit is not held back by dwell time
+        assertEquals(GeofenceTransitionFilter.RESULT_REPORTED,
+                filter.onTransition(1, false, NOW + 230000));
+    }
+
+    @Test
+    public void testFilterPersistsState() {
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(new CTGeofenceSettings.Builder()
+                .setTransitionHysteresis(60000).build());
+
+        List<String> enteredIds = new ArrayList<>();
+        List<String> exitedIds = new ArrayList<>();
+
+        GeofenceTransitionFilter.filter(application, Arrays.asList("1", "2"),
+                Geofence.GEOFENCE_TRANSITION_ENTER, enteredIds, exitedIds);
+
+        assertEquals(Arrays.asList("1", "2"), enteredIds);
+        assertTrue(GeofenceTransitionFilter.getFile(application).isFile());
+
+        // geofences registered again on boot trigger initial enter
+        enteredIds.clear();
+        GeofenceTransitionFilter.filter(application, Arrays.asList("1", "2"),
+                Geofence.GEOFENCE_TRANSITION_ENTER, enteredIds, exitedIds);
+        assertTrue(enteredIds.isEmpty());
+
+        GeofenceTransitionFilter.filter(application, Collections.singletonList("2"),
+                Geofence.GEOFENCE_TRANSITION_EXIT, enteredIds, exitedIds);
+        assertTrue(exitedIds.isEmpty());
+        assertTrue(GeofenceTransitionFilter.hasDeferred(application));
+
+        // forgotten geofence accepts enter again
+        GeofenceTransitionFilter.forget(application, Arrays.asList("1", "2"));
+        assertFalse(GeofenceTransitionFilter.hasDeferred(application));
+
+        GeofenceTransitionFilter.filter(application, Arrays.asList("1", "ct_other"),
+                Geofence.GEOFENCE_TRANSITION_ENTER, enteredIds, exitedIds);
+        assertEquals(Arrays.asList("1", "ct_other"), enteredIds);
+
+        assertEquals(3, stats.getReportedCount());
+        assertEquals(2, stats.getSuppressedDuplicateCount());
+        assertEquals(1, stats.getDeferredCount());
+    }
+
+    @Test
+    public void testFilterWhenFileIsCorrupt() throws Exception {
+        GeofenceTransitionFilter.getFile(application).getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(GeofenceTransitionFilter.getFile(application));
+        out.write(new byte[]{0, 0, 0, 1, 0, 0, 0, 5, 1});
+        out.close();
+
+        List<String> enteredIds = new ArrayList<>();
+        List<String> exitedIds = new ArrayList<>();
+
+        GeofenceTransitionFilter.filter(application, Collections.singletonList("1"),
+                Geofence.GEOFENCE_TRANSITION_EXIT, enteredIds, exitedIds);
+
+        // corrupt state is dropped, so no transition is suppressed
+        assertEquals(Collections.singletonList("1"), exitedIds);
+    }
+}
@@ -1,11 +1,19 @@
 package com.clevertap.android.geofence;
 
 import android.content.Context;
+import android.location.Location;
+
+import androidx.annotation.NonNull;
 
 import com.clevertap.android.geofence.fakes.GeofenceJSON;
 import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
+import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
 import com.clevertap.android.geofence.model.CTGeofence;
-import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.tasks.CancellationToken;
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
 
 import org.json.JSONObject;
 import org.junit.Before;
@@ -24,17 +32,26 @@ import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 import org.skyscreamer.jsonassert.JSONAssert;
 
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import edu.emory.mathcs.backport.java.util.Arrays;
 
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
-import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
 
 @RunWith(RobolectricTestRunner.class)
@@ -45,6 +62,8 @@ import static org.powermock.api.mockito.PowerMockito.when;
 @PrepareForTest({CTGeofenceAPI.class, FileUtils.class})
 public class GeofenceUpdateTaskTest extends BaseTestCase {
 
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+
     @Rule
     public PowerMockRule rule = new PowerMockRule();
     private Logger logger;
@@ -52,6 +71,8 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
     public CTGeofenceAPI ctGeofenceAPI;
     @Mock
     public CTGeofenceAdapter ctGeofenceAdapter;
+    @Mock
+    public CTGeofenceTask.OnCompleteListener onCompleteListener;
 
     @Before
     public void setUp() throws Exception {
@@ -66,6 +87,12 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
         when(CTGeofenceAPI.getLogger()).thenReturn(logger);
 
         WhiteboxImpl.setInternalState(ctGeofenceAPI, "ctGeofenceAdapter", ctGeofenceAdapter);
+        GeofenceStore.getInstance().invalidate();
+
+        when(ctGeofenceAdapter.addAllGeofenceAsync(any(List.class), any(CancellationToken.class)))
+                .thenReturn(TaskUtils.<Void>forResult(null));
+        when(ctGeofenceAdapter.removeAllGeofenceAsync(any(List.class), any(CancellationToken.class)))
+                .thenReturn(TaskUtils.<Void>forResult(null));
 
     }
 
@@ -76,6 +103,9 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         when(FileUtils.getCachedDirName(application)).thenReturn("");
         when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.INDEX_FILE_NAME);
+        stubCacheFile();
         when(FileUtils.readFromFile(any(Context.class),
                 anyString())).thenReturn("");
 
@@ -89,16 +119,15 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         updateTask.execute();
 
-        ArgumentCaptor<JSONObject> argumentCaptorJson = ArgumentCaptor.forClass(JSONObject.class);
+        JSONAssert.assertEquals(GeofenceJSON.getFirst(), readCacheFile(), true);
 
-        verifyStatic(FileUtils.class);
-        FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(), argumentCaptorJson.capture());
-
-        JSONAssert.assertEquals(GeofenceJSON.getFirst(), argumentCaptorJson.getValue(), true);
+        // full list is indexed to select from when location changes
+        assertEquals(2, GeofenceStore.getInstance().getCatalogIndex(application).size());
 
         ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
 
-        verify(ctGeofenceAdapter).addAllGeofence(argumentCaptor.capture(), any(OnSuccessListener.class));
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
         assertEquals(argumentCaptor.getValue().size(), 1);
     }
 
@@ -109,6 +138,7 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         when(FileUtils.getCachedDirName(application)).thenReturn("");
         when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        stubCacheFile();
         when(FileUtils.readFromFile(any(Context.class),
                 anyString())).thenReturn("");
 
@@ -122,17 +152,12 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         updateTask.execute();
 
-        ArgumentCaptor<JSONObject> argumentCaptorJson = ArgumentCaptor.forClass(JSONObject.class);
-
-        verifyStatic(FileUtils.class);
-        FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(), argumentCaptorJson.capture());
+        JSONAssert.assertEquals(GeofenceJSON.getEmptyGeofence(), readCacheFile(), true);
 
-        JSONAssert.assertEquals(GeofenceJSON.getEmptyGeofence(), argumentCaptorJson.getValue(), true);
-
-        ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        awaitPendingRegistration();
 
-        verify(ctGeofenceAdapter).addAllGeofence(argumentCaptor.capture(), any(OnSuccessListener.class));
-        assertEquals(argumentCaptor.getValue().size(), 0);
+        // nothing to register
+        verify(ctGeofenceAdapter, never()).addAllGeofenceAsync(any(List.class), any(CancellationToken.class));
     }
 
     @Test
@@ -142,6 +167,7 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         when(FileUtils.getCachedDirName(application)).thenReturn("");
         when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        stubCacheFile();
         when(FileUtils.readFromFile(any(Context.class),
                 anyString())).thenReturn("");
 
@@ -155,23 +181,91 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         updateTask.execute();
 
-        ArgumentCaptor<JSONObject> argumentCaptorJson = ArgumentCaptor.forClass(JSONObject.class);
+        JSONAssert.assertEquals(GeofenceJSON.getEmptyGeofence(), readCacheFile(), true);
 
-        verifyStatic(FileUtils.class);
-        FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(), argumentCaptorJson.capture());
+        awaitPendingRegistration();
 
-        JSONAssert.assertEquals(GeofenceJSON.getEmptyJson(), argumentCaptorJson.getValue(), true);
+        // nothing to register
+        verify(ctGeofenceAdapter, never()).addAllGeofenceAsync(any(List.class), any(CancellationToken.class));
+    }
+
+    @Test
+    public void executeTestTC4() throws Exception {
 
+        // when old geofence is not empty and new geofence list contains old geofence unchanged
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getFirst().toString());
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(2)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, GeofenceJSON.getGeofence());
+        updateTask.setOnCompleteListener(onCompleteListener);
+
+        updateTask.execute();
+
+        awaitPendingRegistration();
+
+        // unchanged geofence must not be removed
+        verify(ctGeofenceAdapter, never()).removeAllGeofenceAsync(any(List.class), any(CancellationToken.class));
+
+        // only new geofence must be added
         ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
+        assertEquals(1, argumentCaptor.getValue().size());
+        assertEquals("310002", argumentCaptor.getValue().get(0).getId());
+
+        GeofenceDiff geofenceDiff = GeofenceUpdateTask.getLastGeofenceDiff();
+        assertEquals(1, geofenceDiff.getAddedCount());
+        assertEquals(0, geofenceDiff.getRemovedCount());
+        assertEquals(1, geofenceDiff.getUnchangedCount());
+    }
 
-        verify(ctGeofenceAdapter).addAllGeofence(argumentCaptor.capture(), any(OnSuccessListener.class));
-        assertEquals(argumentCaptor.getValue().size(), 0);
+    @Test
+    public void executeTestTC6() throws Exception {
+
+        // when old geofence is not empty and new geofence list does not contain old geofence
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getGeofenceString());
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(1)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, GeofenceJSON.getFirst());
+        updateTask.setOnCompleteListener(onCompleteListener);
+
+        updateTask.execute();
+
+        ArgumentCaptor<List<String>> argumentCaptorOldGeofence = ArgumentCaptor.forClass(List.class);
+
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).removeAllGeofenceAsync(
+                argumentCaptorOldGeofence.capture(), any(CancellationToken.class));
+        assertThat(argumentCaptorOldGeofence.getValue(), is(Arrays.asList(new String[]{"310002"})));
+
+        awaitPendingRegistration();
+
+        // nothing new to add, task completes as soon as removal completes
+        verify(ctGeofenceAdapter, never()).addAllGeofenceAsync(any(List.class), any(CancellationToken.class));
+        verify(onCompleteListener, timeout(TIMEOUT_IN_MILLIS)).onComplete();
     }
 
     @Test
-    public void executeTestTC4() throws Exception {
+    public void executeTestTC7() throws Exception {
 
-        // when old geofence is not empty and new geofence list is not empty
+        // when old geofence is not empty and geometry of old geofence is changed in new list
 
         when(FileUtils.getCachedDirName(application)).thenReturn("");
         when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
@@ -184,15 +278,26 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
 
-        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, GeofenceJSON.getGeofence());
+        JSONObject changedGeofence = GeofenceJSON.getFirst();
+        changedGeofence.getJSONArray("geofences").getJSONObject(0).put("r", 1000);
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, changedGeofence);
 
         updateTask.execute();
 
         ArgumentCaptor<List<String>> argumentCaptorOldGeofence = ArgumentCaptor.forClass(List.class);
 
-        verify(ctGeofenceAdapter).removeAllGeofence(argumentCaptorOldGeofence.capture(), any(OnSuccessListener.class));
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).removeAllGeofenceAsync(
+                argumentCaptorOldGeofence.capture(), any(CancellationToken.class));
         assertThat(argumentCaptorOldGeofence.getValue(), is(Arrays.asList(new String[]{"310001"})));
 
+        // changed geofence is added back after removal
+        ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
+        assertEquals(1, argumentCaptor.getValue().size());
+        assertEquals(1000, argumentCaptor.getValue().get(0).getRadius());
+        assertEquals(1, GeofenceUpdateTask.getLastGeofenceDiff().getChangedCount());
     }
 
     @Test
@@ -202,6 +307,7 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         when(FileUtils.getCachedDirName(application)).thenReturn("");
         when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        stubCacheFile();
         when(FileUtils.readFromFile(any(Context.class),
                 anyString())).thenReturn(GeofenceJSON.getGeofenceString());
 
@@ -215,17 +321,413 @@ public class GeofenceUpdateTaskTest extends BaseTestCase {
 
         updateTask.execute();
 
-        ArgumentCaptor<JSONObject> argumentCaptorJson = ArgumentCaptor.forClass(JSONObject.class);
+        JSONAssert.assertEquals(GeofenceJSON.getGeofence(), readCacheFile(), true);
+
+        ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
+        assertEquals(argumentCaptor.getValue().size(), 2);
+    }
+
+    @Test
+    public void executeTestTC8() throws Exception {
+
+        // when last location is known and geofence monitor count is less than new geofence list size
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.INDEX_FILE_NAME);
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn("");
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(1)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        // second geofence is moved close to last location
+        JSONObject newGeofence = GeofenceJSON.getGeofence();
+        newGeofence.getJSONArray("geofences").getJSONObject(1).put("lat", 18.5204).put("lng", 73.8567);
+
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LATITUDE, 18.5314);
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LONGITUDE, 73.8446);
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LAST_LOCATION_EP,
+                System.currentTimeMillis());
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, newGeofence);
+
+        updateTask.execute();
+
+        ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
+        assertEquals(2, argumentCaptor.getValue().size());
+        assertEquals("310002", argumentCaptor.getValue().get(0).getId());
+
+        // reselection boundary reaches up to selected geofence and is monitored for exit only
+        CTGeofence reselectionBoundary = argumentCaptor.getValue().get(1);
+        assertEquals(CTGeofenceConstants.RESELECTION_GEOFENCE_ID, reselectionBoundary.getId());
+        assertEquals(Geofence.GEOFENCE_TRANSITION_EXIT, reselectionBoundary.getTransitionType());
+        assertEquals(18.5314, reselectionBoundary.getLatitude(), 0);
+        assertEquals(73.8446, reselectionBoundary.getLongitude(), 0);
+        assertEquals(GeofenceSelector.distanceInMeters(18.5314, 73.8446, 18.5204, 73.8567),
+                reselectionBoundary.getRadius(), 1);
+    }
 
-        verifyStatic(FileUtils.class);
-        FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(), argumentCaptorJson.capture());
+    @Test
+    public void executeTestTC9() throws Exception {
 
-        JSONAssert.assertEquals(GeofenceJSON.getGeofence(), argumentCaptorJson.getValue(), true);
+        // when reselection is requested after location change
+
+        JSONObject catalog = GeofenceJSON.getGeofence();
+        catalog.getJSONArray("geofences").getJSONObject(1).put("lat", 18.5204).put("lng", 73.8567);
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.CACHED_FILE_NAME)))
+                .thenReturn("cache");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.INDEX_FILE_NAME);
+        stubCacheFile();
+        when(FileUtils.readFromFile(any(Context.class), eq("cache")))
+                .thenReturn(GeofenceJSON.getFirst().toString());
+
+        GeofenceSpatialIndex.build(catalog.getJSONArray("geofences"),
+                GeofenceStore.getCatalogIndexFile(application));
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(1)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LATITUDE, 18.5314);
+        GeofenceStorageHelper.putDouble(application, CTGeofenceConstants.KEY_LONGITUDE, 73.8446);
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LAST_LOCATION_EP,
+                System.currentTimeMillis());
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, null, true);
+
+        updateTask.execute();
+
+        // geofence which is now far away is replaced by the nearest one
+        ArgumentCaptor<List<String>> argumentCaptorOldGeofence = ArgumentCaptor.forClass(List.class);
+
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).removeAllGeofenceAsync(
+                argumentCaptorOldGeofence.capture(), any(CancellationToken.class));
+        assertThat(argumentCaptorOldGeofence.getValue(), is(Arrays.asList(new String[]{"310001"})));
 
         ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
+        assertEquals("310002", argumentCaptor.getValue().get(0).getId());
 
-        verify(ctGeofenceAdapter).addAllGeofence(argumentCaptor.capture(), any(OnSuccessListener.class));
-        assertEquals(argumentCaptor.getValue().size(), 2);
+        // only the selection is written to file
+        assertEquals(1, readCacheFile().getJSONArray("geofences").length());
+    }
+
+    @Test
+    public void executeTestTC10() {
+
+        // when reselection is requested and no catalog is stored
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn("");
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, null, true);
+
+        updateTask.execute();
+
+        awaitPendingRegistration();
+
+        verify(ctGeofenceAdapter, never()).removeAllGeofenceAsync(any(List.class), any(CancellationToken.class));
+        verify(ctGeofenceAdapter, never()).addAllGeofenceAsync(any(List.class), any(CancellationToken.class));
+    }
+
+    @Test
+    public void executeTestTC11() throws Exception {
+
+        // when reselection is requested around triggering location with custom reselection radius
+
+        JSONObject catalog = GeofenceJSON.getGeofence();
+        catalog.getJSONArray("geofences").getJSONObject(1).put("lat", 18.5204).put("lng", 73.8567);
+
+        JSONObject oldGeofences = GeofenceJSON.getFirst();
+        oldGeofences.put(CTGeofenceConstants.KEY_RESELECTION_BOUNDARY, new JSONObject()
+                .put("lat", 19.092962).put("lng", 72.849717).put("r", 5000));
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.CACHED_FILE_NAME)))
+                .thenReturn("cache");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.INDEX_FILE_NAME);
+        stubCacheFile();
+        when(FileUtils.readFromFile(any(Context.class), eq("cache")))
+                .thenReturn(oldGeofences.toString());
+
+        GeofenceSpatialIndex.build(catalog.getJSONArray("geofences"),
+                GeofenceStore.getCatalogIndexFile(application));
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(1)
+                .setReselectionRadius(5000)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        // last known location is not updated yet
+        Location location = new Location("");
+        location.setLatitude(18.5314);
+        location.setLongitude(73.8446);
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, null, true, location);
+
+        updateTask.execute();
+
+        // moved reselection boundary and old geofence are removed
+        ArgumentCaptor<List<String>> argumentCaptorOldGeofence = ArgumentCaptor.forClass(List.class);
+
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).removeAllGeofenceAsync(
+                argumentCaptorOldGeofence.capture(), any(CancellationToken.class));
+        assertThat(argumentCaptorOldGeofence.getValue(), is(Arrays.asList(
+                new String[]{CTGeofenceConstants.RESELECTION_GEOFENCE_ID, "310001"})));
+
+        ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
+        assertEquals(2, argumentCaptor.getValue().size());
+        assertEquals("310002", argumentCaptor.getValue().get(0).getId());
+        assertEquals(CTGeofenceConstants.RESELECTION_GEOFENCE_ID, argumentCaptor.getValue().get(1).getId());
+        assertEquals(18.5314, argumentCaptor.getValue().get(1).getLatitude(), 0);
+        assertEquals(5000, argumentCaptor.getValue().get(1).getRadius());
+
+        // reselection boundary is stored along with selection but never looked up as a geofence
+        JSONObject storedGeofences = readCacheFile();
+        assertEquals(1, storedGeofences.getJSONArray("geofences").length());
+        assertEquals(5000, storedGeofences
+                .getJSONObject(CTGeofenceConstants.KEY_RESELECTION_BOUNDARY).getInt("r"));
+        assertEquals(1, GeofenceStore.getInstance().getGeofences(application).size());
+    }
+
+    @Test
+    public void executeTestTC12() throws Exception {
+
+        // when registration to OS is slow, task does not wait for it and next registration waits
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn("");
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(2)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        TaskCompletionSource<Void> registration = new TaskCompletionSource<>();
+        when(ctGeofenceAdapter.addAllGeofenceAsync(any(List.class), any(CancellationToken.class)))
+                .thenReturn(registration.getTask());
+
+        GeofenceUpdateTask updateTask = new GeofenceUpdateTask(application, GeofenceJSON.getGeofence());
+        updateTask.setOnCompleteListener(onCompleteListener);
+
+        updateTask.execute();
+
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(any(List.class),
+                any(CancellationToken.class));
+
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getGeofenceString());
+
+        new GeofenceUpdateTask(application, GeofenceJSON.getFirst()).execute();
+
+        // removal is not sent to OS before previous registration completes
+        verify(onCompleteListener, never()).onComplete();
+        verify(ctGeofenceAdapter, never()).removeAllGeofenceAsync(any(List.class),
+                any(CancellationToken.class));
+
+        registration.setResult(null);
+
+        verify(onCompleteListener, timeout(TIMEOUT_IN_MILLIS)).onComplete();
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).removeAllGeofenceAsync(any(List.class),
+                any(CancellationToken.class));
+    }
+
+    @Test
+    public void executeTestTC13() throws Exception {
+
+        // when new geofence list is streamed as json text
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.INDEX_FILE_NAME);
+        stubCacheFile();
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn("");
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(1)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        GeofenceUpdateTask updateTask = GeofenceUpdateTask.fromReader(application,
+                new StringReader(GeofenceJSON.GEOFENCE_JSON_STRING));
+
+        updateTask.execute();
+
+        JSONAssert.assertEquals(GeofenceJSON.getFirst(), readCacheFile(), true);
+        assertEquals(2, GeofenceStore.getInstance().getCatalogIndex(application).size());
+
+        ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).addAllGeofenceAsync(argumentCaptor.capture(),
+                any(CancellationToken.class));
+        assertEquals(1, argumentCaptor.getValue().size());
+        assertEquals("310001", argumentCaptor.getValue().get(0).getId());
     }
 
+    @Test
+    public void executeTestTC14() throws Exception {
+
+        // when streamed geofence list is malformed, registered geofences are kept
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), eq(CTGeofenceConstants.INDEX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.INDEX_FILE_NAME);
+        stubCacheFile();
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn("");
+
+        GeofenceUpdateTask updateTask = GeofenceUpdateTask.fromReader(application,
+                new StringReader("{\"geofences\":[{\"id\":310001,"));
+
+        updateTask.execute();
+
+        verify(ctGeofenceAdapter, never()).addAllGeofenceAsync(any(List.class),
+                any(CancellationToken.class));
+        verify(ctGeofenceAdapter, never()).removeAllGeofenceAsync(any(List.class),
+                any(CancellationToken.class));
+        assertFalse(GeofenceStore.getCacheFile(application).exists());
+        assertFalse(GeofenceStore.getCatalogIndexFile(application).exists());
+    }
+
+    @Test
+    public void executeTestTC16() throws Exception {
+
+        // when geofences are registered again on boot, their transition state is reset
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.TRANSITION_STATE_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.TRANSITION_STATE_FILE_NAME);
+        stubCacheFile();
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getGeofenceString());
+
+        List<String> enteredIds = new ArrayList<>();
+        GeofenceTransitionFilter.filter(application, Collections.singletonList("310001"),
+                Geofence.GEOFENCE_TRANSITION_ENTER, enteredIds, new ArrayList<String>());
+        assertEquals(Collections.singletonList("310001"), enteredIds);
+
+        // device left geofence while off, state still says inside
+        new GeofenceUpdateTask(application, null).execute();
+
+        enteredIds.clear();
+        GeofenceTransitionFilter.filter(application, Collections.singletonList("310001"),
+                Geofence.GEOFENCE_TRANSITION_ENTER, enteredIds, new ArrayList<String>());
+        assertEquals(Collections.singletonList("310001"), enteredIds);
+    }
+
+    @Test
+    public void executeTestTC15() throws Exception {
+
+        // when registration to OS fails, same list received again is registered in full
+
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        stubCacheFile();
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn("");
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceMonitoringCount(2)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        TaskCompletionSource<Void> failedRegistration = new TaskCompletionSource<>();
+        failedRegistration.setException(new IllegalStateException("Geofence not available"));
+        when(ctGeofenceAdapter.addAllGeofenceAsync(any(List.class), any(CancellationToken.class)))
+                .thenReturn(failedRegistration.getTask(), TaskUtils.<Void>forResult(null));
+
+        new GeofenceUpdateTask(application, GeofenceJSON.getGeofence()).execute();
+        awaitPendingRegistration();
+
+        new GeofenceUpdateTask(application, GeofenceJSON.getGeofence()).execute();
+        awaitPendingRegistration();
+
+        ArgumentCaptor<List<CTGeofence>> argumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(ctGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS).times(2)).addAllGeofenceAsync(
+                argumentCaptor.capture(), any(CancellationToken.class));
+        assertEquals(2, argumentCaptor.getAllValues().get(1).size());
+        assertEquals(2, GeofenceUpdateTask.getLastGeofenceDiff().getUnchangedCount());
+
+        // once registered, same list again is not registered
+        new GeofenceUpdateTask(application, GeofenceJSON.getGeofence()).execute();
+        awaitPendingRegistration();
+
+        verify(ctGeofenceAdapter, times(2)).addAllGeofenceAsync(any(List.class),
+                any(CancellationToken.class));
+    }
+
+    /**
+     * Keeps binary geofence file and its journal in files dir, so that written geofences can be
+     * read back
+     */
+    private static void stubCacheFile() {
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.CACHED_BINARY_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.CACHED_BINARY_FILE_NAME);
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.JOURNAL_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.JOURNAL_FILE_NAME);
+    }
+
+    /**
+     * Reads stored geofences back as next process start would, from binary file and its journal
+     */
+    @NonNull
+    private JSONObject readCacheFile() {
+        GeofenceStore.getInstance().invalidate();
+        return GeofenceStore.getInstance().getGeofences(application).toJSON();
+    }
+
+    /**
+     * Waits until registrations enqueued so far are complete
+     */
+    private static void awaitPendingRegistration() {
+        final Task<Void> lastTask = TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+            @Override
+            public Task<Void> then(Task<Void> task) {
+                return null;
+            }
+        });
+
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return lastTask.isComplete();
+            }
+        });
+    }
 }
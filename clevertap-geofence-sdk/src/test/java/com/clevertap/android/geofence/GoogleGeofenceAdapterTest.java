@@ -11,8 +11,10 @@ import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingClient;
 import com.google.android.gms.location.GeofencingRequest;
 import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.CancellationTokenSource;
 import com.google.android.gms.tasks.OnSuccessListener;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
 import com.google.android.gms.tasks.Tasks;
 
 import org.hamcrest.CoreMatchers;
@@ -35,12 +37,17 @@ import org.robolectric.annotation.Config;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 
+import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -54,6 +61,8 @@ import static org.powermock.api.mockito.PowerMockito.when;
         , LocationServices.class, Tasks.class})
 public class GoogleGeofenceAdapterTest extends BaseTestCase {
 
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+
     @Rule
     public PowerMockRule rule = new PowerMockRule();
     private Logger logger;
@@ -127,8 +136,10 @@ public class GoogleGeofenceAdapterTest extends BaseTestCase {
         geofenceAdapter.addAllGeofence(ctGeofences, onSuccessListener);
 
         try {
+            verify(geofencingClient).addGeofences(any(GeofencingRequest.class), any(PendingIntent.class));
+
             verifyStatic(Tasks.class);
-            Tasks.await(task);
+            Tasks.await(any(Task.class));
 
             verify(onSuccessListener).onSuccess(null);
         } catch (ExecutionException e) {
@@ -169,8 +180,10 @@ public class GoogleGeofenceAdapterTest extends BaseTestCase {
         geofenceAdapter.removeAllGeofence(ctGeofenceIds, onSuccessListener);
 
         try {
+            verify(geofencingClient).removeGeofences(ctGeofenceIds);
+
             verifyStatic(Tasks.class);
-            Tasks.await(task);
+            Tasks.await(any(Task.class));
 
             verify(onSuccessListener).onSuccess(null);
         } catch (ExecutionException e) {
@@ -197,15 +210,15 @@ public class GoogleGeofenceAdapterTest extends BaseTestCase {
 
         GoogleGeofenceAdapter geofenceAdapter = new GoogleGeofenceAdapter(application);
 
-        when(geofencingClient.removeGeofences(pendingIntent)).thenReturn(task);
+        when(geofencingClient.removeGeofences(pendingIntent)).thenReturn(TaskUtils.<Void>forResult(null));
 
         geofenceAdapter.stopGeofenceMonitoring(pendingIntent);
 
         try {
             verifyStatic(Tasks.class);
-            Tasks.await(task);
+            Tasks.await(any(Task.class));
 
-            verify(pendingIntent).cancel();
+            verify(pendingIntent, timeout(TIMEOUT_IN_MILLIS)).cancel();
         } catch (ExecutionException e) {
             e.printStackTrace();
         } catch (InterruptedException e) {
@@ -213,6 +226,75 @@ public class GoogleGeofenceAdapterTest extends BaseTestCase {
         }
     }
 
+    @Test
+    public void testAddAllGeofenceAsync() throws Exception {
+
+        // when registration completes
+
+        List<CTGeofence> ctGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+        GoogleGeofenceAdapter geofenceAdapter = new GoogleGeofenceAdapter(application);
+        TaskCompletionSource<Void> registration = new TaskCompletionSource<>();
+        when(geofencingClient.addGeofences(any(GeofencingRequest.class), any(PendingIntent.class)))
+                .thenReturn(registration.getTask());
+
+        final Task<Void> addTask = geofenceAdapter.addAllGeofenceAsync(ctGeofences, null);
+
+        // calling thread is not blocked
+        assertFalse(addTask.isComplete());
+
+        registration.setResult(null);
+
+        awaitCompletion(addTask);
+        assertTrue(addTask.isSuccessful());
+    }
+
+    @Test
+    public void testAddAllGeofenceAsyncWhenCancelled() {
+
+        // when waiting for registration is cancelled
+
+        List<CTGeofence> ctGeofences = CTGeofence.from(GeofenceJSON.getGeofence());
+        GoogleGeofenceAdapter geofenceAdapter = new GoogleGeofenceAdapter(application);
+        when(geofencingClient.addGeofences(any(GeofencingRequest.class), any(PendingIntent.class)))
+                .thenReturn(new TaskCompletionSource<Void>().getTask());
+
+        CancellationTokenSource cancellationTokenSource = new CancellationTokenSource();
+        final Task<Void> addTask = geofenceAdapter.addAllGeofenceAsync(ctGeofences,
+                cancellationTokenSource.getToken());
+
+        cancellationTokenSource.cancel();
+
+        awaitCompletion(addTask);
+        assertTrue(addTask.isCanceled());
+    }
+
+    @Test
+    public void testRemoveAllGeofenceAsyncWhenFailed() {
+
+        // when un-registration fails
+
+        List<String> ctGeofenceIds = Arrays.asList("111", "222");
+        GoogleGeofenceAdapter geofenceAdapter = new GoogleGeofenceAdapter(application);
+        TaskCompletionSource<Void> unregistration = new TaskCompletionSource<>();
+        when(geofencingClient.removeGeofences(ctGeofenceIds)).thenReturn(unregistration.getTask());
+
+        final Task<Void> removeTask = geofenceAdapter.removeAllGeofenceAsync(ctGeofenceIds, null);
+        unregistration.setException(new IllegalStateException());
+
+        awaitCompletion(removeTask);
+        assertFalse(removeTask.isSuccessful());
+    }
+
+    @Test
+    public void testStopGeofenceMonitoringAsyncWhenPendingIntentIsNull() {
+        GoogleGeofenceAdapter geofenceAdapter = new GoogleGeofenceAdapter(application);
+
+        Task<Void> stopTask = geofenceAdapter.stopGeofenceMonitoringAsync(null, null);
+
+        assertTrue(stopTask.isSuccessful());
+        verify(geofencingClient, never()).removeGeofences(any(PendingIntent.class));
+    }
+
     @Test
     public void testGetGeofencingRequest() {
         GoogleGeofenceAdapter geofenceAdapter = new GoogleGeofenceAdapter(application);
@@ -231,4 +313,13 @@ public class GoogleGeofenceAdapterTest extends BaseTestCase {
         }
     }
 
+
+    private static void awaitCompletion(final Task<?> task) {
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return task.isComplete();
+            }
+        });
+    }
 }
@@ -21,6 +21,7 @@ import com.google.android.gms.location.FusedLocationProviderClient;
 import com.google.android.gms.location.LocationRequest;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
 import com.google.android.gms.tasks.Tasks;
 
 import org.junit.Assert;
@@ -28,6 +29,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.powermock.api.mockito.PowerMockito;
@@ -40,11 +42,13 @@ import org.robolectric.annotation.Config;
 
 import java.lang.reflect.Field;
 import java.util.List;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static android.app.PendingIntent.FLAG_UPDATE_CURRENT;
 import static com.clevertap.android.geofence.CTGeofenceConstants.TAG_WORK_LOCATION_UPDATES;
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.isIn;
@@ -52,7 +56,6 @@ import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
@@ -174,7 +177,7 @@ public class GoogleLocationAdapterTest extends BaseTestCase {
                 any(LocationRequest.class), any(PendingIntent.class));
 
         verifyStatic(Tasks.class);
-        Tasks.await(null);
+        Tasks.await(any(Task.class));
 
     }
 
@@ -213,7 +216,7 @@ public class GoogleLocationAdapterTest extends BaseTestCase {
         verify(providerClient).removeLocationUpdates(any(PendingIntent.class));
 
         verifyStatic(Tasks.class);
-        Tasks.await(null);
+        Tasks.await(any(Task.class));
 
     }
 
@@ -222,16 +225,16 @@ public class GoogleLocationAdapterTest extends BaseTestCase {
         final Location expectedLocation = GeofenceEventFake.getTriggeredLocation();
         when(LocationServices.getFusedLocationProviderClient(application))
                 .thenReturn(providerClient);
-        Task<Location> locationTask = mock(Task.class);
         try {
-            PowerMockito.when(Tasks.await(locationTask)).thenReturn(expectedLocation);
+            PowerMockito.when(Tasks.await(ArgumentMatchers.<Task<Location>>any()))
+                    .thenReturn(expectedLocation);
         } catch (ExecutionException e) {
             e.printStackTrace();
         } catch (InterruptedException e) {
             e.printStackTrace();
         }
 
-        when(providerClient.getLastLocation()).thenReturn(locationTask);
+        when(providerClient.getLastLocation()).thenReturn(TaskUtils.forResult(expectedLocation));
         final GoogleLocationAdapter locationAdapter = new GoogleLocationAdapter(application);
 
         locationAdapter.getLastLocation(new CTLocationCallback() {
@@ -242,6 +245,84 @@ public class GoogleLocationAdapterTest extends BaseTestCase {
         });
     }
 
+    @Test
+    public void testGetLastLocationAsync() {
+        final Location expectedLocation = GeofenceEventFake.getTriggeredLocation();
+        when(LocationServices.getFusedLocationProviderClient(application))
+                .thenReturn(providerClient);
+
+        TaskCompletionSource<Location> lastLocation = new TaskCompletionSource<>();
+        when(providerClient.getLastLocation()).thenReturn(lastLocation.getTask());
+        final GoogleLocationAdapter locationAdapter = new GoogleLocationAdapter(application);
+
+        final Task<Location> locationTask = locationAdapter.getLastLocationAsync(null);
+
+        // calling thread is not blocked
+        Assert.assertFalse(locationTask.isComplete());
+
+        lastLocation.setResult(expectedLocation);
+
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return locationTask.isComplete();
+            }
+        });
+        Assert.assertSame(expectedLocation, locationTask.getResult());
+    }
+
+    @Test
+    public void testGetLastLocationAsyncSharesRequest() {
+        final Location expectedLocation = GeofenceEventFake.getTriggeredLocation();
+        when(LocationServices.getFusedLocationProviderClient(application))
+                .thenReturn(providerClient);
+
+        TaskCompletionSource<Location> lastLocation = new TaskCompletionSource<>();
+        when(providerClient.getLastLocation()).thenReturn(lastLocation.getTask());
+        final GoogleLocationAdapter locationAdapter = new GoogleLocationAdapter(application);
+
+        final Task<Location> firstTask = locationAdapter.getLastLocationAsync(null);
+        final Task<Location> secondTask = locationAdapter.getLastLocationAsync(
+                TaskUtils.getCancellationToken());
+
+        // concurrent callers cause single request to OS
+        verify(providerClient).getLastLocation();
+
+        lastLocation.setResult(expectedLocation);
+
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return firstTask.isComplete() && secondTask.isComplete();
+            }
+        });
+        Assert.assertSame(expectedLocation, firstTask.getResult());
+        Assert.assertSame(expectedLocation, secondTask.getResult());
+    }
+
+    @Test
+    public void testGetLastLocationAsyncUsesReceivedLocation() {
+        when(LocationServices.getFusedLocationProviderClient(application))
+                .thenReturn(providerClient);
+        final GoogleLocationAdapter locationAdapter = new GoogleLocationAdapter(application);
+
+        Location receivedLocation = GeofenceEventFake.getTriggeredLocation();
+        receivedLocation.setTime(System.currentTimeMillis());
+        locationAdapter.onLocationReceived(receivedLocation);
+
+        Task<Location> locationTask = locationAdapter.getLastLocationAsync(null);
+
+        Assert.assertTrue(locationTask.isComplete());
+        Assert.assertSame(receivedLocation, locationTask.getResult());
+        verify(providerClient, never()).getLastLocation();
+
+        // unless caller asks for a newer one
+        when(providerClient.getLastLocation())
+                .thenReturn(new TaskCompletionSource<Location>().getTask());
+        locationAdapter.getLastLocationAsync(0, null);
+        verify(providerClient).getLastLocation();
+    }
+
     @Test
     public void testApplySettings(){
 
@@ -252,6 +333,7 @@ public class GoogleLocationAdapterTest extends BaseTestCase {
                 .setFastestInterval(2000000)
                 .setLocationAccuracy(CTGeofenceSettings.ACCURACY_LOW)
                 .setSmallestDisplacement(900)
+                .setMaxWaitTime(8000000)
                 .build();
 
         when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(ctGeofenceSettings);
@@ -268,6 +350,7 @@ public class GoogleLocationAdapterTest extends BaseTestCase {
             assertEquals(ctGeofenceSettings.getSmallestDisplacement(),
                     actualLocationRequest.getSmallestDisplacement(),0);
             assertEquals(LocationRequest.PRIORITY_LOW_POWER,actualLocationRequest.getPriority());
+            assertEquals(ctGeofenceSettings.getMaxWaitTime(),actualLocationRequest.getMaxWaitTime());
 
             Field actualFetchMode = WhiteboxImpl.getField(GoogleLocationAdapter.class, "locationFetchMode");
             Field actualLocationUpdateEnabled = WhiteboxImpl.getField(GoogleLocationAdapter.class,
@@ -282,4 +365,67 @@ public class GoogleLocationAdapterTest extends BaseTestCase {
 
     }
 
+    @Test
+    public void testApplySettingsWithLocationTier() throws Exception {
+
+        CTGeofenceSettings ctGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setLocationFetchMode(CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC)
+                .enableBackgroundLocationUpdates(true)
+                .enableAdaptiveLocationUpdates(true)
+                .setInterval(2000000)
+                .setFastestInterval(2000000)
+                .setLocationAccuracy(CTGeofenceSettings.ACCURACY_MEDIUM)
+                .setSmallestDisplacement(900)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(ctGeofenceSettings);
+
+        GoogleLocationAdapter locationAdapter = new GoogleLocationAdapter(application);
+
+        // when device is near a geofence boundary
+
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LOCATION_TIER,
+                LocationSamplingScheduler.LOCATION_TIER_NEAR);
+
+        WhiteboxImpl.invokeMethod(locationAdapter, "applySettings", application);
+        LocationRequest nearLocationRequest = WhiteboxImpl.invokeMethod(locationAdapter,
+                "getLocationRequest");
+
+        assertEquals(LocationSamplingScheduler.NEAR_INTERVAL_IN_MILLIS,
+                nearLocationRequest.getInterval());
+        assertEquals(LocationSamplingScheduler.NEAR_FASTEST_INTERVAL_IN_MILLIS,
+                nearLocationRequest.getFastestInterval());
+        assertEquals(LocationSamplingScheduler.NEAR_SMALLEST_DISPLACEMENT_IN_METERS,
+                nearLocationRequest.getSmallestDisplacement(), 0);
+        assertEquals(LocationRequest.PRIORITY_HIGH_ACCURACY, nearLocationRequest.getPriority());
+
+        // when device is far from all geofences
+
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LOCATION_TIER,
+                LocationSamplingScheduler.LOCATION_TIER_FAR);
+
+        WhiteboxImpl.invokeMethod(locationAdapter, "applySettings", application);
+        LocationRequest farLocationRequest = WhiteboxImpl.invokeMethod(locationAdapter,
+                "getLocationRequest");
+
+        assertEquals(4000000, farLocationRequest.getInterval());
+        assertEquals(4000000, farLocationRequest.getFastestInterval());
+        assertEquals(1800, farLocationRequest.getSmallestDisplacement(), 0);
+        assertEquals(LocationRequest.PRIORITY_LOW_POWER, farLocationRequest.getPriority());
+
+        // in between location is requested as configured
+
+        GeofenceStorageHelper.putLong(application, CTGeofenceConstants.KEY_LOCATION_TIER,
+                LocationSamplingScheduler.LOCATION_TIER_MEDIUM);
+
+        WhiteboxImpl.invokeMethod(locationAdapter, "applySettings", application);
+        LocationRequest mediumLocationRequest = WhiteboxImpl.invokeMethod(locationAdapter,
+                "getLocationRequest");
+
+        assertEquals(2000000, mediumLocationRequest.getInterval());
+        assertEquals(900, mediumLocationRequest.getSmallestDisplacement(), 0);
+        assertEquals(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY,
+                mediumLocationRequest.getPriority());
+    }
+
 }
@@ -0,0 +1,148 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class})
+public class LastLocationCacheTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+
+    private LastLocationCache cache;
+    private AtomicInteger loadCount;
+    private TaskCompletionSource<Location> pendingLoad;
+    private LastLocationCache.Loader loader;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getLogger()).thenReturn(new Logger(Logger.DEBUG));
+
+        cache = new LastLocationCache();
+        loadCount = new AtomicInteger();
+        pendingLoad = new TaskCompletionSource<>();
+        loader = new LastLocationCache.Loader() {
+            @NonNull
+            @Override
+            public Task<Location> load() {
+                loadCount.incrementAndGet();
+                return pendingLoad.getTask();
+            }
+        };
+    }
+
+    @Test
+    public void testConcurrentCallsShareSingleRequest() {
+        Task<Location> firstTask = cache.get(60000, loader);
+        Task<Location> secondTask = cache.get(60000, loader);
+
+        assertSame(firstTask, secondTask);
+        assertEquals(1, loadCount.get());
+
+        Location location = newLocation(System.currentTimeMillis());
+        pendingLoad.setResult(location);
+        awaitCompletion(secondTask);
+        assertSame(location, secondTask.getResult());
+
+        // received location is cached
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return cache.getFreshLocation(60000) != null;
+            }
+        });
+        Task<Location> cachedTask = cache.get(60000, loader);
+        assertTrue(cachedTask.isComplete());
+        assertSame(location, cachedTask.getResult());
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void testStaleLocationIsRequestedAgain() {
+        cache.offer(newLocation(System.currentTimeMillis() - 120000));
+
+        assertNull(cache.getFreshLocation(60000));
+
+        cache.get(60000, loader);
+        assertEquals(1, loadCount.get());
+
+        // zero age always requests location from OS, once request completes
+        pendingLoad.setException(new IllegalStateException());
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                cache.get(0, loader);
+                return loadCount.get() == 2;
+            }
+        });
+    }
+
+    @Test
+    public void testOfferKeepsNewestLocation() {
+        long nowMillis = System.currentTimeMillis();
+        Location newLocation = newLocation(nowMillis);
+
+        cache.offer(newLocation);
+        cache.offer(newLocation(nowMillis - 10000));
+        cache.offer(null);
+
+        assertSame(newLocation, cache.getFreshLocation(60000));
+        assertSame(newLocation, cache.get(60000, loader).getResult());
+        assertEquals(0, loadCount.get());
+    }
+
+    @NonNull
+    private static Location newLocation(long timeMillis) {
+        Location location = new Location("");
+        location.setLatitude(19.23041616);
+        location.setLongitude(72.82488101);
+        location.setTime(timeMillis);
+        return location;
+    }
+
+    private static void awaitCompletion(final Task<?> task) {
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return task.isComplete();
+            }
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import com.clevertap.android.geofence.interfaces.CTLocationAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static com.clevertap.android.geofence.LocationSamplingScheduler.LOCATION_TIER_FAR;
+import static com.clevertap.android.geofence.LocationSamplingScheduler.LOCATION_TIER_MEDIUM;
+import static com.clevertap.android.geofence.LocationSamplingScheduler.LOCATION_TIER_NEAR;
+import static com.clevertap.android.geofence.LocationSamplingScheduler.LOCATION_TIER_NONE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class})
+public class LocationSamplingSchedulerTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    @Mock
+    public CTGeofenceAPI ctGeofenceAPI;
+    @Mock
+    public CTLocationAdapter ctLocationAdapter;
+    private Logger logger;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getInstance(application)).thenReturn(ctGeofenceAPI);
+        logger = new Logger(Logger.DEBUG);
+        when(CTGeofenceAPI.getLogger()).thenReturn(logger);
+        when(ctGeofenceAPI.getCtLocationAdapter()).thenReturn(ctLocationAdapter);
+
+        // Mumbai, radius 500 m
+        GeofenceStore.getInstance().replaceCatalogIndex(GeofenceSpatialIndex.create(
+                new double[]{19.0760}, new double[]{72.8777}, new int[]{500}));
+    }
+
+    @After
+    public void cleanUp() {
+        GeofenceStore.getInstance().invalidate();
+    }
+
+    @Test
+    public void testSelectTier() {
+        assertEquals(LOCATION_TIER_NEAR,
+                LocationSamplingScheduler.selectTier(LOCATION_TIER_NONE, 500));
+        assertEquals(LOCATION_TIER_MEDIUM,
+                LocationSamplingScheduler.selectTier(LOCATION_TIER_NONE, 1100));
+        assertEquals(LOCATION_TIER_FAR,
+                LocationSamplingScheduler.selectTier(LOCATION_TIER_NONE, 5100));
+        assertEquals(LOCATION_TIER_FAR, LocationSamplingScheduler.selectTier(
+                LOCATION_TIER_NONE, Double.POSITIVE_INFINITY));
+    }
+
+    @Test
+    public void testSelectTierKeepsCurrentTierWithinHysteresis() {
+        // near tier is left only beyond 1200 m
+        assertEquals(LOCATION_TIER_NEAR,
+                LocationSamplingScheduler.selectTier(LOCATION_TIER_NEAR, 1100));
+        assertEquals(LOCATION_TIER_MEDIUM,
+                LocationSamplingScheduler.selectTier(LOCATION_TIER_NEAR, 1300));
+
+        // far tier is left only within 4800 m
+        assertEquals(LOCATION_TIER_FAR,
+                LocationSamplingScheduler.selectTier(LOCATION_TIER_FAR, 4900));
+        assertEquals(LOCATION_TIER_MEDIUM,
+                LocationSamplingScheduler.selectTier(LOCATION_TIER_FAR, 4700));
+    }
+
+    @Test
+    public void testOnLocationChangedWhenDisabled() {
+        CTGeofenceSettings ctGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setLocationFetchMode(CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC)
+                .build();
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(ctGeofenceSettings);
+
+        assertFalse(LocationSamplingScheduler.onLocationChanged(application,
+                location(19.0860, 72.8777)));
+        assertEquals(LOCATION_TIER_NONE,
+                LocationSamplingScheduler.getTier(application));
+    }
+
+    @Test
+    public void testOnLocationChangedRequestsLocationOnTierChange() {
+        CTGeofenceSettings ctGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setLocationFetchMode(CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC)
+                .enableAdaptiveLocationUpdates(true)
+                .build();
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(ctGeofenceSettings);
+
+        // about 600 m from boundary
+        assertTrue(LocationSamplingScheduler.onLocationChanged(application,
+                location(19.0860, 72.8777)));
+
+        assertEquals(LOCATION_TIER_NEAR,
+                LocationSamplingScheduler.getTier(application));
+        assertEquals(1, LocationSamplingScheduler.getTierSwitchCount(application));
+        verify(ctLocationAdapter, timeout(5000)).requestLocationUpdatesAsync(any());
+
+        // about 1100 m from boundary, still within hysteresis so location is not requested again
+        assertFalse(LocationSamplingScheduler.onLocationChanged(application,
+                location(19.0904, 72.8777)));
+        assertEquals(1, LocationSamplingScheduler.getTierSwitchCount(application));
+
+        // about 17 km from boundary
+        assertTrue(LocationSamplingScheduler.onLocationChanged(application,
+                location(19.2183, 72.9781)));
+        assertEquals(LOCATION_TIER_FAR,
+                LocationSamplingScheduler.getTier(application));
+        assertEquals(2, LocationSamplingScheduler.getTierSwitchCount(application));
+
+        LocationSamplingScheduler.reset(application);
+        assertEquals(LOCATION_TIER_NONE,
+                LocationSamplingScheduler.getTier(application));
+    }
+
+    @Test
+    public void testOnLocationChangedWhenFetchModeIsLastLocation() {
+        CTGeofenceSettings ctGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setLocationFetchMode(CTGeofenceSettings.FETCH_LAST_LOCATION_PERIODIC)
+                .enableAdaptiveLocationUpdates(true)
+                .build();
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(ctGeofenceSettings);
+
+        assertFalse(LocationSamplingScheduler.onLocationChanged(application,
+                location(19.0860, 72.8777)));
+        verify(ctLocationAdapter, never()).requestLocationUpdatesAsync(any());
+    }
+
+    private static Location location(double latitude, double longitude) {
+        Location location = new Location("");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+}
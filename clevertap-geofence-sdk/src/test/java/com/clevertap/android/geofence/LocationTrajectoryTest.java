@@ -0,0 +1,113 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class})
+public class LocationTrajectoryTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getLogger()).thenReturn(new Logger(Logger.DEBUG));
+    }
+
+    @Test
+    public void testSimplifyStraightPath() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            // about 110 meters apart, zigzagging by about 20 meters
+            locations.add(newLocation(19.0 + i * 0.001, 72.8 + (i % 2) * 0.0002));
+        }
+
+        List<Location> simplified = LocationTrajectory.simplify(locations,
+                LocationTrajectory.TOLERANCE_IN_METERS);
+
+        assertEquals(2, simplified.size());
+        assertSame(locations.get(0), simplified.get(0));
+        assertSame(locations.get(19), simplified.get(1));
+    }
+
+    @Test
+    public void testSimplifyKeepsTurns() {
+        List<Location> locations = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            locations.add(newLocation(19.0 + i * 0.001, 72.8));
+        }
+        for (int i = 1; i < 10; i++) {
+            locations.add(newLocation(19.009, 72.8 + i * 0.001));
+        }
+
+        List<Location> simplified = LocationTrajectory.simplify(locations,
+                LocationTrajectory.TOLERANCE_IN_METERS);
+
+        assertEquals(Arrays.asList(locations.get(0), locations.get(9), locations.get(18)),
+                simplified);
+    }
+
+    @Test
+    public void testSimplifyShortPath() {
+        Location location = newLocation(19.0, 72.8);
+
+        assertEquals(Collections.singletonList(location), LocationTrajectory.simplify(
+                Collections.singletonList(location), LocationTrajectory.TOLERANCE_IN_METERS));
+        assertEquals(0, LocationTrajectory.simplify(new ArrayList<Location>(),
+                LocationTrajectory.TOLERANCE_IN_METERS).size());
+    }
+
+    @Test
+    public void testFilterByAccuracy() {
+        Location inaccurate = newLocation(19.0, 72.8);
+        inaccurate.setAccuracy(500);
+        Location accurate = newLocation(19.001, 72.8);
+        accurate.setAccuracy(20);
+        Location withoutAccuracy = newLocation(19.002, 72.8);
+
+        List<Location> locations = Arrays.asList(inaccurate, accurate, withoutAccuracy, null);
+
+        assertEquals(Arrays.asList(accurate, withoutAccuracy),
+                LocationTrajectory.filterByAccuracy(locations, 100));
+        assertEquals(Arrays.asList(inaccurate, accurate, withoutAccuracy),
+                LocationTrajectory.filterByAccuracy(locations, 0));
+    }
+
+    private static Location newLocation(double latitude, double longitude) {
+        Location location = new Location("");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+}
@@ -3,13 +3,17 @@ package com.clevertap.android.geofence;
 import android.app.PendingIntent;
 import android.content.Context;
 
+import com.clevertap.android.geofence.fakes.GeofenceJSON;
+import com.clevertap.android.geofence.interfaces.CTGeofenceAdapter;
 import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
 import com.clevertap.android.geofence.interfaces.CTLocationAdapter;
+import com.google.android.gms.tasks.CancellationToken;
 
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatchers;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.powermock.api.mockito.PowerMockito;
@@ -20,11 +24,15 @@ import org.powermock.reflect.internal.WhiteboxImpl;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -34,9 +42,11 @@ import static org.powermock.api.mockito.PowerMockito.when;
         application = TestApplication.class
 )
 @PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
-@PrepareForTest({CTGeofenceAPI.class, Utils.class, FileUtils.class})
+@PrepareForTest({CTGeofenceAPI.class, Utils.class, FileUtils.class, CTGeofenceFactory.class})
 public class LocationUpdateTaskTest extends BaseTestCase {
 
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+
     @Rule
     public PowerMockRule rule = new PowerMockRule();
     private Logger logger;
@@ -51,7 +61,8 @@ public class LocationUpdateTaskTest extends BaseTestCase {
     public void setUp() throws Exception {
 
         MockitoAnnotations.initMocks(this);
-        PowerMockito.mockStatic(CTGeofenceAPI.class, Utils.class, FileUtils.class);
+        PowerMockito.mockStatic(CTGeofenceAPI.class, Utils.class, FileUtils.class,
+                CTGeofenceFactory.class);
 
         super.setUp();
 
@@ -60,7 +71,12 @@ public class LocationUpdateTaskTest extends BaseTestCase {
         when(CTGeofenceAPI.getLogger()).thenReturn(logger);
 
         WhiteboxImpl.setInternalState(ctGeofenceAPI, "ctLocationAdapter", ctLocationAdapter);
+        GeofenceStore.getInstance().invalidate();
 
+        when(ctLocationAdapter.requestLocationUpdatesAsync(any(CancellationToken.class)))
+                .thenReturn(TaskUtils.<Void>forResult(null));
+        when(ctLocationAdapter.removeLocationUpdatesAsync(any(PendingIntent.class),
+                any(CancellationToken.class))).thenReturn(TaskUtils.<Void>forResult(null));
     }
 
     @Test
@@ -84,12 +100,13 @@ public class LocationUpdateTaskTest extends BaseTestCase {
         task.setOnCompleteListener(onCompleteListener);
         task.execute();
 
-        verify(ctLocationAdapter).requestLocationUpdates();
+        verify(ctLocationAdapter, timeout(TIMEOUT_IN_MILLIS))
+                .requestLocationUpdatesAsync(any(CancellationToken.class));
 
         verifyStatic(Utils.class);
         Utils.writeSettingsToFile(any(Context.class), any(CTGeofenceSettings.class));
 
-        verify(onCompleteListener).onComplete();
+        verify(onCompleteListener, timeout(TIMEOUT_IN_MILLIS)).onComplete();
     }
 
     @Test
@@ -104,8 +121,9 @@ public class LocationUpdateTaskTest extends BaseTestCase {
         LocationUpdateTask task = new LocationUpdateTask(application);
         task.execute();
 
-        verify(ctLocationAdapter,never()).requestLocationUpdates();
-        verify(ctLocationAdapter,never()).removeLocationUpdates(any(PendingIntent.class));
+        verify(ctLocationAdapter,never()).requestLocationUpdatesAsync(any(CancellationToken.class));
+        verify(ctLocationAdapter,never()).removeLocationUpdatesAsync(any(PendingIntent.class),
+                any(CancellationToken.class));
 
         verifyStatic(Utils.class);
         Utils.writeSettingsToFile(any(Context.class), any(CTGeofenceSettings.class));
@@ -129,14 +147,47 @@ public class LocationUpdateTaskTest extends BaseTestCase {
         task.execute();
 
         // verify that previous update is removed
-        verify(ctLocationAdapter).removeLocationUpdates(any(PendingIntent.class));
-        verify(ctLocationAdapter,never()).requestLocationUpdates();
+        verify(ctLocationAdapter, timeout(TIMEOUT_IN_MILLIS)).removeLocationUpdatesAsync(
+                any(PendingIntent.class), any(CancellationToken.class));
+        verify(ctLocationAdapter,never()).requestLocationUpdatesAsync(any(CancellationToken.class));
 
         verifyStatic(Utils.class);
         Utils.writeSettingsToFile(any(Context.class), any(CTGeofenceSettings.class));
 
     }
 
+    @Test
+    public void testExecuteWhenGeofenceEngineIsSwitched() {
+        // when geofence engine is switched from OS to software
+
+        CTGeofenceSettings lastGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceEngine(CTGeofenceSettings.GEOFENCE_ENGINE_OS).build();
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setGeofenceEngine(CTGeofenceSettings.GEOFENCE_ENGINE_SOFTWARE).build();
+
+        when(Utils.readSettingsFromFile(application)).thenReturn(lastGeofenceSettings);
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        CTGeofenceAdapter lastGeofenceAdapter = mock(CTGeofenceAdapter.class);
+        when(CTGeofenceFactory.createGeofenceAdapter(application)).thenReturn(lastGeofenceAdapter);
+        when(lastGeofenceAdapter.removeAllGeofenceAsync(ArgumentMatchers.<String>anyList(),
+                any(CancellationToken.class))).thenReturn(TaskUtils.<Void>forResult(null));
+        when(lastGeofenceAdapter.stopGeofenceMonitoringAsync(ArgumentMatchers.<PendingIntent>any(),
+                any(CancellationToken.class))).thenReturn(TaskUtils.<Void>forResult(null));
+
+        GeofenceStore.getInstance().replace(GeofenceJSON.getGeofence());
+
+        LocationUpdateTask task = new LocationUpdateTask(application);
+        task.execute();
+
+        // geofences registered to OS are removed by id, even if pending intent does not exist
+        verify(lastGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).removeAllGeofenceAsync(
+                eq(Arrays.asList("310001", "310002", CTGeofenceConstants.RESELECTION_GEOFENCE_ID)),
+                any(CancellationToken.class));
+        verify(lastGeofenceAdapter, timeout(TIMEOUT_IN_MILLIS)).stopGeofenceMonitoringAsync(
+                ArgumentMatchers.<PendingIntent>any(), any(CancellationToken.class));
+    }
+
     @Test
     public void testIsRequestLocationTC1() throws Exception {
         // when currentBgLocationUpdate is false
@@ -357,6 +408,32 @@ public class LocationUpdateTaskTest extends BaseTestCase {
 
     }
 
+    @Test
+    public void testIsRequestLocationTC11() throws Exception {
+        // when fetch mode is current and change in max wait time
+
+        CTGeofenceSettings currentGeofenceSettings = new CTGeofenceSettings.Builder()
+                .enableBackgroundLocationUpdates(true)
+                .setLocationFetchMode(CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC)
+                .setMaxWaitTime(4 * 60 * 60 * 1000)
+                .build();
+
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(currentGeofenceSettings);
+
+        CTGeofenceSettings lastGeofenceSettings = new CTGeofenceSettings.Builder()
+                .setLocationFetchMode(CTGeofenceSettings.FETCH_CURRENT_LOCATION_PERIODIC)
+                .build();
+
+        PowerMockito.when(Utils.readSettingsFromFile(application)).thenReturn(lastGeofenceSettings);
+
+        LocationUpdateTask task = new LocationUpdateTask(application);
+        boolean isRequestLocation = WhiteboxImpl.invokeMethod(task, "isRequestLocation",
+                mock(PendingIntent.class));
+
+        assertTrue(isRequestLocation);
+
+    }
+
     @Test
     public void testIsRequestLocationTC10() throws Exception {
         // when currentBgLocationUpdate is true and there is no change in settings
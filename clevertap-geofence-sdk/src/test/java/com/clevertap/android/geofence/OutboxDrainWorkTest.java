@@ -0,0 +1,192 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import com.clevertap.android.sdk.CleverTapAPI;
+import com.google.android.gms.location.Geofence;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.powermock.reflect.Whitebox;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class, CleverTapAPI.class, Utils.class})
+public class OutboxDrainWorkTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    @Mock
+    public CTGeofenceAPI ctGeofenceAPI;
+    @Mock
+    public CleverTapAPI cleverTapAPI;
+    private Logger logger;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class, Utils.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getInstance(application)).thenReturn(ctGeofenceAPI);
+        logger = new Logger(Logger.DEBUG);
+        when(CTGeofenceAPI.getLogger()).thenReturn(logger);
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(cleverTapAPI);
+        ((Set) Whitebox.getInternalState(GeofenceEventPipeline.class, "pushingKeys")).clear();
+    }
+
+    @Test
+    public void testDrainPushesNewestLocationOnly() throws Exception {
+        Future future = Mockito.mock(Future.class);
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(future);
+        when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt())).thenReturn(future);
+
+        EventOutbox.add(application, Arrays.asList(
+                EventOutbox.locationEvent(location(19.0760, 72.8777, 1584340160000L)),
+                geofenceEvent(310001),
+                EventOutbox.locationEvent(location(19.0860, 72.8777, 1584340220000L))));
+
+        assertTrue(OutboxDrainWork.drain(application));
+
+        verify(cleverTapAPI).pushGeofenceEnteredEvent(any(JSONObject.class));
+
+        // older location is superseded by newer one
+        ArgumentCaptor<Location> locationCaptor = ArgumentCaptor.forClass(Location.class);
+        verify(cleverTapAPI).setLocationForGeofences(locationCaptor.capture(), anyInt());
+        assertEquals(1584340220000L, locationCaptor.getValue().getTime());
+
+        assertTrue(EventOutbox.peek(application, 10).isEmpty());
+    }
+
+    @Test
+    public void testDrainInBatches() throws Exception {
+        Future future = Mockito.mock(Future.class);
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(future);
+
+        List<JSONObject> events = new ArrayList<>();
+        for (int id = 0; id < OutboxDrainWork.BATCH_SIZE + 1; id++) {
+            events.add(geofenceEvent(id));
+        }
+        EventOutbox.add(application, events);
+
+        assertTrue(OutboxDrainWork.drain(application));
+
+        verify(cleverTapAPI, times(OutboxDrainWork.BATCH_SIZE + 1))
+                .pushGeofenceEnteredEvent(any(JSONObject.class));
+        assertTrue(EventOutbox.peek(application, 10).isEmpty());
+    }
+
+    @Test
+    public void testDrainKeepsUndeliveredEvents() throws Exception {
+        Future future = Mockito.mock(Future.class);
+        Future failedFuture = Mockito.mock(Future.class);
+        when(failedFuture.get(anyLong(), any(TimeUnit.class))).thenThrow(new IllegalStateException());
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class)))
+                .thenReturn(future, failedFuture);
+
+        EventOutbox.add(application, Arrays.asList(geofenceEvent(310001), geofenceEvent(310002)));
+
+        assertFalse(OutboxDrainWork.drain(application));
+
+        List<JSONObject> events = EventOutbox.peek(application, 10);
+        assertEquals(1, events.size());
+        assertEquals(310002, events.get(0).getJSONObject(EventOutbox.KEY_GEOFENCE).getInt("id"));
+    }
+
+    @Test
+    public void testDrainSkipsEventBeingPushed() throws Exception {
+        final FutureTask<Void> pendingPush = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, null);
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(pendingPush);
+
+        // task delivering event on read queue, still waiting for its push
+        final JSONObject event = geofenceEvent(310001);
+        Thread pushThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                GeofenceEventPipeline.deliver(application, cleverTapAPI,
+                        Collections.singletonList(event));
+            }
+        });
+        pushThread.start();
+        verify(cleverTapAPI, timeout(5000)).pushGeofenceEnteredEvent(any(JSONObject.class));
+
+        // event is in outbox but is not pushed again by drain
+        assertEquals(1, EventOutbox.peek(application, 10).size());
+        assertFalse(OutboxDrainWork.drain(application));
+        verify(cleverTapAPI, times(1)).pushGeofenceEnteredEvent(any(JSONObject.class));
+
+        pendingPush.run();
+        pushThread.join();
+
+        assertTrue(EventOutbox.peek(application, 10).isEmpty());
+        assertTrue(OutboxDrainWork.drain(application));
+        verify(cleverTapAPI, times(1)).pushGeofenceEnteredEvent(any(JSONObject.class));
+    }
+
+    @Test
+    public void testDrainWhenCleverTapApiIsNull() throws Exception {
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(null);
+
+        EventOutbox.add(application, Arrays.asList(geofenceEvent(310001)));
+
+        assertFalse(OutboxDrainWork.drain(application));
+        assertEquals(1, EventOutbox.peek(application, 10).size());
+    }
+
+    private static JSONObject geofenceEvent(int id) throws Exception {
+        JSONObject geofence = new JSONObject().put("id", id).put("lat", 19.09).put("lng", 72.84)
+                .put("r", 500);
+        return EventOutbox.geofenceEvent(geofence, Geofence.GEOFENCE_TRANSITION_ENTER,
+                1584340160000L);
+    }
+
+    private static Location location(double latitude, double longitude, long time) {
+        Location location = new Location("");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setTime(time);
+        return location;
+    }
+}
@@ -13,6 +13,7 @@ import com.google.android.gms.location.Geofence;
 import com.google.android.gms.location.GeofencingEvent;
 
 import org.json.JSONObject;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -25,6 +26,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.powermock.reflect.Whitebox;
 import org.powermock.reflect.internal.WhiteboxImpl;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
@@ -32,10 +34,17 @@ import org.skyscreamer.jsonassert.JSONAssert;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -83,9 +92,16 @@ public class PushGeofenceEventTaskTest extends BaseTestCase {
         intent = new Intent();
         when(GeofencingEvent.fromIntent(intent)).thenReturn(geofencingEvent);
         WhiteboxImpl.setInternalState(ctGeofenceAPI, "cleverTapAPI", cleverTapAPI);
+        when(ctGeofenceAPI.getEventBus()).thenReturn(new GeofenceEventBus());
+        GeofenceStore.getInstance().invalidate();
 
     }
 
+    @After
+    public void tearDown() {
+        Whitebox.setInternalState(GeofenceEventPipeline.class, "latePushExecutor", (Object) null);
+    }
+
     @Test
     public void testExecuteWhenCleverTapApiIsNull() {
 
@@ -241,7 +257,7 @@ public class PushGeofenceEventTaskTest extends BaseTestCase {
             verify(cleverTapAPI).pushGeofenceEnteredEvent(objectArgumentCaptor.capture());
             JSONAssert.assertEquals(firstFromGeofenceArray,objectArgumentCaptor.getValue(),true);
 
-            verify(future).get();
+            verify(future).get(anyLong(), any(TimeUnit.class));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -388,7 +404,7 @@ public class PushGeofenceEventTaskTest extends BaseTestCase {
             verify(cleverTapAPI).pushGeoFenceExitedEvent(objectArgumentCaptor.capture());
             JSONAssert.assertEquals(firstFromGeofenceArray,objectArgumentCaptor.getValue(),true);
 
-            verify(future).get();
+            verify(future).get(anyLong(), any(TimeUnit.class));
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -435,7 +451,175 @@ public class PushGeofenceEventTaskTest extends BaseTestCase {
             // assert geofence with id 310002
             JSONAssert.assertEquals(lastFromGeofenceArray,objectArgumentCaptor.getAllValues().get(1),true);
 
-            verify(future,times(2)).get();
+            verify(future,times(2)).get(anyLong(), any(TimeUnit.class));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    @Test
+    public void testPushGeofenceEventsKeepsUnacknowledgedEventsInOutbox() throws Exception {
+        // When one of multiple exit events fails after missing deadline
+
+        PushGeofenceEventTask task = new PushGeofenceEventTask(application, intent);
+        Future future = Mockito.mock(Future.class);
+        Future pendingFuture = Mockito.mock(Future.class);
+        when(pendingFuture.get(anyLong(), any(TimeUnit.class))).thenThrow(new TimeoutException());
+        when(pendingFuture.get()).thenThrow(new ExecutionException(new IllegalStateException()));
+        Whitebox.setInternalState(GeofenceEventPipeline.class, "latePushExecutor", new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.OUTBOX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.OUTBOX_FILE_NAME);
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getGeofenceString());
+        when(cleverTapAPI.pushGeoFenceExitedEvent(any(JSONObject.class)))
+                .thenReturn(future, pendingFuture);
+
+        List<Geofence> triggeredGeofenceList = GeofenceEventFake.getDoubleMatchingTriggeredGeofenceList();
+        Location triggeredLocation = GeofenceEventFake.getTriggeredLocation();
+
+        WhiteboxImpl.invokeMethod(task,"pushGeofenceEvents",
+                triggeredGeofenceList,
+                triggeredLocation,Geofence.GEOFENCE_TRANSITION_EXIT);
+
+        verify(cleverTapAPI,times(2)).pushGeoFenceExitedEvent(any(JSONObject.class));
+
+        List<JSONObject> storedEvents = EventOutbox.peek(application, 10);
+        assertEquals(1, storedEvents.size());
+        assertEquals(Geofence.GEOFENCE_TRANSITION_EXIT,
+                storedEvents.get(0).getInt(EventOutbox.KEY_TRANSITION));
+        assertEquals(310002, storedEvents.get(0)
+                .getJSONObject(EventOutbox.KEY_GEOFENCE).getInt("id"));
+    }
+
+    @Test
+    public void testPushGeofenceEventsWhenCleverTapApiIsNull() throws Exception {
+        // When CleverTap SDK is not available events are stored for later delivery
+
+        PushGeofenceEventTask task = new PushGeofenceEventTask(application, intent);
+
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(null);
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.OUTBOX_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.OUTBOX_FILE_NAME);
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getGeofenceString());
+
+        List<Geofence> triggeredGeofenceList = GeofenceEventFake.getDoubleMatchingTriggeredGeofenceList();
+        Location triggeredLocation = GeofenceEventFake.getTriggeredLocation();
+
+        WhiteboxImpl.invokeMethod(task,"pushGeofenceEvents",
+                triggeredGeofenceList,
+                triggeredLocation,Geofence.GEOFENCE_TRANSITION_ENTER);
+
+        verify(cleverTapAPI,never()).pushGeofenceEnteredEvent(any(JSONObject.class));
+
+        List<JSONObject> storedEvents = EventOutbox.peek(application, 10);
+        assertEquals(2, storedEvents.size());
+        assertEquals(310001, storedEvents.get(0)
+                .getJSONObject(EventOutbox.KEY_GEOFENCE).getInt("id"));
+        assertEquals(310002, storedEvents.get(1)
+                .getJSONObject(EventOutbox.KEY_GEOFENCE).getInt("id"));
+    }
+
+    @Test
+    public void testPushGeofenceEventsSuppressesDuplicateEnter() throws Exception {
+        // When geofences registered again trigger initial enter while device is still inside
+
+        PushGeofenceEventTask task = new PushGeofenceEventTask(application, intent);
+        Future future = Mockito.mock(Future.class);
+
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.getCachedFullPath(any(Context.class),
+                eq(CTGeofenceConstants.TRANSITION_STATE_FILE_NAME)))
+                .thenReturn(CTGeofenceConstants.TRANSITION_STATE_FILE_NAME);
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getGeofenceString());
+        when(cleverTapAPI.pushGeofenceEnteredEvent(any(JSONObject.class))).thenReturn(future);
+
+        List<Geofence> triggeredGeofenceList = GeofenceEventFake.getSingleMatchingTriggeredGeofenceList();
+        Location triggeredLocation = GeofenceEventFake.getTriggeredLocation();
+
+        WhiteboxImpl.invokeMethod(task,"pushGeofenceEvents",
+                triggeredGeofenceList,
+                triggeredLocation,Geofence.GEOFENCE_TRANSITION_ENTER);
+        WhiteboxImpl.invokeMethod(task,"pushGeofenceEvents",
+                triggeredGeofenceList,
+                triggeredLocation,Geofence.GEOFENCE_TRANSITION_ENTER);
+
+        verify(cleverTapAPI).pushGeofenceEnteredEvent(any(JSONObject.class));
+    }
+
+    @Test
+    public void testPushGeofenceEventsWhenReselectionBoundaryExit() {
+        // When reselection boundary is exited along with a geofence
+
+        PushGeofenceEventTask task = new PushGeofenceEventTask(application, intent);
+        Future future = Mockito.mock(Future.class);
+
+        when(FileUtils.getCachedFullPath(any(Context.class), anyString())).thenReturn("");
+        when(FileUtils.readFromFile(any(Context.class),
+                anyString())).thenReturn(GeofenceJSON.getGeofenceString());
+        when(cleverTapAPI.pushGeoFenceExitedEvent(any(JSONObject.class))).thenReturn(future);
+
+        List<Geofence> triggeredGeofenceList = GeofenceEventFake.getReselectionBoundaryTriggeredGeofenceList();
+        Location triggeredLocation = GeofenceEventFake.getTriggeredLocation();
+
+        try {
+
+            WhiteboxImpl.invokeMethod(task,"pushGeofenceEvents",
+                    triggeredGeofenceList,
+                    triggeredLocation,Geofence.GEOFENCE_TRANSITION_EXIT);
+
+            // only geofence with id 310001 is sent to CT SDK
+            ArgumentCaptor<JSONObject> objectArgumentCaptor = ArgumentCaptor.forClass(JSONObject.class);
+
+            verify(cleverTapAPI).pushGeoFenceExitedEvent(objectArgumentCaptor.capture());
+            assertEquals(310001, objectArgumentCaptor.getValue().getInt("id"));
+            verify(cleverTapAPI, never()).pushGeoFenceError(anyInt(), anyString());
+
+            // reselection task is created
+            verify(ctGeofenceAPI).getCtGeofenceAdapter();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+    }
+
+    @Test
+    public void testPushGeofenceEventsWhenOnlyReselectionBoundaryTriggered() {
+        // When reselection boundary is the only triggered geofence
+
+        PushGeofenceEventTask task = new PushGeofenceEventTask(application, intent);
+
+        List<Geofence> triggeredGeofenceList = new ArrayList<>();
+        triggeredGeofenceList.add(GeofenceEventFake.getReselectionBoundaryTriggeredGeofenceList().get(0));
+        Location triggeredLocation = GeofenceEventFake.getTriggeredLocation();
+
+        try {
+
+            WhiteboxImpl.invokeMethod(task,"pushGeofenceEvents",
+                    triggeredGeofenceList,
+                    triggeredLocation,Geofence.GEOFENCE_TRANSITION_ENTER);
+
+            // never sent to CT SDK and never looked up in file
+            verify(cleverTapAPI,never()).pushGeofenceEnteredEvent(any(JSONObject.class));
+            verify(cleverTapAPI,never()).pushGeoFenceError(anyInt(), anyString());
+
+            verifyStatic(FileUtils.class,times(0));
+            FileUtils.readFromFile(any(Context.class), anyString());
+
+            // reselection happens only on exit
+            verify(ctGeofenceAPI,never()).getCtGeofenceAdapter();
         } catch (Exception e) {
             e.printStackTrace();
         }
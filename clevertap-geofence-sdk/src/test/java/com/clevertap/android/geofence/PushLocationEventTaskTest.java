@@ -7,6 +7,7 @@ import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
 import com.clevertap.android.sdk.CleverTapAPI;
 import com.google.android.gms.location.LocationResult;
 
+import org.json.JSONObject;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -22,13 +23,17 @@ import org.powermock.reflect.internal.WhiteboxImpl;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
-import java.util.concurrent.ExecutionException;
+import java.util.List;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import edu.emory.mathcs.backport.java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -104,6 +109,8 @@ public class PushLocationEventTaskTest extends BaseTestCase {
 
         WhiteboxImpl.setInternalState(ctGeofenceAPI, "cleverTapAPI", cleverTapAPI);
         WhiteboxImpl.setInternalState(ctGeofenceAPI, "context", application);
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(cleverTapAPI);
+        Mockito.doReturn(true).when(ctGeofenceAPI).acceptTriggeredLocation(any(Location.class));
 
         Mockito.when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt())).
                 thenReturn(future);
@@ -113,10 +120,8 @@ public class PushLocationEventTaskTest extends BaseTestCase {
         Utils.notifyLocationUpdates(any(Context.class), any(Location.class));
 
         try {
-            Mockito.verify(future).get();
-        } catch (ExecutionException e) {
-            e.printStackTrace();
-        } catch (InterruptedException e) {
+            Mockito.verify(future).get(anyLong(), any(TimeUnit.class));
+        } catch (Exception e) {
             e.printStackTrace();
         }
 
@@ -135,6 +140,8 @@ public class PushLocationEventTaskTest extends BaseTestCase {
 
         WhiteboxImpl.setInternalState(ctGeofenceAPI, "cleverTapAPI", cleverTapAPI);
         WhiteboxImpl.setInternalState(ctGeofenceAPI, "context", application);
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(cleverTapAPI);
+        Mockito.doReturn(true).when(ctGeofenceAPI).acceptTriggeredLocation(any(Location.class));
 
         Mockito.when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt())).
                 thenReturn(null);
@@ -148,6 +155,123 @@ public class PushLocationEventTaskTest extends BaseTestCase {
 
     }
 
+    @Test
+    public void testExecuteProcessesSimplifiedBatch() throws Exception {
+        Future future = Mockito.mock(Future.class);
+
+        // three locations on a straight line followed by a turn
+        Location first = newLocation(19.0000, 72.8000);
+        Location straight = newLocation(19.0010, 72.8000);
+        Location corner = newLocation(19.0020, 72.8000);
+        Location last = newLocation(19.0020, 72.8020);
+
+        // and an inaccurate one
+        Location inaccurate = newLocation(19.0100, 72.8100);
+        inaccurate.setAccuracy(2000);
+
+        LocationResult batchResult = LocationResult.create(Arrays.asList(
+                new Location[]{first, straight, inaccurate, corner, last}));
+
+        CTGeofenceSettings settings = new CTGeofenceSettings.Builder()
+                .setLocationThrottlePolicy(new CTLocationThrottlePolicy.Builder()
+                        .setMinAccuracy(100)
+                        .build())
+                .build();
+
+        when(Utils.initCTGeofenceApiIfRequired(application)).thenReturn(true);
+        when(ctGeofenceAPI.getGeofenceSettings()).thenReturn(settings);
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(cleverTapAPI);
+        Mockito.doReturn(true).when(ctGeofenceAPI).acceptTriggeredLocation(any(Location.class));
+        Mockito.when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt())).
+                thenReturn(future);
+
+        PushLocationEventTask task = new PushLocationEventTask(application, batchResult);
+        task.setOnCompleteListener(onCompleteListener);
+        task.execute();
+
+        // geofences are evaluated against every accurate location, only simplified path is pinged
+        verifyStatic(Utils.class);
+        Utils.evaluateSoftwareGeofences(application, Arrays.asList(
+                new Location[]{first, straight, corner, last}));
+
+        Mockito.verify(ctGeofenceAPI).acceptTriggeredLocation(first);
+        Mockito.verify(ctGeofenceAPI).acceptTriggeredLocation(corner);
+        Mockito.verify(ctGeofenceAPI).acceptTriggeredLocation(last);
+        Mockito.verify(ctGeofenceAPI, never()).acceptTriggeredLocation(straight);
+        Mockito.verify(ctGeofenceAPI, never()).acceptTriggeredLocation(inaccurate);
+        Mockito.verify(ctGeofenceAPI).reselectGeofences(last);
+        Mockito.verify(ctGeofenceAPI, times(1)).reselectGeofences(any(Location.class));
+        Mockito.verify(cleverTapAPI, times(3)).setLocationForGeofences(any(Location.class), anyInt());
+        Mockito.verify(future, times(3)).get(anyLong(), any(TimeUnit.class));
+        Mockito.verify(onCompleteListener).onComplete();
+    }
+
+    @Test
+    public void testExecuteEvaluatesLocationDroppedBySimplification() throws Exception {
+        Future future = Mockito.mock(Future.class);
+
+        // only the middle location is inside a 100 meters geofence around it, but it is close
+        // enough to the straight line through the others to be dropped from simplified path
+        Location first = newLocation(19.0000, 72.8000);
+        Location inside = newLocation(19.0010, 72.8003);
+        Location last = newLocation(19.0020, 72.8000);
+
+        assertTrue(inside.distanceTo(first) > 100);
+        assertTrue(inside.distanceTo(last) > 100);
+        assertEquals(Arrays.asList(new Location[]{first, last}), LocationTrajectory.simplify(
+                Arrays.asList(new Location[]{first, inside, last}),
+                LocationTrajectory.TOLERANCE_IN_METERS));
+
+        LocationResult batchResult = LocationResult.create(Arrays.asList(
+                new Location[]{first, inside, last}));
+
+        when(Utils.initCTGeofenceApiIfRequired(application)).thenReturn(true);
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(cleverTapAPI);
+        Mockito.doReturn(true).when(ctGeofenceAPI).acceptTriggeredLocation(any(Location.class));
+        Mockito.when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt())).
+                thenReturn(future);
+
+        PushLocationEventTask task = new PushLocationEventTask(application, batchResult);
+        task.setOnCompleteListener(onCompleteListener);
+        task.execute();
+
+        verifyStatic(Utils.class);
+        Utils.evaluateSoftwareGeofences(application, Arrays.asList(
+                new Location[]{first, inside, last}));
+
+        Mockito.verify(ctGeofenceAPI, never()).acceptTriggeredLocation(inside);
+        Mockito.verify(onCompleteListener).onComplete();
+    }
+
+    @Test
+    public void testExecuteWhenPushFails() throws Exception {
+        Future future = Mockito.mock(Future.class);
+        when(future.get(anyLong(), any(TimeUnit.class))).thenThrow(new IllegalStateException());
+
+        location.setLatitude(19.0760);
+        location.setLongitude(72.8777);
+        location.setTime(1584340160000L);
+
+        PushLocationEventTask task = new PushLocationEventTask(application, locationResult);
+        task.setOnCompleteListener(onCompleteListener);
+
+        when(Utils.initCTGeofenceApiIfRequired(application)).thenReturn(true);
+        when(ctGeofenceAPI.getCleverTapApi()).thenReturn(cleverTapAPI);
+        Mockito.doReturn(true).when(ctGeofenceAPI).acceptTriggeredLocation(any(Location.class));
+        Mockito.when(cleverTapAPI.setLocationForGeofences(any(Location.class), anyInt())).
+                thenReturn(future);
+
+        task.execute();
+
+        // accepted location is kept in outbox for later delivery
+        List<JSONObject> storedEvents = EventOutbox.peek(application, 10);
+        assertEquals(1, storedEvents.size());
+        assertEquals(EventOutbox.TYPE_LOCATION, storedEvents.get(0).getString(EventOutbox.KEY_TYPE));
+        assertEquals(1584340160000L, storedEvents.get(0).getLong(EventOutbox.KEY_TIME));
+
+        Mockito.verify(onCompleteListener).onComplete();
+    }
+
     @Test
     public void testSendOnCompleteEventWhenListenerNotNull(){
         // when listener not null
@@ -178,4 +302,11 @@ public class PushLocationEventTaskTest extends BaseTestCase {
 
     }
 
+    private static Location newLocation(double latitude, double longitude) {
+        Location location = new Location("");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+
 }
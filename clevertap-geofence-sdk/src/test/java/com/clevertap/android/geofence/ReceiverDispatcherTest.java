@@ -0,0 +1,288 @@
+package com.clevertap.android.geofence;
+
+import android.content.BroadcastReceiver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class})
+public class ReceiverDispatcherTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    private Logger logger;
+    @Mock
+    public BroadcastReceiver.PendingResult pendingResult;
+    @Mock
+    public BroadcastReceiver.PendingResult otherPendingResult;
+    private ExecutorService executorService;
+    private CountDownLatch latch;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class);
+
+        super.setUp();
+
+        logger = new Logger(Logger.DEBUG);
+        when(CTGeofenceAPI.getLogger()).thenReturn(logger);
+
+        executorService = Executors.newSingleThreadExecutor();
+        latch = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown() {
+        latch.countDown();
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void testDispatchWhenNothingIsPending() {
+        final ReceiverDispatcher dispatcher = ReceiverDispatcher.getInstance();
+
+        dispatcher.dispatch("Test", pendingResult, 5000, new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                return null;
+            }
+        });
+
+        awaitNoBroadcastInFlight(dispatcher);
+        verify(pendingResult).finish();
+    }
+
+    @Test
+    public void testDispatchWhenWorkFails() {
+        final ReceiverDispatcher dispatcher = ReceiverDispatcher.getInstance();
+
+        dispatcher.dispatch("Test", pendingResult, 5000, new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                throw new IllegalStateException();
+            }
+        });
+
+        awaitNoBroadcastInFlight(dispatcher);
+        verify(pendingResult).finish();
+    }
+
+    @Test
+    public void testDispatchFinishesOnCompletion() {
+        final ReceiverDispatcher dispatcher = ReceiverDispatcher.getInstance();
+
+        dispatcher.dispatch("Test", pendingResult, 5000, new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                return executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        awaitLatch();
+                    }
+                });
+            }
+        });
+
+        assertEquals(1, dispatcher.getInFlightCount());
+        verify(pendingResult, never()).finish();
+
+        latch.countDown();
+
+        awaitNoBroadcastInFlight(dispatcher);
+        verify(pendingResult).finish();
+    }
+
+    @Test
+    public void testDispatchFinishesOnCompletionAheadOfOlderWork() {
+        final ReceiverDispatcher dispatcher = ReceiverDispatcher.getInstance();
+        final CTGeofenceTaskManager.TaskFuture olderFuture = newTaskFuture();
+        final CTGeofenceTaskManager.TaskFuture newerFuture = newTaskFuture();
+
+        dispatcher.dispatch("Test", pendingResult, 5000, new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                return olderFuture;
+            }
+        });
+        dispatcher.dispatch("Other", otherPendingResult, 5000, new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                return newerFuture;
+            }
+        });
+
+        // e.g. a geofence transition on read queue completing while main queue is busy
+        executorService.execute(newerFuture);
+
+        verify(otherPendingResult, timeout(1000)).finish();
+        verify(pendingResult, never()).finish();
+        assertEquals(1, dispatcher.getInFlightCount());
+
+        olderFuture.run();
+
+        awaitNoBroadcastInFlight(dispatcher);
+        verify(pendingResult).finish();
+    }
+
+    @Test
+    public void testDispatchFinishesOnDeadline() {
+        final ReceiverDispatcher dispatcher = ReceiverDispatcher.getInstance();
+        final AtomicLong finishedAt = new AtomicLong();
+        final AtomicLong otherFinishedAt = new AtomicLong();
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                finishedAt.set(System.currentTimeMillis());
+                return null;
+            }
+        }).when(pendingResult).finish();
+
+        doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                otherFinishedAt.set(System.currentTimeMillis());
+                return null;
+            }
+        }).when(otherPendingResult).finish();
+
+        Callable<Future<?>> blockedWork = new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                return executorService.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        awaitLatch();
+                    }
+                });
+            }
+        };
+
+        long start = System.currentTimeMillis();
+
+        // broadcast received later with shorter deadline is finished first
+        dispatcher.dispatch("Test", pendingResult, 3000, blockedWork);
+        dispatcher.dispatch("Other", otherPendingResult, 500, blockedWork);
+
+        assertEquals(2, dispatcher.getInFlightCount());
+
+        awaitNoBroadcastInFlight(dispatcher);
+
+        assertTrue(otherFinishedAt.get() - start >= 500);
+        assertTrue(otherFinishedAt.get() - start < 3000);
+        assertTrue(finishedAt.get() - start >= 3000);
+    }
+
+    @Test
+    public void testDispatchRunsWorkInlineWhenQueueIsFull() {
+        final ReceiverDispatcher dispatcher = ReceiverDispatcher.getInstance();
+        final CountDownLatch dispatchStarted = new CountDownLatch(1);
+        final AtomicReference<Thread> overflowThread = new AtomicReference<>();
+
+        // blocks dispatch thread, so that further broadcasts are queued
+        dispatcher.dispatch("Blocking", null, 5000, new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                dispatchStarted.countDown();
+                awaitLatch();
+                return null;
+            }
+        });
+
+        try {
+            dispatchStarted.await();
+        } catch (InterruptedException e) {
+            throw new AssertionError(e);
+        }
+
+        Callable<Future<?>> queuedWork = new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                return null;
+            }
+        };
+
+        for (int i = 0; i < ReceiverDispatcher.MAX_QUEUED_BROADCASTS; i++) {
+            dispatcher.dispatch("Queued", null, 5000, queuedWork);
+        }
+
+        dispatcher.dispatch("Overflow", pendingResult, 5000, new Callable<Future<?>>() {
+            @Override
+            public Future<?> call() {
+                overflowThread.set(Thread.currentThread());
+                return null;
+            }
+        });
+
+        // work of broadcast received after queue is full is not dropped
+        assertSame(Thread.currentThread(), overflowThread.get());
+
+        latch.countDown();
+
+        awaitNoBroadcastInFlight(dispatcher);
+        verify(pendingResult).finish();
+    }
+
+    private static CTGeofenceTaskManager.TaskFuture newTaskFuture() {
+        return new CTGeofenceTaskManager.TaskFuture(new Runnable() {
+            @Override
+            public void run() {
+            }
+        });
+    }
+
+    private void awaitLatch() {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            // finish work
+        }
+    }
+
+    private static void awaitNoBroadcastInFlight(final ReceiverDispatcher dispatcher) {
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return dispatcher.getInFlightCount() == 0;
+            }
+        });
+    }
+}
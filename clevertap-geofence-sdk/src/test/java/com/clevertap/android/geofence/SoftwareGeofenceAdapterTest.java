@@ -0,0 +1,259 @@
+package com.clevertap.android.geofence;
+
+import android.location.Location;
+
+import com.clevertap.android.geofence.interfaces.CTGeofenceTask;
+import com.clevertap.android.geofence.model.CTGeofence;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.powermock.reflect.internal.WhiteboxImpl;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class, CTGeofenceTaskManager.class})
+public class SoftwareGeofenceAdapterTest extends BaseTestCase {
+
+    // Bandra, Mumbai
+    private static final double LATITUDE = 19.0596;
+    private static final double LONGITUDE = 72.8295;
+
+    // about 111 meters
+    private static final double ONE_THOUSANDTH_DEGREE = 0.001;
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    private Logger logger;
+    @Mock
+    public CTGeofenceAPI ctGeofenceAPI;
+    @Mock
+    public CTGeofenceTaskManager taskManager;
+    @Mock
+    public OnSuccessListener onSuccessListener;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class, CTGeofenceTaskManager.class);
+
+        super.setUp();
+
+        when(CTGeofenceAPI.getInstance(application)).thenReturn(ctGeofenceAPI);
+        logger = new Logger(Logger.DEBUG);
+        when(CTGeofenceAPI.getLogger()).thenReturn(logger);
+        PowerMockito.when(CTGeofenceTaskManager.getInstance()).thenReturn(taskManager);
+
+        new SoftwareGeofenceAdapter(application).stopGeofenceMonitoring(null);
+    }
+
+    @Test
+    public void testAddAllGeofenceWhenFenceListIsNullOrEmpty() {
+        SoftwareGeofenceAdapter adapter = new SoftwareGeofenceAdapter(application);
+
+        adapter.addAllGeofence(null, onSuccessListener);
+        adapter.addAllGeofence(new ArrayList<CTGeofence>(), onSuccessListener);
+
+        verify(onSuccessListener, never()).onSuccess(null);
+    }
+
+    @Test
+    public void testEnterAndExit() throws Exception {
+        SoftwareGeofenceAdapter adapter = new SoftwareGeofenceAdapter(application);
+        adapter.addAllGeofence(Collections.singletonList(geofence("1", LATITUDE, LONGITUDE, 200, 0)),
+                onSuccessListener);
+
+        verify(onSuccessListener).onSuccess(null);
+
+        // outside
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + 3 * ONE_THOUSANDTH_DEGREE, 0)));
+        verify(taskManager, never()).postAsyncSafely(anyString(), any(CTGeofenceTask.class));
+
+        // inside
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + ONE_THOUSANDTH_DEGREE, 0)));
+        assertTransition(Collections.singletonList("1"), Geofence.GEOFENCE_TRANSITION_ENTER);
+
+        // still inside, no transition
+        reset(taskManager);
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE, 0)));
+        verify(taskManager, never()).postAsyncSafely(anyString(), any(CTGeofenceTask.class));
+
+        // outside
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + 3 * ONE_THOUSANDTH_DEGREE, 0)));
+        assertTransition(Collections.singletonList("1"), Geofence.GEOFENCE_TRANSITION_EXIT);
+    }
+
+    @Test
+    public void testExitNeedsToClearAccuracy() throws Exception {
+        SoftwareGeofenceAdapter adapter = new SoftwareGeofenceAdapter(application);
+        adapter.addAllGeofence(Collections.singletonList(geofence("1", LATITUDE, LONGITUDE, 200, 0)),
+                onSuccessListener);
+
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE, 0)));
+        reset(taskManager);
+
+        // about 222 meters from center, within radius plus accuracy of 50 meters
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + 2 * ONE_THOUSANDTH_DEGREE, 50)));
+        verify(taskManager, never()).postAsyncSafely(anyString(), any(CTGeofenceTask.class));
+
+        // accuracy above 100 meters is not honoured
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + 3 * ONE_THOUSANDTH_DEGREE, 500)));
+        assertTransition(Collections.singletonList("1"), Geofence.GEOFENCE_TRANSITION_EXIT);
+    }
+
+    @Test
+    public void testOnlyRequestedTransitionsAreSent() throws Exception {
+        SoftwareGeofenceAdapter adapter = new SoftwareGeofenceAdapter(application);
+        adapter.addAllGeofence(Arrays.asList(
+                geofence("1", LATITUDE, LONGITUDE, 200, Geofence.GEOFENCE_TRANSITION_EXIT),
+                geofence("2", LATITUDE, LONGITUDE, 300, Geofence.GEOFENCE_TRANSITION_ENTER)),
+                onSuccessListener);
+
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE, 0)));
+        assertTransition(Collections.singletonList("2"), Geofence.GEOFENCE_TRANSITION_ENTER);
+
+        reset(taskManager);
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + 5 * ONE_THOUSANDTH_DEGREE, 0)));
+        assertTransition(Collections.singletonList("1"), Geofence.GEOFENCE_TRANSITION_EXIT);
+    }
+
+    @Test
+    public void testStateIsPersisted() throws Exception {
+        SoftwareGeofenceAdapter adapter = new SoftwareGeofenceAdapter(application);
+        adapter.addAllGeofence(Arrays.asList(
+                geofence("1", LATITUDE, LONGITUDE, 200, 0),
+                geofence("2", LATITUDE + 1, LONGITUDE, 200, 0)),
+                onSuccessListener);
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE, 0)));
+        reset(taskManager);
+
+        // new process
+        SoftwareGeofenceAdapter newAdapter = new SoftwareGeofenceAdapter(application);
+
+        newAdapter.onLocationsChanged(Collections.singletonList(location(LATITUDE, 0)));
+        verify(taskManager, never()).postAsyncSafely(anyString(), any(CTGeofenceTask.class));
+
+        newAdapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + 1, 0)));
+        verify(taskManager, times(2)).postAsyncSafely(anyString(), any(CTGeofenceTask.class));
+    }
+
+    @Test
+    public void testRemoveAllGeofence() throws Exception {
+        SoftwareGeofenceAdapter adapter = new SoftwareGeofenceAdapter(application);
+        adapter.addAllGeofence(Collections.singletonList(geofence("1", LATITUDE, LONGITUDE, 200, 0)),
+                onSuccessListener);
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE, 0)));
+        reset(taskManager);
+
+        adapter.removeAllGeofence(Collections.singletonList("1"), onSuccessListener);
+
+        // no exit for removed geofence
+        adapter.onLocationsChanged(Collections.singletonList(location(LATITUDE + 1, 0)));
+        verify(taskManager, never()).postAsyncSafely(anyString(), any(CTGeofenceTask.class));
+        verify(onSuccessListener, times(2)).onSuccess(null);
+    }
+
+    @Test
+    public void testGpsTrace() throws Exception {
+        // geofences 500 meters apart along a road heading north
+        List<CTGeofence> fenceList = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            fenceList.add(geofence(String.valueOf(i), LATITUDE + i * 4.5 * ONE_THOUSANDTH_DEGREE,
+                    LONGITUDE, 100, 0));
+        }
+
+        SoftwareGeofenceAdapter adapter = new SoftwareGeofenceAdapter(application);
+        adapter.addAllGeofence(fenceList, onSuccessListener);
+
+        // a fix every 50 meters with jitter, delivered in batches of 5
+        List<Location> trace = new ArrayList<>();
+        for (int i = 0; i < 90; i++) {
+            double jitter = (i % 2 == 0 ? 1 : -1) * 0.0001;
+            trace.add(location(LATITUDE + i * 0.45 * ONE_THOUSANDTH_DEGREE + jitter, 20));
+        }
+        for (int i = 0; i < trace.size(); i += 5) {
+            adapter.onLocationsChanged(trace.subList(i, i + 5));
+        }
+
+        ArgumentCaptor<CTGeofenceTask> taskCaptor = ArgumentCaptor.forClass(CTGeofenceTask.class);
+        verify(taskManager, times(19)).postAsyncSafely(anyString(), taskCaptor.capture());
+
+        int enterCount = 0;
+        int exitCount = 0;
+        for (CTGeofenceTask task : taskCaptor.getAllValues()) {
+            int transition = WhiteboxImpl.getInternalState(task, "geofenceTransition");
+            if (transition == Geofence.GEOFENCE_TRANSITION_ENTER) {
+                enterCount++;
+            } else {
+                exitCount++;
+            }
+        }
+
+        // every geofence is entered once, and exited except the last one
+        assertEquals(10, enterCount);
+        assertEquals(9, exitCount);
+    }
+
+    private void assertTransition(List<String> expectedIds, int expectedTransition) {
+        ArgumentCaptor<CTGeofenceTask> taskCaptor = ArgumentCaptor.forClass(CTGeofenceTask.class);
+        verify(taskManager).postAsyncSafely(anyString(), taskCaptor.capture());
+
+        List<String> triggeringGeofenceIds = WhiteboxImpl.getInternalState(taskCaptor.getValue(),
+                "triggeringGeofenceIds");
+        int geofenceTransition = WhiteboxImpl.getInternalState(taskCaptor.getValue(),
+                "geofenceTransition");
+
+        assertEquals(expectedIds, triggeringGeofenceIds);
+        assertEquals(expectedTransition, geofenceTransition);
+    }
+
+    private static CTGeofence geofence(String id, double latitude, double longitude, int radius,
+                                       int transitionType) {
+        return new CTGeofence.Builder(id)
+                .setLatitude(latitude)
+                .setLongitude(longitude)
+                .setRadius(radius)
+                .setTransitionType(transitionType)
+                .build();
+    }
+
+    private static Location location(double latitude, float accuracy) {
+        Location location = new Location("");
+        location.setLatitude(latitude);
+        location.setLongitude(LONGITUDE);
+        if (accuracy > 0) {
+            location.setAccuracy(accuracy);
+        }
+        return location;
+    }
+}
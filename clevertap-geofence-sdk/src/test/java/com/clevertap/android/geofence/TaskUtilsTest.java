@@ -0,0 +1,186 @@
+package com.clevertap.android.geofence;
+
+import com.google.android.gms.tasks.CancellationTokenSource;
+import com.google.android.gms.tasks.Continuation;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.MockitoAnnotations;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.rule.PowerMockRule;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.powermock.api.mockito.PowerMockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28,
+        application = TestApplication.class
+)
+@PowerMockIgnore({"org.mockito.*", "org.robolectric.*", "android.*", "androidx.*", "org.json.*"})
+@PrepareForTest({CTGeofenceAPI.class})
+public class TaskUtilsTest extends BaseTestCase {
+
+    @Rule
+    public PowerMockRule rule = new PowerMockRule();
+    private Logger logger;
+
+    @Before
+    public void setUp() throws Exception {
+
+        MockitoAnnotations.initMocks(this);
+        PowerMockito.mockStatic(CTGeofenceAPI.class);
+
+        super.setUp();
+
+        logger = new Logger(Logger.DEBUG);
+        when(CTGeofenceAPI.getLogger()).thenReturn(logger);
+    }
+
+    @Test
+    public void testWithTimeoutWhenTaskCompletes() {
+        TaskCompletionSource<String> taskCompletionSource = new TaskCompletionSource<>();
+
+        Task<String> task = TaskUtils.withTimeout(taskCompletionSource.getTask(), 5000, null);
+        assertFalse(task.isComplete());
+
+        taskCompletionSource.setResult("result");
+
+        awaitCompletion(task);
+        assertEquals("result", task.getResult());
+    }
+
+    @Test
+    public void testWithTimeoutWhenTaskIsNull() {
+        Task<String> task = TaskUtils.withTimeout(null, 5000, null);
+
+        assertTrue(task.isComplete());
+        assertFalse(task.isSuccessful());
+    }
+
+    @Test
+    public void testWithTimeoutWhenTaskTimesOut() {
+        TaskCompletionSource<String> taskCompletionSource = new TaskCompletionSource<>();
+
+        Task<String> task = TaskUtils.withTimeout(taskCompletionSource.getTask(), 100, null);
+
+        awaitCompletion(task);
+        assertTrue(task.getException() instanceof TimeoutException);
+    }
+
+    @Test
+    public void testWithTimeoutWhenCancelled() {
+        TaskCompletionSource<String> taskCompletionSource = new TaskCompletionSource<>();
+        CancellationTokenSource cancellationTokenSource = new CancellationTokenSource();
+
+        Task<String> task = TaskUtils.withTimeout(taskCompletionSource.getTask(), 5000,
+                cancellationTokenSource.getToken());
+
+        cancellationTokenSource.cancel();
+
+        awaitCompletion(task);
+        assertTrue(task.isCanceled());
+    }
+
+    @Test
+    public void testEnqueueRunsWorkInOrder() {
+        final List<String> executedWork = Collections.synchronizedList(new ArrayList<String>());
+        final TaskCompletionSource<Void> firstWork = new TaskCompletionSource<>();
+
+        TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+            @Override
+            public Task<Void> then(Task<Void> task) {
+                executedWork.add("first");
+                return firstWork.getTask();
+            }
+        });
+
+        Task<Void> lastTask = TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+            @Override
+            public Task<Void> then(Task<Void> task) {
+                executedWork.add("second");
+                return null;
+            }
+        });
+
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return executedWork.contains("first");
+            }
+        });
+
+        // second work waits for first one
+        assertFalse(lastTask.isComplete());
+        assertEquals(Collections.singletonList("first"), executedWork);
+
+        // and starts even if first one fails
+        firstWork.setException(new IllegalStateException());
+
+        awaitCompletion(lastTask);
+        assertEquals(Arrays.asList("first", "second"), executedWork);
+    }
+
+    @Test
+    public void testCancelPendingStartsEnqueuedWork() {
+        final List<String> executedWork = Collections.synchronizedList(new ArrayList<String>());
+
+        TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+            @Override
+            public Task<Void> then(Task<Void> task) {
+                // OS never responds
+                Task<Void> requestTask = TaskUtils.withTimeout(
+                        new TaskCompletionSource<Void>().getTask(),
+                        TaskUtils.DEFAULT_TIMEOUT_IN_MILLIS, TaskUtils.getCancellationToken());
+                executedWork.add("first");
+                return requestTask;
+            }
+        });
+
+        Task<Void> lastTask = TaskUtils.enqueue(new Continuation<Void, Task<Void>>() {
+            @Override
+            public Task<Void> then(Task<Void> task) {
+                executedWork.add("second");
+                return null;
+            }
+        });
+
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return executedWork.contains("first");
+            }
+        });
+
+        TaskUtils.cancelPending();
+
+        awaitCompletion(lastTask);
+        assertEquals(Arrays.asList("first", "second"), executedWork);
+    }
+
+    private static void awaitCompletion(final Task<?> task) {
+        await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return task.isComplete();
+            }
+        });
+    }
+}
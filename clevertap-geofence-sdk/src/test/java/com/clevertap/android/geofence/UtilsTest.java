@@ -43,9 +43,11 @@ import static org.hamcrest.beans.SamePropertyValuesAs.samePropertyValuesAs;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
 import static org.powermock.api.mockito.PowerMockito.mockStatic;
 import static org.powermock.api.mockito.PowerMockito.verifyStatic;
 import static org.powermock.api.mockito.PowerMockito.when;
@@ -79,6 +81,7 @@ public class UtilsTest extends BaseTestCase {
         logger = new Logger(Logger.DEBUG);
         when(CTGeofenceAPI.getLogger()).thenReturn(logger);
 
+        Utils.invalidateSettings(application);
     }
 
     @Test
@@ -173,10 +176,17 @@ public class UtilsTest extends BaseTestCase {
 
         assertThat(settingsActualWhenNotEmpty, samePropertyValuesAs(settingsExpectedWhenNotEmpty));
 
-        // when settings in file is blank
+        // file is read only once per process
         when(FileUtils.readFromFile(any(Context.class),
                 anyString())).thenReturn("");
 
+        assertSame(settingsActualWhenNotEmpty, Utils.readSettingsFromFile(application));
+        verifyStatic(FileUtils.class, times(1));
+        FileUtils.readFromFile(any(Context.class), anyString());
+
+        // when settings in file is blank
+        Utils.invalidateSettings(application);
+
         CTGeofenceSettings settingsActualWhenEmpty = Utils.readSettingsFromFile(application);
         assertNull(settingsActualWhenEmpty);
     }
@@ -198,6 +208,86 @@ public class UtilsTest extends BaseTestCase {
 
     }
 
+    @Test
+    public void testWriteSettingsToFileOnlyWhenChanged() {
+        mockStatic(FileUtils.class);
+
+        when(ctGeofenceAPI.getAccountId()).thenReturn("4RW-Z6Z-485Z");
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(),
+                any(JSONObject.class))).thenReturn(true);
+
+        CTGeofenceSettings settings = CTGeofenceSettingsFake.getSettings(
+                CTGeofenceSettingsFake.getSettingsJsonObject());
+
+        Utils.writeSettingsToFile(application, settings);
+
+        // written settings are served from memory
+        assertEquals(settings, Utils.readSettingsFromFile(application));
+        assertEquals(settings.hashCode(), Utils.readSettingsFromFile(application).hashCode());
+
+        // same settings again are not written
+        Utils.writeSettingsToFile(application, CTGeofenceSettingsFake.getSettings(
+                CTGeofenceSettingsFake.getSettingsJsonObject()));
+
+        verifyStatic(FileUtils.class, times(1));
+        FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(),
+                any(JSONObject.class));
+        verifyStatic(FileUtils.class, times(0));
+        FileUtils.readFromFile(any(Context.class), anyString());
+
+        // changed settings are written
+        CTGeofenceSettings changedSettings = new CTGeofenceSettings.Builder()
+                .setId("4RW-Z6Z-485Z")
+                .setGeofenceMonitoringCount(20)
+                .build();
+        Utils.writeSettingsToFile(application, changedSettings);
+
+        verifyStatic(FileUtils.class, times(2));
+        FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(),
+                any(JSONObject.class));
+        assertEquals(changedSettings, Utils.readSettingsFromFile(application));
+    }
+
+    @Test
+    public void testWriteSettingsToFileWithOptionalSettings() {
+        mockStatic(FileUtils.class);
+
+        when(ctGeofenceAPI.getAccountId()).thenReturn("4RW-Z6Z-485Z");
+        when(FileUtils.getCachedDirName(application)).thenReturn("");
+        when(FileUtils.writeJsonToFile(any(Context.class), anyString(), anyString(),
+                any(JSONObject.class))).thenReturn(true);
+
+        CTGeofenceSettings settings = new CTGeofenceSettings.Builder()
+                .setId("4RW-Z6Z-485Z")
+                .setMaxWaitTime(8000000)
+                .setTransitionHysteresis(60000)
+                .setMinDwellTime(120000)
+                .setLocationThrottlePolicy(new CTLocationThrottlePolicy.Builder()
+                        .setMatchMode(CTLocationThrottlePolicy.MATCH_ANY)
+                        .setMinInterval(600000)
+                        .setMinDisplacement(500)
+                        .setMaxTravelDistance(5000)
+                        .setMinAccuracy(100)
+                        .build())
+                .build();
+
+        Utils.writeSettingsToFile(application, settings);
+
+        // snapshot is parsed back from written json
+        CTGeofenceSettings actual = Utils.readSettingsFromFile(application);
+        assertEquals(settings, actual);
+        assertEquals(settings.getLocationThrottlePolicy(), actual.getLocationThrottlePolicy());
+    }
+
+    @Test
+    public void testContentHash() {
+        assertEquals(Utils.contentHash(CTGeofenceSettingsFake.getSettingsJsonString()),
+                Utils.contentHash(CTGeofenceSettingsFake.getSettingsJsonObject().toString()));
+        assertFalse(Utils.contentHash("{\"last_geo_count\":47}")
+                == Utils.contentHash("{\"last_geo_count\":48}"));
+    }
+
     @Test
     public void testInitCTGeofenceApiIfRequired() {
         mockStatic(FileUtils.class);
@@ -213,6 +303,7 @@ public class UtilsTest extends BaseTestCase {
 
         // when cleverTapApi is null and settings is not null
 
+        Utils.invalidateSettings(application);
         when(FileUtils.readFromFile(any(Context.class),
                 anyString())).thenReturn(CTGeofenceSettingsFake.getSettingsJsonString());
         boolean actualWhenSettingsNonNullAndCTApiIsNull = Utils.initCTGeofenceApiIfRequired(application);
@@ -288,7 +379,9 @@ public class UtilsTest extends BaseTestCase {
 
         CTLocationUpdatesListener locationUpdatesListener = Mockito.mock(CTLocationUpdatesListener.class);
 
-        Mockito.when(ctGeofenceAPI.getCtLocationUpdatesListener()).thenReturn(locationUpdatesListener);
+        GeofenceEventBus eventBus = new GeofenceEventBus();
+        eventBus.addLocationUpdatesListener(locationUpdatesListener, null);
+        Mockito.when(ctGeofenceAPI.getEventBus()).thenReturn(eventBus);
 
         Utils.notifyLocationUpdates(application,Mockito.mock(Location.class));
 
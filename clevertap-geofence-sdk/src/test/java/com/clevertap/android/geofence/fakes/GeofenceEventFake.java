@@ -58,4 +58,22 @@ public class GeofenceEventFake {
 
         return geofenceList;
     }
+
+    public static List<Geofence> getReselectionBoundaryTriggeredGeofenceList() {
+        List<Geofence> geofenceList = new ArrayList<>();
+        geofenceList.add(new Geofence.Builder().setRequestId("ct_reselection_boundary")
+                .setTransitionTypes(2)
+                .setCircularRegion(19.092962, 72.849717,
+                        5000)
+                .setExpirationDuration(-1)
+                .build());
+        geofenceList.add(new Geofence.Builder().setRequestId("310001")
+                .setTransitionTypes(3)
+                .setCircularRegion(19.092962, 72.849717,
+                        400)
+                .setExpirationDuration(-1)
+                .build());
+
+        return geofenceList;
+    }
 }